@@ -1 +1 @@
-java -jar Attractors.jar
\ No newline at end of file
+java --add-modules jdk.incubator.vector -jar Attractors.jar
\ No newline at end of file
@@ -1,23 +1,57 @@
 
+import analysis.LyapunovEstimator;
+import analysis.LyapunovSpectrum;
 import attractors.*;
+import integrators.IntegratorI;
+import integrators.Integrators;
+import io.Checkpoint;
+import io.TrajectoryHeader;
+import io.TrajectoryReader;
 import math.RMath;
+import math.TrajectorySink;
+import math.TrajectoryBounds;
+import math.TrajectoryBuffer;
 import math.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import peasy.PeasyCam;
+import render.DensityRenderer;
+import render.EnsembleRenderer;
+import render.ToneMapper;
+import render.TrailRenderer;
+import sim.Ensemble;
+import sim.CheckpointIndex;
+import sim.EnsembleKernel;
+import sim.FixedStepClock;
+import sim.SimulationThread;
+import sim.SpscPointQueue;
+import sim.TimelineSeeker;
+import sim.TrajectoryPlayer;
+import video.MjpegAviEncoder;
+import video.ScreenRecorder;
+import video.VideoFormat;
 import processing.core.PApplet;
 import processing.core.PFont;
+import processing.core.PImage;
+import processing.core.PMatrix3D;
 import processing.event.KeyEvent;
+import processing.opengl.PGraphicsOpenGL;
 import processing.opengl.PJOGL;
 
 import java.awt.*;
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 
 public class Main extends PApplet {
 
     public static final boolean DEFAULT_FREE_CAM = true;
     public static final float[] INITIAL_CAM_ROTATIONS = new float[] { 0, 0, 0 };
 
+    public static final boolean DEFAULT_RETAINED_TRAIL = true;
+    public static final boolean DEFAULT_LYAPUNOV_SHOWN = true;
+
     public static final boolean DEFAULT_CONTROLS_SHOWN = true;
     public static final boolean SHOW_CONTROLS_DES = true;
 
@@ -25,9 +59,44 @@ public class Main extends PApplet {
     private static final float SPEED_FACTOR_MAX = 10f;
     private static final float SPEED_FACTOR_DEFAULT = 1f;
 
+    public static final float STEPS_PER_SECOND_DEFAULT = 1000;
+
+    /* Particles of ensemble mode, overridable with -Dattractors.ensemble=<count> */
+    public static final String ENSEMBLE_COUNT_PROPERTY = "attractors.ensemble";
+    public static final int ENSEMBLE_COUNT_DEFAULT = 100_000;
+    public static final int ENSEMBLE_COUNT = Math.max(Integer.getInteger(ENSEMBLE_COUNT_PROPERTY, ENSEMBLE_COUNT_DEFAULT), 1);
+    public static final int ENSEMBLE_TAIL_LENGTH = 12;
+    public static final float ENSEMBLE_STEPS_PER_SECOND = 240;
+    public static final int ENSEMBLE_MAX_STEPS_PER_FRAME = 8;
+    @NotNull
+    public static final Ensemble.Seeding ENSEMBLE_DEFAULT_SEEDING = Ensemble.Seeding.BALL;
+    public static final int POINT_QUEUE_CAPACITY = 1 << 16;
+
     public static final float ATTRACTOR_ZOOM_MIN = 0.05f;
     public static final float ATTRACTOR_ZOOM_MAX = 5;
 
+    @NotNull
+    public static final VideoFormat DEFAULT_RECORDING_FORMAT = VideoFormat.MJPEG_AVI;
+    public static final int RECORDING_FPS = ScreenRecorder.DEFAULT_FPS;
+    public static final float RECORDING_QUALITY = MjpegAviEncoder.DEFAULT_QUALITY;
+    public static final int RECORDING_QUEUE_CAPACITY = 8;
+
+    public static final String ARG_REPLAY = "--replay";
+    public static final boolean REPLAY_LOOP = true;
+
+    /* Time a message stays on the HUD, see showMessage() */
+    public static final long MESSAGE_DURATION_MS = 4000;
+
+    /* Timeline of the live simulation, or of the replay */
+    public static final float SEEK_FRACTION = 0.02f;
+    public static final float SEEK_FRACTION_LARGE = 0.1f;
+    public static final float TIMELINE_BAR_HEIGHT = 0.006f;           // relative to the window height
+
+    public static final float DENSITY_GAMMA = ToneMapper.DEFAULT_GAMMA;
+
+    public static final String ARG_RESUME = "--resume";
+    public static final boolean CHECKPOINT_TRAIL = true;
+
     public static final boolean ATTRACTOR_INVERT_X = false;
     public static final boolean ATTRACTOR_INVERT_Y = true;
     public static final boolean ATTRACTOR_INVERT_Z = false;
@@ -55,11 +124,27 @@ public class Main extends PApplet {
             "C .............. ChuaAttractor\n" +
             "M .............. Modified Lorentz Attractor\n" +
             "H .............. LuChen Attractor\n\n" +
+            "I .............. Cycle Integrator\n" +
             "+/- ............ Increase/Decrease Speed\n" +
+            "PgUp/PgDn ...... Increase/Decrease Steps per second\n" +
             "Shift +/- ........ Increase/Decrease fixed Zoom";
 
     public static final String DES_CONTROLS_OTHERS =
             "V .............. Toggle Camera\n" +
+            "T .............. Toggle Trail Rendering\n" +
+            "B .............. Toggle Robust Framing\n" +
+            "Y .............. Toggle Lyapunov Exponent\n" +
+            "F .............. Start/Stop Recording\n" +
+            "Shift-F .......... Recording Format\n" +
+            "O .............. Open/Close Replay\n" +
+            "Space ........... Replay Play/Pause\n" +
+            "Left/Right ...... Seek Timeline/Replay\n" +
+            "K .............. Save Checkpoint\n" +
+            "Shift-K .......... Resume Checkpoint\n" +
+            "D .............. Toggle Density Mode\n" +
+            "E .............. Toggle Ensemble Mode\n" +
+            "Shift-E .......... Ensemble Points/Comets\n" +
+            "CTRL-E ........... Ensemble Seeding\n" +
             "CTRL-R ........... Reset Attractor\n" +
             "Shift-R .......... Reset fixed Zoom\n" +
             "Shift-C .......... Toggle Controls";
@@ -77,8 +162,73 @@ public class Main extends PApplet {
     }
 
     @NotNull
-    private static String getStatusText(float speedFactor, boolean freeCam) {
-        return getCameraText(freeCam) + "  |  " + getSpeedFactorText(speedFactor);
+    private static String getIntegratorText(@NotNull IntegratorI integrator) {
+        return "Integrator [I]: " + integrator.getName();
+    }
+
+    @NotNull
+    private static String getTrailModeText(boolean retained) {
+        return "Trail [T]: " + (retained? "Retained": "Immediate");
+    }
+
+    @NotNull
+    private static String getEnsembleText(@NotNull Ensemble ensemble, @NotNull Ensemble.Seeding seeding, @NotNull EnsembleRenderer.Style style) {
+        final EnsembleKernel kernel = ensemble.getKernel();
+        return "Ensemble [E]: " + ensemble.count() + " particles  |  " + seeding.displayName + "  |  " + style.displayName
+                + "  |  " + (kernel != null? kernel.getName(): "Scalar");
+    }
+
+    @NotNull
+    private static String getLyapunovText(@NotNull LyapunovEstimator estimator, @NotNull double[] tmpSpectrum) {
+        if (estimator.hasDiverged())
+            return "LLE [Y]: diverged";
+
+        if (estimator.getSpectrum(tmpSpectrum)) {
+            return String.format("Lyapunov [Y]: %.3f, %.3f, %.3f  |  D_KY: %.3f  (t = %.0f)", tmpSpectrum[0], tmpSpectrum[1], tmpSpectrum[2],
+                    LyapunovSpectrum.kaplanYorkeDimension(tmpSpectrum), estimator.getTime());
+        }
+
+        final double exponent = estimator.getExponent();
+        return "LLE [Y]: " + (Double.isNaN(exponent)? "...": String.format("%.3f  (t = %.0f)", exponent, estimator.getTime()));
+    }
+
+    @NotNull
+    private static String getRecordingText(@NotNull ScreenRecorder recorder) {
+        final int seconds = (int) recorder.getElapsedSeconds();
+        return String.format("REC [F]: %02d:%02d  |  %s  |  %d frames  |  Queue: %d/%d  |  Dropped: %d", seconds / 60, seconds % 60,
+                recorder.getFormat().displayName, recorder.getFrameCount(), recorder.getQueueDepth(), recorder.getQueueCapacity(),
+                recorder.getDroppedFrames());
+    }
+
+    @NotNull
+    private static String getDensityText(@NotNull DensityRenderer density) {
+        return "Density [D]: " + String.format("%.1f M samples", density.getSamples() / 1e6) + "  |  " + density.getThreads() + " threads"
+                + "  |  Gamma " + DENSITY_GAMMA;
+    }
+
+    @NotNull
+    private static String getReplayText(@NotNull TrajectoryPlayer player) {
+        final long size = Math.max(player.size(), 1);
+        return "Replay [O]: " + (player.isPlaying()? "Playing": "Paused") + "  |  " + String.format("%.1f / %.1f", player.getTime(), player.getDuration())
+                + "  |  " + String.format("%.1f%%", player.getPosition() * 100f / size) + "  |  " + player.getHeader().integrator;
+    }
+
+    @NotNull
+    private static String getTimelineText(@NotNull CheckpointIndex timeline, @Nullable SimulationThread sim, long seekTarget) {
+        final long latest = timeline.getLatestSteps();
+        final long steps = sim != null? sim.getSteps(): latest;
+        return "Time [Left/Right]: " + String.format("%.1f / %.1f", timeline.timeAt(steps), timeline.timeAt(latest))
+                + (seekTarget >= 0? String.format("  |  Seeking %.1f", timeline.timeAt(seekTarget)): "");
+    }
+
+    @NotNull
+    private static String getStepsPerSecondText(float stepsPerSecond) {
+        return "Steps/s: " + Math.round(stepsPerSecond);
+    }
+
+    @NotNull
+    private static String getStatusText(@NotNull IntegratorI integrator, boolean retainedTrail, float stepsPerSecond, float speedFactor, boolean freeCam) {
+        return getIntegratorText(integrator) + "  |  " + getTrailModeText(retainedTrail) + "  |  " + getCameraText(freeCam) + "  |  " + getStepsPerSecondText(stepsPerSecond) + "  |  " + getSpeedFactorText(speedFactor);
     }
 
 
@@ -100,14 +250,90 @@ public class Main extends PApplet {
     @NotNull
     private AttractorI mAttractor = new LorentzAttractor();       // todo
     @NotNull
-    private final LinkedList<Vector> mPoints = new LinkedList<>();
-    private float xMin, xMax, yMin, yMax, zMin, zMax;
+    private IntegratorI mIntegrator = mAttractor.createIntegrator();
+    @Nullable
+    private Integrators mIntegratorOverride;        // integrator selected at runtime, null to use the attractor's default
+    @NotNull
+    private TrajectoryBuffer mPoints = createTrajectoryBuffer(mAttractor);
+    @NotNull
+    private final SpscPointQueue mPointQueue = new SpscPointQueue(POINT_QUEUE_CAPACITY);
+    @Nullable
+    private SimulationThread mSimulation;
+    private float mStepsPerSecond = STEPS_PER_SECOND_DEFAULT;
+    @NotNull
+    private final float[] mTmpState = new float[AttractorI.STATE_SIZE];
+    private long mTmpSteps;                 // simulation clock of mTmpState
+    private double mTmpTime;
+    @Nullable
+    private TrailRenderer mTrailRenderer;
+    private boolean mRetainedTrail = DEFAULT_RETAINED_TRAIL;
+    @Nullable
+    private LyapunovEstimator mLyapunov;
+    private boolean mShowLyapunov = DEFAULT_LYAPUNOV_SHOWN;
+    @NotNull
+    private final double[] mTmpSpectrum = new double[LyapunovSpectrum.SIZE];
+    /* Ensemble mode */
+    private boolean mEnsembleMode;
+    @Nullable
+    private Ensemble mEnsemble;
+    @NotNull
+    private Ensemble.Seeding mEnsembleSeeding = ENSEMBLE_DEFAULT_SEEDING;
+    @NotNull
+    private EnsembleRenderer.Style mEnsembleStyle = EnsembleRenderer.Style.POINTS;
+    @NotNull
+    private final EnsembleRenderer mEnsembleRenderer = new EnsembleRenderer();
+    @NotNull
+    private final FixedStepClock mEnsembleClock = new FixedStepClock(ENSEMBLE_MAX_STEPS_PER_FRAME, ENSEMBLE_MAX_STEPS_PER_FRAME);
+    private boolean mHasResumeState;            // whether the trail simulation was suspended by the ensemble mode
+    /* Density mode */
+    @Nullable
+    private DensityRenderer mDensity;
+    @Nullable
+    private TrajectoryBounds mDensityBounds;        // framing of the density view, fixed so that the accumulation is not reset
+    @Nullable
+    private PImage mDensityImage;
+    @Nullable
+    private ToneMapper mDensityToneMapper;
+    @Nullable
+    private DrawConfig mDensityToneMapperConfig;
+    @NotNull
+    private final PMatrix3D mTmpMatrix = new PMatrix3D();
+    /* Recording */
+    @Nullable
+    private ScreenRecorder mRecorder;
+    @NotNull
+    private VideoFormat mRecordingFormat = DEFAULT_RECORDING_FORMAT;
+    /* Replay */
+    @Nullable
+    private TrajectoryPlayer mReplay;
+    @Nullable
+    private volatile File mPendingReplayFile;        // chosen in the file dialog, opened on the animation thread
+    /* Timeline */
+    @NotNull
+    private final CheckpointIndex mTimeline = new CheckpointIndex();
+    @NotNull
+    private final TimelineSeeker mSeeker = new TimelineSeeker();
+    private long mSeekTarget = -1;          // step being seeked to in the background, -1 if none
+    private boolean mScrubbing;             // dragging on the timeline bar
+
+    @NotNull
+    private final TrajectorySink mTrailSink = this::onNewPoint;
+
+    /* Short-lived message on the HUD, e.g. the outcome of a checkpoint or a recording. Shown from any thread */
+    @Nullable
+    private volatile String mMessage;
+    private volatile boolean mMessageError;
+    private volatile long mMessageUntilMs;
+    @NotNull
+    private int[] mColors = new int[mPoints.capacity()];        // scratch colors of the trail points
+    @NotNull
+    private final Vector mTmpOrigin = new Vector();
+    @NotNull
+    private TrajectoryBounds mBounds = new TrajectoryBounds(mPoints.capacity());      // bounds of the visible trail
     private float mSpeedFactor = SPEED_FACTOR_DEFAULT;
 
     private float attractorZoom = 1;
 
-    private long mLastDrawMs = -1;
-
     @Nullable
     private PeasyCam mPeasyCam;
     private boolean mFreeCam = DEFAULT_FREE_CAM;
@@ -116,9 +342,25 @@ public class Main extends PApplet {
     @Nullable
     private KeyEvent mKeyEvent;
 
+    @NotNull
+    private Vector drawOrigin(@NotNull Vector out) {
+        final Ensemble e = mEnsembleMode? mEnsemble: null;
+        if (e != null) {
+            return out.set((width - e.xMax() - e.xMin()) / 2, (height - e.yMax() - e.yMin()) / 2, -(e.zMax() + e.zMin()) / 2);
+        }
+
+        final TrajectoryBounds b = mDensity != null && mDensityBounds != null? mDensityBounds: mBounds;
+        return out.set((width - b.xMax() - b.xMin()) / 2, (height - b.yMax() - b.yMin()) / 2, -(b.zMax() + b.zMin()) / 2);
+    }
+
     @NotNull
     private Vector drawOrigin() {
-        return new Vector((width - xMax - xMin) / 2, (height - yMax - yMin) / 2, -(zMax + zMin) / 2);
+        return drawOrigin(new Vector());
+    }
+
+    @NotNull
+    private static TrajectoryBuffer createTrajectoryBuffer(@NotNull AttractorI attractor) {
+        return new TrajectoryBuffer(Math.max(attractor.drawConfig().getDrawingMaxPoints(), 1));
     }
 
 
@@ -148,6 +390,17 @@ public class Main extends PApplet {
         pdSansMedium = createFont(R.FONT_PD_SANS_MEDIUM.toString(), 20);
 
         textFont(pdSans);       // Default
+        mTrailRenderer = new TrailRenderer(this);
+
+        if (args != null) {
+            for (int i = 0; i < args.length - 1; i++) {
+                if (ARG_REPLAY.equals(args[i])) {
+                    startReplay(new File(args[i + 1]));
+                } else if (ARG_RESUME.equals(args[i])) {
+                    resumeCheckpoint(new File(args[i + 1]));
+                }
+            }
+        }
     }
 
 
@@ -166,6 +419,12 @@ public class Main extends PApplet {
             onResized(width, height);
         }
 
+        final File replayFile = mPendingReplayFile;
+        if (replayFile != null) {
+            mPendingReplayFile = null;
+            startReplay(replayFile);
+        }
+
         /* Handle Keys */
         if (keyPressed && mKeyEvent != null) {
             switch (mKeyEvent.getKeyCode()) {
@@ -196,31 +455,36 @@ public class Main extends PApplet {
         final DrawConfig drawConfig = attr.drawConfig();
         background(drawConfig.bg().getRGB());
 
-        final long now = System.currentTimeMillis();
-        final Vector lastP = mPoints.peekLast();
-        final Vector newP;
+        // Simulation runs on its own thread, only consume the points it published since the last frame
+        final TrajectoryBuffer points = mPoints;
+        final Ensemble ensemble = mEnsembleMode? mEnsemble: null;
+        final TrajectoryPlayer replay = mReplay;
+        if (ensemble != null) {
+            final float dt = SimulationThread.fixedStep(attr, ENSEMBLE_STEPS_PER_SECOND);
+            final int steps = mEnsembleClock.tick(System.nanoTime(), drawConfig.getStepPerMs() * 1000d * mSpeedFactor, dt);
+            if (steps > 0) {
+                ensemble.tick(dt, steps);
+            }
+        } else if (replay != null) {
+            if (REPLAY_LOOP && replay.isAtEnd() && replay.isPlaying()) {
+                seekReplay(0);
+            }
 
-        if (!(lastP == null || mLastDrawMs == -1)) {
-            final float dt = drawConfig.getStepPerMs() * (now - mLastDrawMs) * mSpeedFactor;
-            newP = attr.calculateNextPoint(lastP, dt);
+            replay.advance(System.nanoTime(), mSpeedFactor, points.capacity(), mTrailSink);
         } else {
-            newP = attr.getStart();
-        }
-
-        mPoints.add(newP);
-        xMin = Math.min(xMin, newP.x); xMax = Math.max(xMax, newP.x);
-        yMin = Math.min(yMin, newP.y); yMax = Math.max(yMax, newP.y);
-        zMin = Math.min(zMin, newP.z); zMax = Math.max(zMax, newP.z);
+            final TimelineSeeker.Result seek = mSeeker.poll();
+            if (seek != null) {
+                applySeek(seek);
+            }
 
-        if (mPoints.size() > Math.max(drawConfig.getDrawingMaxPoints(), 1)) {
-            mPoints.removeFirst();          // pop
+            mPointQueue.drain(mTrailSink, mPointQueue.capacity());
         }
 
 
         // Draw
         pushMatrix();
 
-        final Vector o = drawOrigin();
+        final Vector o = drawOrigin(mTmpOrigin);
         translate(o.x, o.y, o.z);
 
         if (!mFreeCam) {
@@ -230,26 +494,55 @@ public class Main extends PApplet {
         final float scale = drawConfig.getDrawingScale(this) * getAttractorZoom();
         scale(scale * (ATTRACTOR_INVERT_X ? -1 : 1), scale * (ATTRACTOR_INVERT_Y ? -1 : 1), scale * (ATTRACTOR_INVERT_Z ? -1 : 1));
 
-        strokeWeight(drawConfig.getDrawingStrokeWeight(this));
-        final Color fill = drawConfig.drawingFill();
-        if (fill != null) {
-            fill(fill.getRGB());
+        final float strokeWeight = drawConfig.getDrawingStrokeWeight(this);
+        final TrailRenderer trailRenderer = mTrailRenderer;
+        final DensityRenderer density = mDensity;
+        if (density != null) {
+            // Accumulated in the background through the current camera, drawn over the whole window below
+            final PGraphicsOpenGL pg = (PGraphicsOpenGL) g;
+            final PMatrix3D m = mTmpMatrix;
+            m.set(pg.projection);
+            m.apply(pg.modelview);
+            density.setView(m, width, height);
+        } else if (ensemble != null) {
+            mEnsembleRenderer.draw(g, ensemble, drawConfig, strokeWeight, mEnsembleStyle);
+        } else if (mRetainedTrail && trailRenderer != null) {
+            // Retained: only the chunks that changed are rebuilt
+            trailRenderer.update(points, drawConfig, strokeWeight);
+            trailRenderer.draw(g);
         } else {
-            noFill();
-        }
+            strokeWeight(strokeWeight);
+            final Color fill = drawConfig.drawingFill();
+            if (fill != null) {
+                fill(fill.getRGB());
+            } else {
+                noFill();
+            }
 
-        beginShape();
-        int i = 0;
-        final int count = mPoints.size();
-        for (Vector p: mPoints) {
-            stroke(drawConfig.colorForPoint(p, i, count).getRGB());
-            vertex(p.x, p.y, p.z);
-            i++;
+            final int count = points.size();
+            final int[] colors = mColors;
+            if (count > 0) {
+                drawConfig.argbForRange(points, 0, count, 0, count, colors, 0);
+            }
+
+            beginShape();
+            for (int i = 0; i < count; i++) {
+                stroke(colors[i]);
+                vertex(points.x(i), points.y(i), points.z(i));
+            }
+
+            endShape();
         }
 
-        endShape();
         popMatrix();
 
+        if (density != null) {
+            drawDensity(density, drawConfig);
+        }
+
+        // Record the scene, without the HUD
+        captureFrame();
+
         /* .................................HUD........................... */
         if (mPeasyCam != null) {
             mPeasyCam.beginHUD();
@@ -266,14 +559,50 @@ public class Main extends PApplet {
         fill(drawConfig.accent().getRGB());
         text(attr.getTitle(), h_offset, height - v_offset - attTitleTextSize);
 
+        final LyapunovEstimator lyapunov = mLyapunov;
+        if (lyapunov != null) {
+            final float titleWidth = textWidth(attr.getTitle());
+            textFont(pdSans, getTextSize(R.STATUS_TEXT_SIZE));
+            fill(drawConfig.fg().getRGB());
+            text(getLyapunovText(lyapunov, mTmpSpectrum), h_offset * 3 + titleWidth, height - v_offset - attTitleTextSize);
+        }
+
         // Status
         final float statusTextSize = getTextSize(R.STATUS_TEXT_SIZE);
-        final String status = getStatusText(mSpeedFactor, mFreeCam);
+        final String status = getStatusText(mIntegrator, mRetainedTrail, mStepsPerSecond, mSpeedFactor, mFreeCam);
         textAlign(RIGHT, BOTTOM);
         textFont(pdSans, statusTextSize);
         fill(drawConfig.fg().getRGB());
         text(status,width - h_offset, height - v_offset - statusTextSize);
 
+        final String mode = ensemble != null? getEnsembleText(ensemble, mEnsembleSeeding, mEnsembleStyle):
+                replay != null? getReplayText(replay):
+                density != null? getDensityText(density):
+                !mTimeline.isEmpty()? getTimelineText(mTimeline, mSimulation, mSeekTarget): null;
+        if (mode != null) {
+            text(mode, width - h_offset, height - v_offset - statusTextSize * 2.4f);
+        }
+
+        float row = mode != null? 3.8f: 2.4f;
+        final ScreenRecorder recorder = mRecorder;
+        if (recorder != null) {
+            fill(drawConfig.accent().getRGB());
+            text(getRecordingText(recorder), width - h_offset, height - v_offset - statusTextSize * row);
+            row += 1.4f;
+        }
+
+        final String message = mMessage;
+        if (message != null) {
+            if (System.currentTimeMillis() < mMessageUntilMs) {
+                fill((mMessageError? drawConfig.accent(): drawConfig.fg()).getRGB());
+                text(message, width - h_offset, height - v_offset - statusTextSize * row);
+            } else {
+                mMessage = null;
+            }
+        }
+
+        drawTimeline(drawConfig);
+
         // Controls
         if (controlsShown()) {
             pushStyle();
@@ -309,7 +638,6 @@ public class Main extends PApplet {
             mPeasyCam.endHUD();
         }
 
-        mLastDrawMs = now;
         postDraw();
     }
 
@@ -318,6 +646,52 @@ public class Main extends PApplet {
 
     }
 
+    /**
+     * Shows a message on the HUD for {@link #MESSAGE_DURATION_MS}, replacing the current one. Can be called from any thread
+     *
+     * @param error whether the message reports a failure, shown in the accent color
+     * */
+    public void showMessage(@NotNull String message, boolean error) {
+        mMessageError = error;
+        mMessageUntilMs = System.currentTimeMillis() + MESSAGE_DURATION_MS;
+        mMessage = message;
+    }
+
+    /* Tone maps the density into an image of the window size, and draws it in screen space */
+    private void drawDensity(@NotNull DensityRenderer density, @NotNull DrawConfig drawConfig) {
+        PImage image = mDensityImage;
+        if (image == null || image.width != width || image.height != height) {
+            image = createImage(width, height, RGB);
+            mDensityImage = image;
+        }
+
+        ToneMapper toneMapper = mDensityToneMapper;
+        if (toneMapper == null || mDensityToneMapperConfig != drawConfig) {
+            final ColorLut palette = ColorLut.gradient(ColorLut.DEFAULT_RESOLUTION, drawConfig.bg(), drawConfig.accent2(), drawConfig.accent(), drawConfig.fg());
+            toneMapper = new ToneMapper(palette, DENSITY_GAMMA);
+            mDensityToneMapper = toneMapper;
+            mDensityToneMapperConfig = drawConfig;
+        }
+
+        if (!density.resolve(image, toneMapper))
+            return;
+
+        if (mPeasyCam != null) {
+            mPeasyCam.beginHUD();
+        }
+
+        image(image, 0, 0);
+
+        if (mPeasyCam != null) {
+            mPeasyCam.endHUD();
+        }
+    }
+
+    private void onNewPoint(float x, float y, float z) {
+        mPoints.add(x, y, z);          // evicts the oldest point when full
+        mBounds.onAdded(mPoints);
+    }
+
 
     @Override
     public void keyPressed(KeyEvent event) {
@@ -328,6 +702,49 @@ public class Main extends PApplet {
 
         switch (keyCode) {
             case java.awt.event.KeyEvent.VK_V -> toggleFreeCam();
+            case java.awt.event.KeyEvent.VK_T -> toggleRetainedTrail();
+            case java.awt.event.KeyEvent.VK_B -> toggleRobustBounds();
+            case java.awt.event.KeyEvent.VK_Y -> toggleShowLyapunov();
+            case java.awt.event.KeyEvent.VK_F -> {
+                if (event.isShiftDown()) {
+                    cycleRecordingFormat();
+                } else {
+                    toggleRecording();
+                }
+            }
+            case java.awt.event.KeyEvent.VK_O -> {
+                if (mReplay != null) {
+                    stopReplay();
+                } else {
+                    selectReplayFile();
+                }
+            }
+            case java.awt.event.KeyEvent.VK_SPACE -> {
+                if (mReplay != null) {
+                    mReplay.togglePlaying();
+                }
+            }
+            case java.awt.event.KeyEvent.VK_LEFT -> seekBy(-(event.isShiftDown()? SEEK_FRACTION_LARGE: SEEK_FRACTION));
+            case java.awt.event.KeyEvent.VK_RIGHT -> seekBy(event.isShiftDown()? SEEK_FRACTION_LARGE: SEEK_FRACTION);
+            case java.awt.event.KeyEvent.VK_HOME -> seekTo(0);
+            case java.awt.event.KeyEvent.VK_END -> seekTo(1);
+            case java.awt.event.KeyEvent.VK_K -> {
+                if (event.isShiftDown()) {
+                    resumeLatestCheckpoint();
+                } else {
+                    saveCheckpoint();
+                }
+            }
+            case java.awt.event.KeyEvent.VK_D -> toggleDensityMode();
+            case java.awt.event.KeyEvent.VK_E -> {
+                if (event.isControlDown()) {
+                    setEnsembleSeeding(mEnsembleSeeding.next());
+                } else if (event.isShiftDown()) {
+                    mEnsembleStyle = mEnsembleStyle.next();
+                } else {
+                    toggleEnsembleMode();
+                }
+            }
 
             case java.awt.event.KeyEvent.VK_R -> {
                 if (event.isControlDown()) {
@@ -350,6 +767,9 @@ public class Main extends PApplet {
 
             case java.awt.event.KeyEvent.VK_M -> setAttractor(new ModifiedLorentzAttractor());
             case java.awt.event.KeyEvent.VK_H -> setAttractor(new LuChenAttractor());
+            case java.awt.event.KeyEvent.VK_I -> cycleIntegrator();
+            case java.awt.event.KeyEvent.VK_PAGE_UP -> setStepsPerSecond(mStepsPerSecond * 2);
+            case java.awt.event.KeyEvent.VK_PAGE_DOWN -> setStepsPerSecond(mStepsPerSecond / 2);
         }
     }
 
@@ -361,9 +781,193 @@ public class Main extends PApplet {
         }
     }
 
+    @Override
+    public void dispose() {
+        stopSimulation(null);
+        mSeeker.quit();
+        stopDensity();
+        closeReplay();
+        stopLyapunov();
+        finishRecording();
+        super.dispose();
+    }
+
+    /**
+     * Stops the simulation thread (if any)
+     *
+     * @param outState if non-null, receives the last simulated state, and {@link #mTmpSteps} and {@link #mTmpTime} its clock.
+     *                 The trail then receives every point up to that state, so that the run can continue from it without a gap.
+     *                 Otherwise, points the renderer did not consume yet are left in the queue
+     * @return whether a simulation was running
+     * */
+    private boolean stopSimulation(@Nullable float[] outState) {
+        final SimulationThread sim = mSimulation;
+        if (sim == null)
+            return false;
+
+        mSimulation = null;
+        sim.quit();
+        if (outState != null) {
+            sim.getState(outState);
+            mTmpSteps = sim.getSteps();
+            mTmpTime = sim.getTime();
+
+            mPointQueue.drain(mTrailSink, mPointQueue.capacity());
+            sim.drainOverflow(mTrailSink);
+        }
+
+        return true;
+    }
+
+    /**
+     * Starts simulating the current attractor
+     *
+     * @param initialState state to resume from, or null to start from the attractor's initial state
+     * @param integrator integrator to continue with, or null for a fresh copy of the current integrator
+     * @param steps, time simulation clock of the initial state
+     * @param continueTimeline whether the initial state and integrator are a step of the run recorded in the timeline,
+     *                         which then goes on. Otherwise a new timeline starts from the initial state
+     * */
+    private void startSimulation(@Nullable float[] initialState, @Nullable IntegratorI integrator, long steps, double time, boolean continueTimeline) {
+        stopSimulation(null);
+        if (!continueTimeline) {
+            mTimeline.clear();
+        }
+
+        final SimulationThread sim = new SimulationThread(mAttractor, integrator != null? integrator: mIntegrator.copy(), mPointQueue, initialState, mStepsPerSecond, mSpeedFactor);
+        if (initialState != null) {
+            sim.setElapsed(steps, time);
+        }
+        sim.setCheckpointIndex(mTimeline, continueTimeline);
+
+        mSimulation = sim;
+        sim.start();
+    }
+
+    /**
+     * Starts simulating the current attractor with a fresh copy of the current integrator
+     *
+     * @param initialState state to resume from, with the clock in {@link #mTmpSteps} and {@link #mTmpTime}, or null to
+     *                     start from the attractor's initial state
+     * */
+    private void startSimulation(@Nullable float[] initialState) {
+        startSimulation(initialState, null, mTmpSteps, mTmpTime, false);
+    }
+
+    /**
+     * Restarts the simulation with the current attractor and integrator, continuing from the last simulated state
+     * */
+    private void restartSimulation() {
+        final float[] state = mTmpState;
+        if (stopSimulation(state)) {
+            startSimulation(state);
+        }
+    }
+
+    private void stopLyapunov() {
+        final LyapunovEstimator estimator = mLyapunov;
+        if (estimator != null) {
+            mLyapunov = null;
+            estimator.quit();
+        }
+    }
+
+    /**
+     * Restarts estimating the largest Lyapunov exponent of the current attractor with the current integrator, if shown.
+     * The estimate uses the attractor's natural step, independent of the steps per second of the trail
+     * */
+    private void restartLyapunov() {
+        stopLyapunov();
+        if (!mShowLyapunov)
+            return;
+
+        final LyapunovEstimator estimator = new LyapunovEstimator(mAttractor, mIntegrator, SimulationThread.fixedStep(mAttractor, STEPS_PER_SECOND_DEFAULT));
+        mLyapunov = estimator;
+        estimator.start();
+    }
+
     private void resetAttractor() {
-        mPoints.clear();
-        mLastDrawMs = -1;
+        stopSimulation(null);
+        cancelSeek();
+        restartLyapunov();
+        mPointQueue.clear();
+        mHasResumeState = false;
+
+        final int capacity = Math.max(mAttractor.drawConfig().getDrawingMaxPoints(), 1);
+        if (mPoints.capacity() != capacity) {
+            mPoints = createTrajectoryBuffer(mAttractor);
+            mColors = new int[capacity];
+
+            final boolean robust = mBounds.isRobust();
+            mBounds = new TrajectoryBounds(capacity);
+            mBounds.setRobust(robust);
+        } else {
+            mPoints.clear();
+            mBounds.clear();
+        }
+
+        if (mTrailRenderer != null) {
+            mTrailRenderer.clear();
+        }
+
+        if (mEnsembleMode) {
+            resetEnsemble();
+        } else if (mReplay != null) {
+            seekReplay(mReplay.getPosition());
+        } else {
+            startSimulation(null);
+        }
+
+        if (mDensity != null) {
+            restartDensity();
+        }
+    }
+
+    private void resetEnsemble() {
+        final Ensemble ensemble = new Ensemble(mAttractor, mIntegrator, ENSEMBLE_COUNT, ENSEMBLE_TAIL_LENGTH);
+        ensemble.seed(mEnsembleSeeding, Ensemble.DEFAULT_SEED_RADIUS, System.nanoTime());
+        mEnsemble = ensemble;
+        mEnsembleClock.reset();
+    }
+
+    public boolean isEnsembleMode() {
+        return mEnsembleMode;
+    }
+
+    /**
+     * @param ensembleMode whether to simulate a cloud of trajectories from nearby initial conditions, instead of a single trail.
+     *                     The trail simulation is suspended meanwhile, and resumed afterwards
+     * */
+    public void setEnsembleMode(boolean ensembleMode) {
+        if (mEnsembleMode == ensembleMode)
+            return;
+
+        mEnsembleMode = ensembleMode;
+        if (ensembleMode) {
+            closeReplay();          // the ensemble is simulated live
+            stopDensity();
+            cancelSeek();
+            if (stopSimulation(mTmpState)) {
+                mHasResumeState = true;
+            }
+
+            resetEnsemble();
+        } else {
+            mEnsemble = null;
+            startSimulation(mHasResumeState? mTmpState: null);
+            mHasResumeState = false;
+        }
+    }
+
+    public void toggleEnsembleMode() {
+        setEnsembleMode(!mEnsembleMode);
+    }
+
+    public void setEnsembleSeeding(@NotNull Ensemble.Seeding seeding) {
+        mEnsembleSeeding = seeding;
+        if (mEnsembleMode) {
+            resetEnsemble();
+        }
     }
 
     protected void onSpeedFactorChanged(float speedFactor) {
@@ -382,6 +986,10 @@ public class Main extends PApplet {
             return;
 
         mSpeedFactor = speedFactor;
+        if (mSimulation != null) {
+            mSimulation.setSpeedFactor(speedFactor);
+        }
+
         onSpeedFactorChanged(speedFactor);
     }
 
@@ -389,8 +997,24 @@ public class Main extends PApplet {
         setSpeedFactor(mSpeedFactor + (inc? speedFactorUnitInc(mSpeedFactor): -speedFactorUnitDec(mSpeedFactor)));
     }
 
+    public float getStepsPerSecond() {
+        return mStepsPerSecond;
+    }
+
+    public void setStepsPerSecond(float stepsPerSecond) {
+        stepsPerSecond = RMath.constraint(SimulationThread.STEPS_PER_SECOND_MIN, SimulationThread.STEPS_PER_SECOND_MAX, stepsPerSecond);
+        if (mStepsPerSecond == stepsPerSecond)
+            return;
+
+        mStepsPerSecond = stepsPerSecond;
+        if (mSimulation != null) {
+            mSimulation.setStepsPerSecond(stepsPerSecond);
+        }
+    }
+
 
     protected void onAttractorChanged(@Nullable AttractorI prev, @NotNull AttractorI _new) {
+        mIntegrator = mIntegratorOverride != null? mIntegratorOverride.create(): _new.createIntegrator();
         resetAttractor();
         surface.setTitle(R.APP_NAME + " - " + _new.getTitle());
     }
@@ -410,11 +1034,634 @@ public class Main extends PApplet {
         if (mAttractor == attractor)
             return false;
 
+        closeReplay();          // back to live simulation
         setAttractorInternal(attractor);
         return true;
     }
 
 
+    @NotNull
+    public IntegratorI getIntegrator() {
+        return mIntegrator;
+    }
+
+    /**
+     * Sets the integration scheme for all attractors, or {@code null} to use each attractor's default scheme
+     * */
+    public void setIntegrator(@Nullable Integrators integrator) {
+        mIntegratorOverride = integrator;
+        mIntegrator = integrator != null? integrator.create(): mAttractor.createIntegrator();
+        restartLyapunov();
+        if (mEnsembleMode) {
+            resetEnsemble();
+        } else {
+            restartSimulation();
+        }
+
+        if (mDensity != null) {
+            restartDensity();
+        }
+    }
+
+    public void cycleIntegrator() {
+        final Integrators cur = Integrators.of(mIntegrator);
+        setIntegrator(cur != null? cur.next(): Integrators.values()[0]);
+    }
+
+
+    public boolean isDensityMode() {
+        return mDensity != null;
+    }
+
+    /* Step of the density workers, the natural step of the attractor: independent of the steps per second of the trail */
+    private float densityStep() {
+        return SimulationThread.fixedStep(mAttractor, STEPS_PER_SECOND_DEFAULT);
+    }
+
+    /**
+     * Frames the density view like a full trail of the current attractor, on a run of its own. The framing then stays
+     * fixed, while the trail bounds keep moving
+     * */
+    @NotNull
+    private TrajectoryBounds fitDensityBounds() {
+        final int capacity = mPoints.capacity();
+        final TrajectoryBuffer points = new TrajectoryBuffer(capacity);
+        final TrajectoryBounds bounds = new TrajectoryBounds(capacity);
+        bounds.setRobust(mBounds.isRobust());
+
+        final float dt = densityStep();
+        final IntegratorI integrator = mIntegrator.copy();
+        final float[] state = new float[AttractorI.STATE_SIZE];
+        mAttractor.getStart(state, 0);
+        integrator.integrate(mAttractor, state, 0, dt, Math.round(DensityRenderer.DEFAULT_TRANSIENT_TIME / dt), null);
+        integrator.integrate(mAttractor, state, 0, dt, capacity, (x, y, z) -> {
+            points.add(x, y, z);
+            bounds.onAdded(points);
+        });
+
+        return bounds;
+    }
+
+    private void stopDensity() {
+        final DensityRenderer density = mDensity;
+        if (density != null) {
+            mDensity = null;
+            mDensityBounds = null;
+            density.quit();
+        }
+    }
+
+    /**
+     * Restarts accumulating the density of the current attractor with the current integrator
+     * */
+    private void restartDensity() {
+        stopDensity();
+        mDensityBounds = fitDensityBounds();
+
+        final DensityRenderer density = new DensityRenderer(mAttractor, mIntegrator, densityStep());
+        mDensity = density;
+        density.start();
+    }
+
+    /**
+     * @param densityMode whether to draw the density of the attractor's invariant measure, accumulated over billions of
+     *                    points on worker threads, instead of the trail. The live simulation keeps running meanwhile
+     * */
+    public void setDensityMode(boolean densityMode) {
+        if (isDensityMode() == densityMode)
+            return;
+
+        if (densityMode) {
+            setEnsembleMode(false);
+            if (mReplay != null) {
+                stopReplay();           // the density is integrated live
+            }
+
+            restartDensity();
+        } else {
+            stopDensity();
+        }
+    }
+
+    public void toggleDensityMode() {
+        setDensityMode(!isDensityMode());
+    }
+
+
+    public boolean isTrailRetained() {
+        return mRetainedTrail;
+    }
+
+    /**
+     * @param retained whether to draw the trail from retained GPU chunks, or to re-submit all of its points every frame
+     * */
+    public void setRetainedTrail(boolean retained) {
+        if (mRetainedTrail == retained)
+            return;
+
+        mRetainedTrail = retained;
+        if (!retained && mTrailRenderer != null) {
+            mTrailRenderer.clear();         // release geometry
+        }
+    }
+
+    public void toggleRetainedTrail() {
+        setRetainedTrail(!mRetainedTrail);
+    }
+
+
+    public boolean isLyapunovShown() {
+        return mShowLyapunov;
+    }
+
+    /**
+     * @param show whether to estimate the largest Lyapunov exponent of the attractor in the background and show it next to the title
+     * */
+    public void setShowLyapunov(boolean show) {
+        if (mShowLyapunov == show)
+            return;
+
+        mShowLyapunov = show;
+        restartLyapunov();
+    }
+
+    public void toggleShowLyapunov() {
+        setShowLyapunov(!mShowLyapunov);
+    }
+
+
+    public boolean isRecording() {
+        return mRecorder != null;
+    }
+
+    /**
+     * Starts recording the scene (without the HUD) to a new video file in {@link R#DIR_RECORDINGS}, in the current recording format.
+     * Frames are read back and queued on the animation thread, and encoded in the background
+     * */
+    public void startRecording() {
+        if (mRecorder != null)
+            return;
+
+        final String name = "attractors_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) + "." + mRecordingFormat.extension;
+        final File file = R.DIR_RECORDINGS.resolve(name).toFile();
+        try {
+            mRecorder = new ScreenRecorder(file, mRecordingFormat, pixelWidth, pixelHeight, RECORDING_FPS, RECORDING_QUALITY, RECORDING_QUEUE_CAPACITY);
+            showMessage("Recording to " + file.getName(), false);
+        } catch (IOException e) {
+            showMessage("Failed to start recording: " + e.getMessage(), true);
+        }
+    }
+
+    /**
+     * Stops recording. The frames still queued are encoded and the file is finished in the background
+     * */
+    public void stopRecording() {
+        final ScreenRecorder recorder = mRecorder;
+        if (recorder == null)
+            return;
+
+        mRecorder = null;
+        recorder.closeAsync(error -> {
+            if (error != null) {
+                showMessage("Recording to " + recorder.getFile().getName() + " failed: " + error.getMessage(), true);
+            } else {
+                showMessage("Recorded " + recorder.getFrameCount() + " frames (" + recorder.getDroppedFrames() + " dropped) to " + recorder.getFile().getName(), false);
+            }
+        });
+    }
+
+    public void toggleRecording() {
+        if (mRecorder != null) {
+            stopRecording();
+        } else {
+            startRecording();
+        }
+    }
+
+    /**
+     * Stops recording and waits for the file to be finished, e.g. when exiting
+     * */
+    private void finishRecording() {
+        final ScreenRecorder recorder = mRecorder;
+        if (recorder == null)
+            return;
+
+        mRecorder = null;
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            showMessage("Recording to " + recorder.getFile().getName() + " failed: " + e.getMessage(), true);
+        }
+    }
+
+    /**
+     * Cycles the format of the next recording
+     * */
+    public void cycleRecordingFormat() {
+        mRecordingFormat = mRecordingFormat.next();
+        showMessage("Recording format: " + mRecordingFormat.displayName + (mRecorder != null? " (from the next recording)": ""), false);
+    }
+
+    /**
+     * Hands the current frame to the recorder, if recording and a frame is due. Never blocks: the framebuffer is only read
+     * back if the recorder has a free buffer, otherwise the frame is dropped
+     * */
+    private void captureFrame() {
+        final ScreenRecorder recorder = mRecorder;
+        if (recorder == null)
+            return;
+
+        if (recorder.getError() != null || recorder.getWidth() != pixelWidth || recorder.getHeight() != pixelHeight) {
+            stopRecording();            // encoder failed, or the window was resized
+            return;
+        }
+
+        final int[] buffer = recorder.acquireFrame(System.nanoTime());
+        if (buffer == null)
+            return;
+
+        loadPixels();
+        System.arraycopy(pixels, 0, buffer, 0, buffer.length);
+        recorder.submitFrame(buffer);
+    }
+
+
+    /**
+     * Saves the live simulation to a checkpoint in {@link R#DIR_CHECKPOINTS}, one per attractor, see {@link #resumeCheckpoint(File)}.
+     * The simulation is paused for the time it takes to snapshot it
+     * */
+    public void saveCheckpoint() {
+        final SimulationThread sim = mSimulation;
+        if (sim == null || mEnsembleMode || mReplay != null) {
+            showMessage("Checkpoints are only available for the live simulation", true);
+            return;
+        }
+
+        final Attractors kind = Attractors.of(mAttractor);
+        if (kind == null) {
+            showMessage("Checkpoints are only available for built-in attractors", true);
+            return;
+        }
+
+        // stop at a consistent state, with all the points up to it in the trail
+        final float[] state = mTmpState;
+        stopSimulation(state);
+
+        final IntegratorI integrator = sim.getIntegrator();
+        final Checkpoint checkpoint = Checkpoint.of(mAttractor, integrator, state, mTmpSteps, mTmpTime, SimulationThread.fixedStep(mAttractor, mStepsPerSecond),
+                mStepsPerSecond, mSpeedFactor, CHECKPOINT_TRAIL? mPoints: null);
+        startSimulation(state, integrator, mTmpSteps, mTmpTime, true);
+
+        final File file = R.DIR_CHECKPOINTS.resolve(kind.id() + "." + Checkpoint.EXTENSION).toFile();
+        try {
+            checkpoint.write(file);
+            showMessage("Saved checkpoint to " + file.getName(), false);
+        } catch (IOException e) {
+            showMessage("Failed to save checkpoint to " + file.getName() + ": " + e.getMessage(), true);
+        }
+    }
+
+    /**
+     * Restores a checkpoint saved by {@link #saveCheckpoint()}: attractor, parameters, integrator, steps per second, speed
+     * and the trail, and continues the simulation exactly from the saved state
+     * */
+    public void resumeCheckpoint(@NotNull File file) {
+        final Checkpoint checkpoint;
+        try {
+            checkpoint = Checkpoint.read(file);
+        } catch (IOException e) {
+            showMessage("Failed to read checkpoint " + file.getName() + ": " + e.getMessage(), true);
+            return;
+        }
+
+        final AttractorI attractor = checkpoint.createAttractor();
+        final IntegratorI integrator = checkpoint.createIntegrator();
+        if (attractor == null || integrator == null) {
+            showMessage("Unknown attractor or integrator in checkpoint " + file.getName(), true);
+            return;
+        }
+
+        closeReplay();
+        if (mEnsembleMode) {
+            mEnsembleMode = false;
+            mEnsemble = null;
+            mHasResumeState = false;
+        }
+
+        // the integrator of the checkpoint becomes the selected one, unless it is the attractor's default
+        final Integrators kind = checkpoint.integratorKind();
+        mIntegratorOverride = kind != Integrators.of(attractor.createIntegrator())? kind: null;
+        if (checkpoint.stepsPerSecond > 0) {
+            mStepsPerSecond = checkpoint.stepsPerSecond;
+        }
+        mSpeedFactor = RMath.constraint(SPEED_FACTOR_MIN, SPEED_FACTOR_MAX, checkpoint.speedFactor);
+
+        setAttractorInternal(attractor);        // resets the trail and the estimates, and starts from the initial state
+
+        stopSimulation(null);
+        mPointQueue.clear();
+        clearTrail();
+
+        checkpoint.emitTrail(mTrailSink);
+        startSimulation(checkpoint.state, integrator, checkpoint.steps, checkpoint.time, false);
+        showMessage("Resumed checkpoint " + file.getName(), false);
+    }
+
+    /**
+     * Resumes the most recently saved checkpoint in {@link R#DIR_CHECKPOINTS}
+     * */
+    public void resumeLatestCheckpoint() {
+        final File[] files = R.DIR_CHECKPOINTS.toFile().listFiles((dir, name) -> name.endsWith("." + Checkpoint.EXTENSION));
+        File latest = null;
+        if (files != null) {
+            for (File f: files) {
+                if (latest == null || f.lastModified() > latest.lastModified()) {
+                    latest = f;
+                }
+            }
+        }
+
+        if (latest != null) {
+            resumeCheckpoint(latest);
+        } else {
+            showMessage("No checkpoint in " + R.DIR_CHECKPOINTS, true);
+        }
+    }
+
+
+    public boolean isReplaying() {
+        return mReplay != null;
+    }
+
+    /**
+     * Plays back a trajectory file (see {@code cli.ExportTool}) instead of simulating live, starting from its first point.
+     * The attractor of the file is selected if it is a built-in one, which sets the colors, scale and trail length.
+     * Points are paced like the live simulation, and scaled by the speed factor
+     * */
+    public void startReplay(@NotNull File file) {
+        final TrajectoryReader reader;
+        try {
+            reader = new TrajectoryReader(file);
+        } catch (IOException e) {
+            showMessage("Failed to open trajectory " + file.getName() + ": " + e.getMessage(), true);
+            return;
+        }
+
+        closeReplay();
+        stopDensity();
+        if (mEnsembleMode) {
+            mEnsembleMode = false;
+            mEnsemble = null;
+            mHasResumeState = false;
+        }
+
+        final TrajectoryHeader header = reader.getHeader();
+        final AttractorI attractor = header.createAttractor();
+        final AttractorI target = attractor != null? attractor: mAttractor;         // custom attractor: keep the current look
+        mReplay = new TrajectoryPlayer(reader, target.drawConfig().getStepPerMs() * 1000d);
+        showMessage("Replaying " + file.getName() + ": " + reader.size() + " points", false);
+
+        if (attractor != null) {
+            setAttractorInternal(attractor);
+        } else {
+            resetAttractor();
+        }
+    }
+
+    /**
+     * Stops the replay, if any, and restarts the live simulation
+     * */
+    public void stopReplay() {
+        if (mReplay == null)
+            return;
+
+        closeReplay();
+        resetAttractor();
+    }
+
+    private void closeReplay() {
+        final TrajectoryPlayer replay = mReplay;
+        if (replay == null)
+            return;
+
+        mReplay = null;
+        try {
+            replay.close();
+        } catch (IOException e) {
+            showMessage("Failed to close trajectory: " + e.getMessage(), true);
+        }
+    }
+
+    /**
+     * Opens a file dialog to choose a trajectory to replay. The dialog runs on its own thread, the file is opened on the next frame
+     * */
+    public void selectReplayFile() {
+        selectInput("Open a trajectory file (.trj)", "onReplayFileSelected");
+    }
+
+    /**
+     * Callback of {@link #selectReplayFile()}, public for Processing to find it
+     * */
+    public void onReplayFileSelected(@Nullable File file) {
+        if (file != null) {
+            mPendingReplayFile = file;
+        }
+    }
+
+    /**
+     * Moves the replay to the given point, and rebuilds the trail that ends there
+     * */
+    public void seekReplay(long index) {
+        final TrajectoryPlayer replay = mReplay;
+        if (replay == null)
+            return;
+
+        clearTrail();
+        replay.seek(index, mPoints.capacity(), mTrailSink);
+    }
+
+    /**
+     * @param fraction fraction of the trajectory to skip forward, or back if negative
+     * */
+    public void seekReplayBy(float fraction) {
+        final TrajectoryPlayer replay = mReplay;
+        if (replay != null) {
+            seekReplay(replay.getPosition() + Math.round((double) fraction * replay.size()));
+        }
+    }
+
+
+    /**
+     * Seeks the live simulation to the given step of its timeline. The simulation goes on while the state at that step is
+     * re-integrated in the background from the closest entry of the {@link CheckpointIndex}, then continues from there.
+     * Steps up to the furthest one reached can be seeked, since the run is deterministic
+     * */
+    public void seekTimeline(long steps) {
+        if (mEnsembleMode || mReplay != null || mTimeline.isEmpty())
+            return;
+
+        steps = Math.max(Math.min(steps, mTimeline.getLatestSteps()), mTimeline.getOriginSteps());
+        if (mSeeker.request(mTimeline, mAttractor, mIntegrator.copy(), steps, mPoints.capacity())) {
+            mSeekTarget = steps;
+        }
+    }
+
+    private void cancelSeek() {
+        mSeeker.cancel();
+        mSeekTarget = -1;
+    }
+
+    /**
+     * Continues the simulation from a finished seek, with the trail that ends there
+     * */
+    private void applySeek(@NotNull TimelineSeeker.Result seek) {
+        mSeekTarget = -1;
+        if (seek.generation != mTimeline.getGeneration())
+            return;         // the run was reset meanwhile
+
+        stopSimulation(null);
+        mPointQueue.clear();
+        clearTrail();
+
+        final TrajectoryBuffer trail = seek.trail;
+        for (int i = 0; i < trail.size(); i++) {
+            onNewPoint(trail.x(i), trail.y(i), trail.z(i));
+        }
+
+        startSimulation(seek.state, seek.integrator, seek.steps, seek.time, true);
+    }
+
+    /**
+     * Seeks the replay or the timeline of the live simulation
+     *
+     * @param fraction fraction of the replay or of the timeline to skip forward, or back if negative
+     * */
+    public void seekBy(float fraction) {
+        if (mReplay != null) {
+            seekReplayBy(fraction);
+        } else if (!mEnsembleMode && !mTimeline.isEmpty()) {
+            final SimulationThread sim = mSimulation;
+            final long current = mSeekTarget >= 0? mSeekTarget: sim != null? sim.getSteps(): mTimeline.getLatestSteps();
+            seekTimeline(current + Math.round((double) fraction * (mTimeline.getLatestSteps() - mTimeline.getOriginSteps())));
+        }
+    }
+
+    /**
+     * Seeks the replay or the timeline of the live simulation
+     *
+     * @param fraction position in range [0, 1] within the replay or the timeline
+     * */
+    public void seekTo(float fraction) {
+        final TrajectoryPlayer replay = mReplay;
+        if (replay != null) {
+            seekReplay(Math.round((double) fraction * Math.max(replay.size() - 1, 0)));
+        } else {
+            seekTimeline(mTimeline.getOriginSteps() + Math.round((double) fraction * (mTimeline.getLatestSteps() - mTimeline.getOriginSteps())));
+        }
+    }
+
+    private boolean hasTimeline() {
+        return mReplay != null || (!mEnsembleMode && !mTimeline.isEmpty());
+    }
+
+    /* Center line of the timeline bar */
+    private float timelineY() {
+        return height - height / 96f;
+    }
+
+    /* Top of the area where the mouse drags the timeline instead of the camera */
+    private float timelineTop() {
+        return height - height / 48f;
+    }
+
+    /**
+     * Draws the timeline bar along the bottom edge: the extent of the replay or of the live run, the current position,
+     * and the target of a seek in progress
+     * */
+    private void drawTimeline(@NotNull DrawConfig drawConfig) {
+        final TrajectoryPlayer replay = mReplay;
+        final float position, target;
+        if (replay != null) {
+            position = replay.getPosition() / (float) Math.max(replay.size(), 1);
+            target = -1;
+        } else if (!mEnsembleMode && !mTimeline.isEmpty()) {
+            final long origin = mTimeline.getOriginSteps(), latest = mTimeline.getLatestSteps();
+            final float span = Math.max(latest - origin, 1);
+            final SimulationThread sim = mSimulation;
+            position = ((sim != null? sim.getSteps(): latest) - origin) / span;
+            target = mSeekTarget >= 0? (mSeekTarget - origin) / span: -1;
+        } else {
+            return;
+        }
+
+        final float x0 = width * 0.009f, w = width - x0 * 2;
+        final float thickness = Math.max(height * TIMELINE_BAR_HEIGHT, 2);
+        final float y = timelineY() - thickness / 2;
+        final Color fg = drawConfig.fg();
+
+        pushStyle();
+        noStroke();
+        fill(fg.getRed(), fg.getGreen(), fg.getBlue(), 60);
+        rect(x0, y, w, thickness);
+        fill(drawConfig.accent().getRGB());
+        rect(x0, y, w * constrain(position, 0, 1), thickness);
+        if (target >= 0) {
+            fill(fg.getRGB());
+            rect(x0 + w * constrain(target, 0, 1) - thickness / 2, y - thickness, thickness, thickness * 3);
+        }
+        popStyle();
+    }
+
+    private void scrubTimeline() {
+        final float x0 = width * 0.009f;
+        seekTo(constrain((mouseX - x0) / (width - x0 * 2), 0, 1));
+    }
+
+    @Override
+    public void mousePressed() {
+        if (mouseY >= timelineTop() && hasTimeline()) {
+            mScrubbing = true;
+            scrubTimeline();
+        }
+    }
+
+    @Override
+    public void mouseDragged() {
+        if (mScrubbing) {
+            scrubTimeline();
+        }
+    }
+
+    @Override
+    public void mouseReleased() {
+        mScrubbing = false;
+    }
+
+    private void clearTrail() {
+        mPoints.clear();
+        mBounds.clear();
+        if (mTrailRenderer != null) {
+            mTrailRenderer.clear();
+        }
+    }
+
+
+    public boolean isRobustBounds() {
+        return mBounds.isRobust();
+    }
+
+    /**
+     * @param robust whether to frame the trail by streaming quantiles of its points, instead of their exact min and max
+     * */
+    public void setRobustBounds(boolean robust) {
+        mBounds.setRobust(robust);
+    }
+
+    public void toggleRobustBounds() {
+        setRobustBounds(!mBounds.isRobust());
+    }
+
+
     public void setShowControls(boolean showControls) {
         mShowControls = showControls;
     }
@@ -464,6 +1711,7 @@ public class Main extends PApplet {
         cam.reset();
 
         cam.setRotations(rotations[0], rotations[1], rotations[2]);
+        cam.setViewport(0, 0, width, (int) timelineTop());          // leave the timeline bar to the mouse
         return cam;
     }
 
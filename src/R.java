@@ -12,6 +12,8 @@ public class R {
     public static final Path DIR_RES = DIR_MAIN.resolve("res");
     public static final Path DIR_IMAGE = DIR_RES.resolve("image");
     public static final Path DIR_FONT = DIR_RES.resolve("font");
+    public static final Path DIR_RECORDINGS = DIR_MAIN.resolve("recordings");
+    public static final Path DIR_CHECKPOINTS = DIR_MAIN.resolve("checkpoints");
 
     // Resources
     public static final String APP_NAME = "Chaotic Systems";
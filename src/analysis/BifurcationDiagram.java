@@ -0,0 +1,337 @@
+package analysis;
+
+import attractors.AttractorI;
+import attractors.Attractors;
+import integrators.IntegratorI;
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Bifurcation diagram of an attractor over a sweep of one of its parameters.
+ *
+ * <p>
+ * Every column of the diagram is one parameter value. The attractor is integrated from its start, a transient is discarded,
+ * and the local maxima of the chosen coordinate are binned into the rows of that column. The result is a histogram of
+ * hits per pixel, rendered with a logarithmic tone map.
+ * <p>
+ * Columns are independent, and are computed on a {@link ForkJoinPool} by recursive splitting, so idle workers steal
+ * the remaining ranges. Each worker thread keeps its own state, integrator and peak detector across the columns it
+ * computes, the sweep does not allocate per step
+ * <p>
+ * */
+public class BifurcationDiagram {
+
+    /**
+     * Columns below which a range of columns is not split further
+     * */
+    private static final int SPLIT_THRESHOLD = 4;
+
+    /* Columns sampled to estimate the value range when none is given */
+    private static final int AUTO_RANGE_COLUMNS = 32;
+    private static final float AUTO_RANGE_MARGIN = 0.05f;
+
+    /**
+     * Per-thread worker state, reused across columns
+     * */
+    private final class Worker implements TrajectorySink {
+
+        @NotNull
+        final IntegratorI integrator = mIntegrator.copy();
+        @NotNull
+        final float[] params = mParams.clone();
+        @NotNull
+        final float[] state = new float[AttractorI.STATE_SIZE];
+
+        /* Peak detection on the last three values of the coordinate */
+        float p0, p1;
+        int seen;
+
+        /* Output of the current column */
+        int[] hits;
+        int column;
+        float min, max;
+
+        @Override
+        public void accept(float x, float y, float z) {
+            final float p2 = mCoordinate == 0? x: mCoordinate == 1? y: z;
+            if (seen >= 2 && p1 > p0 && p1 >= p2) {
+                // vertex of the parabola through the three samples
+                final float curvature = p0 - 2 * p1 + p2;
+                final float peak = curvature < 0? p1 - (p0 - p2) * (p0 - p2) / (8 * curvature): p1;
+                onPeak(peak);
+            }
+
+            p0 = p1;
+            p1 = p2;
+            seen++;
+        }
+
+        private void onPeak(float peak) {
+            if (peak < min) {
+                min = peak;
+            }
+            if (peak > max) {
+                max = peak;
+            }
+
+            if (hits != null) {
+                final int row = (int) ((mValueMax - peak) / (mValueMax - mValueMin) * mHeight);
+                if (row >= 0 && row < mHeight) {
+                    hits[row * mWidth + column]++;
+                }
+            }
+        }
+
+        /**
+         * Integrates the column for the given parameter value, binning its peaks into {@code hits} if non-null
+         * */
+        void compute(float paramValue, int column, @Nullable int[] hits, int steps) {
+            params[mParamIndex] = paramValue;
+            final AttractorI attractor = mSystem.create(params);
+
+            this.hits = hits;
+            this.column = column;
+            min = Float.MAX_VALUE;
+            max = -Float.MAX_VALUE;
+            seen = 0;
+
+            attractor.getStart(state, 0);
+            integrator.reset();
+            integrator.integrate(attractor, state, 0, mDt, mTransientSteps, null);
+
+            // in chunks, to give up on diverged trajectories early
+            int remaining = steps;
+            while (remaining > 0 && Float.isFinite(state[0] + state[1] + state[2])) {
+                final int n = Math.min(remaining, 4096);
+                integrator.integrate(attractor, state, 0, mDt, n, this);
+                remaining -= n;
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")         // never serialized
+    private final class Columns extends RecursiveAction {
+
+        final int from, to;
+
+        Columns(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mCancelled)
+                return;
+
+            if (to - from > SPLIT_THRESHOLD) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new Columns(from, mid), new Columns(mid, to));
+                return;
+            }
+
+            final Worker worker = mWorkers.get();
+            for (int c = from; c < to && !mCancelled; c++) {
+                worker.compute(paramAt(c), c, mHits, mSteps);
+                mColumnsDone.incrementAndGet();
+            }
+        }
+    }
+
+    @NotNull
+    private final Attractors mSystem;
+    @NotNull
+    private final float[] mParams;
+    private final int mParamIndex;
+    private final float mParamFrom, mParamTo;
+    private final int mCoordinate;
+    @NotNull
+    private final IntegratorI mIntegrator;
+    private final float mDt;
+    private final int mTransientSteps, mSteps;
+    private final int mWidth, mHeight;
+
+    private float mValueMin, mValueMax;
+    @NotNull
+    private final int[] mHits;
+    @NotNull
+    private final ThreadLocal<Worker> mWorkers = ThreadLocal.withInitial(Worker::new);
+    @NotNull
+    private final AtomicInteger mColumnsDone = new AtomicInteger();
+    private volatile boolean mCancelled;
+
+    /**
+     * @param params base parameters of the attractor, in constructor order
+     * @param paramIndex index of the swept parameter
+     * @param coordinate 0, 1 or 2 for the local maxima of x, y or z
+     * @param integrator prototype integrator, copied for every worker thread
+     * @param width number of columns i.e. parameter values
+     * @param height number of value bins
+     * */
+    public BifurcationDiagram(@NotNull Attractors system, @NotNull float[] params, int paramIndex, float paramFrom, float paramTo,
+                              int coordinate, @NotNull IntegratorI integrator, float dt, int transientSteps, int steps,
+                              int width, int height) {
+        if (paramIndex < 0 || paramIndex >= system.parameterCount())
+            throw new IllegalArgumentException("Invalid parameter index " + paramIndex + " for " + system.displayName);
+        if (coordinate < 0 || coordinate >= AttractorI.STATE_SIZE)
+            throw new IllegalArgumentException("Invalid coordinate: " + coordinate);
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+
+        mSystem = system;
+        mParams = params.clone();
+        mParamIndex = paramIndex;
+        mParamFrom = paramFrom;
+        mParamTo = paramTo;
+        mCoordinate = coordinate;
+        mIntegrator = integrator;
+        mDt = dt;
+        mTransientSteps = Math.max(transientSteps, 0);
+        mSteps = Math.max(steps, 0);
+        mWidth = width;
+        mHeight = height;
+        mHits = new int[width * height];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public float paramAt(int column) {
+        return mWidth > 1? mParamFrom + (mParamTo - mParamFrom) * column / (mWidth - 1): mParamFrom;
+    }
+
+    public float getValueMin() {
+        return mValueMin;
+    }
+
+    public float getValueMax() {
+        return mValueMax;
+    }
+
+    /**
+     * @return fraction of columns computed so far
+     * */
+    public float getProgress() {
+        return (float) mColumnsDone.get() / mWidth;
+    }
+
+    /**
+     * Stops an ongoing {@link #compute}. Columns not computed yet stay empty
+     * */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Estimates the range of the coordinate's maxima from a few evenly spaced columns with a shorter run
+     *
+     * @return {min, max} with a margin, or null if all the sampled trajectories diverged
+     * */
+    @Nullable
+    public float[] estimateValueRange(@NotNull ForkJoinPool pool) {
+        final int columns = Math.min(AUTO_RANGE_COLUMNS, mWidth);
+        final float[] mins = new float[columns], maxs = new float[columns];
+        final int steps = Math.max(mSteps / 10, 1);
+
+        pool.submit(() -> IntStream.range(0, columns).parallel().forEach(i -> {
+            final Worker worker = mWorkers.get();
+            worker.compute(paramAt(columns > 1? (mWidth - 1) * i / (columns - 1): 0), 0, null, steps);
+            mins[i] = worker.min;
+            maxs[i] = worker.max;
+        })).join();
+
+        float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+        for (int i = 0; i < columns; i++) {
+            if (mins[i] <= maxs[i] && Float.isFinite(mins[i]) && Float.isFinite(maxs[i])) {
+                min = Math.min(min, mins[i]);
+                max = Math.max(max, maxs[i]);
+            }
+        }
+
+        if (min > max)
+            return null;
+
+        final float margin = Math.max((max - min) * AUTO_RANGE_MARGIN, 1e-3f);
+        return new float[] { min - margin, max + margin };
+    }
+
+    /**
+     * Computes all columns in parallel on the given pool, binning the maxima in [valueMin, valueMax]
+     * */
+    public void compute(@NotNull ForkJoinPool pool, float valueMin, float valueMax) {
+        if (!(valueMax > valueMin))
+            throw new IllegalArgumentException("Invalid value range: " + valueMin + " to " + valueMax);
+
+        mValueMin = valueMin;
+        mValueMax = valueMax;
+        Arrays.fill(mHits, 0);
+        mColumnsDone.set(0);
+        mCancelled = false;
+
+        pool.invoke(new Columns(0, mWidth));
+    }
+
+    /**
+     * @return number of maxima that fell in the pixel at (column, row), row 0 being the largest value
+     * */
+    public int hits(int column, int row) {
+        return mHits[row * mWidth + column];
+    }
+
+    /**
+     * Renders the histogram as dark points on a light background. Intensities are log-scaled,
+     * normalized per column so that sparse chaotic columns stay as visible as periodic ones
+     * */
+    @NotNull
+    public BufferedImage toImage(int background, int foreground) {
+        final BufferedImage image = new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_INT_RGB);
+        final int[] row = new int[mWidth];
+        final float[] norm = new float[mWidth];
+
+        for (int c = 0; c < mWidth; c++) {
+            int max = 0;
+            for (int r = 0; r < mHeight; r++) {
+                max = Math.max(max, mHits[r * mWidth + c]);
+            }
+            norm[c] = max > 0? (float) (1 / Math.log1p(max)): 0;
+        }
+
+        for (int r = 0; r < mHeight; r++) {
+            for (int c = 0; c < mWidth; c++) {
+                final int hits = mHits[r * mWidth + c];
+                // at least a faint dot for any hit, full intensity at the column's max
+                final float t = hits > 0? 0.25f + 0.75f * (float) Math.log1p(hits) * norm[c]: 0;
+                row[c] = lerpRgb(background, foreground, t);
+            }
+
+            image.setRGB(0, r, mWidth, 1, row, 0, mWidth);
+        }
+
+        return image;
+    }
+
+    private static int lerpRgb(int from, int to, float t) {
+        final int r = (int) (((from >> 16) & 0xFF) + (((to >> 16) & 0xFF) - ((from >> 16) & 0xFF)) * t);
+        final int g = (int) (((from >> 8) & 0xFF) + (((to >> 8) & 0xFF) - ((from >> 8) & 0xFF)) * t);
+        final int b = (int) ((from & 0xFF) + ((to & 0xFF) - (from & 0xFF)) * t);
+        return (r << 16) | (g << 8) | b;
+    }
+
+}
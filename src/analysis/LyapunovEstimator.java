@@ -0,0 +1,218 @@
+package analysis;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sim.FixedStepClock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Estimates the Lyapunov exponents of an attractor on a background thread.
+ *
+ * <p>
+ * Attractors with an {@link AttractorI#hasJacobian() analytic Jacobian} get their full spectrum (and the Kaplan-Yorke
+ * dimension) from a {@link LyapunovSpectrum}. For the others, only the largest exponent is estimated by a
+ * {@link TwinLyapunov}.
+ * <p>
+ * Stepping reuses the attractor's own kernels through the integrator, and all state is preallocated: the loop
+ * does not allocate. The thread is paced to a fixed number of steps per second, so it never competes with the simulation
+ * and the renderer for a whole core
+ * <p>
+ * */
+public class LyapunovEstimator extends Thread {
+
+    /**
+     * Simulation time between renormalizations, short enough for the separation to stay in the linear regime
+     * */
+    public static final float DEFAULT_RENORM_TIME = 0.1f;
+
+    /**
+     * Simulation time integrated before the twin is placed, so that the reference settles onto the attractor
+     * */
+    public static final float DEFAULT_TRANSIENT_TIME = 20f;
+
+    public static final float DEFAULT_STEPS_PER_SECOND = 2_000_000;
+
+    private static final int MAX_RENORMS_PER_TICK = 64;
+    private static final long MAX_PARK_NS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @NotNull
+    private final AttractorI mAttractor;
+    private final float mDt;
+    private final int mRenormSteps;
+    private final int mTransientSteps;
+    private final float mStepsPerSecond;
+
+    private volatile boolean mRunning = true;
+    private volatile double mExponent = Double.NaN;
+    private volatile double mTime;
+    private volatile boolean mDiverged;
+
+    /* Exactly one of the two, the spectrum if the attractor has a Jacobian */
+    @Nullable
+    private final LyapunovSpectrum mSpectrum;
+    @Nullable
+    private final TwinLyapunov mTwin;
+
+    /* Spectrum, published as a whole under the lock */
+    @NotNull
+    private final double[] mExponents = new double[LyapunovSpectrum.SIZE];
+    private boolean mHasExponents;
+
+    /**
+     * @param integrator prototype integrator, copied for the estimation
+     * @param dt fixed step size
+     * @param separation separation of the twin trajectory, if the spectrum cannot be estimated
+     * */
+    public LyapunovEstimator(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, float dt,
+                             float separation, float renormTime, float transientTime, float stepsPerSecond) {
+        super("Lyapunov-" + attractor.getTitle());
+        setDaemon(true);
+        setPriority(Thread.MIN_PRIORITY);
+
+        mAttractor = attractor;
+        mDt = dt;
+        mRenormSteps = Math.max(Math.round(renormTime / dt), 1);
+        mTransientSteps = Math.max(Math.round(transientTime / dt), 0);
+        mStepsPerSecond = stepsPerSecond;
+        mSpectrum = attractor.hasJacobian()? new LyapunovSpectrum(attractor, integrator.copy(), dt, mRenormSteps): null;
+        mTwin = mSpectrum == null? new TwinLyapunov(integrator, separation): null;
+    }
+
+    public LyapunovEstimator(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, float dt) {
+        this(attractor, integrator, dt, TwinLyapunov.DEFAULT_SEPARATION, DEFAULT_RENORM_TIME, DEFAULT_TRANSIENT_TIME, DEFAULT_STEPS_PER_SECOND);
+    }
+
+    @NotNull
+    public AttractorI getAttractor() {
+        return mAttractor;
+    }
+
+    /**
+     * @return running estimate of the largest Lyapunov exponent, or {@link Double#NaN} until the first renormalization
+     * */
+    public double getExponent() {
+        return mExponent;
+    }
+
+    /**
+     * @return whether the full spectrum is estimated, not only the largest exponent
+     * */
+    public boolean hasSpectrum() {
+        return mSpectrum != null;
+    }
+
+    /**
+     * Copies the current estimate of all the exponents, largest first, into {@code out}
+     *
+     * @return false if the spectrum is not estimated, or not available yet
+     * */
+    public boolean getSpectrum(@NotNull double[] out) {
+        synchronized (mExponents) {
+            if (!mHasExponents)
+                return false;
+
+            System.arraycopy(mExponents, 0, out, 0, LyapunovSpectrum.SIZE);
+            return true;
+        }
+    }
+
+    /**
+     * @return simulation time the current estimate is averaged over
+     * */
+    public double getTime() {
+        return mTime;
+    }
+
+    /**
+     * @return whether the trajectory left the range of floats, in which case the estimation stopped
+     * */
+    public boolean hasDiverged() {
+        return mDiverged;
+    }
+
+    /**
+     * Stops the estimation and waits for the thread to finish
+     * */
+    public void quit() {
+        mRunning = false;
+        interrupt();
+
+        if (Thread.currentThread() != this) {
+            try {
+                join();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        if (mSpectrum != null) {
+            runSpectrum(mSpectrum);
+        } else if (mTwin != null) {
+            runTwin(mTwin);
+        }
+    }
+
+    private void runSpectrum(@NotNull LyapunovSpectrum spectrum) {
+        spectrum.skipTransient(mTransientSteps);
+
+        final FixedStepClock clock = new FixedStepClock(MAX_RENORMS_PER_TICK, MAX_RENORMS_PER_TICK);
+        final double renormTime = (double) mRenormSteps * mDt;
+        final double rate = (double) mStepsPerSecond * mDt;
+        final double[] exponents = new double[LyapunovSpectrum.SIZE];
+
+        while (mRunning) {
+            final int due = clock.tick(System.nanoTime(), rate, renormTime);
+            if (due == 0) {
+                LockSupport.parkNanos(Math.min(clock.nanosUntilNextStep(rate, renormTime), MAX_PARK_NS));
+                continue;
+            }
+
+            if (!spectrum.advance(due)) {
+                mDiverged = true;
+                mRunning = false;
+                return;
+            }
+
+            spectrum.getExponents(exponents);
+            synchronized (mExponents) {
+                System.arraycopy(exponents, 0, mExponents, 0, LyapunovSpectrum.SIZE);
+                mHasExponents = true;
+            }
+
+            mTime = spectrum.getTime();
+            mExponent = exponents[0];
+        }
+    }
+
+    private void runTwin(@NotNull TwinLyapunov twin) {
+        twin.reset(mAttractor, mDt, mRenormSteps, mTransientSteps);
+
+        final FixedStepClock clock = new FixedStepClock(MAX_RENORMS_PER_TICK, MAX_RENORMS_PER_TICK);
+        final double renormTime = (double) mRenormSteps * mDt;
+        final double rate = (double) mStepsPerSecond * mDt;
+
+        while (mRunning) {
+            final int due = clock.tick(System.nanoTime(), rate, renormTime);
+            if (due == 0) {
+                LockSupport.parkNanos(Math.min(clock.nanosUntilNextStep(rate, renormTime), MAX_PARK_NS));
+                continue;
+            }
+
+            if (!twin.advance(due)) {
+                mDiverged = true;
+                mRunning = false;
+                return;
+            }
+
+            mTime = twin.getTime();
+            mExponent = twin.getExponent();
+        }
+    }
+}
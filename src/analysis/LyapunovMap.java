@@ -0,0 +1,318 @@
+package analysis;
+
+import attractors.AttractorI;
+import attractors.Attractors;
+import integrators.IntegratorI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Map of the largest Lyapunov exponent over a plane of two parameters of an attractor: chaotic regions (positive exponent)
+ * against ordered ones (zero or negative).
+ *
+ * <p>
+ * The plane is computed progressively, coarse to fine: a first pass evaluates every {@code 2^k}-th cell in both directions,
+ * each following pass halves the spacing and only evaluates the cells not computed yet. Every evaluated cell fills the
+ * block it stands for, so the map is a complete (blocky) preview after each pass.
+ * Within a pass, the cells are split into square tiles that run in parallel on a {@link ForkJoinPool}. Every worker thread
+ * reuses one {@link TwinLyapunov} for all of its cells. The computation can be {@link #cancel() cancelled} at any time,
+ * and stops after the cells in flight
+ * <p>
+ * */
+public class LyapunovMap {
+
+    /**
+     * Receives progress of a {@link #compute}, on the worker threads
+     * */
+    public interface Listener {
+
+        /**
+         * A tile of a pass is done. Pixels in the given rectangle (and the blocks of its cells) are up to date
+         * */
+        default void onTileDone(int pass, int x, int y, int width, int height) {
+        }
+
+        /**
+         * A whole pass is done, cells are now {@code spacing} pixels apart. Called on the thread that runs {@link #compute}
+         * */
+        default void onPassDone(int pass, int spacing) {
+        }
+    }
+
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    /**
+     * Value of cells whose trajectory diverged
+     * */
+    public static final float DIVERGED = Float.POSITIVE_INFINITY;
+
+    /**
+     * Exponents below this fraction of the palette scale are treated as zero, so that limit cycles do not flicker
+     * between chaos and order
+     * */
+    private static final float NEUTRAL_FRACTION = 0.02f;
+
+    private final class Worker {
+
+        @NotNull
+        final TwinLyapunov lyapunov = new TwinLyapunov(mIntegrator);
+        @NotNull
+        final float[] params = mParams.clone();
+
+        float evaluate(float px, float py) {
+            params[mParamX] = px;
+            params[mParamY] = py;
+            final AttractorI attractor = mSystem.create(params);
+
+            lyapunov.reset(attractor, mDt, mRenormSteps, mTransientSteps);
+            if (!lyapunov.advance(mRenorms))
+                return DIVERGED;
+            return (float) lyapunov.getExponent();
+        }
+    }
+
+    @SuppressWarnings("serial")         // never serialized
+    private final class Tile extends RecursiveAction {
+
+        final int pass, spacing, x0, y0, x1, y1;
+
+        Tile(int pass, int spacing, int x0, int y0, int x1, int y1) {
+            this.pass = pass;
+            this.spacing = spacing;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected void compute() {
+            final Worker worker = mWorkers.get();
+            final int parentSpacing = spacing * 2;
+
+            // first cell of the spacing grid in the tile
+            final int cx0 = (x0 + spacing - 1) / spacing * spacing, cy0 = (y0 + spacing - 1) / spacing * spacing;
+            for (int y = cy0; y < y1; y += spacing) {
+                for (int x = cx0; x < x1; x += spacing) {
+                    if (mCancelled)
+                        return;
+                    if (pass > 0 && x % parentSpacing == 0 && y % parentSpacing == 0)
+                        continue;           // done in a previous pass
+
+                    final float value = worker.evaluate(paramX(x), paramY(y));
+                    fill(x, y, spacing, value);
+                    mCellsDone.incrementAndGet();
+                }
+            }
+
+            final Listener listener = mListener;
+            if (listener != null) {
+                listener.onTileDone(pass, x0, y0, x1 - x0, y1 - y0);
+            }
+        }
+    }
+
+    @NotNull
+    private final Attractors mSystem;
+    @NotNull
+    private final float[] mParams;
+    private final int mParamX, mParamY;
+    private final float mXFrom, mXTo, mYFrom, mYTo;
+    @NotNull
+    private final IntegratorI mIntegrator;
+    private final float mDt;
+    private final int mTransientSteps, mRenormSteps, mRenorms;
+    private final int mWidth, mHeight;
+    private final int mTileSize;
+
+    @NotNull
+    private final float[] mValues;
+    @NotNull
+    private final ThreadLocal<Worker> mWorkers = ThreadLocal.withInitial(Worker::new);
+    @NotNull
+    private final AtomicInteger mCellsDone = new AtomicInteger();
+    private volatile boolean mCancelled;
+    @Nullable
+    private volatile Listener mListener;
+
+    /**
+     * @param params base parameters of the attractor, in constructor order
+     * @param paramX index of the parameter along the width, swept from {@code xFrom} (left) to {@code xTo}
+     * @param paramY index of the parameter along the height, swept from {@code yFrom} (bottom) to {@code yTo}
+     * @param integrator prototype integrator, copied for every worker thread
+     * @param renormSteps steps between renormalizations of the twin trajectory
+     * @param renorms renormalizations averaged per cell
+     * */
+    public LyapunovMap(@NotNull Attractors system, @NotNull float[] params, int paramX, float xFrom, float xTo, int paramY, float yFrom, float yTo,
+                       @NotNull IntegratorI integrator, float dt, int transientSteps, int renormSteps, int renorms,
+                       int width, int height, int tileSize) {
+        if (paramX < 0 || paramX >= system.parameterCount() || paramY < 0 || paramY >= system.parameterCount())
+            throw new IllegalArgumentException("Invalid parameter indices " + paramX + ", " + paramY + " for " + system.displayName);
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+
+        mSystem = system;
+        mParams = params.clone();
+        mParamX = paramX;
+        mParamY = paramY;
+        mXFrom = xFrom;
+        mXTo = xTo;
+        mYFrom = yFrom;
+        mYTo = yTo;
+        mIntegrator = integrator;
+        mDt = dt;
+        mTransientSteps = Math.max(transientSteps, 0);
+        mRenormSteps = Math.max(renormSteps, 1);
+        mRenorms = Math.max(renorms, 1);
+        mWidth = width;
+        mHeight = height;
+        mTileSize = Math.max(tileSize, 1);
+
+        mValues = new float[width * height];
+        Arrays.fill(mValues, Float.NaN);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public float paramX(int x) {
+        return mWidth > 1? mXFrom + (mXTo - mXFrom) * x / (mWidth - 1): mXFrom;
+    }
+
+    public float paramY(int y) {
+        // y grows downwards in the image
+        return mHeight > 1? mYTo + (mYFrom - mYTo) * y / (mHeight - 1): mYFrom;
+    }
+
+    /**
+     * @return the exponent shown at the pixel, {@link Float#NaN} if not computed yet, {@link #DIVERGED} if diverged
+     * */
+    public float valueAt(int x, int y) {
+        return mValues[y * mWidth + x];
+    }
+
+    /**
+     * @return fraction of the cells computed so far
+     * */
+    public float getProgress() {
+        return (float) mCellsDone.get() / ((long) mWidth * mHeight);
+    }
+
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    private void fill(int x, int y, int size, float value) {
+        final int xe = Math.min(x + size, mWidth), ye = Math.min(y + size, mHeight);
+        for (int j = y; j < ye; j++) {
+            Arrays.fill(mValues, j * mWidth + x, j * mWidth + xe, value);
+        }
+    }
+
+    /**
+     * Computes the map on the given pool, coarse to fine, until done or {@link #cancel() cancelled}
+     *
+     * @param listener progress listener, or null
+     * @return whether the map is complete
+     * */
+    public boolean compute(@NotNull ForkJoinPool pool, @Nullable Listener listener) {
+        mListener = listener;
+        mCancelled = false;
+        mCellsDone.set(0);
+
+        // coarsest spacing: a few cells per tile side
+        int spacing = Integer.highestOneBit(Math.max(Math.min(mTileSize, Math.max(mWidth, mHeight)) / 4, 1));
+        int pass = 0;
+        while (!mCancelled) {
+            final List<Tile> tiles = new ArrayList<>();
+            for (int ty = 0; ty < mHeight; ty += mTileSize) {
+                for (int tx = 0; tx < mWidth; tx += mTileSize) {
+                    tiles.add(new Tile(pass, spacing, tx, ty, Math.min(tx + mTileSize, mWidth), Math.min(ty + mTileSize, mHeight)));
+                }
+            }
+
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tiles);
+                }
+            });
+
+            if (mCancelled)
+                break;
+
+            if (listener != null) {
+                listener.onPassDone(pass, spacing);
+            }
+
+            if (spacing == 1)
+                return true;
+
+            spacing /= 2;
+            pass++;
+        }
+
+        return false;
+    }
+
+    /**
+     * Renders the map with a diverging palette: chaos (positive exponents) from dark red to yellow, order (negative
+     * exponents) from light to dark blue, and neutral (near zero, e.g. limit cycles) in gray. Diverged cells are black,
+     * cells not computed yet are white
+     *
+     * @param scale exponent magnitude that saturates the palette
+     * */
+    @NotNull
+    public BufferedImage toImage(float scale) {
+        final BufferedImage image = new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_INT_RGB);
+        final int[] row = new int[mWidth];
+        for (int y = 0; y < mHeight; y++) {
+            for (int x = 0; x < mWidth; x++) {
+                row[x] = color(mValues[y * mWidth + x], scale);
+            }
+
+            image.setRGB(0, y, mWidth, 1, row, 0, mWidth);
+        }
+
+        return image;
+    }
+
+    private static int color(float value, float scale) {
+        if (Float.isNaN(value))
+            return 0xFFFFFF;
+        if (value == DIVERGED)
+            return 0x000000;
+
+        final float t = Math.min(Math.abs(value) / scale, 1);
+        if (value > scale * NEUTRAL_FRACTION) {
+            // dark red -> orange -> yellow
+            return rgb(0.5f + 0.5f * Math.min(t * 2, 1), t, 0.1f * t);
+        }
+
+        // gray -> blue -> dark blue
+        final float gray = 0.55f * (1 - t);
+        return rgb(gray, gray + 0.15f * t, gray + 0.6f * t * (1.2f - t));
+    }
+
+    private static int rgb(float r, float g, float b) {
+        return (Math.round(Math.min(r, 1) * 255) << 16) | (Math.round(Math.min(g, 1) * 255) << 8) | Math.round(Math.min(b, 1) * 255);
+    }
+
+}
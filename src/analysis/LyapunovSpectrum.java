@@ -0,0 +1,193 @@
+package analysis;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Computes the full Lyapunov spectrum of an attractor with an analytic Jacobian.
+ *
+ * <p>
+ * The {@link VariationalField variational equations} are integrated for an orthonormal basis of tangent vectors.
+ * Every {@code renormSteps} steps the basis is re-orthonormalized by modified Gram-Schmidt (a QR decomposition),
+ * and the logarithms of the diagonal of R, i.e. the stretching of each direction, are accumulated. Averaged over time they
+ * converge to the exponents, in decreasing order.
+ * <p>
+ * Single threaded and allocation-free after construction: run one instance per thread for batch studies
+ * <p>
+ * */
+public class LyapunovSpectrum {
+
+    public static final int SIZE = VariationalField.TANGENTS;
+
+    /**
+     * @return the Kaplan-Yorke (Lyapunov) dimension {@code j + (l_1 + ... + l_j) / |l_(j+1)|} of a spectrum sorted in
+     * decreasing order, where {@code j} is the largest index with a non-negative partial sum
+     * */
+    public static double kaplanYorkeDimension(@NotNull double[] exponents) {
+        double sum = 0;
+        for (int j = 0; j < exponents.length; j++) {
+            if (sum + exponents[j] < 0)
+                return j + sum / Math.abs(exponents[j]);
+            sum += exponents[j];
+        }
+
+        return exponents.length;
+    }
+
+    @NotNull
+    private final AttractorI mAttractor;
+    @NotNull
+    private final VariationalField mField;
+    @NotNull
+    private final IntegratorI mIntegrator;
+    private final float mDt;
+    private final int mRenormSteps;
+
+    @NotNull
+    private final float[] mState = new float[VariationalField.DIMENSION];
+    @NotNull
+    private final double[] mLogSums = new double[SIZE];
+    private long mRenorms;
+    private boolean mDiverged;
+
+    /**
+     * @param integrator integrator for the extended system. Owned by this instance from now on
+     * @param dt fixed step size
+     * @param renormSteps steps between re-orthonormalizations
+     * @throws IllegalArgumentException if the attractor does not provide an analytic Jacobian
+     * */
+    public LyapunovSpectrum(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, float dt, int renormSteps) {
+        mAttractor = attractor;
+        mField = new VariationalField(attractor);
+        mIntegrator = integrator;
+        mDt = dt;
+        mRenormSteps = Math.max(renormSteps, 1);
+        reset();
+    }
+
+    @NotNull
+    public AttractorI getAttractor() {
+        return mAttractor;
+    }
+
+    public int getRenormSteps() {
+        return mRenormSteps;
+    }
+
+    /**
+     * Restarts from the attractor's initial state
+     * */
+    public void reset() {
+        mAttractor.getStart(mState, 0);
+        mIntegrator.reset();
+        resetBasis();
+    }
+
+    /**
+     * Integrates {@code steps} steps without measuring anything, so that the state settles onto the attractor
+     * */
+    public void skipTransient(int steps) {
+        if (mDiverged || steps <= 0)
+            return;
+
+        mIntegrator.integrate(mField, mState, 0, mDt, steps, null);
+        resetBasis();
+    }
+
+    private void resetBasis() {
+        final float[] s = mState;
+        for (int k = 0; k < SIZE; k++) {
+            final int v = VariationalField.tangentOffset(k);
+            for (int i = 0; i < SIZE; i++) {
+                s[v + i] = i == k? 1: 0;
+            }
+        }
+
+        for (int k = 0; k < SIZE; k++) {
+            mLogSums[k] = 0;
+        }
+
+        mRenorms = 0;
+        mDiverged = !Float.isFinite(s[0] + s[1] + s[2]);
+    }
+
+    /**
+     * Advances by {@code renorms} renormalization intervals
+     *
+     * @return false if the trajectory diverged, in which case the spectrum is no longer updated
+     * */
+    public boolean advance(int renorms) {
+        final float[] s = mState;
+        for (int r = 0; r < renorms && !mDiverged; r++) {
+            mIntegrator.integrate(mField, s, 0, mDt, mRenormSteps, null);
+            mDiverged = !orthonormalize(s);
+            if (!mDiverged) {
+                mRenorms++;
+            }
+        }
+
+        return !mDiverged;
+    }
+
+    /**
+     * Modified Gram-Schmidt on the tangent vectors, accumulating the log of the norm of each one before normalization
+     * */
+    private boolean orthonormalize(@NotNull float[] s) {
+        if (!Float.isFinite(s[0] + s[1] + s[2]))
+            return false;
+
+        for (int k = 0; k < SIZE; k++) {
+            final int v = VariationalField.tangentOffset(k);
+            double x = s[v], y = s[v + 1], z = s[v + 2];
+
+            for (int j = 0; j < k; j++) {
+                final int q = VariationalField.tangentOffset(j);
+                final double dot = x * s[q] + y * s[q + 1] + z * s[q + 2];
+                x -= dot * s[q];
+                y -= dot * s[q + 1];
+                z -= dot * s[q + 2];
+            }
+
+            final double norm = Math.sqrt(x * x + y * y + z * z);
+            if (!(norm > 0) || !Double.isFinite(norm))
+                return false;
+
+            mLogSums[k] += Math.log(norm);
+            s[v] = (float) (x / norm);
+            s[v + 1] = (float) (y / norm);
+            s[v + 2] = (float) (z / norm);
+        }
+
+        return true;
+    }
+
+    public boolean hasDiverged() {
+        return mDiverged;
+    }
+
+    /**
+     * @return simulation time the spectrum is averaged over
+     * */
+    public double getTime() {
+        return mRenorms * (double) mRenormSteps * mDt;
+    }
+
+    /**
+     * Writes the current estimate of the exponents, largest first, into {@code out}. NaN before the first renormalization
+     * */
+    public void getExponents(@NotNull double[] out) {
+        final double time = getTime();
+        for (int k = 0; k < SIZE; k++) {
+            out[k] = time > 0? mLogSums[k] / time: Double.NaN;
+        }
+    }
+
+    /**
+     * Copies the current attractor state (x, y, z) into {@code out}
+     * */
+    public void getState(@NotNull float[] out, int offset) {
+        System.arraycopy(mState, 0, out, offset, AttractorI.STATE_SIZE);
+    }
+
+}
@@ -0,0 +1,162 @@
+package analysis;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Largest Lyapunov exponent by the Benettin (twin trajectory) method, for any attractor.
+ *
+ * <p>
+ * A twin trajectory is started at a small distance {@code d0} from the reference one and both are advanced with the same
+ * integrator and fixed step. Every {@code renormSteps} steps the separation {@code d} is measured, {@code ln(d / d_prev)}
+ * is accumulated and the twin is pulled back along the separation to distance {@code d0}. The estimate is
+ * the accumulated sum over the elapsed simulation time, in units of 1 / (attractor time).
+ * <p>
+ * Stepping goes through the attractor's own batch kernels. An instance can be {@link #reset} to other attractors
+ * (e.g. other parameters of a sweep) and does not allocate. Not thread safe
+ * <p>
+ * */
+public class TwinLyapunov {
+
+    /**
+     * Initial and renormalized separation of the twin trajectory
+     * */
+    public static final float DEFAULT_SEPARATION = 1e-3f;
+
+    @NotNull
+    private final IntegratorI mIntegrator, mTwinIntegrator;
+    private final float mD0;
+
+    @Nullable
+    private AttractorI mAttractor;
+    private float mDt;
+    private int mRenormSteps;
+
+    @NotNull
+    private final float[] mState = new float[AttractorI.STATE_SIZE];
+    @NotNull
+    private final float[] mTwin = new float[AttractorI.STATE_SIZE];
+    private double mSeparation;
+    private double mLogSum;
+    private long mRenorms;
+    private boolean mDiverged;
+
+    /**
+     * @param integrator prototype integrator, copied for the reference and the twin trajectory
+     * @param separation initial and renormalized separation {@code d0}
+     * */
+    public TwinLyapunov(@NotNull IntegratorI integrator, float separation) {
+        mIntegrator = integrator.copy();
+        mTwinIntegrator = integrator.copy();
+        mD0 = separation;
+    }
+
+    public TwinLyapunov(@NotNull IntegratorI integrator) {
+        this(integrator, DEFAULT_SEPARATION);
+    }
+
+    private static double distance(@NotNull float[] a, @NotNull float[] b) {
+        final double dx = b[0] - a[0], dy = b[1] - a[1], dz = b[2] - a[2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Restarts from the start of the given attractor, and settles onto it for {@code transientSteps} steps
+     * before placing the twin
+     *
+     * @param dt fixed step size
+     * @param renormSteps steps between renormalizations
+     * */
+    public void reset(@NotNull AttractorI attractor, float dt, int renormSteps, int transientSteps) {
+        mAttractor = attractor;
+        mDt = dt;
+        mRenormSteps = Math.max(renormSteps, 1);
+        mLogSum = 0;
+        mRenorms = 0;
+
+        final float[] state = mState;
+        attractor.getStart(state, 0);
+        mIntegrator.reset();
+        mTwinIntegrator.reset();
+        if (transientSteps > 0) {
+            mIntegrator.integrate(attractor, state, 0, dt, transientSteps, null);
+        }
+
+        mDiverged = !Float.isFinite(state[0] + state[1] + state[2]);
+        displaceTwin();
+    }
+
+    private void displaceTwin() {
+        // along the diagonal
+        final float offset = mD0 / (float) Math.sqrt(AttractorI.STATE_SIZE);
+        for (int i = 0; i < AttractorI.STATE_SIZE; i++) {
+            mTwin[i] = mState[i] + offset;
+        }
+
+        mSeparation = distance(mState, mTwin);          // actual, not d0: the twin is rounded to floats
+    }
+
+    /**
+     * Advances by {@code renorms} renormalization intervals
+     *
+     * @return false if the trajectory diverged, in which case the estimate is no longer updated
+     * */
+    public boolean advance(int renorms) {
+        final AttractorI attractor = mAttractor;
+        if (attractor == null)
+            throw new IllegalStateException("Not reset to an attractor yet");
+
+        final IntegratorI integrator = mIntegrator, twinIntegrator = mTwinIntegrator;
+        final float[] state = mState, twin = mTwin;
+        final float dt = mDt, d0 = mD0;
+        final int renormSteps = mRenormSteps;
+
+        for (int r = 0; r < renorms && !mDiverged; r++) {
+            integrator.integrate(attractor, state, 0, dt, renormSteps, null);
+            twinIntegrator.integrate(attractor, twin, 0, dt, renormSteps, null);
+
+            final double d = distance(state, twin);
+            if (!Double.isFinite(d) || !Float.isFinite(state[0] + state[1] + state[2])) {
+                mDiverged = true;
+                break;
+            }
+
+            if (d > 0) {
+                mLogSum += Math.log(d / mSeparation);
+                final float k = (float) (d0 / d);
+                twin[0] = state[0] + (twin[0] - state[0]) * k;
+                twin[1] = state[1] + (twin[1] - state[1]) * k;
+                twin[2] = state[2] + (twin[2] - state[2]) * k;
+                mSeparation = distance(state, twin);
+            } else {
+                displaceTwin();         // collapsed onto the reference (float resolution)
+            }
+
+            mRenorms++;
+        }
+
+        return !mDiverged;
+    }
+
+    public boolean hasDiverged() {
+        return mDiverged;
+    }
+
+    /**
+     * @return simulation time the estimate is averaged over
+     * */
+    public double getTime() {
+        return mRenorms * (double) mRenormSteps * mDt;
+    }
+
+    /**
+     * @return the current estimate, or {@link Double#NaN} before the first renormalization
+     * */
+    public double getExponent() {
+        final double time = getTime();
+        return time > 0? mLogSum / time: Double.NaN;
+    }
+
+}
@@ -0,0 +1,72 @@
+package analysis;
+
+import attractors.AttractorI;
+import integrators.VectorFieldI;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The variational equations of an attractor: its state extended with a basis of tangent vectors that evolve by the
+ * linearized flow, {@code dv/dt = J(x) v}.
+ *
+ * <p>
+ * A state of this field is the attractor state followed by {@link AttractorI#STATE_SIZE} tangent vectors, each stored
+ * contiguously. As an ordinary {@link VectorFieldI} it can be advanced by any integrator, and every stage evaluates
+ * the field and the {@link AttractorI#jacobian Jacobian} at the same point, so the state and the tangent updates share
+ * a single evaluation of the dynamics.
+ * Owns scratch storage for the Jacobian, so an instance must not be shared between threads
+ * <p>
+ * */
+public class VariationalField implements VectorFieldI {
+
+    public static final int TANGENTS = AttractorI.STATE_SIZE;
+    public static final int DIMENSION = AttractorI.STATE_SIZE * (1 + TANGENTS);
+
+    /**
+     * @return offset of the tangent vector {@code k} relative to the start of the extended state
+     * */
+    public static int tangentOffset(int k) {
+        return AttractorI.STATE_SIZE * (1 + k);
+    }
+
+    @NotNull
+    private final AttractorI mAttractor;
+    @NotNull
+    private final float[] mJacobian = new float[AttractorI.JACOBIAN_SIZE];
+
+    /**
+     * @throws IllegalArgumentException if the attractor does not provide an analytic Jacobian
+     * */
+    public VariationalField(@NotNull AttractorI attractor) {
+        if (!attractor.hasJacobian())
+            throw new IllegalArgumentException("Attractor has no analytic Jacobian: " + attractor.getTitle());
+
+        mAttractor = attractor;
+    }
+
+    @NotNull
+    public AttractorI getAttractor() {
+        return mAttractor;
+    }
+
+    @Override
+    public int dimension() {
+        return DIMENSION;
+    }
+
+    @Override
+    public void derivative(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float[] j = mJacobian;
+        mAttractor.derivative(state, offset, out, outOffset);
+        mAttractor.jacobian(state, offset, j, 0);
+
+        for (int k = 0; k < TANGENTS; k++) {
+            final int v = offset + tangentOffset(k), o = outOffset + tangentOffset(k);
+            final float vx = state[v], vy = state[v + 1], vz = state[v + 2];
+
+            out[o] = j[0] * vx + j[1] * vy + j[2] * vz;
+            out[o + 1] = j[3] * vx + j[4] * vy + j[5] * vz;
+            out[o + 2] = j[6] * vx + j[7] * vy + j[8] * vz;
+        }
+    }
+
+}
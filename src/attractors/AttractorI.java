@@ -1,10 +1,25 @@
 package attractors;
 
+import integrators.EulerIntegrator;
+import integrators.IntegratorI;
+import integrators.VectorFieldI;
+import math.TrajectorySink;
 import math.Vector;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-public interface AttractorI {
+public interface AttractorI extends VectorFieldI {
+
+    /**
+     * Number of floats a state occupies in primitive state storage
+     * */
+    int STATE_SIZE = 3;
+
+    /**
+     * Number of floats a Jacobian matrix occupies, stored row-major
+     * */
+    int JACOBIAN_SIZE = STATE_SIZE * STATE_SIZE;
 
     @NotNull
     String getTitle();
@@ -18,4 +33,102 @@ public interface AttractorI {
     @NotNull
     DrawConfig drawConfig();
 
+
+    @Override
+    default int dimension() {
+        return STATE_SIZE;
+    }
+
+    /**
+     * Writes the vector field (dx/dt, dy/dt, dz/dt) at the state stored in {@code state} at {@code offset} into {@code out}.
+     *
+     * <p>
+     * This separates the dynamics of the system from the stepping scheme, so that any {@link IntegratorI} can evolve it.
+     * The default implementation derives it from a unit Euler step of {@link #calculateNextPoint(Vector, float)},
+     * which is exact for attractors that implement it as {@code v + f(v) * dt}
+     * <p>
+     * */
+    @Override
+    default void derivative(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+        final Vector next = calculateNextPoint(new Vector(x, y, z), 1);
+        out[outOffset] = next.x - x;
+        out[outOffset + 1] = next.y - y;
+        out[outOffset + 2] = next.z - z;
+    }
+
+    /**
+     * @return whether this attractor provides its Jacobian analytically through {@link #jacobian(float[], int, float[], int)}
+     * */
+    default boolean hasJacobian() {
+        return false;
+    }
+
+    /**
+     * Writes the Jacobian matrix of the vector field at the state stored in {@code state} at {@code offset} into {@code out},
+     * row-major: {@code out[outOffset + 3 * i + j] = d f_i / d x_j}.
+     *
+     * <p>
+     * This is what the variational equations of the system are made of, e.g. to compute its Lyapunov spectrum.
+     * Only available if {@link #hasJacobian()}
+     * <p>
+     *
+     * @throws UnsupportedOperationException if this attractor does not provide an analytic Jacobian
+     * */
+    default void jacobian(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        throw new UnsupportedOperationException("No analytic Jacobian for " + getTitle());
+    }
+
+    /**
+     * @return a new instance of the integration scheme this attractor should be evolved with by default
+     * */
+    @NotNull
+    default IntegratorI createIntegrator() {
+        return new EulerIntegrator();
+    }
+
+    /**
+     * Writes the initial state as (x, y, z) into {@code state}, starting at {@code offset}
+     * */
+    default void getStart(@NotNull float[] state, int offset) {
+        final Vector start = getStart();
+        state[offset] = start.x;
+        state[offset + 1] = start.y;
+        state[offset + 2] = start.z;
+    }
+
+    /**
+     * Advances the state (x, y, z) stored in {@code state} at {@code offset} by time step {@code dt}, in place.
+     *
+     * <p>
+     * This is the allocation-free counterpart of {@link #calculateNextPoint(Vector, float)}. The default implementation
+     * bridges to {@link #calculateNextPoint(Vector, float)}, so custom attractors keep working unchanged, but
+     * implementations should override it with primitive arithmetic
+     * <p>
+     * */
+    default void step(@NotNull float[] state, int offset, float dt) {
+        final Vector next = calculateNextPoint(new Vector(state[offset], state[offset + 1], state[offset + 2]), dt);
+        state[offset] = next.x;
+        state[offset + 1] = next.y;
+        state[offset + 2] = next.z;
+    }
+
+    /**
+     * Advances the state stored in {@code state} at {@code offset} by {@code steps} steps of size {@code dt}, in place,
+     * emitting every new point to {@code sink} (if any).
+     *
+     * <p>
+     * This is the batch entry point for hot loops: built-in attractors override it with a monomorphic kernel,
+     * so the whole batch costs a single virtual call. The default implementation just loops over {@link #step(float[], int, float)}
+     * <p>
+     * */
+    default void integrate(@NotNull float[] state, int offset, float dt, int steps, @Nullable TrajectorySink sink) {
+        for (int i = 0; i < steps; i++) {
+            step(state, offset, dt);
+            if (sink != null) {
+                sink.accept(state[offset], state[offset + 1], state[offset + 2]);
+            }
+        }
+    }
+
 }
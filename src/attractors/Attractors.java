@@ -0,0 +1,172 @@
+package attractors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Built-in attractors, with their constructor parameters described by name so that batch tools can sweep and set them
+ * */
+public enum Attractors {
+
+    LORENTZ(LorentzAttractor.DEFAULT_TITLE, LorentzAttractor.class,
+            new String[] { "a", "b", "c" },
+            new float[] { LorentzAttractor.DEFAULT_A, LorentzAttractor.DEFAULT_B, LorentzAttractor.DEFAULT_C },
+            p -> new LorentzAttractor(LorentzAttractor.DEFAULT_TITLE, LorentzAttractor.DEFAULT_START, p[0], p[1], p[2]),
+            a -> {
+                final LorentzAttractor l = (LorentzAttractor) a;
+                return new float[] { l.getA(), l.getB(), l.getC() };
+            }),
+
+    MODIFIED_LORENTZ(ModifiedLorentzAttractor.DEFAULT_TITLE, ModifiedLorentzAttractor.class,
+            new String[] { "a", "b", "c" },
+            new float[] { ModifiedLorentzAttractor.DEFAULT_A, ModifiedLorentzAttractor.DEFAULT_B, ModifiedLorentzAttractor.DEFAULT_C },
+            p -> new ModifiedLorentzAttractor(ModifiedLorentzAttractor.DEFAULT_TITLE, ModifiedLorentzAttractor.DEFAULT_START, p[0], p[1], p[2]),
+            a -> {
+                final ModifiedLorentzAttractor l = (ModifiedLorentzAttractor) a;
+                return new float[] { l.getA(), l.getB(), l.getC() };
+            }),
+
+    ROSSLER(RosslerAttractor.DEFAULT_TITLE, RosslerAttractor.class,
+            new String[] { "a", "b", "c" },
+            new float[] { RosslerAttractor.DEFAULT_A, RosslerAttractor.DEFAULT_B, RosslerAttractor.DEFAULT_C },
+            p -> new RosslerAttractor(RosslerAttractor.DEFAULT_TITLE, RosslerAttractor.DEFAULT_START, p[0], p[1], p[2]),
+            a -> {
+                final RosslerAttractor r = (RosslerAttractor) a;
+                return new float[] { r.getA(), r.getB(), r.getC() };
+            }),
+
+    LU_CHEN(LuChenAttractor.DEFAULT_TITLE, LuChenAttractor.class,
+            new String[] { "a", "b", "c", "u" },
+            new float[] { LuChenAttractor.DEFAULT_A, LuChenAttractor.DEFAULT_B, LuChenAttractor.DEFAULT_C, LuChenAttractor.DEFAULT_U },
+            p -> new LuChenAttractor(LuChenAttractor.DEFAULT_TITLE, LuChenAttractor.DEFAULT_START, p[0], p[1], p[2], p[3]),
+            a -> {
+                final LuChenAttractor l = (LuChenAttractor) a;
+                return new float[] { l.getA(), l.getB(), l.getC(), l.getU() };
+            }),
+
+    CHUA(ChuaAttractor.DEFAULT_TITLE, ChuaAttractor.class,
+            new String[] { "a", "b", "c", "d", "alpha", "beta" },
+            new float[] { ChuaAttractor.DEFAULT_A, ChuaAttractor.DEFAULT_B, ChuaAttractor.DEFAULT_C, ChuaAttractor.DEFAULT_D, ChuaAttractor.DEFAULT_ALPHA, ChuaAttractor.DEFAULT_BETA },
+            p -> new ChuaAttractor(ChuaAttractor.DEFAULT_TITLE, ChuaAttractor.DEFAULT_START, p[0], p[1], p[2], p[3], p[4], p[5]),
+            a -> {
+                final ChuaAttractor c = (ChuaAttractor) a;
+                return new float[] { c.getA(), c.getB(), c.getC(), c.getD(), c.getAlpha(), c.getBeta() };
+            });
+
+    @NotNull
+    public final String displayName;
+    @NotNull
+    private final Class<? extends AttractorI> mClass;
+    @NotNull
+    private final String[] mParamNames;
+    @NotNull
+    private final float[] mDefaults;
+    @NotNull
+    private final Function<float[], AttractorI> mFactory;
+    @NotNull
+    private final Function<AttractorI, float[]> mParamsGetter;
+
+    Attractors(@NotNull String displayName, @NotNull Class<? extends AttractorI> cls, @NotNull String[] paramNames, @NotNull float[] defaults,
+               @NotNull Function<float[], AttractorI> factory, @NotNull Function<AttractorI, float[]> paramsGetter) {
+        this.displayName = displayName;
+        mClass = cls;
+        mParamNames = paramNames;
+        mDefaults = defaults;
+        mFactory = factory;
+        mParamsGetter = paramsGetter;
+    }
+
+    /**
+     * @return identifier for command lines, e.g. {@code lu_chen}
+     * */
+    @NotNull
+    public String id() {
+        return name().toLowerCase();
+    }
+
+    public int parameterCount() {
+        return mParamNames.length;
+    }
+
+    @NotNull
+    public String parameterName(int index) {
+        return mParamNames[index];
+    }
+
+    /**
+     * @return index of the named parameter, or -1 if there is no such parameter
+     * */
+    public int parameterIndex(@NotNull String name) {
+        for (int i = 0; i < mParamNames.length; i++) {
+            if (mParamNames[i].equalsIgnoreCase(name))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return a new array with the default parameters, in constructor order
+     * */
+    @NotNull
+    public float[] defaults() {
+        return mDefaults.clone();
+    }
+
+    /**
+     * @param params parameters in constructor order, see {@link #parameterName(int)}
+     * */
+    @NotNull
+    public AttractorI create(@NotNull float[] params) {
+        if (params.length != mParamNames.length)
+            throw new IllegalArgumentException(displayName + " takes " + mParamNames.length + " parameters " + Arrays.toString(mParamNames) + ", given: " + params.length);
+
+        return mFactory.apply(params);
+    }
+
+    @NotNull
+    public AttractorI create() {
+        return create(mDefaults);
+    }
+
+    /**
+     * @return the parameters of the given attractor in constructor order
+     * @throws IllegalArgumentException if the attractor is not of this kind
+     * */
+    @NotNull
+    public float[] parametersOf(@NotNull AttractorI attractor) {
+        if (attractor.getClass() != mClass)
+            throw new IllegalArgumentException("Not a " + displayName + ": " + attractor.getClass().getName());
+
+        return mParamsGetter.apply(attractor);
+    }
+
+    @Nullable
+    public static Attractors fromName(@Nullable String name) {
+        if (name != null) {
+            for (Attractors a: values()) {
+                if (a.id().equalsIgnoreCase(name) || a.displayName.equalsIgnoreCase(name) || a.id().replace("_", "").equalsIgnoreCase(name))
+                    return a;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the kind of the given attractor, or null if it is not exactly one of the built-in classes
+     * */
+    @Nullable
+    public static Attractors of(@NotNull AttractorI attractor) {
+        for (Attractors a: values()) {
+            if (a.mClass == attractor.getClass())
+                return a;
+        }
+
+        return null;
+    }
+
+}
@@ -1,8 +1,10 @@
 package attractors;
 
 import math.RMath;
+import math.TrajectorySink;
 import math.Vector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class ChuaAttractor implements AttractorI {
 
@@ -61,20 +63,108 @@ public class ChuaAttractor implements AttractorI {
         return mStart;
     }
 
-    private float h(@NotNull Vector v) {
-        return -b * RMath.sin((RMath.PI * v.x / (2 * a)) + d);
+    private float h(float x) {
+        return -b * RMath.sin((RMath.PI * x / (2 * a)) + d);
     }
 
     @Override
     @NotNull
     public Vector calculateNextPoint(@NotNull Vector v, float dt) {
-        final float h = h(v);
+        final float[] state = { v.x, v.y, v.z };
+        step(state, 0, dt);
+        return new Vector(state[0], state[1], state[2]);
+    }
+
+    @Override
+    public void derivative(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        out[outOffset] = alpha * (y - h(x));
+        out[outOffset + 1] = x - y + z;
+        out[outOffset + 2] = -beta * y;
+    }
+
+    @Override
+    public boolean hasJacobian() {
+        return true;
+    }
 
-        final float dx = alpha * (v.y - h) * dt;
-        final float dy = (v.x - v.y + v.z) * dt;
-        final float dz = -beta * v.y * dt;
+    @Override
+    public void jacobian(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset];
+
+        // h'(x) = -b * cos(PI * x / (2a) + d) * PI / (2a)
+        final float k = RMath.PI / (2 * a);
+        final float dh = -b * RMath.cos(k * x + d) * k;
+
+        out[outOffset] = -alpha * dh;
+        out[outOffset + 1] = alpha;
+        out[outOffset + 2] = 0;
+
+        out[outOffset + 3] = 1;
+        out[outOffset + 4] = -1;
+        out[outOffset + 5] = 1;
+
+        out[outOffset + 6] = 0;
+        out[outOffset + 7] = -beta;
+        out[outOffset + 8] = 0;
+    }
+
+    @Override
+    public void step(@NotNull float[] state, int offset, float dt) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+        final float h = h(x);
+
+        state[offset] = x + alpha * (y - h) * dt;
+        state[offset + 1] = y + (x - y + z) * dt;
+        state[offset + 2] = z - beta * y * dt;
+    }
+
+    @Override
+    public void integrate(@NotNull float[] state, int offset, float dt, int steps, @Nullable TrajectorySink sink) {
+        float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+        final float alpha = this.alpha, beta = this.beta;
+
+        for (int i = 0; i < steps; i++) {
+            final float dx = alpha * (y - h(x));
+            final float dy = x - y + z;
+            final float dz = -beta * y;
+
+            x += dx * dt;
+            y += dy * dt;
+            z += dz * dt;
+            if (sink != null) {
+                sink.accept(x, y, z);
+            }
+        }
+
+        state[offset] = x;
+        state[offset + 1] = y;
+        state[offset + 2] = z;
+    }
+
+    public float getA() {
+        return a;
+    }
+
+    public float getB() {
+        return b;
+    }
+
+    public float getC() {
+        return c;
+    }
+
+    public float getD() {
+        return d;
+    }
+
+    public float getAlpha() {
+        return alpha;
+    }
 
-        return new Vector(v.x + dx, v.y + dy, v.z + dz);
+    public float getBeta() {
+        return beta;
     }
 
     @Override
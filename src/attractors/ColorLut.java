@@ -0,0 +1,89 @@
+package attractors;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+
+/**
+ * A precomputed gradient lookup table of packed ARGB colors
+ * */
+public class ColorLut {
+
+    public static final int DEFAULT_RESOLUTION = 1024;
+
+    /**
+     * @return a lookup table of the full hue circle at the given saturation and brightness, same as {@link Color#getHSBColor(float, float, float)}
+     * */
+    @NotNull
+    public static ColorLut hsb(int resolution, float saturation, float brightness) {
+        final int[] colors = new int[Math.max(resolution, 1)];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = Color.HSBtoRGB((float) i / colors.length, saturation, brightness);
+        }
+
+        return new ColorLut(colors);
+    }
+
+    /**
+     * @return a lookup table interpolating linearly (in RGB, alpha included) between evenly spaced color stops
+     * */
+    @NotNull
+    public static ColorLut gradient(int resolution, @NotNull Color... stops) {
+        if (stops.length == 0)
+            throw new IllegalArgumentException("Gradient needs at least one color stop");
+
+        final int[] colors = new int[Math.max(resolution, 1)];
+        final int segments = stops.length - 1;
+        for (int i = 0; i < colors.length; i++) {
+            final float t = colors.length > 1? (float) i / (colors.length - 1) * segments: 0;
+            final int s = Math.min((int) t, Math.max(segments - 1, 0));
+            final Color a = stops[s], b = stops[Math.min(s + 1, segments)];
+            final float f = t - s;
+
+            final int alpha = Math.round(a.getAlpha() + (b.getAlpha() - a.getAlpha()) * f);
+            final int red = Math.round(a.getRed() + (b.getRed() - a.getRed()) * f);
+            final int green = Math.round(a.getGreen() + (b.getGreen() - a.getGreen()) * f);
+            final int blue = Math.round(a.getBlue() + (b.getBlue() - a.getBlue()) * f);
+            colors[i] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+        }
+
+        return new ColorLut(colors);
+    }
+
+    @NotNull
+    private final int[] mColors;
+
+    /**
+     * @param colors packed ARGB colors, from the start to the end of the gradient. Not copied
+     * */
+    public ColorLut(@NotNull int[] colors) {
+        if (colors.length == 0)
+            throw new IllegalArgumentException("Color lookup table must not be empty");
+
+        mColors = colors;
+    }
+
+    public int resolution() {
+        return mColors.length;
+    }
+
+    /**
+     * @param fraction position in the gradient, in range [0, 1]
+     * */
+    public int get(float fraction) {
+        final int i = (int) (fraction * mColors.length);
+        return mColors[i < 0? 0: i >= mColors.length? mColors.length - 1: i];
+    }
+
+    /**
+     * @return color for position {@code index / count} in the gradient
+     * */
+    public int get(int index, int count) {
+        if (count <= 0)
+            return mColors[0];
+
+        final int i = (int) ((long) index * mColors.length / count);
+        return mColors[i < 0? 0: i >= mColors.length? mColors.length - 1: i];
+    }
+
+}
@@ -1,5 +1,6 @@
 package attractors;
 
+import math.TrajectoryBuffer;
 import math.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -30,7 +31,29 @@ public interface DrawConfig {
     @Nullable
     Color drawingFill();
 
+    /**
+     * Slow path color of a point. Prefer {@link #argbForPoint(float, float, float, int, int)} or the bulk
+     * {@link #argbForRange(TrajectoryBuffer, int, int, int, int, int[], int)} in render loops
+     * */
     @NotNull
     Color colorForPoint(@NotNull Vector v, int index, int count);
 
+    /**
+     * @return packed ARGB color of a point. Default implementation bridges to {@link #colorForPoint(Vector, int, int)}
+     * */
+    default int argbForPoint(float x, float y, float z, int index, int count) {
+        return colorForPoint(new Vector(x, y, z), index, count).getRGB();
+    }
+
+    /**
+     * Fills packed ARGB colors of the points at logical indices [{@code from}, {@code to}) of the buffer into
+     * {@code out} starting at {@code outOffset}. The point at index {@code i} is colored as index
+     * {@code (i + indexOffset) % count} out of {@code count}
+     * */
+    default void argbForRange(@NotNull TrajectoryBuffer buffer, int from, int to, int indexOffset, int count, @NotNull int[] out, int outOffset) {
+        for (int i = from; i < to; i++) {
+            out[outOffset++] = argbForPoint(buffer.x(i), buffer.y(i), buffer.z(i), (i + indexOffset) % count, count);
+        }
+    }
+
 }
@@ -1,5 +1,6 @@
 package attractors;
 
+import math.TrajectoryBuffer;
 import math.Vector;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -12,6 +13,24 @@ public class HsbDrawConfig implements DrawConfig {
     private static final Color COLOR_ACCENT = new Color(255, 219, 77, 255);
     private static final Color COLOR_ACCENT2 = new Color(77, 157, 255, 255);
 
+    @NotNull
+    private final ColorLut mPalette;
+
+    /**
+     * @param paletteResolution number of precomputed colors in the hue gradient
+     * */
+    public HsbDrawConfig(int paletteResolution) {
+        mPalette = ColorLut.hsb(paletteResolution, 1, 1);
+    }
+
+    public HsbDrawConfig() {
+        this(ColorLut.DEFAULT_RESOLUTION);
+    }
+
+    public int getPaletteResolution() {
+        return mPalette.resolution();
+    }
+
     @Override
     public float getStepPerMs() {
         return 0.0004f;
@@ -65,4 +84,21 @@ public class HsbDrawConfig implements DrawConfig {
         return Color.getHSBColor((float) index / count, 1, 1);
     }
 
+    @Override
+    public int argbForPoint(float x, float y, float z, int index, int count) {
+        return mPalette.get(index, count);
+    }
+
+    @Override
+    public void argbForRange(@NotNull TrajectoryBuffer buffer, int from, int to, int indexOffset, int count, @NotNull int[] out, int outOffset) {
+        final ColorLut palette = mPalette;
+        int index = (from + indexOffset) % count;
+        for (int i = from; i < to; i++) {
+            out[outOffset++] = palette.get(index, count);
+            if (++index == count) {
+                index = 0;
+            }
+        }
+    }
+
 }
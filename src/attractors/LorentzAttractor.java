@@ -1,7 +1,9 @@
 package attractors;
 
+import math.TrajectorySink;
 import math.Vector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class LorentzAttractor implements AttractorI {
 
@@ -56,11 +58,84 @@ public class LorentzAttractor implements AttractorI {
     @Override
     @NotNull
     public Vector calculateNextPoint(@NotNull Vector v, float dt) {
-        final float dx = a * (v.y - v.x) * dt;
-        final float dy = (v.x * (b - v.z) - v.y) * dt;
-        final float dz = ((v.x * v.y) - (c * v.z)) * dt;
+        final float[] state = { v.x, v.y, v.z };
+        step(state, 0, dt);
+        return new Vector(state[0], state[1], state[2]);
+    }
+
+    @Override
+    public void derivative(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        out[outOffset] = a * (y - x);
+        out[outOffset + 1] = x * (b - z) - y;
+        out[outOffset + 2] = (x * y) - (c * z);
+    }
+
+    @Override
+    public boolean hasJacobian() {
+        return true;
+    }
+
+    @Override
+    public void jacobian(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        out[outOffset] = -a;
+        out[outOffset + 1] = a;
+        out[outOffset + 2] = 0;
+
+        out[outOffset + 3] = b - z;
+        out[outOffset + 4] = -1;
+        out[outOffset + 5] = -x;
+
+        out[outOffset + 6] = y;
+        out[outOffset + 7] = x;
+        out[outOffset + 8] = -c;
+    }
+
+    @Override
+    public void step(@NotNull float[] state, int offset, float dt) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        state[offset] = x + a * (y - x) * dt;
+        state[offset + 1] = y + (x * (b - z) - y) * dt;
+        state[offset + 2] = z + ((x * y) - (c * z)) * dt;
+    }
+
+    @Override
+    public void integrate(@NotNull float[] state, int offset, float dt, int steps, @Nullable TrajectorySink sink) {
+        float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+        final float a = this.a, b = this.b, c = this.c;
+
+        for (int i = 0; i < steps; i++) {
+            final float dx = a * (y - x);
+            final float dy = x * (b - z) - y;
+            final float dz = (x * y) - (c * z);
+
+            x += dx * dt;
+            y += dy * dt;
+            z += dz * dt;
+            if (sink != null) {
+                sink.accept(x, y, z);
+            }
+        }
+
+        state[offset] = x;
+        state[offset + 1] = y;
+        state[offset + 2] = z;
+    }
+
+    public float getA() {
+        return a;
+    }
+
+    public float getB() {
+        return b;
+    }
 
-        return new Vector(v.x + dx, v.y + dy, v.z + dz);
+    public float getC() {
+        return c;
     }
 
     @Override
@@ -1,7 +1,9 @@
 package attractors;
 
+import math.TrajectorySink;
 import math.Vector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class LuChenAttractor implements AttractorI {
 
@@ -62,11 +64,88 @@ public class LuChenAttractor implements AttractorI {
 
     @Override
     public @NotNull Vector calculateNextPoint(@NotNull Vector v, float dt) {
-        final float dx = (a * (v.y - v.x)) * dt;
-        final float dy = ((v.x * (1 - v.z)) + (c * v.y) + u) * dt;
-        final float dz = ((v.x * v.y) - (b * v.z)) * dt;
+        final float[] state = { v.x, v.y, v.z };
+        step(state, 0, dt);
+        return new Vector(state[0], state[1], state[2]);
+    }
+
+    @Override
+    public void derivative(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        out[outOffset] = a * (y - x);
+        out[outOffset + 1] = (x * (1 - z)) + (c * y) + u;
+        out[outOffset + 2] = (x * y) - (b * z);
+    }
+
+    @Override
+    public boolean hasJacobian() {
+        return true;
+    }
+
+    @Override
+    public void jacobian(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        out[outOffset] = -a;
+        out[outOffset + 1] = a;
+        out[outOffset + 2] = 0;
+
+        out[outOffset + 3] = 1 - z;
+        out[outOffset + 4] = c;
+        out[outOffset + 5] = -x;
+
+        out[outOffset + 6] = y;
+        out[outOffset + 7] = x;
+        out[outOffset + 8] = -b;
+    }
+
+    @Override
+    public void step(@NotNull float[] state, int offset, float dt) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        state[offset] = x + (a * (y - x)) * dt;
+        state[offset + 1] = y + ((x * (1 - z)) + (c * y) + u) * dt;
+        state[offset + 2] = z + ((x * y) - (b * z)) * dt;
+    }
+
+    @Override
+    public void integrate(@NotNull float[] state, int offset, float dt, int steps, @Nullable TrajectorySink sink) {
+        float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+        final float a = this.a, b = this.b, c = this.c, u = this.u;
+
+        for (int i = 0; i < steps; i++) {
+            final float dx = a * (y - x);
+            final float dy = (x * (1 - z)) + (c * y) + u;
+            final float dz = (x * y) - (b * z);
+
+            x += dx * dt;
+            y += dy * dt;
+            z += dz * dt;
+            if (sink != null) {
+                sink.accept(x, y, z);
+            }
+        }
+
+        state[offset] = x;
+        state[offset + 1] = y;
+        state[offset + 2] = z;
+    }
+
+    public float getA() {
+        return a;
+    }
+
+    public float getB() {
+        return b;
+    }
+
+    public float getC() {
+        return c;
+    }
 
-        return new Vector(v.x + dx, v.y + dy, v.z + dz);
+    public float getU() {
+        return u;
     }
 
     @Override
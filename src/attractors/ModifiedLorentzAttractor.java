@@ -1,7 +1,9 @@
 package attractors;
 
+import math.TrajectorySink;
 import math.Vector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class ModifiedLorentzAttractor extends LorentzAttractor {
 
@@ -28,21 +30,97 @@ public class ModifiedLorentzAttractor extends LorentzAttractor {
 
 
     @Override
-    @NotNull
-    public Vector calculateNextPoint(@NotNull Vector v, float dt) {
-        final float x2_min_y2 = v.x * v.x - v.y * v.y;
-        final float x2_plus_y2 = v.x * v.x + v.y * v.y;
+    public void derivative(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
 
-        final float mag2d = (float) Math.sqrt(x2_plus_y2);
+        final float x2_min_y2 = x * x - y * y;
+        final float mag2d = (float) Math.sqrt(x * x + y * y);
 
-        final float dx = ((-(1 + a) * v.x  + a - c + v.z * v.y) / 3) + ((((1 - a) * x2_min_y2) + ((2 * (a + c - v.z)) * v.x * v.y)) / (3 * mag2d));
-        final float dy = (((c - a - v.z) * v.x - (a + 1) * v.y) / 3) + (((2 * (a - 1) * v.x * v.y) + ( a + c - v.z) * x2_min_y2) / (3 * mag2d));
-        final float dz = ((3 * v.x * v.x - v.y * v.y) * (v.y / 2)) - (b * v.z);
+        out[outOffset] = ((-(1 + a) * x  + a - c + z * y) / 3) + ((((1 - a) * x2_min_y2) + ((2 * (a + c - z)) * x * y)) / (3 * mag2d));
+        out[outOffset + 1] = (((c - a - z) * x - (a + 1) * y) / 3) + (((2 * (a - 1) * x * y) + ( a + c - z) * x2_min_y2) / (3 * mag2d));
+        out[outOffset + 2] = ((3 * x * x - y * y) * (y / 2)) - (b * z);
+    }
 
-        return new Vector(v.x + dx * dt, v.y + dy * dt, v.z + dz * dt);
+    @Override
+    public boolean hasJacobian() {
+        return true;
+    }
 
+    @Override
+    public void jacobian(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        final float x2_min_y2 = x * x - y * y;
+        final float r2 = x * x + y * y;
+        final float r3 = 3 * (float) Math.sqrt(r2);
+        final float acz = a + c - z;
+
+        // f1 = (-(1 + a) x + a - c + z y) / 3 + P / 3r,  P = (1 - a)(x^2 - y^2) + 2 (a + c - z) x y
+        final float p = (1 - a) * x2_min_y2 + 2 * acz * x * y;
+        final float px = 2 * (1 - a) * x + 2 * acz * y;
+        final float py = -2 * (1 - a) * y + 2 * acz * x;
+
+        // f2 = ((c - a - z) x - (a + 1) y) / 3 + Q / 3r,  Q = 2 (a - 1) x y + (a + c - z)(x^2 - y^2)
+        final float q = 2 * (a - 1) * x * y + acz * x2_min_y2;
+        final float qx = 2 * (a - 1) * y + 2 * acz * x;
+        final float qy = 2 * (a - 1) * x - 2 * acz * y;
+
+        // d(P / 3r)/dx = (P_x - P x / r^2) / 3r
+        out[outOffset] = -(1 + a) / 3 + (px - p * x / r2) / r3;
+        out[outOffset + 1] = z / 3 + (py - p * y / r2) / r3;
+        out[outOffset + 2] = y / 3 - 2 * x * y / r3;
+
+        out[outOffset + 3] = (c - a - z) / 3 + (qx - q * x / r2) / r3;
+        out[outOffset + 4] = -(a + 1) / 3 + (qy - q * y / r2) / r3;
+        out[outOffset + 5] = -x / 3 - x2_min_y2 / r3;
+
+        out[outOffset + 6] = 3 * x * y;
+        out[outOffset + 7] = 1.5f * x2_min_y2;
+        out[outOffset + 8] = -b;
+    }
 
+    @Override
+    public void step(@NotNull float[] state, int offset, float dt) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
 
+        final float x2_min_y2 = x * x - y * y;
+        final float x2_plus_y2 = x * x + y * y;
+
+        final float mag2d = (float) Math.sqrt(x2_plus_y2);
+
+        final float dx = ((-(1 + a) * x  + a - c + z * y) / 3) + ((((1 - a) * x2_min_y2) + ((2 * (a + c - z)) * x * y)) / (3 * mag2d));
+        final float dy = (((c - a - z) * x - (a + 1) * y) / 3) + (((2 * (a - 1) * x * y) + ( a + c - z) * x2_min_y2) / (3 * mag2d));
+        final float dz = ((3 * x * x - y * y) * (y / 2)) - (b * z);
+
+        state[offset] = x + dx * dt;
+        state[offset + 1] = y + dy * dt;
+        state[offset + 2] = z + dz * dt;
+    }
+
+    @Override
+    public void integrate(@NotNull float[] state, int offset, float dt, int steps, @Nullable TrajectorySink sink) {
+        float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+        final float a = this.a, b = this.b, c = this.c;
+
+        for (int i = 0; i < steps; i++) {
+            final float x2_min_y2 = x * x - y * y;
+            final float mag2d = (float) Math.sqrt(x * x + y * y);
+
+            final float dx = ((-(1 + a) * x  + a - c + z * y) / 3) + ((((1 - a) * x2_min_y2) + ((2 * (a + c - z)) * x * y)) / (3 * mag2d));
+            final float dy = (((c - a - z) * x - (a + 1) * y) / 3) + (((2 * (a - 1) * x * y) + ( a + c - z) * x2_min_y2) / (3 * mag2d));
+            final float dz = ((3 * x * x - y * y) * (y / 2)) - (b * z);
+
+            x += dx * dt;
+            y += dy * dt;
+            z += dz * dt;
+            if (sink != null) {
+                sink.accept(x, y, z);
+            }
+        }
+
+        state[offset] = x;
+        state[offset + 1] = y;
+        state[offset + 2] = z;
     }
 
 }
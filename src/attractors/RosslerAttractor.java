@@ -1,7 +1,9 @@
 package attractors;
 
+import math.TrajectorySink;
 import math.Vector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class RosslerAttractor implements AttractorI {
 
@@ -56,11 +58,84 @@ public class RosslerAttractor implements AttractorI {
     @Override
     @NotNull
     public Vector calculateNextPoint(@NotNull Vector v, float dt) {
-        final float dx = -(v.y + v.z) * dt;
-        final float dy = (v.x + (a * v.y)) * dt;
-        final float dz = (b + (v.z * (v.x - c))) * dt;
+        final float[] state = { v.x, v.y, v.z };
+        step(state, 0, dt);
+        return new Vector(state[0], state[1], state[2]);
+    }
+
+    @Override
+    public void derivative(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        out[outOffset] = -(y + z);
+        out[outOffset + 1] = x + (a * y);
+        out[outOffset + 2] = b + (z * (x - c));
+    }
+
+    @Override
+    public boolean hasJacobian() {
+        return true;
+    }
+
+    @Override
+    public void jacobian(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset) {
+        final float x = state[offset], z = state[offset + 2];
+
+        out[outOffset] = 0;
+        out[outOffset + 1] = -1;
+        out[outOffset + 2] = -1;
+
+        out[outOffset + 3] = 1;
+        out[outOffset + 4] = a;
+        out[outOffset + 5] = 0;
+
+        out[outOffset + 6] = z;
+        out[outOffset + 7] = 0;
+        out[outOffset + 8] = x - c;
+    }
+
+    @Override
+    public void step(@NotNull float[] state, int offset, float dt) {
+        final float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+
+        state[offset] = x - (y + z) * dt;
+        state[offset + 1] = y + (x + (a * y)) * dt;
+        state[offset + 2] = z + (b + (z * (x - c))) * dt;
+    }
+
+    @Override
+    public void integrate(@NotNull float[] state, int offset, float dt, int steps, @Nullable TrajectorySink sink) {
+        float x = state[offset], y = state[offset + 1], z = state[offset + 2];
+        final float a = this.a, b = this.b, c = this.c;
+
+        for (int i = 0; i < steps; i++) {
+            final float dx = -(y + z);
+            final float dy = x + (a * y);
+            final float dz = b + (z * (x - c));
+
+            x += dx * dt;
+            y += dy * dt;
+            z += dz * dt;
+            if (sink != null) {
+                sink.accept(x, y, z);
+            }
+        }
+
+        state[offset] = x;
+        state[offset + 1] = y;
+        state[offset + 2] = z;
+    }
+
+    public float getA() {
+        return a;
+    }
+
+    public float getB() {
+        return b;
+    }
 
-        return new Vector(v.x + dx, v.y + dy, v.z + dz);
+    public float getC() {
+        return c;
     }
 
     @Override
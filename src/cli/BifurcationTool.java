@@ -0,0 +1,99 @@
+package cli;
+
+import analysis.BifurcationDiagram;
+import attractors.Attractors;
+import integrators.Integrators;
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line tool that renders the bifurcation diagram of a built-in attractor to a PNG image, see {@link #USAGE}
+ * */
+public class BifurcationTool {
+
+    public static final String USAGE = "Usage: BifurcationTool --attractor <name> --param <name> --from <value> --to <value> [options]\n\n" +
+            "  --attractor <name>      lorentz, modified_lorentz, rossler, lu_chen, chua\n" +
+            "  --param <name>          parameter to sweep, e.g. c for rossler or b (rho) for lorentz\n" +
+            "  --from, --to <value>    sweep range\n" +
+            "  --set <n=v,...>         other parameters, defaults otherwise\n" +
+            "  --coord <x|y|z>         coordinate whose local maxima are plotted (default x)\n" +
+            "  --range <min:max>       plotted range of the maxima (default: estimated)\n" +
+            "  --integrator <name>     euler, midpoint, heun, rk4, rk45 (default rk4)\n" +
+            "  --dt <value>            step size (default 0.005)\n" +
+            "  --transient <steps>     steps discarded per column (default 20000)\n" +
+            "  --steps <steps>         steps recorded per column (default 100000)\n" +
+            "  --width, --height <px>  image size, width = number of parameter values (default 4096x2048)\n" +
+            "  --threads <n>           worker threads (default: all cores)\n" +
+            "  --out <file.png>        output image (default bifurcation.png)\n";
+
+    public static void main(String[] args) {
+        CliArgs.launch(args, USAGE, "Failed to write the image", BifurcationTool::run);
+    }
+
+    private static int parseCoordinate(@NotNull String coord) {
+        switch (coord.toLowerCase()) {
+            case "x": return 0;
+            case "y": return 1;
+            case "z": return 2;
+            default: throw new CliArgs.CliException("Invalid coordinate: " + coord + ", expected x, y or z");
+        }
+    }
+
+    private static void run(@NotNull CliArgs args) throws IOException {
+        final Attractors system = args.getAttractor("attractor", Attractors.LORENTZ);
+        final String paramName = args.requireString("param");
+        final int paramIndex = system.parameterIndex(paramName);
+        if (paramIndex == -1)
+            throw new CliArgs.CliException(system.displayName + " has no parameter " + paramName + ", expected one of " + CliArgs.parameterNames(system));
+
+        final float from = args.getFloat("from", Float.NaN), to = args.getFloat("to", Float.NaN);
+        if (Float.isNaN(from) || Float.isNaN(to))
+            throw new CliArgs.CliException("Missing sweep range --from, --to");
+
+        final float[] params = args.getParameters("set", system);
+        final int coordinate = parseCoordinate(args.getString("coord", "x"));
+        final float[] range = args.getRange("range", null);
+        final Integrators integrator = args.getIntegrator("integrator", Integrators.RK4);
+        final float dt = args.getFloat("dt", 0.005f);
+        final int transientSteps = args.getInt("transient", 20_000);
+        final int steps = args.getInt("steps", 100_000);
+        final int width = args.getInt("width", 4096), height = args.getInt("height", 2048);
+        final int threads = args.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final File out = new File(args.getString("out", "bifurcation.png"));
+        args.checkAllUsed();
+
+        final BifurcationDiagram diagram = new BifurcationDiagram(system, params, paramIndex, from, to, coordinate,
+                integrator.create(), dt, transientSteps, steps, width, height);
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+        try {
+            final long start = System.nanoTime();
+            float[] valueRange = range;
+            if (valueRange == null) {
+                valueRange = diagram.estimateValueRange(pool);
+                if (valueRange == null) {
+                    System.err.println("All sampled trajectories diverged, nothing to plot");
+                    System.exit(1);
+                    return;
+                }
+            }
+
+            System.out.printf("%s: %s from %s to %s, maxima of %s in [%.3f, %.3f], %d columns x %d steps on %d threads%n",
+                    system.displayName, system.parameterName(paramIndex), from, to, "xyz".charAt(coordinate),
+                    valueRange[0], valueRange[1], width, steps, pool.getParallelism());
+
+            diagram.compute(pool, valueRange[0], valueRange[1]);
+            System.out.printf("Computed in %.2f s%n", (System.nanoTime() - start) / 1e9);
+        } finally {
+            pool.shutdown();
+        }
+
+        ImageIO.write(diagram.toImage(0xFFFFFF, 0x101010), "png", out);
+        System.out.println("Saved " + out.getAbsolutePath());
+    }
+
+}
@@ -0,0 +1,351 @@
+package cli;
+
+import attractors.Attractors;
+import integrators.Integrators;
+import maps.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Minimal parser for command lines of the form {@code --key value --flag}.
+ *
+ * <p>
+ * Every getter marks its key as used, so that {@link #checkAllUsed()} can reject misspelled options
+ * once a tool has read all the options it understands
+ * <p>
+ * */
+public class CliArgs {
+
+    /**
+     * Thrown on malformed or unknown options, with a message meant for the user
+     * */
+    public static class CliException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 4830961177502953260L;
+
+        public CliException(@NotNull String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Body of a command line tool, see {@link #launch}
+     * */
+    public interface Tool {
+
+        void run(@NotNull CliArgs args) throws IOException;
+    }
+
+    /**
+     * Shutdown hook installed by {@link #onInterrupt}. Closing it removes the hook, once the tool is done
+     * */
+    public static final class Interrupt implements AutoCloseable {
+
+        @NotNull
+        private final Thread mHook;
+
+        private Interrupt(@NotNull Thread hook) {
+            mHook = hook;
+        }
+
+        @Override
+        public void close() {
+            try {
+                Runtime.getRuntime().removeShutdownHook(mHook);
+            } catch (IllegalStateException ignored) {
+                // already shutting down
+            }
+        }
+    }
+
+    /**
+     * Runs a tool from its {@code main}: prints the usage if there are no arguments or on {@code --help}, and exits with
+     * status 2 on a {@link CliException} (after printing it with the usage) and 1 on an {@link IOException}
+     *
+     * @param ioFailure what failed on an {@link IOException}, e.g. "Failed to write the image"
+     * */
+    public static void launch(@NotNull String[] args, @NotNull String usage, @NotNull String ioFailure, @NotNull Tool tool) {
+        if (args.length == 0 || args[0].equals("--help")) {
+            System.out.println(usage);
+            return;
+        }
+
+        try {
+            tool.run(new CliArgs(args));
+        } catch (CliException e) {
+            System.err.println(e.getMessage() + "\n\n" + usage);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println(ioFailure + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Makes an interrupt (Ctrl-C) call {@code cancel} and then wait for the calling thread to finish, so that the tool
+     * can stop its work early and still save what is done
+     *
+     * @return the hook, to close once the work is saved
+     * */
+    @NotNull
+    public static Interrupt onInterrupt(@NotNull Runnable cancel) {
+        final Thread main = Thread.currentThread();
+        final Thread hook = new Thread(() -> {
+            cancel.run();
+            try {
+                main.join();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        Runtime.getRuntime().addShutdownHook(hook);
+        return new Interrupt(hook);
+    }
+
+    @NotNull
+    private final Map<String, String> mValues = new LinkedHashMap<>();
+    @NotNull
+    private final Map<String, Boolean> mUsed = new LinkedHashMap<>();
+
+    public CliArgs(@NotNull String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (!arg.startsWith("--") || arg.length() == 2)
+                throw new CliException("Expected an option starting with --, given: " + arg);
+
+            String key = arg.substring(2);
+            String value;
+            final int eq = key.indexOf('=');
+            if (eq != -1) {
+                value = key.substring(eq + 1);
+                key = key.substring(0, eq);
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                value = args[++i];
+            } else {
+                value = null;         // flag
+            }
+
+            mValues.put(key, value);
+            mUsed.put(key, false);
+        }
+    }
+
+    public boolean has(@NotNull String key) {
+        if (!mValues.containsKey(key))
+            return false;
+
+        mUsed.put(key, true);
+        return true;
+    }
+
+    @Nullable
+    public String getString(@NotNull String key, @Nullable String def) {
+        if (!has(key))
+            return def;
+
+        final String value = mValues.get(key);
+        if (value == null)
+            throw new CliException("Option --" + key + " needs a value");
+        return value;
+    }
+
+    @NotNull
+    public String requireString(@NotNull String key) {
+        final String value = getString(key, null);
+        if (value == null)
+            throw new CliException("Missing option --" + key);
+        return value;
+    }
+
+    public float getFloat(@NotNull String key, float def) {
+        final String value = getString(key, null);
+        if (value == null)
+            return def;
+
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            throw new CliException("Option --" + key + " expects a number, given: " + value);
+        }
+    }
+
+    public int getInt(@NotNull String key, int def) {
+        final String value = getString(key, null);
+        if (value == null)
+            return def;
+
+        try {
+            return Integer.parseInt(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new CliException("Option --" + key + " expects an integer, given: " + value);
+        }
+    }
+
+    public long getLong(@NotNull String key, long def) {
+        final String value = getString(key, null);
+        if (value == null)
+            return def;
+
+        try {
+            return Long.parseLong(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new CliException("Option --" + key + " expects an integer, given: " + value);
+        }
+    }
+
+    /**
+     * Parses a range given as {@code min:max}
+     *
+     * @return {min, max}, or {@code def} if the option is absent
+     * */
+    @Nullable
+    public float[] getRange(@NotNull String key, @Nullable float[] def) {
+        final String value = getString(key, null);
+        if (value == null)
+            return def;
+
+        final int sep = value.indexOf(':', 1);          // skip a leading minus sign
+        if (sep == -1)
+            throw new CliException("Option --" + key + " expects min:max, given: " + value);
+
+        try {
+            return new float[] { Float.parseFloat(value.substring(0, sep)), Float.parseFloat(value.substring(sep + 1)) };
+        } catch (NumberFormatException e) {
+            throw new CliException("Option --" + key + " expects min:max, given: " + value);
+        }
+    }
+
+    @NotNull
+    public Attractors getAttractor(@NotNull String key, @NotNull Attractors def) {
+        final String value = getString(key, null);
+        if (value == null)
+            return def;
+
+        final Attractors attractor = Attractors.fromName(value);
+        if (attractor == null)
+            throw new CliException("Unknown attractor: " + value + ", expected one of " + ids(Attractors.values()));
+        return attractor;
+    }
+
+    @NotNull
+    public Maps getMap(@NotNull String key, @NotNull Maps def) {
+        final String value = getString(key, null);
+        if (value == null)
+            return def;
+
+        final Maps map = Maps.fromName(value);
+        if (map == null)
+            throw new CliException("Unknown map: " + value + ", expected one of " + ids(Maps.values()));
+        return map;
+    }
+
+    @Nullable
+    public Integrators getIntegrator(@NotNull String key, @Nullable Integrators def) {
+        final String value = getString(key, null);
+        if (value == null)
+            return def;
+
+        final Integrators integrator = Integrators.fromName(value);
+        if (integrator == null)
+            throw new CliException("Unknown integrator: " + value + ", expected one of " + ids(Integrators.values()));
+        return integrator;
+    }
+
+    /**
+     * Reads the parameters of the attractor: the defaults, overridden by {@code --key name=value,name=value}
+     * */
+    @NotNull
+    public float[] getParameters(@NotNull String key, @NotNull Attractors attractor) {
+        return getParameters(key, attractor.defaults(), attractor.displayName, attractor::parameterIndex, parameterNames(attractor));
+    }
+
+    /**
+     * Reads the parameters of the map: the defaults, overridden by {@code --key name=value,name=value}
+     * */
+    @NotNull
+    public float[] getParameters(@NotNull String key, @NotNull Maps map) {
+        return getParameters(key, map.defaults(), map.displayName, map::parameterIndex, parameterNames(map));
+    }
+
+    @NotNull
+    private float[] getParameters(@NotNull String key, @NotNull float[] params, @NotNull String displayName,
+                                  @NotNull ToIntFunction<String> indexOf, @NotNull String names) {
+        final String value = getString(key, null);
+        if (value == null)
+            return params;
+
+        for (String assignment: value.split(",")) {
+            final int eq = assignment.indexOf('=');
+            if (eq == -1)
+                throw new CliException("Option --" + key + " expects name=value pairs, given: " + assignment);
+
+            final String name = assignment.substring(0, eq).trim();
+            final int index = indexOf.applyAsInt(name);
+            if (index == -1)
+                throw new CliException(displayName + " has no parameter " + name + ", expected one of " + names);
+
+            try {
+                params[index] = Float.parseFloat(assignment.substring(eq + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new CliException("Parameter " + name + " expects a number, given: " + assignment.substring(eq + 1));
+            }
+        }
+
+        return params;
+    }
+
+    /**
+     * @throws CliException if some option was never read
+     * */
+    public void checkAllUsed() {
+        for (Map.Entry<String, Boolean> e: mUsed.entrySet()) {
+            if (!e.getValue())
+                throw new CliException("Unknown option --" + e.getKey());
+        }
+    }
+
+    @NotNull
+    public static String parameterNames(@NotNull Attractors attractor) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < attractor.parameterCount(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(attractor.parameterName(i));
+        }
+
+        return sb.toString();
+    }
+
+    @NotNull
+    public static String parameterNames(@NotNull Maps map) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < map.parameterCount(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(map.parameterName(i));
+        }
+
+        return sb.toString();
+    }
+
+    @NotNull
+    private static String ids(@NotNull Enum<?>[] values) {
+        final StringBuilder sb = new StringBuilder();
+        for (Enum<?> v: values) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(v.name().toLowerCase());
+        }
+
+        return sb.toString();
+    }
+
+}
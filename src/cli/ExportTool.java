@@ -0,0 +1,196 @@
+package cli;
+
+import attractors.AttractorI;
+import attractors.Attractors;
+import integrators.IntegratorI;
+import integrators.Integrators;
+import io.Checkpoint;
+import io.TrajectoryHeader;
+import io.TrajectoryReader;
+import io.TrajectoryWriter;
+import org.jetbrains.annotations.NotNull;
+import sim.SimulationThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Command line tool that integrates a long run of a built-in attractor into a binary trajectory file, or prints the
+ * header of such a file, see {@link #USAGE}. Interrupting the tool (Ctrl-C) keeps a valid file with the points so far
+ * */
+public class ExportTool {
+
+    /**
+     * Steps per second of the interactive sketch, the default step size
+     * */
+    private static final float DEFAULT_STEPS_PER_SECOND = 1000;
+
+    /* Steps integrated between progress reports and cancellation checks */
+    private static final int BATCH_STEPS = 1 << 20;
+
+    public static final String USAGE = "Usage: ExportTool --attractor <name> --points <n> [options]\n" +
+            "       ExportTool --info <file.trj>\n\n" +
+            "  --attractor <name>       lorentz, modified_lorentz, rossler, lu_chen, chua\n" +
+            "  --set <n=v,...>          parameters, defaults otherwise\n" +
+            "  --integrator <name>      euler, midpoint, heun, rk4, rk45 (default: the attractor's own)\n" +
+            "  --dt <value>             step size (default: as in the interactive sketch)\n" +
+            "  --points <n>             points to write\n" +
+            "  --stride <steps>         integration steps per written point (default 1)\n" +
+            "  --transient <steps>      steps integrated before the first point (default 0)\n" +
+            "  --precision <32|64>      bits per coordinate (default 32)\n" +
+            "  --out <file.trj>         output file (default <attractor>.trj)\n" +
+            "  --checkpoint <file>      save the final state there, to continue the run later\n" +
+            "  --resume <file>          continue from a checkpoint instead of the initial state, with its\n" +
+            "                           attractor, parameters, integrator and step size (--attractor, --set,\n" +
+            "                           --integrator and --dt do not apply)\n" +
+            "  --info <file.trj>        print the header and the first and last points of a file\n";
+
+    public static void main(String[] args) {
+        CliArgs.launch(args, USAGE, "I/O error", cli -> {
+            final String info = cli.getString("info", null);
+            if (info != null) {
+                cli.checkAllUsed();
+                info(new File(info));
+            } else {
+                run(cli);
+            }
+        });
+    }
+
+    private static void info(@NotNull File file) throws IOException {
+        try (TrajectoryReader reader = new TrajectoryReader(file)) {
+            final long n = reader.size();
+            System.out.println(reader.getHeader());
+            System.out.printf("%d points, t = %.6g%n", n, reader.timeAt(Math.max(n - 1, 0)));
+            if (n > 0) {
+                System.out.printf("first: (%s, %s, %s)%nlast:  (%s, %s, %s)%n", reader.x(0), reader.y(0), reader.z(0),
+                        reader.x(n - 1), reader.y(n - 1), reader.z(n - 1));
+            }
+        }
+    }
+
+    /* Options that the checkpoint decides when resuming */
+    private static final String[] RESUME_FIXED_OPTIONS = { "attractor", "set", "integrator", "dt" };
+
+    private static void run(@NotNull CliArgs args) throws IOException {
+        final String resume = args.getString("resume", null);
+        if (resume != null) {
+            for (String option: RESUME_FIXED_OPTIONS) {
+                if (args.has(option))
+                    throw new CliArgs.CliException("Option --" + option + " does not apply with --resume, the run continues with the "
+                            + "attractor, parameters, integrator and step size of the checkpoint");
+            }
+        }
+
+        final Checkpoint from = resume != null? Checkpoint.read(new File(resume)): null;
+
+        final AttractorI attractor;
+        final IntegratorI integrator;
+        if (from != null) {
+            final AttractorI a = from.createAttractor();
+            final IntegratorI i = from.createIntegrator();
+            if (a == null || i == null)
+                throw new CliArgs.CliException("Unknown attractor or integrator in checkpoint " + resume + ": " + from);
+            attractor = a;
+            integrator = i;
+        } else {
+            final Attractors system = args.getAttractor("attractor", Attractors.LORENTZ);
+            attractor = system.create(args.getParameters("set", system));
+            final Integrators integratorKind = args.getIntegrator("integrator", null);
+            integrator = integratorKind != null? integratorKind.create(): attractor.createIntegrator();
+        }
+
+        final Attractors system = Attractors.of(attractor);
+        final float dt = from != null? from.dt: args.getFloat("dt", SimulationThread.fixedStep(attractor, DEFAULT_STEPS_PER_SECOND));
+        final long points = args.getLong("points", -1);
+        if (points < 0)
+            throw new CliArgs.CliException("Missing option --points");
+
+        final int stride = Math.max(args.getInt("stride", 1), 1);
+        final int transientSteps = args.getInt("transient", 0);
+        final int bits = args.getInt("precision", 32);
+        if (bits != 32 && bits != 64)
+            throw new CliArgs.CliException("Option --precision expects 32 or 64, given: " + bits);
+
+        final File out = new File(args.getString("out", (system != null? system.id(): "trajectory") + ".trj"));
+        final String checkpointPath = args.getString("checkpoint", null);
+        args.checkAllUsed();
+
+        final TrajectoryHeader header = TrajectoryHeader.of(attractor, integrator, dt, stride, bits / 8);
+        System.out.printf("%s: %d points to %s%n", header, points, out.getAbsolutePath());
+
+        final float[] state = new float[AttractorI.STATE_SIZE];
+        long steps = 0;
+        double time = 0;
+        if (from != null) {
+            System.arraycopy(from.state, 0, state, 0, state.length);
+            steps = from.steps;
+            time = from.time;
+            System.out.println("Resuming " + from);
+        } else {
+            attractor.getStart(state, 0);
+        }
+
+        if (transientSteps > 0) {
+            integrator.integrate(attractor, state, 0, dt, transientSteps, null);
+            steps += transientSteps;
+            time += (double) transientSteps * dt;
+        }
+
+        // Ctrl-C: stop after the current batch, and let the main thread finish the file
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final CliArgs.Interrupt interrupt = CliArgs.onInterrupt(() -> cancelled.set(true));
+
+        final long start = System.nanoTime();
+        long written = 0;
+        try (TrajectoryWriter writer = new TrajectoryWriter(out, header)) {
+            if (from == null) {
+                writer.write(state[0], state[1], state[2]);         // a resumed run continues after the last point of the previous one
+                written = 1;
+            }
+
+            long nextReport = System.nanoTime() + 1_000_000_000L;
+            while (written < points && !cancelled.get()) {
+                final long batchSteps;
+                if (stride == 1) {
+                    final int n = (int) Math.min(points - written, BATCH_STEPS);
+                    integrator.integrate(attractor, state, 0, dt, n, writer);
+                    written += n;
+                    batchSteps = n;
+                } else {
+                    final long end = Math.min(points, written + Math.max(BATCH_STEPS / stride, 1));
+                    batchSteps = (end - written) * stride;
+                    for (; written < end; written++) {
+                        integrator.integrate(attractor, state, 0, dt, stride, null);
+                        writer.write(state[0], state[1], state[2]);
+                    }
+                }
+                steps += batchSteps;
+                time += (double) batchSteps * dt;
+
+                if (!Float.isFinite(state[0] + state[1] + state[2])) {
+                    System.err.println("Trajectory diverged after " + written + " points");
+                    break;
+                }
+
+                final long now = System.nanoTime();
+                if (now >= nextReport) {
+                    System.out.printf("%.1f%%  (%.1f M points/s)%n", written * 100d / points, written / ((now - start) / 1e3));
+                    nextReport = now + 1_000_000_000L;
+                }
+            }
+        }
+
+        System.out.printf("Wrote %d points in %.2f s%n", written, (System.nanoTime() - start) / 1e9);
+        if (checkpointPath != null) {
+            // the next run resumes after the last point written, with a stride of its own
+            final Checkpoint checkpoint = Checkpoint.of(attractor, integrator, state, steps, time, dt, 0, 1, null);
+            checkpoint.write(new File(checkpointPath));
+            System.out.println("Saved checkpoint (" + checkpoint + ") to " + checkpointPath);
+        }
+
+        interrupt.close();
+    }
+
+}
@@ -0,0 +1,110 @@
+package cli;
+
+import analysis.LyapunovMap;
+import attractors.Attractors;
+import integrators.Integrators;
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line tool that renders the largest Lyapunov exponent over a plane of two parameters of a built-in attractor
+ * to a PNG image, see {@link #USAGE}. The image is rewritten after every refinement pass, and interrupting the tool
+ * (Ctrl-C) keeps the last complete pass
+ * */
+public class LyapunovMapTool {
+
+    public static final String USAGE = "Usage: LyapunovMapTool --attractor <name> --x <name> --x-range <min:max> --y <name> --y-range <min:max> [options]\n\n" +
+            "  --attractor <name>       lorentz, modified_lorentz, rossler, lu_chen, chua\n" +
+            "  --x, --y <name>          parameters along the width and the height, e.g. alpha and beta for chua\n" +
+            "  --x-range, --y-range     parameter ranges, min:max\n" +
+            "  --set <n=v,...>          other parameters, defaults otherwise\n" +
+            "  --integrator <name>      euler, midpoint, heun, rk4, rk45 (default euler)\n" +
+            "  --dt <value>             step size (default 0.005)\n" +
+            "  --transient <steps>      steps discarded per cell (default 4000)\n" +
+            "  --renorm-steps <steps>   steps between renormalizations (default 10)\n" +
+            "  --renorms <n>            renormalizations averaged per cell (default 400)\n" +
+            "  --width, --height <px>   image size (default 256x256)\n" +
+            "  --tile <px>              tile size (default " + LyapunovMap.DEFAULT_TILE_SIZE + ")\n" +
+            "  --scale <value>          exponent magnitude that saturates the colors (default 1)\n" +
+            "  --threads <n>            worker threads (default: all cores)\n" +
+            "  --out <file.png>         output image (default lyapunov_map.png)\n";
+
+    public static void main(String[] args) {
+        CliArgs.launch(args, USAGE, "Failed to write the image", LyapunovMapTool::run);
+    }
+
+    private static int requireParam(@NotNull Attractors system, @NotNull String name) {
+        final int index = system.parameterIndex(name);
+        if (index == -1)
+            throw new CliArgs.CliException(system.displayName + " has no parameter " + name + ", expected one of " + CliArgs.parameterNames(system));
+        return index;
+    }
+
+    private static void save(@NotNull LyapunovMap map, float scale, @NotNull File out) {
+        try {
+            ImageIO.write(map.toImage(scale), "png", out);
+        } catch (IOException e) {
+            System.err.println("Failed to write the image: " + e.getMessage());
+        }
+    }
+
+    private static void run(@NotNull CliArgs args) {
+        final Attractors system = args.getAttractor("attractor", Attractors.CHUA);
+        final int paramX = requireParam(system, args.requireString("x"));
+        final int paramY = requireParam(system, args.requireString("y"));
+        final float[] xRange = args.getRange("x-range", null), yRange = args.getRange("y-range", null);
+        if (xRange == null || yRange == null)
+            throw new CliArgs.CliException("Missing parameter ranges --x-range, --y-range");
+
+        final float[] params = args.getParameters("set", system);
+        final Integrators integrator = args.getIntegrator("integrator", Integrators.EULER);
+        final float dt = args.getFloat("dt", 0.005f);
+        final int transientSteps = args.getInt("transient", 4000);
+        final int renormSteps = args.getInt("renorm-steps", 10);
+        final int renorms = args.getInt("renorms", 400);
+        final int width = args.getInt("width", 256), height = args.getInt("height", 256);
+        final int tile = args.getInt("tile", LyapunovMap.DEFAULT_TILE_SIZE);
+        final float scale = args.getFloat("scale", 1);
+        final int threads = args.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final File out = new File(args.getString("out", "lyapunov_map.png"));
+        args.checkAllUsed();
+
+        final LyapunovMap map = new LyapunovMap(system, params, paramX, xRange[0], xRange[1], paramY, yRange[0], yRange[1],
+                integrator.create(), dt, transientSteps, renormSteps, renorms, width, height, tile);
+
+        System.out.printf("%s: %s in [%s, %s] x %s in [%s, %s], %dx%d cells on %d threads%n", system.displayName,
+                system.parameterName(paramX), xRange[0], xRange[1], system.parameterName(paramY), yRange[0], yRange[1],
+                width, height, threads);
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+        // Ctrl-C: stop after the cells in flight, and let the main thread save what is done
+        final CliArgs.Interrupt interrupt = CliArgs.onInterrupt(map::cancel);
+
+        final long start = System.nanoTime();
+        final boolean complete;
+        try {
+            complete = map.compute(pool, new LyapunovMap.Listener() {
+                @Override
+                public void onPassDone(int pass, int spacing) {
+                    System.out.printf("Pass %d (%d px cells) done in %.2f s%n", pass, spacing, (System.nanoTime() - start) / 1e9);
+                    save(map, scale, out);
+                }
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (!complete) {
+            System.out.printf("Cancelled at %.0f%%%n", map.getProgress() * 100);
+            save(map, scale, out);          // the last pass is partially refined
+        }
+
+        System.out.println("Saved " + out.getAbsolutePath());
+        interrupt.close();
+    }
+
+}
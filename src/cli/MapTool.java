@@ -0,0 +1,130 @@
+package cli;
+
+import attractors.ColorLut;
+import maps.MapI;
+import maps.Maps;
+import org.jetbrains.annotations.NotNull;
+import render.MapDensityRenderer;
+import render.TiledDensityRenderer;
+import render.ToneMapper;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Command line tool that renders the density of a built-in map's attractor to a PNG image, iterating it on all cores,
+ * see {@link #USAGE} and {@link MapDensityRenderer}. Images too large for the heap are rendered in strips within the memory
+ * budget and streamed to the file, see {@link TiledDensityRenderer}. Interrupting the tool (Ctrl-C) saves the points counted so far
+ * */
+public class MapTool {
+
+    public static final String DEFAULT_COLORS = "08080c,2a1b4a,8c2f6b,e8615a,ffc27a,fff6e0";
+
+    public static final String USAGE = "Usage: MapTool --map <name> [options]\n\n" +
+            "  --map <name>             clifford, de_jong, henon, ikeda\n" +
+            "  --set <n=v,...>          parameters, defaults otherwise\n" +
+            "  --iterations <n>         points iterated in total (default 100_000_000)\n" +
+            "  --transient <n>          iterations discarded per thread (default " + MapDensityRenderer.DEFAULT_TRANSIENT + ")\n" +
+            "  --x, --y <min:max>       plane area of the image (default: fitted to the attractor)\n" +
+            "  --width, --height <px>   image size (default 2048x2048)\n" +
+            "  --gamma <value>          exponent of the tone curve, above 1 to bring out sparse regions (default " + ToneMapper.DEFAULT_GAMMA + ")\n" +
+            "  --colors <rrggbb,...>    gradient from empty to densest (default " + DEFAULT_COLORS + ")\n" +
+            "  --seed <n>               seed of the orbits (default 1)\n" +
+            "  --threads <n>            worker threads (default: all cores)\n" +
+            "  --memory <MB>            budget for the histograms, larger images share one and are rendered in strips,\n" +
+            "                           iterating once per strip\n" +
+            "                           (default: half the max heap)\n" +
+            "  --out <file.png>         output image (default map.png)\n";
+
+    public static void main(String[] args) {
+        CliArgs.launch(args, USAGE, "Failed to write the image", MapTool::run);
+    }
+
+    @NotNull
+    static ColorLut parseColors(@NotNull String colors) {
+        final String[] hex = colors.split(",");
+        final Color[] stops = new Color[hex.length];
+        for (int i = 0; i < hex.length; i++) {
+            final String h = hex[i].trim().replace("#", "");
+            try {
+                if (h.length() != 6)
+                    throw new NumberFormatException();
+                stops[i] = new Color(Integer.parseInt(h, 16));
+            } catch (NumberFormatException e) {
+                throw new CliArgs.CliException("Option --colors expects rrggbb hex colors, given: " + hex[i]);
+            }
+        }
+
+        return ColorLut.gradient(ColorLut.DEFAULT_RESOLUTION, stops);
+    }
+
+    private static void run(@NotNull CliArgs args) throws IOException {
+        final Maps kind = args.getMap("map", Maps.CLIFFORD);
+        final float[] params = args.getParameters("set", kind);
+        final long iterations = args.getLong("iterations", 100_000_000L);
+        final int transientIterations = args.getInt("transient", MapDensityRenderer.DEFAULT_TRANSIENT);
+        final float[] xRange = args.getRange("x", null), yRange = args.getRange("y", null);
+        final int width = args.getInt("width", 2048), height = args.getInt("height", 2048);
+        final float gamma = args.getFloat("gamma", ToneMapper.DEFAULT_GAMMA);
+        final ColorLut palette = parseColors(args.getString("colors", DEFAULT_COLORS));
+        final long seed = args.getLong("seed", 1);
+        final int threads = args.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final long memory = args.getLong("memory", Runtime.getRuntime().maxMemory() / 2 >> 20) << 20;
+        final File out = new File(args.getString("out", "map.png"));
+        args.checkAllUsed();
+
+        if ((xRange == null) != (yRange == null))
+            throw new CliArgs.CliException("Options --x and --y go together");
+
+        final MapI map = kind.create(params);
+        final MapDensityRenderer renderer = new MapDensityRenderer(map, width, height);
+        renderer.setTransient(transientIterations);
+        if (xRange != null) {
+            renderer.setBounds(xRange[0], xRange[1], yRange[0], yRange[1]);
+        } else if (!renderer.fitBounds()) {
+            System.err.println("The orbit of " + map.getTitle() + " escapes to infinity, nothing to render");
+            System.exit(1);
+            return;
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+        final TiledDensityRenderer tiled = new TiledDensityRenderer(renderer, memory);
+        final int strips = tiled.strips(pool.getParallelism());
+        if (strips == 0) {
+            pool.shutdown();
+            throw new CliArgs.CliException(String.format("Option --memory is too small for rows of %,d px, needs at least %,d MB",
+                    width, (MapDensityRenderer.sharedHistogramBytes(width) >> 20) + 1));
+        }
+
+        System.out.printf("%s: %,d iterations over [%.4f, %.4f] x [%.4f, %.4f], %dx%d px on %d threads%n", map.getTitle(), iterations,
+                renderer.xMin(), renderer.xMax(), renderer.yMin(), renderer.yMax(), width, height, pool.getParallelism());
+        if (strips > 1) {
+            System.out.printf("%d strips of %,d rows within %,d MB, iterating once per strip%n", strips, tiled.stripRows(pool.getParallelism()), memory >> 20);
+        }
+
+        // Ctrl-C: stop after the batches in flight, and let the main thread save what is counted
+        final CliArgs.Interrupt interrupt = CliArgs.onInterrupt(tiled::cancel);
+
+        final ToneMapper toneMapper = new ToneMapper(palette, gamma);
+        final long start = System.nanoTime();
+        final int max;
+        try {
+            max = tiled.render(pool, iterations, seed, toneMapper, out, (strip, count, done, total) ->
+                    System.out.printf("\r%3d%%  strip %d/%d  %.1f M it/s", done * 100 / total, strip + 1, count,
+                            done / 1e6 / ((System.nanoTime() - start) / 1e9)));
+        } finally {
+            pool.shutdown();
+        }
+
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        final long total = tiled.getIterations();
+        System.out.printf("%n%s %d of %d strips in %.2f s (%.1f M it/s), densest pixel: %,d%n", tiled.isCancelled()? "Cancelled after": "Rendered",
+                tiled.getStripsDone(), strips, seconds, total / 1e6 / seconds, max);
+
+        System.out.println("Saved " + out.getAbsolutePath());
+        interrupt.close();
+    }
+
+}
@@ -0,0 +1,122 @@
+package cli;
+
+import attractors.AttractorI;
+import attractors.Attractors;
+import integrators.IntegratorI;
+import integrators.Integrators;
+import org.jetbrains.annotations.NotNull;
+import render.FrameSink;
+import render.OfflineRenderer;
+import render.PngSequenceSink;
+import render.Projector;
+import sim.SimulationThread;
+import video.AsyncVideoWriter;
+import video.MjpegAviEncoder;
+import video.VideoFormat;
+import video.VideoFrameSink;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Command line tool that renders the trail of a built-in attractor to a numbered PNG sequence or a video file, without
+ * a display or GPU, see {@link #USAGE}. Interrupting the tool (Ctrl-C) keeps the frames written so far
+ * */
+public class RenderTool {
+
+    /**
+     * Steps per second of the interactive sketch, the default pace of the trail
+     * */
+    private static final float DEFAULT_STEPS_PER_SECOND = 1000;
+
+    public static final String USAGE = "Usage: RenderTool --attractor <name> [options]\n\n" +
+            "  --attractor <name>       lorentz, modified_lorentz, rossler, lu_chen, chua\n" +
+            "  --set <n=v,...>          parameters, defaults otherwise\n" +
+            "  --integrator <name>      euler, midpoint, heun, rk4, rk45 (default: the attractor's own)\n" +
+            "  --dt <value>             step size (default: as in the interactive sketch)\n" +
+            "  --frames <n>             frames to render (default 300)\n" +
+            "  --fps <n>                frame rate of the video, and of the default pace (default 30)\n" +
+            "  --steps-per-frame <n>    steps the trail advances by per frame (default: the interactive pace at --fps)\n" +
+            "  --skip <steps>           steps integrated before the first frame (default 0)\n" +
+            "  --trail <points>         max points of the trail (default: the attractor's)\n" +
+            "  --width, --height <px>   frame size (default 1920x1080)\n" +
+            "  --yaw, --pitch <deg>     camera rotation around the center (default " + OfflineRenderer.DEFAULT_YAW + ", " + OfflineRenderer.DEFAULT_PITCH + ")\n" +
+            "  --orbit <deg>            yaw added per frame (default 0)\n" +
+            "  --fov <deg>              field of view (default " + Projector.DEFAULT_FOV + ")\n" +
+            "  --zoom <value>           magnification, 1 fits the whole run (default 1)\n" +
+            "  --stroke <px>            line width (default " + OfflineRenderer.DEFAULT_STROKE_WEIGHT + ")\n" +
+            "  --threads <n>            render and encoder threads (default: all cores)\n" +
+            "  --out <dir|file>         output directory of a PNG sequence, or a .y4m or .avi (MJPEG) video file (default frames)\n" +
+            "  --prefix <name>          file name prefix of a PNG sequence (default " + PngSequenceSink.DEFAULT_PREFIX + ")\n" +
+            "  --quality <value>        JPEG quality of an MJPEG video, 0 to 1 (default " + MjpegAviEncoder.DEFAULT_QUALITY + ")\n";
+
+    public static void main(String[] args) {
+        // never touch a display, even if one happens to be configured
+        System.setProperty("java.awt.headless", "true");
+
+        CliArgs.launch(args, USAGE, "Failed to write the frames", RenderTool::run);
+    }
+
+    private static void run(@NotNull CliArgs args) throws IOException {
+        final Attractors system = args.getAttractor("attractor", Attractors.LORENTZ);
+        final AttractorI attractor = system.create(args.getParameters("set", system));
+        final Integrators integratorKind = args.getIntegrator("integrator", null);
+        final IntegratorI integrator = integratorKind != null? integratorKind.create(): attractor.createIntegrator();
+
+        final float dt = args.getFloat("dt", SimulationThread.fixedStep(attractor, DEFAULT_STEPS_PER_SECOND));
+        final int frames = args.getInt("frames", 300);
+        final int fps = Math.max(args.getInt("fps", 30), 1);
+        final float simTimePerFrame = attractor.drawConfig().getStepPerMs() * 1000 / fps;
+        final int stepsPerFrame = args.getInt("steps-per-frame", Math.max(Math.round(simTimePerFrame / dt), 1));
+        final int skip = args.getInt("skip", 0);
+        final int maxPoints = attractor.drawConfig().getDrawingMaxPoints();
+        final int trail = args.getInt("trail", maxPoints > 0? maxPoints: frames * stepsPerFrame + 1);
+        final int width = args.getInt("width", 1920), height = args.getInt("height", 1080);
+        final float yaw = args.getFloat("yaw", OfflineRenderer.DEFAULT_YAW);
+        final float pitch = args.getFloat("pitch", OfflineRenderer.DEFAULT_PITCH);
+        final float orbit = args.getFloat("orbit", 0);
+        final float fov = args.getFloat("fov", Projector.DEFAULT_FOV);
+        final float zoom = args.getFloat("zoom", 1);
+        final float stroke = args.getFloat("stroke", OfflineRenderer.DEFAULT_STROKE_WEIGHT);
+        final int threads = args.getInt("threads", Runtime.getRuntime().availableProcessors());
+        final File out = new File(args.getString("out", "frames"));
+        final String prefix = args.getString("prefix", PngSequenceSink.DEFAULT_PREFIX);
+        final float quality = args.getFloat("quality", MjpegAviEncoder.DEFAULT_QUALITY);
+        args.checkAllUsed();
+
+        final OfflineRenderer renderer = new OfflineRenderer(attractor, integrator, dt, stepsPerFrame, trail, width, height);
+        renderer.setSkipSteps(skip);
+        renderer.setCamera(yaw, pitch, orbit, fov, zoom);
+        renderer.setStrokeWeight(stroke);
+        final VideoFormat format = VideoFormat.forFile(out);
+        final FrameSink sink = format != null? new VideoFrameSink(new AsyncVideoWriter(format.create(out, width, height, fps, quality))):
+                new PngSequenceSink(out, prefix);
+
+        final Integrators kind = Integrators.of(integrator);
+        System.out.printf("%s with %s, dt %s: %d frames of %d steps, %dx%d on %d threads, to %s%n", system.displayName,
+                kind != null? kind.displayName: integrator.getClass().getSimpleName(), dt, frames, stepsPerFrame, width, height, threads,
+                format != null? format.displayName: "PNG sequence");
+
+        // Ctrl-C: stop after the frames in flight
+        final CliArgs.Interrupt interrupt = CliArgs.onInterrupt(renderer::cancel);
+
+        final long start = System.nanoTime();
+        final int reportEvery = Math.max(frames / 20, 1);
+        final int written;
+        try {
+            written = renderer.render(frames, threads, sink, index -> {
+                final int done = renderer.getFramesDone();
+                if (done % reportEvery == 0) {
+                    System.out.printf("%d/%d frames, %.1f fps%n", done, frames, done / ((System.nanoTime() - start) / 1e9));
+                }
+            });
+        } finally {
+            sink.close();           // finishes a video file even if cancelled or failed
+        }
+
+        System.out.printf("%s %d frames to %s in %.2f s%n", written < frames? "Cancelled after": "Wrote", written,
+                out.getAbsolutePath(), (System.nanoTime() - start) / 1e9);
+        interrupt.close();
+    }
+
+}
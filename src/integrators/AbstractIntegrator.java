@@ -0,0 +1,45 @@
+package integrators;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Base class for integrators that need a fixed number of scratch vectors (stages),
+ * allocated lazily once per state dimension
+ * */
+public abstract class AbstractIntegrator implements IntegratorI {
+
+    @NotNull
+    private final String mName;
+    private final int mScratchCount;
+
+    @NotNull
+    protected float[][] scratch = new float[0][];
+    private int mScratchDimension = -1;
+
+    protected AbstractIntegrator(@NotNull String name, int scratchCount) {
+        mName = name;
+        mScratchCount = scratchCount;
+    }
+
+    @Override
+    @NotNull
+    public final String getName() {
+        return mName;
+    }
+
+    /**
+     * Makes sure {@link #scratch} holds {@code scratchCount} vectors of the given dimension
+     * */
+    protected final void ensureScratch(int dimension) {
+        if (mScratchDimension == dimension)
+            return;
+
+        scratch = new float[mScratchCount][dimension];
+        mScratchDimension = dimension;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
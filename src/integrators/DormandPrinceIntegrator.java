@@ -0,0 +1,199 @@
+package integrators;
+
+import math.RMath;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Adaptive fifth order Dormand-Prince scheme (RK45) with embedded fourth order error control.
+ *
+ * <p>
+ * A call to {@link #step(VectorFieldI, float[], int, float)} still advances the state by exactly {@code dt},
+ * but internally covers that interval with as many accepted sub-steps as the error tolerance requires.
+ * The last accepted step size is carried over to the next call, so smooth stretches of the trajectory
+ * are covered by a single sub-step
+ * <p>
+ * After {@value #MAX_SUB_STEPS} sub-steps in a call, or once a sub-step is too small to advance the time in float, the rest
+ * of the interval is taken in one sub-step and accepted without error control. A sub-step to a non-finite state is taken
+ * as is and ends the call, leaving divergence to the caller
+ * <p>
+ * */
+public class DormandPrinceIntegrator extends AbstractIntegrator {
+
+    public static final String NAME = "RK45";
+
+    public static final float DEFAULT_REL_TOLERANCE = 1e-4f;
+    public static final float DEFAULT_ABS_TOLERANCE = 1e-5f;
+    public static final float DEFAULT_MIN_STEP = 1e-7f;
+
+    /* Step size controller */
+    private static final float SAFETY = 0.9f;
+    private static final float MIN_SCALE = 0.2f;
+    private static final float MAX_SCALE = 5f;
+
+    /* Sub-steps tried per call before the rest of the interval is taken in one sub-step, so that a trajectory the tolerance
+     * cannot be met on (float rounding of a state escaping to infinity) does not crawl at the min step */
+    private static final int MAX_SUB_STEPS = 1 << 10;
+
+    /* Butcher tableau (nodes are not needed since vector fields are autonomous) */
+    private static final float A21 = 1 / 5f;
+    private static final float A31 = 3 / 40f, A32 = 9 / 40f;
+    private static final float A41 = 44 / 45f, A42 = -56 / 15f, A43 = 32 / 9f;
+    private static final float A51 = 19372 / 6561f, A52 = -25360 / 2187f, A53 = 64448 / 6561f, A54 = -212 / 729f;
+    private static final float A61 = 9017 / 3168f, A62 = -355 / 33f, A63 = 46732 / 5247f, A64 = 49 / 176f, A65 = -5103 / 18656f;
+    private static final float A71 = 35 / 384f, A73 = 500 / 1113f, A74 = 125 / 192f, A75 = -2187 / 6784f, A76 = 11 / 84f;
+
+    /* Error coefficients: 5th order weights (= A7x) minus 4th order weights */
+    private static final float E1 = 71 / 57600f, E3 = -71 / 16695f, E4 = 71 / 1920f, E5 = -17253 / 339200f, E6 = 22 / 525f, E7 = -1 / 40f;
+
+    private final float mRelTolerance;
+    private final float mAbsTolerance;
+    private final float mMinStep;
+
+    /**
+     * Step size proposed by the controller for the next sub-step, or {@code <= 0} if unknown
+     * */
+    private float mNextStep = -1;
+
+    public DormandPrinceIntegrator(float relTolerance, float absTolerance, float minStep) {
+        super(NAME, 9);
+        mRelTolerance = relTolerance;
+        mAbsTolerance = absTolerance;
+        mMinStep = minStep;
+    }
+
+    public DormandPrinceIntegrator() {
+        this(DEFAULT_REL_TOLERANCE, DEFAULT_ABS_TOLERANCE, DEFAULT_MIN_STEP);
+    }
+
+    public float getRelTolerance() {
+        return mRelTolerance;
+    }
+
+    public float getAbsTolerance() {
+        return mAbsTolerance;
+    }
+
+    public float getMinStep() {
+        return mMinStep;
+    }
+
+    public float getNextStep() {
+        return mNextStep;
+    }
+
+    public void setNextStep(float nextStep) {
+        mNextStep = nextStep;
+    }
+
+    @Override
+    public void reset() {
+        mNextStep = -1;
+    }
+
+    @Override
+    @NotNull
+    public float[] saveCarriedState() {
+        return new float[] { mNextStep };
+    }
+
+    @Override
+    public void restoreCarriedState(@NotNull float[] carried) {
+        mNextStep = carried.length > 0? carried[0]: -1;
+    }
+
+    @Override
+    public void step(@NotNull VectorFieldI field, @NotNull float[] state, int offset, float dt) {
+        if (dt == 0)
+            return;
+
+        final int n = field.dimension();
+        ensureScratch(n);
+        final float[] k1 = scratch[0], k2 = scratch[1], k3 = scratch[2], k4 = scratch[3], k5 = scratch[4], k6 = scratch[5], k7 = scratch[6];
+        final float[] tmp = scratch[7], next = scratch[8];
+
+        final float sign = Math.signum(dt);
+        final float span = Math.abs(dt);
+        float h = mNextStep > 0? Math.min(mNextStep, span): span;
+        float t = 0;
+        int subSteps = 0;
+
+        field.derivative(state, offset, k1, 0);
+
+        while (t < span) {
+            // out of sub-steps, or too small a step to advance t: take the rest of the interval at once rather than spin
+            final boolean forced = ++subSteps >= MAX_SUB_STEPS || t + h == t;
+            final boolean last = forced || h >= span - t;
+            if (last) {
+                h = span - t;
+            }
+
+            final float sh = sign * h;
+
+            for (int i = 0; i < n; i++)
+                tmp[i] = state[offset + i] + sh * (A21 * k1[i]);
+            field.derivative(tmp, 0, k2, 0);
+
+            for (int i = 0; i < n; i++)
+                tmp[i] = state[offset + i] + sh * (A31 * k1[i] + A32 * k2[i]);
+            field.derivative(tmp, 0, k3, 0);
+
+            for (int i = 0; i < n; i++)
+                tmp[i] = state[offset + i] + sh * (A41 * k1[i] + A42 * k2[i] + A43 * k3[i]);
+            field.derivative(tmp, 0, k4, 0);
+
+            for (int i = 0; i < n; i++)
+                tmp[i] = state[offset + i] + sh * (A51 * k1[i] + A52 * k2[i] + A53 * k3[i] + A54 * k4[i]);
+            field.derivative(tmp, 0, k5, 0);
+
+            for (int i = 0; i < n; i++)
+                tmp[i] = state[offset + i] + sh * (A61 * k1[i] + A62 * k2[i] + A63 * k3[i] + A64 * k4[i] + A65 * k5[i]);
+            field.derivative(tmp, 0, k6, 0);
+
+            for (int i = 0; i < n; i++)
+                next[i] = state[offset + i] + sh * (A71 * k1[i] + A73 * k3[i] + A74 * k4[i] + A75 * k5[i] + A76 * k6[i]);
+            field.derivative(next, 0, k7, 0);        // FSAL: k7 is k1 of the next sub-step
+
+            // RMS of the scaled local error
+            float errSq = 0;
+            for (int i = 0; i < n; i++) {
+                final float e = sh * (E1 * k1[i] + E3 * k3[i] + E4 * k4[i] + E5 * k5[i] + E6 * k6[i] + E7 * k7[i]);
+                final float scale = mAbsTolerance + mRelTolerance * Math.max(Math.abs(state[offset + i]), Math.abs(next[i]));
+                final float r = e / scale;
+                errSq += r * r;
+            }
+
+            final float err = (float) Math.sqrt(errSq / n);
+            if (!Float.isFinite(err)) {
+                // Diverged: take the step as is, so that the caller's divergence checks see the non-finite state
+                System.arraycopy(next, 0, state, offset, n);
+                mNextStep = -1;
+                return;
+            }
+
+            final float factor = err == 0? MAX_SCALE: RMath.constraint(MIN_SCALE, MAX_SCALE, SAFETY * (float) Math.pow(err, -0.2));
+
+            if (err <= 1 || h <= mMinStep || forced) {
+                // Accept
+                System.arraycopy(next, 0, state, offset, n);
+                System.arraycopy(k7, 0, k1, 0, n);
+                t = last? span: t + h;
+
+                // A last sub-step clipped to the interval end is only allowed to shrink the proposal
+                if (!last || mNextStep <= 0 || factor < 1) {
+                    mNextStep = Math.max(h * factor, mMinStep);
+                }
+
+                h = mNextStep;
+            } else {
+                // Reject and retry with a smaller step
+                h = Math.max(h * factor, mMinStep);
+            }
+        }
+    }
+
+    @Override
+    @NotNull
+    public DormandPrinceIntegrator copy() {
+        return new DormandPrinceIntegrator(mRelTolerance, mAbsTolerance, mMinStep);
+    }
+}
@@ -0,0 +1,55 @@
+package integrators;
+
+import attractors.AttractorI;
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * First order explicit Euler scheme.
+ *
+ * <p>
+ * For attractors, this delegates to {@link AttractorI#step(float[], int, float)} and {@link AttractorI#integrate(float[], int, float, int, TrajectorySink)},
+ * so built-in attractors run their own monomorphic kernels and custom attractors keep their {@code calculateNextPoint} semantics
+ * <p>
+ * */
+public class EulerIntegrator extends AbstractIntegrator {
+
+    public static final String NAME = "Euler";
+
+    public EulerIntegrator() {
+        super(NAME, 1);
+    }
+
+    @Override
+    public void step(@NotNull VectorFieldI field, @NotNull float[] state, int offset, float dt) {
+        if (field instanceof AttractorI) {
+            ((AttractorI) field).step(state, offset, dt);
+            return;
+        }
+
+        final int n = field.dimension();
+        ensureScratch(n);
+        final float[] k1 = scratch[0];
+
+        field.derivative(state, offset, k1, 0);
+        for (int i = 0; i < n; i++) {
+            state[offset + i] += k1[i] * dt;
+        }
+    }
+
+    @Override
+    public void integrate(@NotNull VectorFieldI field, @NotNull float[] state, int offset, float dt, int steps, @Nullable TrajectorySink sink) {
+        if (field instanceof AttractorI) {
+            ((AttractorI) field).integrate(state, offset, dt, steps, sink);
+        } else {
+            super.integrate(field, state, offset, dt, steps, sink);
+        }
+    }
+
+    @Override
+    @NotNull
+    public EulerIntegrator copy() {
+        return new EulerIntegrator();
+    }
+}
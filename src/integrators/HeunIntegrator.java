@@ -0,0 +1,38 @@
+package integrators;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Second order Heun scheme (explicit trapezoidal rule)
+ * */
+public class HeunIntegrator extends AbstractIntegrator {
+
+    public static final String NAME = "Heun";
+
+    public HeunIntegrator() {
+        super(NAME, 3);
+    }
+
+    @Override
+    public void step(@NotNull VectorFieldI field, @NotNull float[] state, int offset, float dt) {
+        final int n = field.dimension();
+        ensureScratch(n);
+        final float[] k1 = scratch[0], k2 = scratch[1], tmp = scratch[2];
+
+        field.derivative(state, offset, k1, 0);
+        for (int i = 0; i < n; i++) {
+            tmp[i] = state[offset + i] + k1[i] * dt;
+        }
+
+        field.derivative(tmp, 0, k2, 0);
+        for (int i = 0; i < n; i++) {
+            state[offset + i] += (k1[i] + k2[i]) * (dt / 2);
+        }
+    }
+
+    @Override
+    @NotNull
+    public HeunIntegrator copy() {
+        return new HeunIntegrator();
+    }
+}
@@ -0,0 +1,67 @@
+package integrators;
+
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A scheme to step the state of a {@link VectorFieldI} forward in time.
+ *
+ * <p>
+ * Integrators own their scratch storage, so stepping never allocates. As a consequence an integrator instance
+ * must not be shared between threads: use {@link #copy()} to get an independent instance with the same configuration
+ * <p>
+ * */
+public interface IntegratorI {
+
+    @NotNull
+    String getName();
+
+    /**
+     * Advances the state stored in {@code state} at {@code offset} by exactly {@code dt}, in place
+     * */
+    void step(@NotNull VectorFieldI field, @NotNull float[] state, int offset, float dt);
+
+    /**
+     * Advances the state by {@code steps} steps of size {@code dt}, emitting (x, y, z) i.e. the first
+     * three components of every new state to {@code sink} (if any)
+     * */
+    default void integrate(@NotNull VectorFieldI field, @NotNull float[] state, int offset, float dt, int steps, @Nullable TrajectorySink sink) {
+        for (int i = 0; i < steps; i++) {
+            step(field, state, offset, dt);
+            if (sink != null) {
+                sink.accept(state[offset], state[offset + 1], state[offset + 2]);
+            }
+        }
+    }
+
+    /**
+     * Discards any state carried between steps (like an adaptive step size)
+     * */
+    default void reset() {
+    }
+
+    /**
+     * @return a copy of the state carried between steps (like an adaptive step size), empty if none.
+     * Together with the integrated state, it lets {@link #restoreCarriedState(float[])} continue a run bit-exactly
+     * */
+    @NotNull
+    default float[] saveCarriedState() {
+        return new float[0];
+    }
+
+    /**
+     * Restores the state carried between steps, as returned by {@link #saveCarriedState()} of an integrator of the
+     * same kind. An empty array is the same as {@link #reset()}
+     * */
+    default void restoreCarriedState(@NotNull float[] carried) {
+        reset();
+    }
+
+    /**
+     * @return a new independent integrator with the same configuration and fresh state
+     * */
+    @NotNull
+    IntegratorI copy();
+
+}
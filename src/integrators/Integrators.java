@@ -0,0 +1,57 @@
+package integrators;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+/**
+ * Built-in integration schemes
+ * */
+public enum Integrators {
+
+    EULER(EulerIntegrator.NAME, EulerIntegrator::new),
+    MIDPOINT(MidpointIntegrator.NAME, MidpointIntegrator::new),
+    HEUN(HeunIntegrator.NAME, HeunIntegrator::new),
+    RK4(RK4Integrator.NAME, RK4Integrator::new),
+    RK45(DormandPrinceIntegrator.NAME, DormandPrinceIntegrator::new);
+
+    @NotNull
+    public final String displayName;
+    @NotNull
+    private final Supplier<IntegratorI> mFactory;
+
+    Integrators(@NotNull String displayName, @NotNull Supplier<IntegratorI> factory) {
+        this.displayName = displayName;
+        mFactory = factory;
+    }
+
+    @NotNull
+    public IntegratorI create() {
+        return mFactory.get();
+    }
+
+    @NotNull
+    public Integrators next() {
+        final Integrators[] values = values();
+        return values[(ordinal() + 1) % values.length];
+    }
+
+    @Nullable
+    public static Integrators fromName(@Nullable String name) {
+        if (name != null) {
+            for (Integrators i: values()) {
+                if (i.displayName.equalsIgnoreCase(name) || i.name().equalsIgnoreCase(name))
+                    return i;
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    public static Integrators of(@NotNull IntegratorI integrator) {
+        return fromName(integrator.getName());
+    }
+
+}
@@ -0,0 +1,38 @@
+package integrators;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Second order explicit midpoint scheme
+ * */
+public class MidpointIntegrator extends AbstractIntegrator {
+
+    public static final String NAME = "Midpoint";
+
+    public MidpointIntegrator() {
+        super(NAME, 3);
+    }
+
+    @Override
+    public void step(@NotNull VectorFieldI field, @NotNull float[] state, int offset, float dt) {
+        final int n = field.dimension();
+        ensureScratch(n);
+        final float[] k1 = scratch[0], k2 = scratch[1], tmp = scratch[2];
+
+        field.derivative(state, offset, k1, 0);
+        for (int i = 0; i < n; i++) {
+            tmp[i] = state[offset + i] + k1[i] * (dt / 2);
+        }
+
+        field.derivative(tmp, 0, k2, 0);
+        for (int i = 0; i < n; i++) {
+            state[offset + i] += k2[i] * dt;
+        }
+    }
+
+    @Override
+    @NotNull
+    public MidpointIntegrator copy() {
+        return new MidpointIntegrator();
+    }
+}
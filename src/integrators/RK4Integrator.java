@@ -0,0 +1,49 @@
+package integrators;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Classic fourth order Runge-Kutta scheme
+ * */
+public class RK4Integrator extends AbstractIntegrator {
+
+    public static final String NAME = "RK4";
+
+    public RK4Integrator() {
+        super(NAME, 5);
+    }
+
+    @Override
+    public void step(@NotNull VectorFieldI field, @NotNull float[] state, int offset, float dt) {
+        final int n = field.dimension();
+        ensureScratch(n);
+        final float[] k1 = scratch[0], k2 = scratch[1], k3 = scratch[2], k4 = scratch[3], tmp = scratch[4];
+        final float half = dt / 2;
+
+        field.derivative(state, offset, k1, 0);
+        for (int i = 0; i < n; i++) {
+            tmp[i] = state[offset + i] + k1[i] * half;
+        }
+
+        field.derivative(tmp, 0, k2, 0);
+        for (int i = 0; i < n; i++) {
+            tmp[i] = state[offset + i] + k2[i] * half;
+        }
+
+        field.derivative(tmp, 0, k3, 0);
+        for (int i = 0; i < n; i++) {
+            tmp[i] = state[offset + i] + k3[i] * dt;
+        }
+
+        field.derivative(tmp, 0, k4, 0);
+        for (int i = 0; i < n; i++) {
+            state[offset + i] += (k1[i] + 2 * (k2[i] + k3[i]) + k4[i]) * (dt / 6);
+        }
+    }
+
+    @Override
+    @NotNull
+    public RK4Integrator copy() {
+        return new RK4Integrator();
+    }
+}
@@ -0,0 +1,21 @@
+package integrators;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An autonomous system of first order ODEs {@code dy/dt = f(y)}, i.e. the vector field that an {@link IntegratorI} steps through
+ * */
+public interface VectorFieldI {
+
+    /**
+     * @return number of floats in a state of this system
+     * */
+    int dimension();
+
+    /**
+     * Evaluates the derivative of the state stored in {@code state} at {@code offset},
+     * and writes it into {@code out} at {@code outOffset}. Must not modify {@code state}
+     * */
+    void derivative(@NotNull float[] state, int offset, @NotNull float[] out, int outOffset);
+
+}
@@ -0,0 +1,287 @@
+package io;
+
+import attractors.AttractorI;
+import attractors.Attractors;
+import integrators.IntegratorI;
+import integrators.Integrators;
+import math.TrajectoryBuffer;
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A snapshot of a running simulation, to resume it later exactly where it was: the same floats go into the integrator,
+ * so the resumed run continues bit for bit as if it had never been interrupted.
+ *
+ * <p>
+ * File layout, little-endian throughout:
+ * <pre>
+ *   magic          4 bytes    "ATCK"
+ *   version        u16
+ *   reserved       u16
+ *   attractor      string     id of a built-in attractor, see {@link Attractors#id()}
+ *   paramCount     u16
+ *   params         f32 * paramCount
+ *   integrator     string     integrator name
+ *   carriedCount   u16
+ *   carried        f32 * carriedCount    state carried between steps, see {@link IntegratorI#saveCarriedState()}
+ *   stateSize      u16
+ *   state          f32 * stateSize       current point
+ *   steps          i64        steps integrated since the initial state
+ *   time           f64        simulation time since the initial state
+ *   dt             f32        step size
+ *   stepsPerSec    f32        pacing of the interactive sketch, 0 if not paced
+ *   speedFactor    f32
+ *   trailCount     u32
+ *   trail          (x, y, z) f32 * trailCount, oldest first
+ * </pre>
+ * Strings are encoded as in {@link TrajectoryHeader}. Files are replaced atomically, so an interruption while saving
+ * leaves the previous checkpoint intact
+ * <p>
+ * */
+public class Checkpoint {
+
+    public static final int MAGIC = 0x4B435441;         // "ATCK" read as little-endian u32
+    public static final int VERSION = 1;
+
+    public static final String EXTENSION = "atck";
+
+    @NotNull
+    public final String attractor;
+    @NotNull
+    public final float[] params;
+    @NotNull
+    public final String integrator;
+    @NotNull
+    public final float[] integratorState;
+    @NotNull
+    public final float[] state;
+    public final long steps;
+    public final double time;
+    public final float dt;
+    public final float stepsPerSecond;
+    public final float speedFactor;
+
+    /* Trail points, interleaved (x, y, z) */
+    @NotNull
+    private final float[] mTrail;
+
+    public Checkpoint(@NotNull String attractor, @NotNull float[] params, @NotNull String integrator, @NotNull float[] integratorState,
+                      @NotNull float[] state, long steps, double time, float dt, float stepsPerSecond, float speedFactor, @Nullable float[] trail) {
+        this.attractor = attractor;
+        this.params = params.clone();
+        this.integrator = integrator;
+        this.integratorState = integratorState.clone();
+        this.state = state.clone();
+        this.steps = steps;
+        this.time = time;
+        this.dt = dt;
+        this.stepsPerSecond = stepsPerSecond;
+        this.speedFactor = speedFactor;
+        mTrail = trail != null? trail.clone(): new float[0];
+    }
+
+    /**
+     * Snapshots a run of a built-in attractor
+     *
+     * @param state current state, of {@link AttractorI#STATE_SIZE} components
+     * @param trail points to save along, or null
+     * @throws IllegalArgumentException if the attractor is not a built-in one, since it could not be recreated
+     * */
+    @NotNull
+    public static Checkpoint of(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, @NotNull float[] state, long steps, double time,
+                                float dt, float stepsPerSecond, float speedFactor, @Nullable TrajectoryBuffer trail) {
+        final Attractors kind = Attractors.of(attractor);
+        if (kind == null)
+            throw new IllegalArgumentException("Only built-in attractors can be checkpointed, given: " + attractor.getTitle());
+
+        float[] points = null;
+        if (trail != null) {
+            points = new float[trail.size() * 3];
+            for (int i = 0; i < trail.size(); i++) {
+                points[i * 3] = trail.x(i);
+                points[i * 3 + 1] = trail.y(i);
+                points[i * 3 + 2] = trail.z(i);
+            }
+        }
+
+        final float[] s = new float[AttractorI.STATE_SIZE];
+        System.arraycopy(state, 0, s, 0, s.length);
+        return new Checkpoint(kind.id(), kind.parametersOf(attractor), integrator.getName(), integrator.saveCarriedState(),
+                s, steps, time, dt, stepsPerSecond, speedFactor, points);
+    }
+
+    /**
+     * @return a new instance of the attractor with the stored parameters, or null if unknown to this version
+     * */
+    @Nullable
+    public AttractorI createAttractor() {
+        final Attractors kind = Attractors.fromName(attractor);
+        return kind != null && kind.parameterCount() == params.length? kind.create(params): null;
+    }
+
+    @Nullable
+    public Integrators integratorKind() {
+        return Integrators.fromName(integrator);
+    }
+
+    /**
+     * @return a new integrator of the stored kind, carrying the stored state, or null if unknown to this version
+     * */
+    @Nullable
+    public IntegratorI createIntegrator() {
+        final Integrators kind = integratorKind();
+        if (kind == null)
+            return null;
+
+        final IntegratorI integrator = kind.create();
+        integrator.restoreCarriedState(integratorState);
+        return integrator;
+    }
+
+    /**
+     * @return number of trail points saved along
+     * */
+    public int trailSize() {
+        return mTrail.length / 3;
+    }
+
+    /**
+     * Emits the saved trail points to the sink, oldest first
+     * */
+    public void emitTrail(@NotNull TrajectorySink sink) {
+        for (int i = 0; i < mTrail.length; i += 3) {
+            sink.accept(mTrail[i], mTrail[i + 1], mTrail[i + 2]);
+        }
+    }
+
+    private static void putFloats(@NotNull ByteBuffer b, @NotNull float[] values) {
+        b.putShort((short) values.length);
+        for (float v: values) {
+            b.putFloat(v);
+        }
+    }
+
+    @NotNull
+    private static float[] getFloats(@NotNull ByteBuffer b) {
+        final float[] values = new float[Short.toUnsignedInt(b.getShort())];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = b.getFloat();
+        }
+        return values;
+    }
+
+    @NotNull
+    private ByteBuffer encode() {
+        final byte[] attractorBytes = TrajectoryHeader.utf8(attractor), integratorBytes = TrajectoryHeader.utf8(integrator);
+        final int size = 4 + 2 + 2 + (2 + attractorBytes.length) + (2 + 4 * params.length) + (2 + integratorBytes.length)
+                + (2 + 4 * integratorState.length) + (2 + 4 * state.length) + 8 + 8 + 4 + 4 + 4 + 4 + 4 * mTrail.length;
+
+        final ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0)
+                .putShort((short) attractorBytes.length).put(attractorBytes);
+        putFloats(b, params);
+        b.putShort((short) integratorBytes.length).put(integratorBytes);
+        putFloats(b, integratorState);
+        putFloats(b, state);
+        b.putLong(steps).putDouble(time).putFloat(dt).putFloat(stepsPerSecond).putFloat(speedFactor).putInt(trailSize());
+        for (float v: mTrail) {
+            b.putFloat(v);
+        }
+
+        b.flip();
+        return b;
+    }
+
+    /**
+     * @throws IOException if this is not a checkpoint of a supported version
+     * */
+    @NotNull
+    private static Checkpoint decode(@NotNull ByteBuffer b) throws IOException {
+        try {
+            if (b.getInt() != MAGIC)
+                throw new IOException("Not a checkpoint file");
+
+            final int version = Short.toUnsignedInt(b.getShort());
+            if (version != VERSION)
+                throw new IOException("Unsupported checkpoint version " + version + ", expected " + VERSION);
+            b.getShort();
+
+            final String attractor = TrajectoryHeader.readString(b);
+            final float[] params = getFloats(b);
+            final String integrator = TrajectoryHeader.readString(b);
+            final float[] integratorState = getFloats(b);
+            final float[] state = getFloats(b);
+            if (state.length != AttractorI.STATE_SIZE)
+                throw new IOException("Invalid state size: " + state.length);
+
+            final long steps = b.getLong();
+            final double time = b.getDouble();
+            final float dt = b.getFloat();
+            final float stepsPerSecond = b.getFloat();
+            final float speedFactor = b.getFloat();
+            final int trailCount = b.getInt();
+            if (trailCount < 0 || trailCount > b.remaining() / 12)
+                throw new IOException("Invalid trail size: " + trailCount);
+
+            final float[] trail = new float[trailCount * 3];
+            for (int i = 0; i < trail.length; i++) {
+                trail[i] = b.getFloat();
+            }
+
+            return new Checkpoint(attractor, params, integrator, integratorState, state, steps, time, dt, stepsPerSecond, speedFactor, trail);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated checkpoint", e);
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file next to {@code file}, then moves it in place
+     * */
+    public void write(@NotNull File file) throws IOException {
+        final Path target = file.toPath().toAbsolutePath();
+        final Path dir = target.getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+
+        final Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer b = encode();
+            while (b.hasRemaining()) {
+                channel.write(b);
+            }
+            channel.force(true);
+        }
+
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @NotNull
+    public static Checkpoint read(@NotNull File file) throws IOException {
+        final ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        return decode(b);
+    }
+
+    @Override
+    public String toString() {
+        return attractor + ", " + integrator + ", " + steps + " steps, t = " + time + (mTrail.length > 0? ", trail of " + trailSize() + " points": "");
+    }
+
+}
@@ -0,0 +1,241 @@
+package io;
+
+import attractors.AttractorI;
+import attractors.Attractors;
+import integrators.IntegratorI;
+import integrators.Integrators;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Header of a binary trajectory file: what was integrated and how, and the layout of the records that follow.
+ *
+ * <p>
+ * File layout, little-endian throughout:
+ * <pre>
+ *   magic        4 bytes    "ATRJ"
+ *   version      u16
+ *   precision    u8         bytes per coordinate: 4 (float32) or 8 (float64)
+ *   reserved     u8
+ *   dataOffset   u32        offset of the first record, a multiple of {@value #ALIGNMENT}
+ *   pointCount   u64        number of records, 0 while being written
+ *   dt           f64        step size
+ *   stride       u32        integration steps between two records
+ *   attractor    string     id of a built-in attractor (see {@link Attractors#id()}), or the title of a custom one
+ *   integrator   string     integrator name
+ *   paramCount   u16
+ *   params       f32 * paramCount
+ *   padding      up to dataOffset
+ *   records      (x, y, z) * pointCount
+ * </pre>
+ * Strings are a u16 byte length followed by UTF-8 bytes. Records are packed, so point {@code i} is at
+ * {@code dataOffset + i * 3 * precision}, which makes the file directly usable from other tools (e.g. a NumPy memmap)
+ * <p>
+ * */
+public class TrajectoryHeader {
+
+    public static final int MAGIC = 0x4A525441;         // "ATRJ" read as little-endian u32
+    public static final int VERSION = 1;
+
+    /**
+     * Alignment of the records, so that they can be mapped and viewed as float arrays
+     * */
+    public static final int ALIGNMENT = 64;
+
+    /* Offset of the point count, patched once the file is complete */
+    static final int POINT_COUNT_OFFSET = 12;
+
+    public static final int PRECISION_FLOAT = 4;
+    public static final int PRECISION_DOUBLE = 8;
+
+    @NotNull
+    public final String attractor;
+    @NotNull
+    public final float[] params;
+    @NotNull
+    public final String integrator;
+    public final double dt;
+    public final int stride;
+    public final int precision;
+
+    public TrajectoryHeader(@NotNull String attractor, @NotNull float[] params, @NotNull String integrator, double dt, int stride, int precision) {
+        if (precision != PRECISION_FLOAT && precision != PRECISION_DOUBLE)
+            throw new IllegalArgumentException("Precision must be " + PRECISION_FLOAT + " or " + PRECISION_DOUBLE + " bytes, given: " + precision);
+
+        this.attractor = attractor;
+        this.params = params.clone();
+        this.integrator = integrator;
+        this.dt = dt;
+        this.stride = Math.max(stride, 1);
+        this.precision = precision;
+    }
+
+    /**
+     * Describes a run of the given attractor. Built-in attractors are stored with their parameters, so that they can be
+     * {@link #createAttractor() recreated}
+     * */
+    @NotNull
+    public static TrajectoryHeader of(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, double dt, int stride, int precision) {
+        final Attractors kind = Attractors.of(attractor);
+        return kind != null? new TrajectoryHeader(kind.id(), kind.parametersOf(attractor), integrator.getName(), dt, stride, precision):
+                new TrajectoryHeader(attractor.getTitle(), new float[0], integrator.getName(), dt, stride, precision);
+    }
+
+    /**
+     * @return bytes per record
+     * */
+    public int recordSize() {
+        return 3 * precision;
+    }
+
+    /**
+     * @return the built-in attractor of the trajectory, or null if it was a custom one
+     * */
+    @Nullable
+    public Attractors attractorKind() {
+        return Attractors.fromName(attractor);
+    }
+
+    /**
+     * @return a new instance of the attractor with the stored parameters, or null if it is not a built-in one
+     * */
+    @Nullable
+    public AttractorI createAttractor() {
+        final Attractors kind = attractorKind();
+        return kind != null && kind.parameterCount() == params.length? kind.create(params): null;
+    }
+
+    /**
+     * @return the integrator of the trajectory, or null if it is not a built-in one
+     * */
+    @Nullable
+    public Integrators integratorKind() {
+        return Integrators.fromName(integrator);
+    }
+
+    /**
+     * @return simulation time between two records
+     * */
+    public double timePerPoint() {
+        return dt * stride;
+    }
+
+    @NotNull
+    static byte[] utf8(@NotNull String s) {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF)
+            throw new IllegalArgumentException("String too long for a trajectory header: " + s.length() + " chars");
+        return bytes;
+    }
+
+    /**
+     * @return the encoded header including padding, i.e. {@code dataOffset} bytes
+     * */
+    @NotNull
+    ByteBuffer encode(long pointCount) {
+        final byte[] attractorBytes = utf8(attractor), integratorBytes = utf8(integrator);
+        final int size = 4 + 2 + 1 + 1 + 4 + 8 + 8 + 4 + (2 + attractorBytes.length) + (2 + integratorBytes.length) + 2 + 4 * params.length;
+        final int dataOffset = (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+
+        final ByteBuffer b = ByteBuffer.allocate(dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(MAGIC).putShort((short) VERSION).put((byte) precision).put((byte) 0)
+                .putInt(dataOffset)
+                .putLong(pointCount)
+                .putDouble(dt)
+                .putInt(stride)
+                .putShort((short) attractorBytes.length).put(attractorBytes)
+                .putShort((short) integratorBytes.length).put(integratorBytes)
+                .putShort((short) params.length);
+        for (float p: params) {
+            b.putFloat(p);
+        }
+
+        b.clear();          // whole buffer, padding included
+        return b;
+    }
+
+    /**
+     * A decoded header, with the layout fields of the file it was read from
+     * */
+    static final class Decoded {
+
+        @NotNull
+        final TrajectoryHeader header;
+        final int dataOffset;
+        final long pointCount;
+
+        Decoded(@NotNull TrajectoryHeader header, int dataOffset, long pointCount) {
+            this.header = header;
+            this.dataOffset = dataOffset;
+            this.pointCount = pointCount;
+        }
+    }
+
+    @NotNull
+    static String readString(@NotNull ByteBuffer b) {
+        final byte[] bytes = new byte[Short.toUnsignedInt(b.getShort())];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param b buffer at the start of the file, little-endian
+     * @throws IOException if this is not a trajectory file of a supported version
+     * */
+    @NotNull
+    static Decoded decode(@NotNull ByteBuffer b) throws IOException {
+        try {
+            if (b.getInt() != MAGIC)
+                throw new IOException("Not a trajectory file");
+
+            final int version = Short.toUnsignedInt(b.getShort());
+            if (version != VERSION)
+                throw new IOException("Unsupported trajectory file version " + version + ", expected " + VERSION);
+
+            final int precision = b.get();
+            b.get();
+            final int dataOffset = b.getInt();
+            final long pointCount = b.getLong();
+            final double dt = b.getDouble();
+            final int stride = b.getInt();
+            final String attractor = readString(b);
+            final String integrator = readString(b);
+            final float[] params = new float[Short.toUnsignedInt(b.getShort())];
+            for (int i = 0; i < params.length; i++) {
+                params[i] = b.getFloat();
+            }
+
+            if (precision != PRECISION_FLOAT && precision != PRECISION_DOUBLE)
+                throw new IOException("Invalid precision: " + precision);
+            if (dataOffset < b.position() || dataOffset % ALIGNMENT != 0)
+                throw new IOException("Invalid data offset: " + dataOffset);
+
+            return new Decoded(new TrajectoryHeader(attractor, params, integrator, dt, stride, precision), dataOffset, pointCount);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated trajectory header", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(attractor);
+        final Attractors kind = attractorKind();
+        if (kind != null && kind.parameterCount() == params.length) {
+            sb.append(" (");
+            for (int i = 0; i < params.length; i++) {
+                sb.append(i > 0? ", ": "").append(kind.parameterName(i)).append(" = ").append(params[i]);
+            }
+            sb.append(')');
+        }
+
+        return sb.append(", ").append(integrator).append(", dt ").append(dt).append(stride > 1? " x " + stride: "")
+                .append(", float").append(precision * 8).toString();
+    }
+
+}
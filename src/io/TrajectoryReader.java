@@ -0,0 +1,196 @@
+package io;
+
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a binary trajectory file, see {@link TrajectoryHeader} for the format.
+ *
+ * <p>
+ * The records are memory-mapped read-only, in windows of {@value #WINDOW_POINTS} points (the largest buffer Java can map
+ * is 2 GB), and accessed in place: opening a file of any size only reads its header, pages are loaded by the OS as
+ * points are accessed. Accessors are safe to call from several threads, except {@link #close()}
+ * <p>
+ * */
+public class TrajectoryReader implements Closeable {
+
+    /**
+     * Points per mapped window
+     * */
+    public static final int WINDOW_POINTS = 1 << 26;
+    private static final int WINDOW_SHIFT = 26;
+    private static final int WINDOW_MASK = WINDOW_POINTS - 1;
+
+    @NotNull
+    private final TrajectoryHeader mHeader;
+    @NotNull
+    private final FileChannel mChannel;
+    private final long mCount;
+    private final int mDataOffset;
+
+    /* Coordinates views of the windows, one of them is used depending on the precision */
+    @Nullable
+    private final FloatBuffer[] mFloats;
+    @Nullable
+    private final DoubleBuffer[] mDoubles;
+    @NotNull
+    private final MappedByteBuffer[] mWindows;
+
+    public TrajectoryReader(@NotNull File file) throws IOException {
+        mChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final ByteBuffer head = ByteBuffer.allocate((int) Math.min(mChannel.size(), 1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+            while (head.hasRemaining() && mChannel.read(head, head.position()) > 0) {
+                // read the whole prefix
+            }
+            head.flip();
+
+            final TrajectoryHeader.Decoded decoded = TrajectoryHeader.decode(head);
+            mHeader = decoded.header;
+            mDataOffset = decoded.dataOffset;
+
+            // an interrupted writer leaves a count smaller than the data, never larger. Be lenient with truncated files anyway
+            final int recordSize = mHeader.recordSize();
+            mCount = Math.max(Math.min(decoded.pointCount, (mChannel.size() - mDataOffset) / recordSize), 0);
+
+            final int windows = (int) ((mCount + WINDOW_POINTS - 1) >>> WINDOW_SHIFT);
+            mWindows = new MappedByteBuffer[windows];
+            final boolean isDouble = mHeader.precision == TrajectoryHeader.PRECISION_DOUBLE;
+            mFloats = isDouble? null: new FloatBuffer[windows];
+            mDoubles = isDouble? new DoubleBuffer[windows]: null;
+
+            for (int w = 0; w < windows; w++) {
+                final long first = (long) w << WINDOW_SHIFT;
+                final long points = Math.min(WINDOW_POINTS, mCount - first);
+                final MappedByteBuffer window = mChannel.map(FileChannel.MapMode.READ_ONLY, mDataOffset + first * recordSize, points * recordSize);
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                mWindows[w] = window;
+                if (isDouble) {
+                    mDoubles[w] = window.asDoubleBuffer();
+                } else {
+                    mFloats[w] = window.asFloatBuffer();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    @NotNull
+    public TrajectoryHeader getHeader() {
+        return mHeader;
+    }
+
+    /**
+     * @return number of points in the file
+     * */
+    public long size() {
+        return mCount;
+    }
+
+    /**
+     * @return simulation time of the point at the given index, relative to the first point
+     * */
+    public double timeAt(long index) {
+        return index * mHeader.timePerPoint();
+    }
+
+    private float coordinate(long index, int axis) {
+        final int w = (int) (index >>> WINDOW_SHIFT);
+        final int i = ((int) (index & WINDOW_MASK)) * 3 + axis;
+        return mFloats != null? mFloats[w].get(i): (float) mDoubles[w].get(i);
+    }
+
+    public float x(long index) {
+        return coordinate(index, 0);
+    }
+
+    public float y(long index) {
+        return coordinate(index, 1);
+    }
+
+    public float z(long index) {
+        return coordinate(index, 2);
+    }
+
+    /**
+     * Copies up to {@code count} points from {@code from} into the given arrays
+     *
+     * @return number of points copied, less than {@code count} at the end of the file
+     * */
+    public int read(long from, int count, @NotNull float[] xs, @NotNull float[] ys, @NotNull float[] zs, int offset) {
+        final int n = (int) Math.max(Math.min(count, mCount - from), 0);
+        for (int i = 0; i < n; i++) {
+            final long index = from + i;
+            final int w = (int) (index >>> WINDOW_SHIFT);
+            final int base = ((int) (index & WINDOW_MASK)) * 3;
+            if (mFloats != null) {
+                final FloatBuffer b = mFloats[w];
+                xs[offset + i] = b.get(base);
+                ys[offset + i] = b.get(base + 1);
+                zs[offset + i] = b.get(base + 2);
+            } else {
+                final DoubleBuffer b = mDoubles[w];
+                xs[offset + i] = (float) b.get(base);
+                ys[offset + i] = (float) b.get(base + 1);
+                zs[offset + i] = (float) b.get(base + 2);
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Asks the OS to page in the records of the given points, and waits until it did. Meant for a background thread
+     * reading ahead of the points accessed next, so that accessing them does not block on the disk
+     * */
+    public void prefetch(long from, long count) {
+        from = Math.max(from, 0);
+        final long to = Math.min(from + Math.max(count, 0), mCount);
+        final int recordSize = mHeader.recordSize();
+        while (from < to) {
+            final int w = (int) (from >>> WINDOW_SHIFT);
+            final int first = (int) (from & WINDOW_MASK);
+            final int points = (int) Math.min(to - from, WINDOW_POINTS - first);
+            mWindows[w].slice(first * recordSize, points * recordSize).load();
+            from += points;
+        }
+    }
+
+    /**
+     * Emits the points in [{@code from}, {@code to}) to the sink, in order
+     * */
+    public void forEach(long from, long to, @NotNull TrajectorySink sink) {
+        to = Math.min(to, mCount);
+        for (long index = Math.max(from, 0); index < to; index++) {
+            final int w = (int) (index >>> WINDOW_SHIFT);
+            final int base = ((int) (index & WINDOW_MASK)) * 3;
+            if (mFloats != null) {
+                final FloatBuffer b = mFloats[w];
+                sink.accept(b.get(base), b.get(base + 1), b.get(base + 2));
+            } else {
+                final DoubleBuffer b = mDoubles[w];
+                sink.accept((float) b.get(base), (float) b.get(base + 1), (float) b.get(base + 2));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();           // the mappings stay valid until they are garbage collected
+    }
+
+}
@@ -0,0 +1,175 @@
+package io;
+
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a binary trajectory file, see {@link TrajectoryHeader} for the format.
+ *
+ * <p>
+ * Records are written into a memory-mapped window of the file, which is mapped further along in large sequential chunks
+ * as it fills up: no system call per point and no intermediate copy, the OS writes the pages back in the background.
+ * The point count in the header is updated whenever a chunk is complete and on {@link #close()}, so the file of an
+ * interrupted run still reads up to its last complete chunk.
+ * As a {@link TrajectorySink}, it can be handed to an integrator directly. Not thread safe
+ * <p>
+ * */
+public class TrajectoryWriter implements TrajectorySink, Closeable {
+
+    /**
+     * Bytes mapped at a time, rounded down to whole records
+     * */
+    public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+    @NotNull
+    private final TrajectoryHeader mHeader;
+    @NotNull
+    private final FileChannel mChannel;
+    private final int mDataOffset;
+    private final int mRecordSize;
+    private final boolean mDouble;
+    private final long mWindowSize;
+
+    @NotNull
+    private MappedByteBuffer mWindow;
+    private long mWindowStart;
+    private long mCount;
+    private boolean mClosed;
+
+    public TrajectoryWriter(@NotNull File file, @NotNull TrajectoryHeader header, int windowSize) throws IOException {
+        mHeader = header;
+        mRecordSize = header.recordSize();
+        mDouble = header.precision == TrajectoryHeader.PRECISION_DOUBLE;
+        mWindowSize = Math.max(windowSize / mRecordSize, 1) * (long) mRecordSize;
+        mChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            final ByteBuffer h = header.encode(0);
+            mDataOffset = h.remaining();
+            while (h.hasRemaining()) {
+                mChannel.write(h, h.position());
+            }
+
+            mWindowStart = mDataOffset;
+            mWindow = map(mWindowStart);
+        } catch (IOException | RuntimeException e) {
+            mChannel.close();
+            throw e;
+        }
+    }
+
+    public TrajectoryWriter(@NotNull File file, @NotNull TrajectoryHeader header) throws IOException {
+        this(file, header, DEFAULT_WINDOW_SIZE);
+    }
+
+    @NotNull
+    private MappedByteBuffer map(long position) throws IOException {
+        final MappedByteBuffer window = mChannel.map(FileChannel.MapMode.READ_WRITE, position, mWindowSize);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        return window;
+    }
+
+    @NotNull
+    public TrajectoryHeader getHeader() {
+        return mHeader;
+    }
+
+    /**
+     * @return number of points written so far
+     * */
+    public long getCount() {
+        return mCount;
+    }
+
+    private void ensureRecord() throws IOException {
+        if (mClosed)
+            throw new IOException("Trajectory writer is closed");
+
+        if (mWindow.remaining() < mRecordSize) {
+            writeCount();
+            mWindowStart += mWindow.position();
+            mWindow = map(mWindowStart);
+        }
+    }
+
+    private void writeCount() throws IOException {
+        final ByteBuffer count = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(mCount);
+        count.flip();
+        while (count.hasRemaining()) {
+            mChannel.write(count, TrajectoryHeader.POINT_COUNT_OFFSET + count.position());
+        }
+    }
+
+    public void write(double x, double y, double z) throws IOException {
+        ensureRecord();
+
+        final MappedByteBuffer w = mWindow;
+        if (mDouble) {
+            w.putDouble(x).putDouble(y).putDouble(z);
+        } else {
+            w.putFloat((float) x).putFloat((float) y).putFloat((float) z);
+        }
+        mCount++;
+    }
+
+    public void write(float x, float y, float z) throws IOException {
+        ensureRecord();
+
+        final MappedByteBuffer w = mWindow;
+        if (mDouble) {
+            w.putDouble(x).putDouble(y).putDouble(z);
+        } else {
+            w.putFloat(x).putFloat(y).putFloat(z);
+        }
+        mCount++;
+    }
+
+    /**
+     * Same as {@link #write(float, float, float)}, for use as a sink
+     *
+     * @throws UncheckedIOException if mapping the next chunk of the file failed
+     * */
+    @Override
+    public void accept(float x, float y, float z) {
+        try {
+            write(x, y, z);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets the point count in the header, trims the file to the records written and closes it
+     * */
+    @Override
+    public void close() throws IOException {
+        if (mClosed)
+            return;
+
+        mClosed = true;
+        try {
+            mWindow.force();
+            writeCount();
+            try {
+                mChannel.truncate(mDataOffset + mCount * mRecordSize);
+            } catch (IOException ignored) {
+                // the last window is still mapped, which some platforms (Windows) do not allow to truncate.
+                // The file keeps some zero padding then, the count in the header is what matters
+            }
+        } finally {
+            mChannel.close();
+        }
+    }
+
+}
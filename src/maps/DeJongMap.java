@@ -0,0 +1,99 @@
+package maps;
+
+import math.TrajectorySink;
+import math.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Peter de Jong attractor:
+ * <pre>
+ *   x' = sin(a y) - cos(b x)
+ *   y' = sin(c x) - cos(d y)
+ * </pre>
+ * */
+public class DeJongMap implements MapI {
+
+    public static final String DEFAULT_TITLE = "De Jong Attractor";
+
+    @NotNull
+    public static final Vector DEFAULT_START = new Vector(0.1f, 0.1f, 0);
+
+    public static final float DEFAULT_A = 1.4f;
+    public static final float DEFAULT_B = -2.3f;
+    public static final float DEFAULT_C = 2.4f;
+    public static final float DEFAULT_D = -2.1f;
+
+    @NotNull
+    private final String mTitle;
+    @NotNull
+    private final Vector mStart;
+    private final float a, b, c, d;
+
+    public DeJongMap(@NotNull String title, @NotNull Vector start, float a, float b, float c, float d) {
+        mTitle = title;
+        mStart = start;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.d = d;
+    }
+
+    public DeJongMap() {
+        this(DEFAULT_TITLE, DEFAULT_START, DEFAULT_A, DEFAULT_B, DEFAULT_C, DEFAULT_D);
+    }
+
+    @Override
+    @NotNull
+    public String getTitle() {
+        return mTitle;
+    }
+
+    @Override
+    @NotNull
+    public Vector getStart() {
+        return mStart;
+    }
+
+    @Override
+    public int dimension() {
+        return 2;
+    }
+
+    @Override
+    public void iterate(@NotNull float[] state, int offset, int iterations, @Nullable TrajectorySink sink) {
+        double x = state[offset], y = state[offset + 1];
+        final double a = this.a, b = this.b, c = this.c, d = this.d;
+
+        for (int i = 0; i < iterations; i++) {
+            final double nx = Math.sin(a * y) - Math.cos(b * x);
+            final double ny = Math.sin(c * x) - Math.cos(d * y);
+            x = nx;
+            y = ny;
+            if (sink != null) {
+                sink.accept((float) x, (float) y, 0);
+            }
+        }
+
+        state[offset] = (float) x;
+        state[offset + 1] = (float) y;
+        state[offset + 2] = 0;
+    }
+
+    public float getA() {
+        return a;
+    }
+
+    public float getB() {
+        return b;
+    }
+
+    public float getC() {
+        return c;
+    }
+
+    public float getD() {
+        return d;
+    }
+
+}
@@ -0,0 +1,87 @@
+package maps;
+
+import math.TrajectorySink;
+import math.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Henon map:
+ * <pre>
+ *   x' = 1 - a x^2 + y
+ *   y' = b x
+ * </pre>
+ * Points outside the basin of the attractor escape to infinity
+ * */
+public class HenonMap implements MapI {
+
+    public static final String DEFAULT_TITLE = "Henon Attractor";
+
+    @NotNull
+    public static final Vector DEFAULT_START = new Vector(0.1f, 0.1f, 0);
+
+    public static final float DEFAULT_A = 1.4f;
+    public static final float DEFAULT_B = 0.3f;
+
+    @NotNull
+    private final String mTitle;
+    @NotNull
+    private final Vector mStart;
+    private final float a, b;
+
+    public HenonMap(@NotNull String title, @NotNull Vector start, float a, float b) {
+        mTitle = title;
+        mStart = start;
+        this.a = a;
+        this.b = b;
+    }
+
+    public HenonMap() {
+        this(DEFAULT_TITLE, DEFAULT_START, DEFAULT_A, DEFAULT_B);
+    }
+
+    @Override
+    @NotNull
+    public String getTitle() {
+        return mTitle;
+    }
+
+    @Override
+    @NotNull
+    public Vector getStart() {
+        return mStart;
+    }
+
+    @Override
+    public int dimension() {
+        return 2;
+    }
+
+    @Override
+    public void iterate(@NotNull float[] state, int offset, int iterations, @Nullable TrajectorySink sink) {
+        double x = state[offset], y = state[offset + 1];
+        final double a = this.a, b = this.b;
+
+        for (int i = 0; i < iterations; i++) {
+            final double nx = 1 - a * x * x + y;
+            y = b * x;
+            x = nx;
+            if (sink != null) {
+                sink.accept((float) x, (float) y, 0);
+            }
+        }
+
+        state[offset] = (float) x;
+        state[offset + 1] = (float) y;
+        state[offset + 2] = 0;
+    }
+
+    public float getA() {
+        return a;
+    }
+
+    public float getB() {
+        return b;
+    }
+
+}
@@ -0,0 +1,83 @@
+package maps;
+
+import math.TrajectorySink;
+import math.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Ikeda map, a model of light circulating in a nonlinear optical resonator:
+ * <pre>
+ *   t  = 0.4 - 6 / (1 + x^2 + y^2)
+ *   x' = 1 + u (x cos t - y sin t)
+ *   y' = u (x sin t + y cos t)
+ * </pre>
+ * */
+public class IkedaMap implements MapI {
+
+    public static final String DEFAULT_TITLE = "Ikeda Attractor";
+
+    @NotNull
+    public static final Vector DEFAULT_START = new Vector(0.1f, 0.1f, 0);
+
+    public static final float DEFAULT_U = 0.9f;
+
+    @NotNull
+    private final String mTitle;
+    @NotNull
+    private final Vector mStart;
+    private final float u;
+
+    public IkedaMap(@NotNull String title, @NotNull Vector start, float u) {
+        mTitle = title;
+        mStart = start;
+        this.u = u;
+    }
+
+    public IkedaMap() {
+        this(DEFAULT_TITLE, DEFAULT_START, DEFAULT_U);
+    }
+
+    @Override
+    @NotNull
+    public String getTitle() {
+        return mTitle;
+    }
+
+    @Override
+    @NotNull
+    public Vector getStart() {
+        return mStart;
+    }
+
+    @Override
+    public int dimension() {
+        return 2;
+    }
+
+    @Override
+    public void iterate(@NotNull float[] state, int offset, int iterations, @Nullable TrajectorySink sink) {
+        double x = state[offset], y = state[offset + 1];
+        final double u = this.u;
+
+        for (int i = 0; i < iterations; i++) {
+            final double t = 0.4 - 6 / (1 + x * x + y * y);
+            final double cos = Math.cos(t), sin = Math.sin(t);
+            final double nx = 1 + u * (x * cos - y * sin);
+            y = u * (x * sin + y * cos);
+            x = nx;
+            if (sink != null) {
+                sink.accept((float) x, (float) y, 0);
+            }
+        }
+
+        state[offset] = (float) x;
+        state[offset + 1] = (float) y;
+        state[offset + 2] = 0;
+    }
+
+    public float getU() {
+        return u;
+    }
+
+}
@@ -0,0 +1,66 @@
+package maps;
+
+import attractors.AttractorI;
+import math.TrajectorySink;
+import math.Vector;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An attractor of a discrete-time system: a map applied over and over to a point, unlike the flows of {@link AttractorI}
+ * which are evolved continuously, through time steps of an integrator.
+ *
+ * <p>
+ * States are stored like those of flows, as (x, y, z) floats, so that maps emit points to the same {@link TrajectorySink}s.
+ * Planar maps keep z at 0.
+ * Iterating a map is cheap compared to a step of a flow, and its attractor only shows after millions of iterations, so
+ * maps are rendered by density (see {@code render.MapDensityRenderer}) rather than as a trail
+ * <p>
+ * */
+public interface MapI {
+
+    /**
+     * Number of floats a state occupies in primitive state storage
+     * */
+    int STATE_SIZE = AttractorI.STATE_SIZE;
+
+    @NotNull
+    String getTitle();
+
+    @NotNull
+    Vector getStart();
+
+    /**
+     * @return number of coordinates the map acts on: 2 for planar maps, 3 otherwise
+     * */
+    int dimension();
+
+    /**
+     * Writes the initial state as (x, y, z) into {@code state}, starting at {@code offset}
+     * */
+    default void getStart(@NotNull float[] state, int offset) {
+        final Vector start = getStart();
+        state[offset] = start.x;
+        state[offset + 1] = start.y;
+        state[offset + 2] = start.z;
+    }
+
+    /**
+     * Applies the map to the state stored in {@code state} at {@code offset} {@code iterations} times, in place,
+     * emitting every new point to {@code sink} (if any).
+     *
+     * <p>
+     * This is the hot loop of density rendering: implementations keep the state in locals for the whole batch and do not
+     * allocate, so the batch costs a single virtual call
+     * <p>
+     * */
+    void iterate(@NotNull float[] state, int offset, int iterations, @Nullable TrajectorySink sink);
+
+    /**
+     * Applies the map once to the state stored in {@code state} at {@code offset}, in place
+     * */
+    default void step(@NotNull float[] state, int offset) {
+        iterate(state, offset, 1, null);
+    }
+
+}
@@ -0,0 +1,160 @@
+package maps;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Built-in maps, with their constructor parameters described by name so that batch tools can set them
+ * */
+public enum Maps {
+
+    CLIFFORD(CliffordMap.DEFAULT_TITLE, CliffordMap.class,
+            new String[] { "a", "b", "c", "d" },
+            new float[] { CliffordMap.DEFAULT_A, CliffordMap.DEFAULT_B, CliffordMap.DEFAULT_C, CliffordMap.DEFAULT_D },
+            p -> new CliffordMap(CliffordMap.DEFAULT_TITLE, CliffordMap.DEFAULT_START, p[0], p[1], p[2], p[3]),
+            m -> {
+                final CliffordMap c = (CliffordMap) m;
+                return new float[] { c.getA(), c.getB(), c.getC(), c.getD() };
+            }),
+
+    DE_JONG(DeJongMap.DEFAULT_TITLE, DeJongMap.class,
+            new String[] { "a", "b", "c", "d" },
+            new float[] { DeJongMap.DEFAULT_A, DeJongMap.DEFAULT_B, DeJongMap.DEFAULT_C, DeJongMap.DEFAULT_D },
+            p -> new DeJongMap(DeJongMap.DEFAULT_TITLE, DeJongMap.DEFAULT_START, p[0], p[1], p[2], p[3]),
+            m -> {
+                final DeJongMap j = (DeJongMap) m;
+                return new float[] { j.getA(), j.getB(), j.getC(), j.getD() };
+            }),
+
+    HENON(HenonMap.DEFAULT_TITLE, HenonMap.class,
+            new String[] { "a", "b" },
+            new float[] { HenonMap.DEFAULT_A, HenonMap.DEFAULT_B },
+            p -> new HenonMap(HenonMap.DEFAULT_TITLE, HenonMap.DEFAULT_START, p[0], p[1]),
+            m -> {
+                final HenonMap h = (HenonMap) m;
+                return new float[] { h.getA(), h.getB() };
+            }),
+
+    IKEDA(IkedaMap.DEFAULT_TITLE, IkedaMap.class,
+            new String[] { "u" },
+            new float[] { IkedaMap.DEFAULT_U },
+            p -> new IkedaMap(IkedaMap.DEFAULT_TITLE, IkedaMap.DEFAULT_START, p[0]),
+            m -> new float[] { ((IkedaMap) m).getU() });
+
+    @NotNull
+    public final String displayName;
+    @NotNull
+    private final Class<? extends MapI> mClass;
+    @NotNull
+    private final String[] mParamNames;
+    @NotNull
+    private final float[] mDefaults;
+    @NotNull
+    private final Function<float[], MapI> mFactory;
+    @NotNull
+    private final Function<MapI, float[]> mParamsGetter;
+
+    Maps(@NotNull String displayName, @NotNull Class<? extends MapI> cls, @NotNull String[] paramNames, @NotNull float[] defaults,
+         @NotNull Function<float[], MapI> factory, @NotNull Function<MapI, float[]> paramsGetter) {
+        this.displayName = displayName;
+        mClass = cls;
+        mParamNames = paramNames;
+        mDefaults = defaults;
+        mFactory = factory;
+        mParamsGetter = paramsGetter;
+    }
+
+    /**
+     * @return identifier for command lines, e.g. {@code de_jong}
+     * */
+    @NotNull
+    public String id() {
+        return name().toLowerCase();
+    }
+
+    public int parameterCount() {
+        return mParamNames.length;
+    }
+
+    @NotNull
+    public String parameterName(int index) {
+        return mParamNames[index];
+    }
+
+    /**
+     * @return index of the named parameter, or -1 if there is no such parameter
+     * */
+    public int parameterIndex(@NotNull String name) {
+        for (int i = 0; i < mParamNames.length; i++) {
+            if (mParamNames[i].equalsIgnoreCase(name))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return a new array with the default parameters, in constructor order
+     * */
+    @NotNull
+    public float[] defaults() {
+        return mDefaults.clone();
+    }
+
+    /**
+     * @param params parameters in constructor order, see {@link #parameterName(int)}
+     * */
+    @NotNull
+    public MapI create(@NotNull float[] params) {
+        if (params.length != mParamNames.length)
+            throw new IllegalArgumentException(displayName + " takes " + mParamNames.length + " parameters " + Arrays.toString(mParamNames) + ", given: " + params.length);
+
+        return mFactory.apply(params);
+    }
+
+    @NotNull
+    public MapI create() {
+        return create(mDefaults);
+    }
+
+    /**
+     * @return the parameters of the given map in constructor order
+     * @throws IllegalArgumentException if the map is not of this kind
+     * */
+    @NotNull
+    public float[] parametersOf(@NotNull MapI map) {
+        if (map.getClass() != mClass)
+            throw new IllegalArgumentException("Not a " + displayName + ": " + map.getClass().getName());
+
+        return mParamsGetter.apply(map);
+    }
+
+    @Nullable
+    public static Maps fromName(@Nullable String name) {
+        if (name != null) {
+            for (Maps m: values()) {
+                if (m.id().equalsIgnoreCase(name) || m.displayName.equalsIgnoreCase(name) || m.id().replace("_", "").equalsIgnoreCase(name))
+                    return m;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the kind of the given map, or null if it is not exactly one of the built-in classes
+     * */
+    @Nullable
+    public static Maps of(@NotNull MapI map) {
+        for (Maps m: values()) {
+            if (m.mClass == map.getClass())
+                return m;
+        }
+
+        return null;
+    }
+
+}
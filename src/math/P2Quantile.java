@@ -0,0 +1,134 @@
+package math;
+
+import java.util.Arrays;
+
+/**
+ * Streaming estimator of a single quantile using the P-square algorithm (Jain and Chlamtac, 1985).
+ *
+ * <p>
+ * Keeps only five markers regardless of the number of observations, so it has O(1) memory and time per value,
+ * and never allocates
+ * <p>
+ * */
+public class P2Quantile {
+
+    private final double p;
+
+    private final double[] q = new double[5];          // marker heights
+    private final double[] n = new double[5];          // actual marker positions
+    private final double[] np = new double[5];         // desired marker positions
+    private final double[] dn = new double[5];         // desired position increments
+    private final double[] tmp = new double[5];
+    private long count;
+
+    /**
+     * @param p quantile to estimate, in range (0, 1)
+     * */
+    public P2Quantile(double p) {
+        if (!(p > 0 && p < 1))
+            throw new IllegalArgumentException("Quantile must be in range (0, 1), given: " + p);
+
+        this.p = p;
+        dn[0] = 0;
+        dn[1] = p / 2;
+        dn[2] = p;
+        dn[3] = (1 + p) / 2;
+        dn[4] = 1;
+    }
+
+    public double quantile() {
+        return p;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    public void add(double x) {
+        if (count < 5) {
+            q[(int) count++] = x;
+            if (count == 5) {
+                Arrays.sort(q);
+                for (int i = 0; i < 5; i++) {
+                    n[i] = i + 1;
+                }
+
+                np[0] = 1;
+                np[1] = 1 + 2 * p;
+                np[2] = 1 + 4 * p;
+                np[3] = 3 + 2 * p;
+                np[4] = 5;
+            }
+
+            return;
+        }
+
+        count++;
+
+        // find the cell of x, and adjust extreme markers
+        final int k;
+        if (x < q[0]) {
+            q[0] = x;
+            k = 0;
+        } else if (x >= q[4]) {
+            q[4] = x;
+            k = 3;
+        } else {
+            int c = 0;
+            while (c < 3 && x >= q[c + 1]) {
+                c++;
+            }
+            k = c;
+        }
+
+        for (int i = k + 1; i < 5; i++) {
+            n[i]++;
+        }
+
+        for (int i = 0; i < 5; i++) {
+            np[i] += dn[i];
+        }
+
+        // adjust heights of the middle markers
+        for (int i = 1; i < 4; i++) {
+            final double d = np[i] - n[i];
+            if ((d >= 1 && n[i + 1] - n[i] > 1) || (d <= -1 && n[i - 1] - n[i] < -1)) {
+                final int ds = d > 0? 1: -1;
+                final double qp = parabolic(i, ds);
+                q[i] = (q[i - 1] < qp && qp < q[i + 1])? qp: linear(i, ds);
+                n[i] += ds;
+            }
+        }
+    }
+
+    private double parabolic(int i, int d) {
+        return q[i] + d / (n[i + 1] - n[i - 1]) * (
+                (n[i] - n[i - 1] + d) * (q[i + 1] - q[i]) / (n[i + 1] - n[i]) +
+                (n[i + 1] - n[i] - d) * (q[i] - q[i - 1]) / (n[i] - n[i - 1]));
+    }
+
+    private double linear(int i, int d) {
+        return q[i] + d * (q[i + d] - q[i]) / (n[i + d] - n[i]);
+    }
+
+    /**
+     * @return current estimate of the quantile, or 0 if no values were added
+     * */
+    public double get() {
+        if (count >= 5)
+            return q[2];
+        if (count == 0)
+            return 0;
+
+        // exact quantile of the few values seen so far
+        final int c = (int) count;
+        System.arraycopy(q, 0, tmp, 0, c);
+        Arrays.sort(tmp, 0, c);
+        return tmp[(int) Math.min(c - 1, Math.round(p * (c - 1)))];
+    }
+
+}
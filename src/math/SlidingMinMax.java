@@ -0,0 +1,106 @@
+package math;
+
+/**
+ * Min and max of a sliding window of values, in O(1) amortized per value.
+ *
+ * <p>
+ * Keeps two monotonic deques of (sequence number, value) pairs: values that can never become the window min (max)
+ * are discarded on insertion, and values that left the window are discarded from the front on eviction.
+ * All storage is primitive and preallocated for the window capacity
+ * <p>
+ * */
+public class SlidingMinMax {
+
+    private final int mCapacity;
+
+    private final long[] minSeq, maxSeq;
+    private final float[] minVal, maxVal;
+    private int minHead, minSize;
+    private int maxHead, maxSize;
+
+    /**
+     * @param capacity max number of values in the window
+     * */
+    public SlidingMinMax(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be > 0, given: " + capacity);
+
+        mCapacity = capacity;
+        minSeq = new long[capacity];
+        maxSeq = new long[capacity];
+        minVal = new float[capacity];
+        maxVal = new float[capacity];
+    }
+
+    public int capacity() {
+        return mCapacity;
+    }
+
+    public boolean isEmpty() {
+        return minSize == 0;
+    }
+
+    public void clear() {
+        minHead = minSize = 0;
+        maxHead = maxSize = 0;
+    }
+
+    private int index(int head, int i) {
+        final int j = head + i;
+        return j < mCapacity? j: j - mCapacity;
+    }
+
+    /**
+     * Adds a value. Sequence numbers must be strictly increasing, and the caller must evict values that leave the window
+     * before more than {@link #capacity()} values are held
+     * */
+    public void add(long seq, float value) {
+        // min deque: increasing values from front to back
+        while (minSize > 0 && minVal[index(minHead, minSize - 1)] >= value) {
+            minSize--;
+        }
+
+        int i = index(minHead, minSize++);
+        minSeq[i] = seq;
+        minVal[i] = value;
+
+        // max deque: decreasing values from front to back
+        while (maxSize > 0 && maxVal[index(maxHead, maxSize - 1)] <= value) {
+            maxSize--;
+        }
+
+        i = index(maxHead, maxSize++);
+        maxSeq[i] = seq;
+        maxVal[i] = value;
+    }
+
+    /**
+     * Evicts all values with sequence number less than {@code firstSeq}
+     * */
+    public void evictBefore(long firstSeq) {
+        while (minSize > 0 && minSeq[minHead] < firstSeq) {
+            minHead = index(minHead, 1);
+            minSize--;
+        }
+
+        while (maxSize > 0 && maxSeq[maxHead] < firstSeq) {
+            maxHead = index(maxHead, 1);
+            maxSize--;
+        }
+    }
+
+    /**
+     * @return min of the window, or 0 if empty
+     * */
+    public float min() {
+        return minSize > 0? minVal[minHead]: 0;
+    }
+
+    /**
+     * @return max of the window, or 0 if empty
+     * */
+    public float max() {
+        return maxSize > 0? maxVal[maxHead]: 0;
+    }
+
+}
@@ -0,0 +1,165 @@
+package math;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bounding box of the points currently held in a {@link TrajectoryBuffer}, that grows and shrinks as points are
+ * appended and evicted.
+ *
+ * <p>
+ * The exact mode tracks the min and max of the window with {@link SlidingMinMax}, in O(1) amortized per point.
+ * The optional robust mode instead reports the {@code q} and {@code 1 - q} quantiles per axis with streaming
+ * {@link P2Quantile} estimators, so that a few outliers (like the initial transient) do not blow up the framing.
+ * Since P-square cannot forget values, two estimators per bound run staggered by one window length and the older one is
+ * reported, so the estimate covers between one and two windows of recent points. Estimates are only maintained
+ * while in robust mode
+ * <p>
+ * */
+public class TrajectoryBounds {
+
+    public static final float DEFAULT_ROBUST_QUANTILE = 0.01f;
+
+    private final int mWindow;
+    private final float mRobustQuantile;
+
+    @NotNull
+    private final SlidingMinMax xs, ys, zs;
+    @NotNull
+    private final P2Quantile[] mQuantiles;          // [generation][axis][low, high], flattened
+    private long mRobustCount;
+
+    private boolean mRobust;
+
+    public TrajectoryBounds(int window, float robustQuantile) {
+        mWindow = window;
+        mRobustQuantile = robustQuantile;
+        xs = new SlidingMinMax(window);
+        ys = new SlidingMinMax(window);
+        zs = new SlidingMinMax(window);
+
+        mQuantiles = new P2Quantile[12];
+        for (int g = 0; g < 2; g++) {
+            for (int axis = 0; axis < 3; axis++) {
+                mQuantiles[g * 6 + axis * 2] = new P2Quantile(robustQuantile);
+                mQuantiles[g * 6 + axis * 2 + 1] = new P2Quantile(1 - robustQuantile);
+            }
+        }
+    }
+
+    public TrajectoryBounds(int window) {
+        this(window, DEFAULT_ROBUST_QUANTILE);
+    }
+
+    public int window() {
+        return mWindow;
+    }
+
+    public float getRobustQuantile() {
+        return mRobustQuantile;
+    }
+
+    public boolean isRobust() {
+        return mRobust;
+    }
+
+    /**
+     * @param robust whether to report quantile based bounds instead of exact ones
+     * */
+    public void setRobust(boolean robust) {
+        if (mRobust == robust)
+            return;
+
+        mRobust = robust;
+        clearRobust();          // estimates are only maintained while in robust mode
+    }
+
+    private void clearRobust() {
+        for (P2Quantile q: mQuantiles) {
+            q.clear();
+        }
+
+        mRobustCount = 0;
+    }
+
+    public void clear() {
+        xs.clear();
+        ys.clear();
+        zs.clear();
+        clearRobust();
+    }
+
+    /**
+     * Accounts for the point just appended to {@code buffer} (its newest point), and for any point it evicted
+     * */
+    public void onAdded(@NotNull TrajectoryBuffer buffer) {
+        final long seq = buffer.totalAdded() - 1;
+        final long first = buffer.firstSequence();
+        final float x = buffer.lastX(), y = buffer.lastY(), z = buffer.lastZ();
+
+        xs.evictBefore(first);
+        ys.evictBefore(first);
+        zs.evictBefore(first);
+
+        xs.add(seq, x);
+        ys.add(seq, y);
+        zs.add(seq, z);
+
+        if (!mRobust)
+            return;
+
+        // Robust estimates
+        for (int g = 0; g < 2; g++) {
+            final int o = g * 6;
+            mQuantiles[o].add(x);
+            mQuantiles[o + 1].add(x);
+            mQuantiles[o + 2].add(y);
+            mQuantiles[o + 3].add(y);
+            mQuantiles[o + 4].add(z);
+            mQuantiles[o + 5].add(z);
+        }
+
+        if (++mRobustCount % mWindow == 0) {
+            // restart the generation that has seen more values (the second one on the very first window)
+            final long c0 = mQuantiles[0].count(), c1 = mQuantiles[6].count();
+            final int restart = c0 == c1 || c1 > c0? 1: 0;
+            for (int i = 0; i < 6; i++) {
+                mQuantiles[restart * 6 + i].clear();
+            }
+        }
+    }
+
+    private boolean useRobust() {
+        return mRobust && mRobustCount > 0;
+    }
+
+    private float robust(int index) {
+        // report the generation that has seen more values
+        final int g = mQuantiles[0].count() >= mQuantiles[6].count()? 0: 1;
+        return (float) mQuantiles[g * 6 + index].get();
+    }
+
+    public float xMin() {
+        return useRobust()? robust(0): xs.min();
+    }
+
+    public float xMax() {
+        return useRobust()? robust(1): xs.max();
+    }
+
+    public float yMin() {
+        return useRobust()? robust(2): ys.min();
+    }
+
+    public float yMax() {
+        return useRobust()? robust(3): ys.max();
+    }
+
+    public float zMin() {
+        return useRobust()? robust(4): zs.min();
+    }
+
+    public float zMax() {
+        return useRobust()? robust(5): zs.max();
+    }
+
+}
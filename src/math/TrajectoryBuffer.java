@@ -0,0 +1,185 @@
+package math;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A fixed-capacity ring buffer of trajectory points
+ *
+ * <p>
+ * Coordinates are stored in parallel primitive arrays (and optionally a time array),
+ * so appending and evicting are O(1) and never allocate. Points are addressed by a
+ * logical index in range [0, size), where 0 is the oldest retained point and
+ * {@code size - 1} is the newest one. When the buffer is full, appending a point
+ * evicts the oldest one.
+ * <p>
+ */
+public class TrajectoryBuffer implements TrajectorySink {
+
+    private final int mCapacity;
+    @NotNull
+    private final float[] xs, ys, zs;
+    private final float[] ts;        // null if time is not tracked
+
+    private int mHead;               // physical index of the oldest point
+    private int mSize;
+
+    /**
+     * Total number of points ever appended since the last {@link #clear()}.
+     * The absolute sequence number of the point at logical index {@code i} is {@code totalAdded() - size() + i}
+     * */
+    private long mTotalAdded;
+
+    public TrajectoryBuffer(int capacity, boolean trackTime) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be > 0, given: " + capacity);
+
+        mCapacity = capacity;
+        xs = new float[capacity];
+        ys = new float[capacity];
+        zs = new float[capacity];
+        ts = trackTime? new float[capacity]: null;
+    }
+
+    public TrajectoryBuffer(int capacity) {
+        this(capacity, false);
+    }
+
+    public int capacity() {
+        return mCapacity;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public boolean isFull() {
+        return mSize == mCapacity;
+    }
+
+    public boolean tracksTime() {
+        return ts != null;
+    }
+
+    public long totalAdded() {
+        return mTotalAdded;
+    }
+
+    /**
+     * @return absolute sequence number of the oldest retained point
+     * */
+    public long firstSequence() {
+        return mTotalAdded - mSize;
+    }
+
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+        mTotalAdded = 0;
+    }
+
+    private int physicalIndex(int index) {
+        final int i = mHead + index;
+        return i < mCapacity? i: i - mCapacity;
+    }
+
+    /**
+     * Appends a point, evicting the oldest one if the buffer is full
+     *
+     * @return true if a point was evicted
+     * */
+    public boolean add(float x, float y, float z, float t) {
+        final boolean evict = mSize == mCapacity;
+        final int i;
+        if (evict) {
+            i = mHead;
+            mHead = mHead + 1 == mCapacity? 0: mHead + 1;
+        } else {
+            i = physicalIndex(mSize);
+            mSize++;
+        }
+
+        xs[i] = x;
+        ys[i] = y;
+        zs[i] = z;
+        if (ts != null) {
+            ts[i] = t;
+        }
+
+        mTotalAdded++;
+        return evict;
+    }
+
+    public boolean add(float x, float y, float z) {
+        return add(x, y, z, 0);
+    }
+
+    public boolean add(@NotNull Vector v) {
+        return add(v.x, v.y, v.z, 0);
+    }
+
+    @Override
+    public void accept(float x, float y, float z) {
+        add(x, y, z, 0);
+    }
+
+    /**
+     * Removes the oldest point
+     *
+     * @return false if the buffer was empty
+     * */
+    public boolean removeFirst() {
+        if (mSize == 0)
+            return false;
+
+        mHead = mHead + 1 == mCapacity? 0: mHead + 1;
+        mSize--;
+        return true;
+    }
+
+    public float x(int index) {
+        return xs[physicalIndex(index)];
+    }
+
+    public float y(int index) {
+        return ys[physicalIndex(index)];
+    }
+
+    public float z(int index) {
+        return zs[physicalIndex(index)];
+    }
+
+    public float t(int index) {
+        return ts != null? ts[physicalIndex(index)]: 0;
+    }
+
+    public float lastX() {
+        return x(mSize - 1);
+    }
+
+    public float lastY() {
+        return y(mSize - 1);
+    }
+
+    public float lastZ() {
+        return z(mSize - 1);
+    }
+
+    /**
+     * Copies the point at the given logical index into {@code out}
+     * */
+    @NotNull
+    public Vector get(int index, @NotNull Vector out) {
+        final int i = physicalIndex(index);
+        return out.set(xs[i], ys[i], zs[i]);
+    }
+
+    @NotNull
+    public Vector getLast(@NotNull Vector out) {
+        return get(mSize - 1, out);
+    }
+
+}
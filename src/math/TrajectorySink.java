@@ -0,0 +1,11 @@
+package math;
+
+/**
+ * Receives the points of a trajectory, one at a time, as they are computed
+ * */
+@FunctionalInterface
+public interface TrajectorySink {
+
+    void accept(float x, float y, float z);
+
+}
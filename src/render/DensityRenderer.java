@@ -0,0 +1,338 @@
+package render;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import processing.core.PImage;
+import processing.core.PMatrix3D;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Renders the density of an attractor's invariant measure: how often its trajectory visits each pixel of the view, after
+ * integrating for as long as the view stays still.
+ *
+ * <p>
+ * Worker threads integrate their own trajectories of the attractor as fast as they can, and count the points they project
+ * to each pixel (through the view set by {@link #setView}) in a histogram of their own, so they never contend. Memory is
+ * that of one int per pixel and worker, whatever the number of points. When the view changes, every worker starts over
+ * with an empty histogram.
+ * <p>
+ * {@link #resolve} merges the histograms and tone maps them into an image, see {@link ToneMapper}. Called once per frame
+ * on the animation thread, the image sharpens as samples accumulate
+ * <p>
+ * */
+public class DensityRenderer {
+
+    /**
+     * Simulation time integrated by each worker before it starts counting, so that its trajectory settles onto the attractor
+     * */
+    public static final float DEFAULT_TRANSIENT_TIME = 20f;
+
+    /* Steps integrated between two checks for a view change */
+    private static final int BATCH_STEPS = 8192;
+
+    /* Spread of the initial states of the workers, around the attractor's initial state */
+    private static final float SEED_RADIUS = 1e-3f;
+
+    private static final long IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * @return number of workers that leaves a core for the animation thread and the simulation
+     * */
+    public static int defaultThreads() {
+        return Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+    }
+
+    /* A projection, immutable once published */
+    private static final class View {
+
+        final int generation;
+        final int width, height;
+        @NotNull
+        final float[] matrix = new float[16];       // row-major
+
+        View(int generation, @NotNull PMatrix3D m, int width, int height) {
+            this.generation = generation;
+            this.width = width;
+            this.height = height;
+            m.get(matrix);
+        }
+
+        boolean matches(@NotNull PMatrix3D m, int width, int height) {
+            final float[] a = matrix;
+            return this.width == width && this.height == height
+                    && a[0] == m.m00 && a[1] == m.m01 && a[2] == m.m02 && a[3] == m.m03
+                    && a[4] == m.m10 && a[5] == m.m11 && a[6] == m.m12 && a[7] == m.m13
+                    && a[8] == m.m20 && a[9] == m.m21 && a[10] == m.m22 && a[11] == m.m23
+                    && a[12] == m.m30 && a[13] == m.m31 && a[14] == m.m32 && a[15] == m.m33;
+        }
+    }
+
+    /* Counts of a worker for a view generation */
+    private static final class Histogram {
+
+        final int generation;
+        @NotNull
+        final int[] counts;
+
+        Histogram(int generation, @NotNull int[] counts) {
+            this.generation = generation;
+            this.counts = counts;
+        }
+    }
+
+    private final class Worker extends Thread implements TrajectorySink {
+
+        @NotNull
+        private final IntegratorI mIntegrator;
+        @NotNull
+        private final float[] mState = new float[AttractorI.STATE_SIZE];
+        @NotNull
+        private final SplittableRandom mRandom;
+
+        @Nullable
+        private volatile Histogram mHistogram;
+        private volatile long mSamples;         // counted into the histogram, in or out of the view
+
+        /* View and counts of the batch being integrated */
+        @Nullable
+        private float[] mMatrix;
+        @Nullable
+        private int[] mCounts;
+        private int mWidth, mHeight;
+
+        Worker(int index, @NotNull IntegratorI integrator) {
+            super("Density-" + index);
+            setDaemon(true);
+            setPriority(Thread.MIN_PRIORITY);
+            mIntegrator = integrator;
+            mRandom = new SplittableRandom(index * 0x9E3779B97F4A7C15L + System.nanoTime());
+        }
+
+        /* Restarts from a random state close to the attractor's initial state, and skips the transient */
+        private void seed() {
+            mAttractor.getStart(mState, 0);
+            for (int i = 0; i < mState.length; i++) {
+                mState[i] += (float) ((mRandom.nextDouble() * 2 - 1) * SEED_RADIUS);
+            }
+
+            mIntegrator.reset();
+            int remaining = mTransientSteps;
+            while (remaining > 0 && mRunning) {
+                final int n = Math.min(remaining, BATCH_STEPS);
+                mIntegrator.integrate(mAttractor, mState, 0, mDt, n, null);
+                remaining -= n;
+            }
+        }
+
+        @Override
+        public void accept(float x, float y, float z) {
+            final float[] m = mMatrix;
+            final float w = m[12] * x + m[13] * y + m[14] * z + m[15];
+            if (!(w > 0))
+                return;         // behind the camera
+
+            final float sx = mWidth * (1 + (m[0] * x + m[1] * y + m[2] * z + m[3]) / w) * 0.5f;
+            final float sy = mHeight - mHeight * (1 + (m[4] * x + m[5] * y + m[6] * z + m[7]) / w) * 0.5f;
+            if (sx >= 0 && sx < mWidth && sy >= 0 && sy < mHeight) {
+                final int i = (int) sy * mWidth + (int) sx;
+                final int[] counts = mCounts;
+                if (counts[i] != Integer.MAX_VALUE) {
+                    counts[i]++;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            seed();
+
+            while (mRunning) {
+                final View view = mView;
+                if (view == null) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NS);
+                    continue;
+                }
+
+                Histogram h = mHistogram;
+                if (h == null || h.generation != view.generation) {
+                    final int size = view.width * view.height;
+                    final int[] counts = h != null && h.counts.length == size? h.counts: new int[size];
+                    Arrays.fill(counts, 0);
+                    mSamples = 0;
+                    h = new Histogram(view.generation, counts);
+                    mHistogram = h;
+                }
+
+                mMatrix = view.matrix;
+                mCounts = h.counts;
+                mWidth = view.width;
+                mHeight = view.height;
+                mIntegrator.integrate(mAttractor, mState, 0, mDt, BATCH_STEPS, this);
+                mSamples += BATCH_STEPS;
+
+                if (!(Float.isFinite(mState[0]) && Float.isFinite(mState[1]) && Float.isFinite(mState[2]))) {
+                    seed();         // diverged, e.g. with too large a step
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private final AttractorI mAttractor;
+    private final float mDt;
+    private final int mTransientSteps;
+    @NotNull
+    private final Worker[] mWorkers;
+
+    @Nullable
+    private volatile View mView;
+    private volatile boolean mRunning = true;
+
+    /* Resolve scratch, animation thread only */
+    @NotNull
+    private int[] mMerged = new int[0];
+
+    /**
+     * @param integrator prototype integrator, copied for every worker
+     * @param dt fixed step size
+     * @param threads number of workers
+     * */
+    public DensityRenderer(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, float dt, float transientTime, int threads) {
+        mAttractor = attractor;
+        mDt = dt;
+        mTransientSteps = Math.max(Math.round(transientTime / dt), 0);
+        mWorkers = new Worker[Math.max(threads, 1)];
+        for (int i = 0; i < mWorkers.length; i++) {
+            mWorkers[i] = new Worker(i, integrator.copy());
+        }
+    }
+
+    public DensityRenderer(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, float dt) {
+        this(attractor, integrator, dt, DEFAULT_TRANSIENT_TIME, defaultThreads());
+    }
+
+    @NotNull
+    public AttractorI getAttractor() {
+        return mAttractor;
+    }
+
+    public int getThreads() {
+        return mWorkers.length;
+    }
+
+    /**
+     * @return number of points integrated since the view last changed
+     * */
+    public long getSamples() {
+        long samples = 0;
+        for (Worker w: mWorkers) {
+            samples += w.mSamples;
+        }
+        return samples;
+    }
+
+    public void start() {
+        for (Worker w: mWorkers) {
+            w.start();
+        }
+    }
+
+    /**
+     * Stops the workers and waits for them to finish
+     * */
+    public void quit() {
+        mRunning = false;
+        for (Worker w: mWorkers) {
+            LockSupport.unpark(w);
+        }
+
+        for (Worker w: mWorkers) {
+            try {
+                w.join();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets the projection points are counted through, restarting the accumulation if it changed.
+     * Points map to pixels as in Processing's {@code screenX()} and {@code screenY()}
+     *
+     * @param projModelView projection matrix times model-view matrix, from attractor space to clip space. Copied
+     * @param width, height size of the histogram, in pixels
+     * */
+    public void setView(@NotNull PMatrix3D projModelView, int width, int height) {
+        if (width < 1 || height < 1)
+            return;
+
+        final View view = mView;
+        if (view != null && view.matches(projModelView, width, height))
+            return;
+
+        mView = new View(view != null? view.generation + 1: 0, projModelView, width, height);
+    }
+
+    /**
+     * Merges the histograms of the workers, and tone maps the counts into the pixels of {@code out}, the highest count
+     * being mapped to the end of the palette
+     *
+     * @param out image of the size of the view
+     * @return false if there is no view yet or {@code out} does not match its size, in which case {@code out} is not written
+     * */
+    public boolean resolve(@NotNull PImage out, @NotNull ToneMapper toneMapper) {
+        final View view = mView;
+        if (view == null || out.width != view.width || out.height != view.height)
+            return false;
+
+        final int size = view.width * view.height;
+        if (mMerged.length != size) {
+            mMerged = new int[size];
+        }
+
+        final int[] merged = mMerged;
+        boolean empty = true;
+        for (Worker w: mWorkers) {
+            final Histogram h = w.mHistogram;
+            if (h == null || h.generation != view.generation)
+                continue;
+
+            final int[] counts = h.counts;
+            if (empty) {
+                System.arraycopy(counts, 0, merged, 0, size);
+                empty = false;
+            } else {
+                for (int i = 0; i < size; i++) {
+                    final int sum = merged[i] + counts[i];
+                    merged[i] = sum < 0? Integer.MAX_VALUE: sum;        // saturate
+                }
+            }
+        }
+
+        if (empty) {
+            Arrays.fill(merged, 0);
+        }
+
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            if (merged[i] > max) {
+                max = merged[i];
+            }
+        }
+
+        out.loadPixels();
+        toneMapper.setMax(max);
+        toneMapper.map(merged, 0, out.pixels, 0, size);
+        out.updatePixels();
+        return true;
+    }
+
+}
@@ -0,0 +1,108 @@
+package render;
+
+import attractors.DrawConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import sim.Ensemble;
+
+/**
+ * Draws an {@link Ensemble} as a point cloud, or as short comet tails fading out with age.
+ * Particles are colored by their index along the draw config's gradient, so neighbouring seeds share a color
+ * and their divergence is easy to follow
+ * */
+public class EnsembleRenderer {
+
+    public enum Style {
+        POINTS("Points"),
+        COMETS("Comets");
+
+        @NotNull
+        public final String displayName;
+
+        Style(@NotNull String displayName) {
+            this.displayName = displayName;
+        }
+
+        @NotNull
+        public Style next() {
+            final Style[] values = values();
+            return values[(ordinal() + 1) % values.length];
+        }
+    }
+
+    /**
+     * Point size relative to the trail stroke weight
+     * */
+    public static final float POINT_WEIGHT_MULTIPLIER = 3;
+
+    @Nullable
+    private Ensemble mColorsFor;
+    @Nullable
+    private DrawConfig mColorsConfig;
+    @NotNull
+    private int[] mColors = new int[0];
+    @NotNull
+    private int[] mAlphas = new int[0];
+
+    private void ensureColors(@NotNull Ensemble ensemble, @NotNull DrawConfig drawConfig) {
+        if (mColorsFor == ensemble && mColorsConfig == drawConfig)
+            return;
+
+        final int count = ensemble.count();
+        if (mColors.length != count) {
+            mColors = new int[count];
+        }
+
+        for (int i = 0; i < count; i++) {
+            mColors[i] = drawConfig.argbForPoint(ensemble.x(i), ensemble.y(i), ensemble.z(i), i, count);
+        }
+
+        mColorsFor = ensemble;
+        mColorsConfig = drawConfig;
+    }
+
+    public void draw(@NotNull PGraphics g, @NotNull Ensemble ensemble, @NotNull DrawConfig drawConfig, float strokeWeight, @NotNull Style style) {
+        ensureColors(ensemble, drawConfig);
+        final int[] colors = mColors;
+        final int count = ensemble.count();
+
+        g.pushStyle();
+        g.noFill();
+
+        if (style == Style.COMETS && ensemble.tailSize() > 1) {
+            final int tail = ensemble.tailSize();
+            if (mAlphas.length < tail) {
+                mAlphas = new int[tail];
+            }
+
+            for (int age = 0; age < tail; age++) {
+                mAlphas[age] = (255 * (age + 1) / tail) << 24;       // older segments fade out
+            }
+
+            g.strokeWeight(strokeWeight);
+            g.beginShape(PConstants.LINES);
+            for (int i = 0; i < count; i++) {
+                final int rgb = colors[i] & 0x00FFFFFF;
+                for (int age = 1; age < tail; age++) {
+                    g.stroke(rgb | mAlphas[age - 1]);
+                    g.vertex(ensemble.tailX(age - 1, i), ensemble.tailY(age - 1, i), ensemble.tailZ(age - 1, i));
+                    g.stroke(rgb | mAlphas[age]);
+                    g.vertex(ensemble.tailX(age, i), ensemble.tailY(age, i), ensemble.tailZ(age, i));
+                }
+            }
+        } else {
+            g.strokeWeight(strokeWeight * POINT_WEIGHT_MULTIPLIER);
+            g.beginShape(PConstants.POINTS);
+            for (int i = 0; i < count; i++) {
+                g.stroke(colors[i]);
+                g.vertex(ensemble.x(i), ensemble.y(i), ensemble.z(i));
+            }
+        }
+
+        g.endShape();
+        g.popStyle();
+    }
+
+}
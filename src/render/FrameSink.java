@@ -0,0 +1,28 @@
+package render;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Destination of rendered frames, e.g. an image sequence on disk
+ * */
+public interface FrameSink {
+
+    /**
+     * Consumes a frame. May be called concurrently from several render threads, and frames may arrive out of order
+     * (see {@link OfflineRenderer#render} for what is guaranteed)
+     * The image is reused by the caller once this returns, so implementations must not hold on to it
+     *
+     * @param index index of the frame in the sequence, from 0
+     * */
+    void writeFrame(int index, @NotNull BufferedImage image) throws IOException;
+
+    /**
+     * Called once after the last frame
+     * */
+    default void close() throws IOException {
+    }
+
+}
@@ -0,0 +1,402 @@
+package render;
+
+import maps.MapI;
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Renders the density of a {@link MapI map}'s attractor: iterates it up to billions of times on all cores, and counts the
+ * iterates falling in each pixel of an image covering a rectangle of the xy plane (3D maps are projected along z).
+ *
+ * <p>
+ * {@link #accumulate} runs one task per thread of the pool. Every task iterates an orbit of its own, from a random point
+ * near the map's start, and counts into a histogram of its own: the hot loop is a map iteration and an increment, without
+ * contention or allocation. The histograms are then summed in parallel, by bands of pixels. Histograms are kept across
+ * calls, and reused while the region does not grow.
+ * <p>
+ * When one histogram per thread does not fit in memory, {@link #accumulateShared} counts into a single histogram instead,
+ * with atomic increments: a few times slower per point for the cheapest maps, but memory is that of the region only,
+ * whatever the number of threads.
+ * <p>
+ * Orbits are seeded from the seed and the task index only, so that accumulating any region of the image with the same
+ * seed and pool counts the same points, with either method: regions accumulated one after the other add up to the image
+ * accumulated at once
+ * <p>
+ * */
+public class MapDensityRenderer {
+
+    /**
+     * Receives progress of an {@link #accumulate}, on the pool threads
+     * */
+    public interface Listener {
+
+        void onProgress(long iterations, long total);
+    }
+
+    /**
+     * Iterations discarded by every orbit before counting, so that it settles onto the attractor
+     * */
+    public static final int DEFAULT_TRANSIENT = 1000;
+
+    /* Iterations of the orbit the plane area is fitted to, and margin around it relative to its size */
+    private static final int FIT_ITERATIONS = 1 << 20;
+    private static final float FIT_MARGIN = 0.05f;
+
+    /* Iterations between two checks for divergence and cancellation */
+    private static final int BATCH_ITERATIONS = 1 << 16;
+
+    /* Spread of the initial points of the orbits, around the map's start */
+    private static final float SEED_RADIUS = 1e-3f;
+
+    private static final int MERGE_BANDS_PER_THREAD = 4;
+    private static final int PROGRESS_STEPS = 100;
+
+    /**
+     * @return bytes of histograms an {@link #accumulate} of the given number of pixels takes on the given number of
+     * threads, the summed histogram included
+     * */
+    public static long histogramBytes(long pixels, int threads) {
+        return pixels * Integer.BYTES * (Math.max(threads, 1) + 1L);
+    }
+
+    /**
+     * @return bytes of the histogram an {@link #accumulateShared} of the given number of pixels takes
+     * */
+    public static long sharedHistogramBytes(long pixels) {
+        return pixels * Integer.BYTES;
+    }
+
+    /* Atomic access to the elements of a histogram shared by the tasks */
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * Per-task orbit and histogram, reused across calls
+     * */
+    private final class Task implements TrajectorySink {
+
+        @NotNull
+        final float[] state = new float[MapI.STATE_SIZE];
+        @NotNull
+        int[] counts = new int[0];
+        /* Histogram counted into: counts, or the one shared by all tasks */
+        @NotNull
+        int[] bins = counts;
+        boolean shared;
+
+        /* Plane area and region being accumulated, copied so that the hot loop only reads this task */
+        float xMin, yMax, scaleX, scaleY;
+        int tileX, tileY, tileW, tileH;
+
+        @Override
+        public void accept(float x, float y, float z) {
+            final float fx = (x - xMin) * scaleX, fy = (yMax - y) * scaleY;
+            if (!(fx >= 0 && fy >= 0))
+                return;         // outside, or not a number
+
+            // columns and rows of the whole image, so that a point falls in the same pixel whatever the tiling
+            final int col = (int) fx - tileX, row = (int) fy - tileY;
+            if (col < tileW && row < tileH && col >= 0 && row >= 0) {
+                final int i = row * tileW + col;
+                final int[] bins = this.bins;
+                if (bins[i] != Integer.MAX_VALUE) {
+                    if (shared) {
+                        COUNTS.getAndAdd(bins, i, 1);           // may overshoot the max under contention, see accumulateShared()
+                    } else {
+                        bins[i]++;
+                    }
+                }
+            }
+        }
+
+        /* Restarts the orbit from a random point near the map's start, and discards the transient */
+        void seed(@NotNull SplittableRandom random) {
+            mMap.getStart(state, 0);
+            for (int i = 0; i < mMap.dimension(); i++) {
+                state[i] += (float) ((random.nextDouble() * 2 - 1) * SEED_RADIUS);
+            }
+
+            mMap.iterate(state, 0, mTransient, null);
+        }
+
+        void run(long seed, int index, long iterations, @Nullable Listener listener) {
+            if (!shared) {
+                Arrays.fill(counts, 0, tileW * tileH, 0);
+            }
+
+            final SplittableRandom random = new SplittableRandom(seed + index * 0x9E3779B97F4A7C15L);
+            seed(random);
+
+            long remaining = iterations;
+            while (remaining > 0 && !mCancelled) {
+                final int n = (int) Math.min(remaining, BATCH_ITERATIONS);
+                mMap.iterate(state, 0, n, this);
+                remaining -= n;
+
+                if (!(Float.isFinite(state[0]) && Float.isFinite(state[1]) && Float.isFinite(state[2]))) {
+                    seed(random);           // escaped to infinity
+                }
+
+                onIterated(n, listener);
+            }
+        }
+    }
+
+    @NotNull
+    private final MapI mMap;
+    private final int mWidth, mHeight;
+    private int mTransient = DEFAULT_TRANSIENT;
+
+    /* Plane area of the image, and pixels per unit */
+    private float mXMin = -1, mXMax = 1, mYMin = -1, mYMax = 1;
+    private float mScaleX, mScaleY;
+
+    @NotNull
+    private Task[] mTasks = new Task[0];
+
+    @NotNull
+    private final AtomicLong mIterated = new AtomicLong();
+    private long mTotal;
+    private volatile boolean mCancelled;
+
+    public MapDensityRenderer(@NotNull MapI map, int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+
+        mMap = map;
+        mWidth = width;
+        mHeight = height;
+        setBounds(mXMin, mXMax, mYMin, mYMax);
+    }
+
+    @NotNull
+    public MapI getMap() {
+        return mMap;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public float xMin() {
+        return mXMin;
+    }
+
+    public float xMax() {
+        return mXMax;
+    }
+
+    public float yMin() {
+        return mYMin;
+    }
+
+    public float yMax() {
+        return mYMax;
+    }
+
+    public void setTransient(int iterations) {
+        mTransient = Math.max(iterations, 0);
+    }
+
+    /**
+     * Sets the rectangle of the plane the image covers, y pointing up
+     * */
+    public void setBounds(float xMin, float xMax, float yMin, float yMax) {
+        if (!(xMax > xMin && yMax > yMin))
+            throw new IllegalArgumentException("Invalid bounds: [" + xMin + ", " + xMax + "] x [" + yMin + ", " + yMax + "]");
+
+        mXMin = xMin;
+        mXMax = xMax;
+        mYMin = yMin;
+        mYMax = yMax;
+        mScaleX = mWidth / (xMax - xMin);
+        mScaleY = mHeight / (yMax - yMin);
+    }
+
+    /**
+     * Fits the bounds to an orbit of the map with a margin, widened along one axis to the aspect ratio of the image so
+     * that pixels are square
+     *
+     * @return false if the orbit escaped to infinity, in which case the bounds are unchanged
+     * */
+    public boolean fitBounds() {
+        final float[] state = new float[MapI.STATE_SIZE];
+        mMap.getStart(state, 0);
+        mMap.iterate(state, 0, mTransient, null);
+
+        final float[] b = { Float.MAX_VALUE, -Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE };
+        mMap.iterate(state, 0, FIT_ITERATIONS, (x, y, z) -> {
+            b[0] = Math.min(b[0], x);
+            b[1] = Math.max(b[1], x);
+            b[2] = Math.min(b[2], y);
+            b[3] = Math.max(b[3], y);
+        });
+
+        if (!(Float.isFinite(state[0]) && Float.isFinite(state[1]) && b[1] >= b[0] && b[3] >= b[2]
+                && Float.isFinite(b[1] - b[0]) && Float.isFinite(b[3] - b[2])))
+            return false;
+
+        float w = Math.max(b[1] - b[0], 1e-6f) * (1 + 2 * FIT_MARGIN), h = Math.max(b[3] - b[2], 1e-6f) * (1 + 2 * FIT_MARGIN);
+        final float aspect = (float) mWidth / mHeight;
+        if (w / h < aspect) {
+            w = h * aspect;
+        } else {
+            h = w / aspect;
+        }
+
+        final float cx = (b[0] + b[1]) / 2, cy = (b[2] + b[3]) / 2;
+        setBounds(cx - w / 2, cx + w / 2, cy - h / 2, cy + h / 2);
+        return true;
+    }
+
+    /**
+     * Stops the accumulation in progress after the current batches, see {@link #accumulate}
+     * */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * @return iterations counted by the accumulation in progress, or the last one
+     * */
+    public long getIterations() {
+        return mIterated.get();
+    }
+
+    private void onIterated(int n, @Nullable Listener listener) {
+        final long done = mIterated.addAndGet(n);
+        if (listener != null && mTotal > 0) {
+            final long step = Math.max(mTotal / PROGRESS_STEPS, 1);
+            if ((done - n) / step != done / step) {
+                listener.onProgress(done, mTotal);
+            }
+        }
+    }
+
+    /**
+     * Iterates the map {@code iterations} times in total on all threads of the pool, and counts the iterates that fall in
+     * each pixel of a region of the image. Takes a histogram per thread, see {@link #histogramBytes}
+     *
+     * @param seed seed of the orbits, see the class doc
+     * @param tileX, tileY, tileW, tileH region of the image to count, in pixels from the top left corner
+     * @param out receives the counts of the region, row-major from its top left pixel, at least {@code tileW * tileH} long
+     * @return the highest count in the region. Partial if cancelled, see {@link #isCancelled()}
+     * */
+    public int accumulate(@NotNull ForkJoinPool pool, long iterations, long seed, int tileX, int tileY, int tileW, int tileH,
+                          @NotNull int[] out, @Nullable Listener listener) {
+        return accumulate(pool, iterations, seed, tileX, tileY, tileW, tileH, out, false, listener);
+    }
+
+    /**
+     * Same as {@link #accumulate}, but all threads count straight into {@code out} with atomic increments: memory is that
+     * of the region only, see {@link #sharedHistogramBytes}. Counts saturate at {@link Integer#MAX_VALUE} as well
+     * */
+    public int accumulateShared(@NotNull ForkJoinPool pool, long iterations, long seed, int tileX, int tileY, int tileW, int tileH,
+                                @NotNull int[] out, @Nullable Listener listener) {
+        return accumulate(pool, iterations, seed, tileX, tileY, tileW, tileH, out, true, listener);
+    }
+
+    private int accumulate(@NotNull ForkJoinPool pool, long iterations, long seed, int tileX, int tileY, int tileW, int tileH,
+                           @NotNull int[] out, boolean shared, @Nullable Listener listener) {
+        if (tileW < 1 || tileH < 1 || tileX < 0 || tileY < 0 || tileX + tileW > mWidth || tileY + tileH > mHeight)
+            throw new IllegalArgumentException("Invalid region: " + tileW + "x" + tileH + " at (" + tileX + ", " + tileY + ") of " + mWidth + "x" + mHeight);
+
+        final int size = tileW * tileH;
+        final int threads = pool.getParallelism();
+        if (mTasks.length != threads) {
+            mTasks = new Task[threads];
+            for (int i = 0; i < threads; i++) {
+                mTasks[i] = new Task();
+            }
+        }
+
+        for (Task t: mTasks) {
+            if (!shared && t.counts.length < size) {
+                t.counts = new int[size];
+            }
+
+            t.shared = shared;
+            t.bins = shared? out: t.counts;
+            t.xMin = mXMin;
+            t.yMax = mYMax;
+            t.scaleX = mScaleX;
+            t.scaleY = mScaleY;
+            t.tileX = tileX;
+            t.tileY = tileY;
+            t.tileW = tileW;
+            t.tileH = tileH;
+        }
+
+        if (shared) {
+            Arrays.fill(out, 0, size, 0);
+        }
+
+        mCancelled = false;
+        mIterated.set(0);
+        mTotal = iterations;
+
+        final long share = iterations / threads, extra = iterations % threads;
+        pool.submit(() -> IntStream.range(0, threads).parallel().forEach(i ->
+                mTasks[i].run(seed, i, share + (i < extra? 1: 0), listener))).join();
+
+        // sum by bands (or only saturate the shared counts that overshot), and take the max of each
+        final int bands = Math.min(threads * MERGE_BANDS_PER_THREAD, size);
+        final int[] bandMax = new int[bands];
+        pool.submit(() -> IntStream.range(0, bands).parallel().forEach(b -> {
+            final int from = (int) ((long) size * b / bands), to = (int) ((long) size * (b + 1) / bands);
+            if (shared) {
+                for (int i = from; i < to; i++) {
+                    if (out[i] < 0) {
+                        out[i] = Integer.MAX_VALUE;
+                    }
+                }
+            } else {
+                System.arraycopy(mTasks[0].counts, from, out, from, to - from);
+                for (int t = 1; t < threads; t++) {
+                    final int[] counts = mTasks[t].counts;
+                    for (int i = from; i < to; i++) {
+                        final int sum = out[i] + counts[i];
+                        out[i] = sum < 0? Integer.MAX_VALUE: sum;        // saturate
+                    }
+                }
+            }
+
+            int max = 0;
+            for (int i = from; i < to; i++) {
+                if (out[i] > max) {
+                    max = out[i];
+                }
+            }
+            bandMax[b] = max;
+        })).join();
+
+        // release the shared histogram
+        for (Task t: mTasks) {
+            t.bins = t.counts;
+        }
+
+        int max = 0;
+        for (int m: bandMax) {
+            max = Math.max(max, m);
+        }
+
+        return max;
+    }
+
+}
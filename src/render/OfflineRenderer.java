@@ -0,0 +1,329 @@
+package render;
+
+import attractors.AttractorI;
+import attractors.DrawConfig;
+import integrators.IntegratorI;
+import math.TrajectoryBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders the trail of an attractor to a sequence of frames without a display, see {@link SoftwareTrailRenderer}.
+ *
+ * <p>
+ * The simulation runs on the calling thread. After every {@code stepsPerFrame} steps, the trail is copied into a
+ * free frame slot, and the slot is handed to a pool of render threads that rasterize it and pass the image to a
+ * {@link FrameSink} (e.g. PNG encoding), while the simulation carries on with the next frame. The number of slots is
+ * bounded, so the simulation blocks when the render threads fall behind instead of piling up copies of the trail.
+ * <p>
+ * The view is fitted once to the bounds of the whole run (computed by a first, drawing-free pass over the same steps),
+ * so the framing stays still while the trail grows
+ * <p>
+ * */
+public class OfflineRenderer {
+
+    /**
+     * Receives progress of a {@link #render}, on the render threads
+     * */
+    public interface Listener {
+
+        void onFrameDone(int index);
+    }
+
+    public static final float DEFAULT_YAW = 30;
+    public static final float DEFAULT_PITCH = 20;
+    public static final float DEFAULT_STROKE_WEIGHT = 1;
+
+    /* Frame slots per render thread */
+    private static final int SLOTS_PER_THREAD = 2;
+
+    /**
+     * A copy of the trail at the end of one frame
+     * */
+    private static final class Frame {
+
+        @NotNull
+        final float[] xs, ys, zs;
+        @NotNull
+        final int[] colors;
+        int count;
+        int index;
+
+        Frame(int capacity) {
+            xs = new float[capacity];
+            ys = new float[capacity];
+            zs = new float[capacity];
+            colors = new int[capacity];
+        }
+    }
+
+    /**
+     * Per render thread image and rasterizer, reused across frames
+     * */
+    private final class Canvas {
+
+        @NotNull
+        final BufferedImage image = new BufferedImage(mWidth, mHeight, BufferedImage.TYPE_INT_RGB);
+        @NotNull
+        final Graphics2D g = image.createGraphics();
+        @NotNull
+        final SoftwareTrailRenderer renderer = new SoftwareTrailRenderer();
+        @NotNull
+        final Projector projector = new Projector();
+
+        Canvas() {
+            SoftwareTrailRenderer.setupGraphics(g, mStrokeWeight);
+            g.setBackground(mDrawConfig.bg());
+        }
+
+        void render(@NotNull Frame frame) {
+            projector.setView(mCenterX, mCenterY, mCenterZ, mRadius, mYaw + mOrbit * frame.index, mPitch, mFov, mZoom, mWidth, mHeight);
+            g.clearRect(0, 0, mWidth, mHeight);
+            renderer.draw(g, projector, frame.xs, frame.ys, frame.zs, frame.colors, frame.count);
+        }
+    }
+
+    @NotNull
+    private final AttractorI mAttractor;
+    @NotNull
+    private final DrawConfig mDrawConfig;
+    @NotNull
+    private final IntegratorI mIntegrator;
+    private final float mDt;
+    private final int mStepsPerFrame;
+    private final int mTrailLength;
+    private final int mWidth, mHeight;
+
+    private int mSkipSteps;
+    private float mYaw = DEFAULT_YAW, mPitch = DEFAULT_PITCH, mOrbit;
+    private float mFov = Projector.DEFAULT_FOV, mZoom = 1;
+    private float mStrokeWeight = DEFAULT_STROKE_WEIGHT;
+
+    /* View fitted to the run */
+    private float mCenterX, mCenterY, mCenterZ, mRadius = 1;
+
+    @NotNull
+    private final AtomicInteger mFramesDone = new AtomicInteger();
+    @NotNull
+    private final AtomicReference<Throwable> mError = new AtomicReference<>();
+    private volatile boolean mCancelled;
+
+    /**
+     * @param integrator integrator of the trajectory, owned by this renderer
+     * @param dt fixed step size
+     * @param stepsPerFrame steps the trail advances by between frames
+     * @param trailLength max points of the trail drawn in a frame
+     * */
+    public OfflineRenderer(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, float dt, int stepsPerFrame, int trailLength,
+                           int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+        if (trailLength < 2)
+            throw new IllegalArgumentException("Trail must hold at least 2 points, given: " + trailLength);
+
+        mAttractor = attractor;
+        mDrawConfig = attractor.drawConfig();
+        mIntegrator = integrator;
+        mDt = dt;
+        mStepsPerFrame = Math.max(stepsPerFrame, 1);
+        mTrailLength = trailLength;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * @param steps steps integrated before the first frame, without drawing them
+     * */
+    public void setSkipSteps(int steps) {
+        mSkipSteps = Math.max(steps, 0);
+    }
+
+    /**
+     * @param yaw, pitch camera rotation around the center of the run, in degrees
+     * @param orbit yaw added per frame, in degrees
+     * @param fov field of view, in degrees
+     * @param zoom magnification, 1 to fit the run
+     * */
+    public void setCamera(float yaw, float pitch, float orbit, float fov, float zoom) {
+        mYaw = yaw;
+        mPitch = pitch;
+        mOrbit = orbit;
+        mFov = fov;
+        mZoom = zoom;
+    }
+
+    public void setStrokeWeight(float strokeWeight) {
+        mStrokeWeight = Math.max(strokeWeight, 0.1f);
+    }
+
+    public int getFramesDone() {
+        return mFramesDone.get();
+    }
+
+    /**
+     * Stops an ongoing {@link #render} after the frames in flight
+     * */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    private void resetState(@NotNull float[] state) {
+        mAttractor.getStart(state, 0);
+        mIntegrator.reset();
+        if (mSkipSteps > 0) {
+            mIntegrator.integrate(mAttractor, state, 0, mDt, mSkipSteps, null);
+        }
+    }
+
+    /**
+     * Fits the view to the bounding sphere of all the points the given number of frames will draw
+     * */
+    private void fitView(int frames) {
+        final float[] state = new float[AttractorI.STATE_SIZE];
+        resetState(state);
+
+        final float[] min = { state[0], state[1], state[2] };
+        final float[] max = min.clone();
+        long remaining = (long) frames * mStepsPerFrame;
+        while (remaining > 0 && !mCancelled) {
+            final int n = (int) Math.min(remaining, 1 << 16);
+            mIntegrator.integrate(mAttractor, state, 0, mDt, n, (x, y, z) -> {
+                min[0] = Math.min(min[0], x);
+                max[0] = Math.max(max[0], x);
+                min[1] = Math.min(min[1], y);
+                max[1] = Math.max(max[1], y);
+                min[2] = Math.min(min[2], z);
+                max[2] = Math.max(max[2], z);
+            });
+            remaining -= n;
+        }
+
+        if (!Float.isFinite(min[0] + min[1] + min[2] + max[0] + max[1] + max[2]))
+            throw new IllegalStateException("Trajectory of " + mAttractor.getTitle() + " diverged, nothing to frame");
+
+        mCenterX = (min[0] + max[0]) / 2;
+        mCenterY = (min[1] + max[1]) / 2;
+        mCenterZ = (min[2] + max[2]) / 2;
+        final float dx = max[0] - min[0], dy = max[1] - min[1], dz = max[2] - min[2];
+        mRadius = Math.max((float) Math.sqrt(dx * dx + dy * dy + dz * dz) / 2, 1e-3f);
+    }
+
+    private void onRenderError(@NotNull Throwable t, @NotNull ExecutorService pool) {
+        mError.compareAndSet(null, t);
+        mCancelled = true;
+        pool.shutdownNow();         // wakes up sinks blocked waiting for the failed frame
+    }
+
+    /**
+     * Simulates and renders the given number of frames into the sink, with {@code threads} render threads.
+     * Blocks until all the frames are written or the rendering is {@link #cancel() cancelled}. Does not close the sink.
+     * Frames reach the sink from several threads, possibly out of order, but without gaps: frames {@code 0} to
+     * {@code n - 1} are all written, unless one of them failed
+     *
+     * @param listener progress listener, or null
+     * @return number of frames written
+     * @throws IOException if the sink failed to write a frame
+     * */
+    public int render(int frames, int threads, @NotNull FrameSink sink, @Nullable Listener listener) throws IOException {
+        mCancelled = false;
+        mError.set(null);
+        mFramesDone.set(0);
+
+        fitView(frames);
+
+        final ThreadLocal<Canvas> canvases = ThreadLocal.withInitial(Canvas::new);
+
+        final int workers = Math.max(threads, 1);
+        final BlockingQueue<Frame> free = new ArrayBlockingQueue<>(workers * SLOTS_PER_THREAD);
+        for (int i = 0; i < workers * SLOTS_PER_THREAD; i++) {
+            free.add(new Frame(mTrailLength));
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+            final Thread t = new Thread(r, "Frame renderer");
+            t.setDaemon(true);
+            return t;
+        });
+
+        final TrajectoryBuffer trail = new TrajectoryBuffer(mTrailLength);
+        final float[] state = new float[AttractorI.STATE_SIZE];
+        resetState(state);
+        trail.add(state[0], state[1], state[2]);
+
+        try {
+            for (int f = 0; f < frames && !mCancelled; f++) {
+                mIntegrator.integrate(mAttractor, state, 0, mDt, mStepsPerFrame, trail);
+
+                final Frame frame = free.take();         // blocks while all slots are being rendered
+                final int count = trail.size();
+                for (int i = 0; i < count; i++) {
+                    frame.xs[i] = trail.x(i);
+                    frame.ys[i] = trail.y(i);
+                    frame.zs[i] = trail.z(i);
+                }
+                mDrawConfig.argbForRange(trail, 0, count, 0, count, frame.colors, 0);
+                frame.count = count;
+                frame.index = f;
+
+                final Runnable task = () -> {
+                    try {
+                        // frames handed over are written even if cancelled, so that sinks that need them in order never miss one
+                        if (mError.get() == null) {
+                            final Canvas canvas = canvases.get();
+                            canvas.render(frame);
+                            sink.writeFrame(frame.index, canvas.image);
+                            mFramesDone.incrementAndGet();
+                            if (listener != null) {
+                                listener.onFrameDone(frame.index);
+                            }
+                        }
+                    } catch (Throwable t) {
+                        onRenderError(t, pool);
+                    } finally {
+                        free.add(frame);
+                    }
+                };
+
+                try {
+                    pool.execute(task);
+                } catch (RejectedExecutionException e) {
+                    break;          // shut down by a failed frame
+                }
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            mCancelled = true;
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        final Throwable error = mError.get();
+        if (error instanceof IOException)
+            throw (IOException) error;
+        if (error instanceof RuntimeException)
+            throw (RuntimeException) error;
+        if (error != null)
+            throw new IOException("Rendering failed", error);
+
+        return mFramesDone.get();
+    }
+
+}
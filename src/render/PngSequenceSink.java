@@ -0,0 +1,46 @@
+package render;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes every frame to its own numbered PNG file, e.g. {@code frame_00042.png}. Thread safe
+ * */
+public class PngSequenceSink implements FrameSink {
+
+    public static final String DEFAULT_PREFIX = "frame_";
+
+    @NotNull
+    private final File mDir;
+    @NotNull
+    private final String mPrefix;
+
+    public PngSequenceSink(@NotNull File dir, @NotNull String prefix) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create output directory " + dir.getAbsolutePath());
+
+        mDir = dir;
+        mPrefix = prefix;
+    }
+
+    public PngSequenceSink(@NotNull File dir) throws IOException {
+        this(dir, DEFAULT_PREFIX);
+    }
+
+    @NotNull
+    public File fileFor(int index) {
+        return new File(mDir, String.format("%s%05d.png", mPrefix, index));
+    }
+
+    @Override
+    public void writeFrame(int index, @NotNull BufferedImage image) throws IOException {
+        final File file = fileFor(index);
+        if (!ImageIO.write(image, "png", file))
+            throw new IOException("No PNG writer available for " + file.getName());
+    }
+
+}
@@ -0,0 +1,281 @@
+package render;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG image row by row, top to bottom: 8-bit RGB, non-interlaced.
+ *
+ * <p>
+ * Every row is filtered as soon as it is given (the filter of the five PNG filters with the smallest sum of absolute
+ * residuals, the usual heuristic), and deflated into a stream that is cut into IDAT chunks of {@value #CHUNK_SIZE} bytes.
+ * Memory is that of a few rows whatever the height, so images far larger than the heap (a 32k x 32k poster is 3 GB of
+ * RGB) are written in constant memory. Not thread safe
+ * <p>
+ * */
+public class PngStreamWriter implements Closeable {
+
+    public static final int DEFAULT_COMPRESSION = 6;
+
+    /* Max data of an IDAT chunk */
+    private static final int CHUNK_SIZE = 1 << 18;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int DEFLATE_BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    private static final int FILTER_NONE = 0, FILTER_SUB = 1, FILTER_UP = 2, FILTER_AVERAGE = 3, FILTER_PAETH = 4;
+    private static final int FILTER_COUNT = 5;
+    private static final int BYTES_PER_PIXEL = 3;
+
+    /**
+     * Collects deflated data into IDAT chunks
+     * */
+    private static final class IdatStream extends OutputStream {
+
+        @NotNull
+        private final PngStreamWriter mWriter;
+        @NotNull
+        private final byte[] mChunk = new byte[CHUNK_SIZE];
+        private int mSize;
+
+        IdatStream(@NotNull PngStreamWriter writer) {
+            mWriter = writer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (mSize == CHUNK_SIZE) {
+                flushChunk();
+            }
+            mChunk[mSize++] = (byte) b;
+        }
+
+        @Override
+        public void write(@NotNull byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (mSize == CHUNK_SIZE) {
+                    flushChunk();
+                }
+
+                final int n = Math.min(len, CHUNK_SIZE - mSize);
+                System.arraycopy(b, off, mChunk, mSize, n);
+                mSize += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        void flushChunk() throws IOException {
+            if (mSize > 0) {
+                mWriter.writeChunk("IDAT", mChunk, mSize);
+                mSize = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();           // the file stream is closed by the writer, after IEND
+        }
+    }
+
+    private final int mWidth, mHeight;
+    @NotNull
+    private final OutputStream mOut;
+    @NotNull
+    private final CRC32 mCrc = new CRC32();
+    @NotNull
+    private final Deflater mDeflater;
+    @NotNull
+    private final IdatStream mIdat;
+    @NotNull
+    private final DeflaterOutputStream mData;
+
+    /* Raw bytes of the previous and current rows, and the current row filtered with each filter (filter type byte first) */
+    @NotNull
+    private byte[] mPrev, mCur;
+    @NotNull
+    private final byte[][] mFiltered = new byte[FILTER_COUNT][];
+
+    private int mRows;
+    private boolean mClosed;
+
+    /**
+     * @param compression deflate level, 0 (none) to 9 (smallest)
+     * */
+    public PngStreamWriter(@NotNull File file, int width, int height, int compression) throws IOException {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+
+        mWidth = width;
+        mHeight = height;
+
+        final int rowBytes = width * BYTES_PER_PIXEL;
+        mPrev = new byte[rowBytes];
+        mCur = new byte[rowBytes];
+        for (int f = 0; f < FILTER_COUNT; f++) {
+            mFiltered[f] = new byte[rowBytes + 1];
+            mFiltered[f][0] = (byte) f;
+        }
+
+        mOut = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        mDeflater = new Deflater(Math.max(Math.min(compression, 9), 0));
+        mIdat = new IdatStream(this);
+        mData = new DeflaterOutputStream(mIdat, mDeflater, DEFLATE_BUFFER_SIZE);
+
+        try {
+            mOut.write(SIGNATURE);
+            final byte[] ihdr = new byte[13];
+            putInt(ihdr, 0, width);
+            putInt(ihdr, 4, height);
+            ihdr[8] = 8;            // bit depth
+            ihdr[9] = 2;            // color type: RGB
+            ihdr[10] = 0;           // compression: deflate
+            ihdr[11] = 0;           // filter method: adaptive
+            ihdr[12] = 0;           // no interlace
+            writeChunk("IHDR", ihdr, ihdr.length);
+        } catch (IOException e) {
+            mOut.close();
+            mDeflater.end();
+            throw e;
+        }
+    }
+
+    public PngStreamWriter(@NotNull File file, int width, int height) throws IOException {
+        this(file, width, height, DEFAULT_COMPRESSION);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return number of rows written so far
+     * */
+    public int getRows() {
+        return mRows;
+    }
+
+    private static void putInt(@NotNull byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private void writeChunk(@NotNull String type, @NotNull byte[] data, int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final byte[] word = new byte[4];
+        putInt(word, 0, length);
+        mOut.write(word);
+
+        mCrc.reset();
+        mCrc.update(typeBytes);
+        mCrc.update(data, 0, length);
+        mOut.write(typeBytes);
+        mOut.write(data, 0, length);
+        putInt(word, 0, (int) mCrc.getValue());
+        mOut.write(word);
+    }
+
+    private static int paeth(int a, int b, int c) {
+        final int p = a + b - c;
+        final int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+        return pa <= pb && pa <= pc? a: pb <= pc? b: c;
+    }
+
+    /**
+     * Writes the next row, from {@link #getWidth()} packed RGB colors of {@code argb} from {@code offset} (alpha is ignored)
+     *
+     * @throws IllegalStateException if all rows were written already
+     * */
+    public void writeRow(@NotNull int[] argb, int offset) throws IOException {
+        if (mRows >= mHeight)
+            throw new IllegalStateException("All " + mHeight + " rows were written already");
+
+        final byte[] cur = mCur, prev = mPrev;
+        for (int x = 0, i = 0; x < mWidth; x++, i += BYTES_PER_PIXEL) {
+            final int c = argb[offset + x];
+            cur[i] = (byte) (c >>> 16);
+            cur[i + 1] = (byte) (c >>> 8);
+            cur[i + 2] = (byte) c;
+        }
+
+        // filter with all five filters at once, and keep the one with the smallest sum of absolute residuals
+        final byte[] none = mFiltered[FILTER_NONE], sub = mFiltered[FILTER_SUB], up = mFiltered[FILTER_UP],
+                avg = mFiltered[FILTER_AVERAGE], pae = mFiltered[FILTER_PAETH];
+        long sumNone = 0, sumSub = 0, sumUp = 0, sumAvg = 0, sumPaeth = 0;
+        for (int i = 0; i < cur.length; i++) {
+            final int x = cur[i] & 0xFF, b = prev[i] & 0xFF;
+            final int a = i >= BYTES_PER_PIXEL? cur[i - BYTES_PER_PIXEL] & 0xFF: 0;
+            final int c = i >= BYTES_PER_PIXEL? prev[i - BYTES_PER_PIXEL] & 0xFF: 0;
+
+            final byte fNone = (byte) x, fSub = (byte) (x - a), fUp = (byte) (x - b), fAvg = (byte) (x - ((a + b) >>> 1)), fPaeth = (byte) (x - paeth(a, b, c));
+            none[i + 1] = fNone;
+            sub[i + 1] = fSub;
+            up[i + 1] = fUp;
+            avg[i + 1] = fAvg;
+            pae[i + 1] = fPaeth;
+            sumNone += Math.abs(fNone);
+            sumSub += Math.abs(fSub);
+            sumUp += Math.abs(fUp);
+            sumAvg += Math.abs(fAvg);
+            sumPaeth += Math.abs(fPaeth);
+        }
+
+        int best = FILTER_NONE;
+        long bestSum = sumNone;
+        final long[] sums = { sumNone, sumSub, sumUp, sumAvg, sumPaeth };
+        for (int f = 1; f < FILTER_COUNT; f++) {
+            if (sums[f] < bestSum) {
+                best = f;
+                bestSum = sums[f];
+            }
+        }
+
+        mData.write(mFiltered[best]);
+
+        mPrev = cur;
+        mCur = prev;
+        mRows++;
+    }
+
+    /**
+     * Finishes the image and closes the file
+     *
+     * @throws IOException if fewer rows than the height were written, in which case the file is not a valid PNG
+     * */
+    @Override
+    public void close() throws IOException {
+        if (mClosed)
+            return;
+
+        mClosed = true;
+        try {
+            mData.finish();
+            mIdat.close();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            mDeflater.end();
+            mOut.close();
+        }
+
+        if (mRows < mHeight)
+            throw new IOException("Image is incomplete: " + mRows + " of " + mHeight + " rows written");
+    }
+
+}
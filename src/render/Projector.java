@@ -0,0 +1,97 @@
+package render;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Perspective projection of attractor space onto an image, for rendering without Processing's renderers.
+ *
+ * <p>
+ * The camera orbits a center point: it is rotated by {@code yaw} around the vertical (y) axis, then by {@code pitch}
+ * around the horizontal one, and looks at the center from a distance at which a sphere of the given radius just fits the
+ * smaller side of the image. As in the interactive sketch, attractor y points up on screen.
+ * Not thread safe while the view is being changed, {@link #project} only reads it
+ * <p>
+ * */
+public class Projector {
+
+    public static final float DEFAULT_FOV = 60;
+    private static final float NEAR = 1e-3f;
+
+    private int mWidth = 1, mHeight = 1;
+    private float mCx, mCy, mCz;
+    private float mDistance = 1, mFocal = 1;
+
+    /* Rotation, row-major */
+    private float m00 = 1, m01, m02;
+    private float m10, m11 = 1, m12;
+    private float m20, m21, m22 = 1;
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @param cx, cy, cz center of the view, in attractor space
+     * @param radius radius around the center that fits the image at zoom 1
+     * @param yaw, pitch camera rotation around the center, in degrees
+     * @param fov field of view across the smaller side of the image, in degrees
+     * @param zoom magnification, 1 to fit the radius
+     * */
+    public void setView(float cx, float cy, float cz, float radius, float yaw, float pitch, float fov, float zoom, int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+
+        mWidth = width;
+        mHeight = height;
+        mCx = cx;
+        mCy = cy;
+        mCz = cz;
+
+        final double halfFov = Math.toRadians(Math.min(Math.max(fov, 1), 179)) / 2;
+        mDistance = (float) (Math.max(radius, 1e-6f) / Math.sin(halfFov));
+        mFocal = (float) (Math.min(width, height) / 2d / Math.tan(halfFov) * zoom);
+
+        final double yawRad = Math.toRadians(yaw), pitchRad = Math.toRadians(pitch);
+        final float cosYaw = (float) Math.cos(yawRad), sinYaw = (float) Math.sin(yawRad);
+        final float cosPitch = (float) Math.cos(pitchRad), sinPitch = (float) Math.sin(pitchRad);
+
+        // pitch * yaw
+        m00 = cosYaw;
+        m01 = 0;
+        m02 = sinYaw;
+        m10 = sinPitch * sinYaw;
+        m11 = cosPitch;
+        m12 = -sinPitch * cosYaw;
+        m20 = -cosPitch * sinYaw;
+        m21 = sinPitch;
+        m22 = cosPitch * cosYaw;
+    }
+
+    /**
+     * Projects a point of attractor space to image coordinates
+     *
+     * @param out receives {screen x, screen y, depth} at {@code outOffset}, depth being the distance along the view axis
+     * @return false if the point is behind the camera, in which case {@code out} is not written
+     * */
+    public boolean project(float x, float y, float z, @NotNull float[] out, int outOffset) {
+        final float dx = x - mCx, dy = y - mCy, dz = z - mCz;
+        final float vx = m00 * dx + m01 * dy + m02 * dz;
+        final float vy = m10 * dx + m11 * dy + m12 * dz;
+        final float vz = m20 * dx + m21 * dy + m22 * dz;
+
+        final float depth = mDistance - vz;
+        if (depth < NEAR)
+            return false;
+
+        final float k = mFocal / depth;
+        out[outOffset] = mWidth * 0.5f + vx * k;
+        out[outOffset + 1] = mHeight * 0.5f - vy * k;
+        out[outOffset + 2] = depth;
+        return true;
+    }
+
+}
@@ -0,0 +1,92 @@
+package render;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+/**
+ * Draws a trail into a Java2D {@link Graphics2D}, entirely on the CPU. This is what renders frames where no display
+ * or OpenGL context is available, e.g. with {@code java.awt.headless} set.
+ *
+ * <p>
+ * Points are projected through a {@link Projector} and joined into polylines. Consecutive segments of the same color
+ * (the gradients of the draw configs are lookup tables, so runs are long) are batched into one path, which keeps the
+ * number of Java2D draw calls to about the number of distinct colors in the trail.
+ * An instance keeps scratch buffers, use one per thread
+ * <p>
+ * */
+public class SoftwareTrailRenderer {
+
+    @NotNull
+    private final Path2D.Float mPath = new Path2D.Float(Path2D.WIND_NON_ZERO, 256);
+    @NotNull
+    private final float[] mProjected = new float[3];
+
+    /**
+     * Sets up antialiased, round-capped strokes of the given width in pixels
+     * */
+    public static void setupGraphics(@NotNull Graphics2D g, float strokeWeight) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setStroke(new BasicStroke(strokeWeight, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+    }
+
+    /**
+     * Draws the polyline through the first {@code count} points, the segment ending at point {@code i} in {@code colors[i]}.
+     * Segments with an end behind the camera are skipped
+     *
+     * @param colors packed ARGB colors, one per point
+     * */
+    public void draw(@NotNull Graphics2D g, @NotNull Projector projector,
+                     @NotNull float[] xs, @NotNull float[] ys, @NotNull float[] zs, @NotNull int[] colors, int count) {
+        final Path2D.Float path = mPath;
+        final float[] p = mProjected;
+
+        path.reset();
+        boolean open = false;           // path has a current point
+        int pathColor = 0;
+        float lastX = 0, lastY = 0;
+        boolean lastVisible = false;
+
+        for (int i = 0; i < count; i++) {
+            final boolean visible = projector.project(xs[i], ys[i], zs[i], p, 0);
+            if (visible && lastVisible) {
+                final int color = colors[i];
+                if (open && color != pathColor) {
+                    flush(g, path, pathColor);
+                    open = false;
+                }
+
+                if (!open) {
+                    path.moveTo(lastX, lastY);
+                    pathColor = color;
+                    open = true;
+                }
+
+                path.lineTo(p[0], p[1]);
+            } else if (open) {
+                flush(g, path, pathColor);
+                open = false;
+            }
+
+            lastVisible = visible;
+            if (visible) {
+                lastX = p[0];
+                lastY = p[1];
+            }
+        }
+
+        if (open) {
+            flush(g, path, pathColor);
+        }
+    }
+
+    private static void flush(@NotNull Graphics2D g, @NotNull Path2D.Float path, int argb) {
+        g.setColor(new Color(argb, true));
+        g.draw(path);
+        path.reset();
+    }
+
+}
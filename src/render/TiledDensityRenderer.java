@@ -0,0 +1,248 @@
+package render;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Renders the density of a map's attractor to a PNG image of any size (posters of 32k x 32k pixels and more) within a
+ * memory budget, see {@link MapDensityRenderer}.
+ *
+ * <p>
+ * An image whose histograms, one per thread, fit in the budget is accumulated at once. Otherwise all threads count into a
+ * single histogram (see {@link MapDensityRenderer#accumulateShared}), and the image is cut into strips of full rows, as tall
+ * as that histogram fits in the budget: the number of strips depends on the image and the budget only, not on the number
+ * of threads. The strips are accumulated one after the other, each on all threads of the pool. Since every strip iterates
+ * the same orbits (same seed and pool), the strips add up to the image accumulated at once, at the cost of iterating once
+ * per strip.
+ * <p>
+ * Tone mapping needs the highest count of the whole image, known after the last strip only: the counts of the strips are
+ * spilled to a temporary file next to the image, then read back row by row, tone mapped and streamed to the PNG by a
+ * {@link PngStreamWriter}. Neither the counts nor the colors of the whole image are ever held in memory. An image that fits
+ * in a single strip is kept in memory
+ * <p>
+ * */
+public class TiledDensityRenderer {
+
+    /**
+     * Receives progress of a {@link #render}, on the pool threads
+     * */
+    public interface Listener {
+
+        /**
+         * @param strip strip being accumulated, from 0
+         * @param iterations iterations of all the strips so far
+         * */
+        void onProgress(int strip, int strips, long iterations, long total);
+    }
+
+    /* Rows of counts read back or spilled at once */
+    private static final int IO_BUFFER_BYTES = 1 << 20;
+
+    @NotNull
+    private final MapDensityRenderer mRenderer;
+    private final long mMemoryBytes;
+    private volatile boolean mCancelled;
+
+    private int mStripsDone;
+    private long mIterations;
+
+    /**
+     * @param renderer map, image size and plane area to render
+     * @param memoryBytes budget for the histograms, see {@link MapDensityRenderer#histogramBytes} and
+     *                    {@link MapDensityRenderer#sharedHistogramBytes}
+     * */
+    public TiledDensityRenderer(@NotNull MapDensityRenderer renderer, long memoryBytes) {
+        mRenderer = renderer;
+        mMemoryBytes = memoryBytes;
+    }
+
+    @NotNull
+    public MapDensityRenderer getRenderer() {
+        return mRenderer;
+    }
+
+    /**
+     * @return whether the threads count into a single histogram, i.e. a histogram per thread does not fit in the budget
+     * */
+    public boolean isShared(int threads) {
+        final long pixels = (long) mRenderer.getWidth() * mRenderer.getHeight();
+        return pixels > Integer.MAX_VALUE || MapDensityRenderer.histogramBytes(pixels, threads) > mMemoryBytes;
+    }
+
+    /**
+     * @return rows of the strips rendered on the given number of threads, 0 if not even a row fits in the budget
+     * */
+    public int stripRows(int threads) {
+        final int width = mRenderer.getWidth(), height = mRenderer.getHeight();
+        if (!isShared(threads))
+            return height;
+
+        final long rows = Math.min(mMemoryBytes / MapDensityRenderer.sharedHistogramBytes(width), Integer.MAX_VALUE / width);
+        return (int) Math.min(rows, height);
+    }
+
+    /**
+     * @return number of strips rendered on the given number of threads, 0 if not even a row fits in the budget
+     * */
+    public int strips(int threads) {
+        final int rows = stripRows(threads);
+        return rows > 0? (mRenderer.getHeight() + rows - 1) / rows: 0;
+    }
+
+    /**
+     * @return strips fully accumulated by the render in progress, or the last one
+     * */
+    public int getStripsDone() {
+        return mStripsDone;
+    }
+
+    /**
+     * @return iterations of the strips accumulated by the render in progress, or the last one, including a cancelled strip
+     * */
+    public long getIterations() {
+        return mIterations;
+    }
+
+    /**
+     * Stops the render in progress after the current batches, see {@link #render}
+     * */
+    public void cancel() {
+        mCancelled = true;
+        mRenderer.cancel();
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Accumulates the image strip by strip, iterating the map {@code iterations} times for every strip, and writes it.
+     * If cancelled, the strip in progress keeps its counts so far and the strips after it are left empty, but the image is
+     * still written
+     *
+     * @param seed seed of the orbits, see {@link MapDensityRenderer}
+     * @param toneMapper tone curve and palette, its max is set to the highest count of the image
+     * @param out PNG file to write
+     * @return the highest count of the image
+     * @throws IllegalStateException if not even a row of the image fits in the memory budget
+     * */
+    public int render(@NotNull ForkJoinPool pool, long iterations, long seed, @NotNull ToneMapper toneMapper, @NotNull File out,
+                      @Nullable Listener listener) throws IOException {
+        final int width = mRenderer.getWidth(), height = mRenderer.getHeight();
+        final int rows = stripRows(pool.getParallelism()), strips = strips(pool.getParallelism());
+        if (rows < 1)
+            throw new IllegalStateException(String.format("A row of %,d px takes %,d bytes of histogram, over the budget of %,d",
+                    width, MapDensityRenderer.sharedHistogramBytes(width), mMemoryBytes));
+
+        mCancelled = false;
+        mStripsDone = 0;
+        mIterations = 0;
+
+        final int[] counts = new int[width * rows];
+        if (strips == 1) {
+            final int max = accumulate(pool, iterations, seed, 0, 0, height, counts, listener);
+            toneMapper.setMax(max);
+            try (PngStreamWriter png = new PngStreamWriter(out, width, height)) {
+                final int[] row = new int[width];
+                for (int y = 0; y < height; y++) {
+                    toneMapper.map(counts, y * width, row, 0, width);
+                    png.writeRow(row, 0);
+                }
+            }
+            return max;
+        }
+
+        final File parent = out.getAbsoluteFile().getParentFile();
+        final Path spill = Files.createTempFile(parent != null? parent.toPath(): Path.of("."), out.getName(), ".counts");
+        try (FileChannel channel = FileChannel.open(spill, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(IO_BUFFER_BYTES / (width * Integer.BYTES), 1) * width * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder());
+            final IntBuffer ints = buffer.asIntBuffer();
+
+            // accumulate and spill the strips, up to the cancelled one
+            int max = 0, spilled = 0;
+            for (int s = 0; s < strips && !mCancelled; s++) {
+                final int y0 = s * rows, h = Math.min(rows, height - y0);
+                max = Math.max(max, accumulate(pool, iterations, seed, s, y0, h, counts, listener));
+
+                for (int off = 0, size = width * h; off < size; ) {
+                    final int n = Math.min(ints.capacity(), size - off);
+                    ints.clear();
+                    ints.put(counts, off, n);
+                    buffer.clear().limit(n * Integer.BYTES);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    off += n;
+                }
+                spilled += h;
+            }
+
+            // read back, tone map and encode row by row
+            toneMapper.setMax(max);
+            channel.position(0);
+            final int bufferRows = ints.capacity() / width;
+            final int[] row = new int[width], colors = new int[width];
+            try (PngStreamWriter png = new PngStreamWriter(out, width, height)) {
+                for (int y = 0; y < height; ) {
+                    final int n = Math.min(bufferRows, Math.max(spilled - y, 0));
+                    if (n == 0) {
+                        toneMapper.map(new int[width], 0, colors, 0, width);         // not accumulated
+                        for (; y < height; y++) {
+                            png.writeRow(colors, 0);
+                        }
+                        break;
+                    }
+
+                    buffer.clear().limit(n * width * Integer.BYTES);
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer) < 0)
+                            throw new IOException("Unexpected end of " + spill);
+                    }
+
+                    for (int r = 0; r < n; r++, y++) {
+                        ints.position(r * width);
+                        ints.get(row, 0, width);
+                        toneMapper.map(row, 0, colors, 0, width);
+                        png.writeRow(colors, 0);
+                    }
+                }
+            }
+
+            return max;
+        } finally {
+            Files.deleteIfExists(spill);
+        }
+    }
+
+    private int accumulate(@NotNull ForkJoinPool pool, long iterations, long seed, int strip, int y0, int h, @NotNull int[] counts,
+                           @Nullable Listener listener) {
+        final int strips = strips(pool.getParallelism());
+        final long done = strip * iterations, total = strips * iterations;
+        final MapDensityRenderer.Listener progress = listener == null? null: (it, t) -> listener.onProgress(strip, strips, done + it, total);
+        final int max = isShared(pool.getParallelism())?
+                mRenderer.accumulateShared(pool, iterations, seed, 0, y0, mRenderer.getWidth(), h, counts, progress):
+                mRenderer.accumulate(pool, iterations, seed, 0, y0, mRenderer.getWidth(), h, counts, progress);
+        mIterations += mRenderer.getIterations();
+
+        // the renderer forgets a cancel given between two strips
+        if (mRenderer.isCancelled() || mCancelled) {
+            mCancelled = true;
+        } else {
+            mStripsDone = strip + 1;
+        }
+        return max;
+    }
+
+}
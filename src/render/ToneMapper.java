@@ -0,0 +1,102 @@
+package render;
+
+import attractors.ColorLut;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Maps hit counts of a density histogram to colors: the log of the count relative to the log of the highest count,
+ * raised to {@code 1 / gamma}, picks the color in a palette. Log scaling spans the many orders of magnitude between the
+ * sparse and the dense regions of an attractor, and a gamma above 1 brings out the sparse ones further.
+ *
+ * <p>
+ * Counts up to {@value #LUT_SIZE} are mapped through a lookup table, rebuilt by {@link #setMax}: mapping a whole image
+ * then costs about one array access per pixel. Mapping is thread safe, {@link #setMax} is not
+ * <p>
+ * */
+public class ToneMapper {
+
+    public static final float DEFAULT_GAMMA = 2.2f;
+
+    /* Counts tone mapped through the lookup table, higher counts are mapped one by one */
+    private static final int LUT_SIZE = 1 << 16;
+
+    @NotNull
+    private final ColorLut mPalette;
+    private final float mGamma;
+    private final double mInvGamma;
+
+    @NotNull
+    private final int[] mLut = new int[LUT_SIZE];
+    private int mLutSize;
+    private int mMax = -1;
+    private double mInvLogMax;
+
+    /**
+     * @param palette colors from zero to the highest density
+     * @param gamma exponent of the tone curve, greater than 1 to bring out sparse regions
+     * */
+    public ToneMapper(@NotNull ColorLut palette, float gamma) {
+        mPalette = palette;
+        mGamma = gamma;
+        mInvGamma = 1 / Math.max(gamma, 1e-3f);
+    }
+
+    @NotNull
+    public ColorLut getPalette() {
+        return mPalette;
+    }
+
+    public float getGamma() {
+        return mGamma;
+    }
+
+    /**
+     * @return the count mapped to the end of the palette
+     * */
+    public int getMax() {
+        return mMax;
+    }
+
+    /**
+     * Sets the count mapped to the end of the palette, usually the highest count of the histogram
+     * */
+    public void setMax(int max) {
+        max = Math.max(max, 0);
+        if (mMax == max)
+            return;
+
+        mMax = max;
+        mInvLogMax = max > 0? 1 / Math.log1p(max): 0;
+        mLutSize = Math.min(max + 1, LUT_SIZE);
+        for (int c = 0; c < mLutSize; c++) {
+            mLut[c] = tone(c);
+        }
+    }
+
+    private int tone(int count) {
+        return mPalette.get((float) Math.pow(Math.min(Math.log1p(count) * mInvLogMax, 1), mInvGamma));
+    }
+
+    /**
+     * @return packed ARGB color of the given count
+     * */
+    public int map(int count) {
+        if (count <= 0)
+            return mPalette.get(0f);
+
+        return count < mLutSize? mLut[count]: tone(count);
+    }
+
+    /**
+     * Maps {@code length} counts from {@code counts[offset]} to colors in {@code out} from {@code outOffset}
+     * */
+    public void map(@NotNull int[] counts, int offset, @NotNull int[] out, int outOffset, int length) {
+        final int[] lut = mLut;
+        final int lutSize = mLutSize;
+        for (int i = 0; i < length; i++) {
+            final int c = counts[offset + i];
+            out[outOffset + i] = c >= 0 && c < lutSize? lut[c]: map(c);
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package render;
+
+import attractors.DrawConfig;
+import math.TrajectoryBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import processing.core.PApplet;
+import processing.core.PGraphics;
+import processing.core.PShape;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+
+/**
+ * Retained-mode renderer for the trail of a {@link TrajectoryBuffer}.
+ *
+ * <p>
+ * The trail is kept on the GPU as a sequence of line-strip {@link PShape} chunks of fixed size, keyed by the absolute
+ * sequence numbers of their points. A chunk is built once, when it fills up, and dropped once all of its points are
+ * evicted: the oldest chunk is drawn whole until then, so the tail of the trail may show up to a chunk of evicted points.
+ * The newest (partially filled) chunk is drawn in immediate mode, its colors computed once per point. No geometry is
+ * uploaded per frame but for the sealing of a chunk, and the per-frame CPU cost is O(new points + chunk size) rather than
+ * O(trail length).
+ * <p>
+ * Since sealed geometry is immutable, point colors are baked by absolute sequence number
+ * ({@code sequence % capacity} out of {@code capacity}) instead of by position in the current trail
+ * <p>
+ * */
+public class TrailRenderer {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private static class Chunk {
+
+        /* Absolute sequence range [start, end) of the points owned by this chunk */
+        final long start, end;
+        @Nullable
+        PShape shape;
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    @NotNull
+    private final PApplet mApp;
+    private final int mChunkSize;
+
+    @NotNull
+    private final ArrayDeque<Chunk> mSealed = new ArrayDeque<>();
+    /* Start sequence of the chunk following the last sealed one (the open chunk), -1 if unknown */
+    private long mOpenStart = -1;
+    /* Sequence up to which colors of the open chunk are computed, from its overlap point at mOpenStart - 1 */
+    private long mOpenColoredTo = -1;
+    /* First sequence in the buffer as of the last update */
+    private long mFirst;
+    /* Total points added to the buffer as of the last update, to detect it being cleared */
+    private long mLastTotal;
+
+    @Nullable
+    private TrajectoryBuffer mBuffer;
+    @Nullable
+    private DrawConfig mDrawConfig;
+    private float mStrokeWeight = 1;
+
+    @NotNull
+    private final int[] mColors, mOpenColors;
+
+    public TrailRenderer(@NotNull PApplet app, int chunkSize) {
+        mApp = app;
+        mChunkSize = Math.max(chunkSize, 2);
+        mColors = new int[mChunkSize + 1];
+        mOpenColors = new int[mChunkSize + 1];
+    }
+
+    public TrailRenderer(@NotNull PApplet app) {
+        this(app, DEFAULT_CHUNK_SIZE);
+    }
+
+    public int getChunkSize() {
+        return mChunkSize;
+    }
+
+    /**
+     * @return number of chunks currently held on the GPU
+     * */
+    public int getChunkCount() {
+        return mSealed.size();
+    }
+
+    /**
+     * Drops all the geometry
+     * */
+    public void clear() {
+        mSealed.clear();
+        mOpenStart = -1;
+        mOpenColoredTo = -1;
+        mFirst = 0;
+        mLastTotal = 0;
+    }
+
+    /**
+     * Syncs the retained geometry with the current content of the buffer
+     * */
+    public void update(@NotNull TrajectoryBuffer buffer, @NotNull DrawConfig drawConfig, float strokeWeight) {
+        if (mBuffer != buffer || mDrawConfig != drawConfig || mStrokeWeight != strokeWeight
+                || buffer.totalAdded() < mLastTotal) {
+            clear();            // buffer replaced or cleared, style changed
+            mBuffer = buffer;
+            mDrawConfig = drawConfig;
+            mStrokeWeight = strokeWeight;
+        }
+
+        final long first = buffer.firstSequence();
+        final long total = buffer.totalAdded();
+        mFirst = first;
+        mLastTotal = total;
+        if (total == first)
+            return;         // empty
+
+        // Seal every full chunk
+        if (mOpenStart == -1) {
+            mOpenStart = Math.floorDiv(first, mChunkSize) * mChunkSize;
+        }
+
+        long openStart = mOpenStart;
+        while (openStart + mChunkSize <= total) {
+            final Chunk c = new Chunk(openStart, openStart + mChunkSize);
+            if (c.end > first) {
+                build(c, buffer, drawConfig, first, c.end);
+                mSealed.addLast(c);
+            }
+
+            openStart += mChunkSize;
+        }
+
+        if (openStart != mOpenStart) {
+            mOpenStart = openStart;
+            mOpenColoredTo = -1;
+        }
+
+        // Drop the chunks whose points are all evicted
+        Chunk oldest;
+        while ((oldest = mSealed.peekFirst()) != null && oldest.end <= first) {
+            mSealed.pollFirst();
+        }
+
+        // Color the new points of the open chunk, colors being baked by sequence they never change
+        final long colorFrom = Math.max(Math.max(mOpenColoredTo, openStart - 1), first);
+        if (colorFrom < total) {
+            final int capacity = buffer.capacity();
+            drawConfig.argbForRange(buffer, (int) (colorFrom - first), (int) (total - first), (int) (first % capacity), capacity,
+                    mOpenColors, (int) (colorFrom - (openStart - 1)));
+            mOpenColoredTo = total;
+        }
+    }
+
+    private void build(@NotNull Chunk chunk, @NotNull TrajectoryBuffer buffer, @NotNull DrawConfig drawConfig, long first, long to) {
+        // overlap by one point with the previous chunk, so that the strips join
+        final long from = Math.max(chunk.start - 1, first);
+        final int capacity = buffer.capacity();
+        final int fromIndex = (int) (from - first), toIndex = (int) (to - first);
+        final int[] colors = mColors;
+        drawConfig.argbForRange(buffer, fromIndex, toIndex, (int) (first % capacity), capacity, colors, 0);
+
+        final PShape shape = mApp.createShape();
+        shape.beginShape();
+        final Color fill = drawConfig.drawingFill();
+        if (fill != null) {
+            shape.fill(fill.getRGB());
+        } else {
+            shape.noFill();
+        }
+        shape.strokeWeight(mStrokeWeight);
+
+        for (int i = fromIndex; i < toIndex; i++) {
+            shape.stroke(colors[i - fromIndex]);
+            shape.vertex(buffer.x(i), buffer.y(i), buffer.z(i));
+        }
+
+        shape.endShape();
+        chunk.shape = shape;
+    }
+
+    /**
+     * Draws the retained geometry and the open chunk with the current transform of the given graphics
+     * */
+    public void draw(@NotNull PGraphics g) {
+        for (Chunk c: mSealed) {
+            if (c.shape != null) {
+                g.shape(c.shape);
+            }
+        }
+
+        final TrajectoryBuffer buffer = mBuffer;
+        final DrawConfig drawConfig = mDrawConfig;
+        final long first = mFirst, total = mLastTotal;
+        final long from = Math.max(mOpenStart - 1, first);         // overlap by one point with the last sealed chunk
+        if (buffer == null || drawConfig == null || mOpenStart == -1 || total - from < 2)
+            return;
+
+        g.pushStyle();
+        final Color fill = drawConfig.drawingFill();
+        if (fill != null) {
+            g.fill(fill.getRGB());
+        } else {
+            g.noFill();
+        }
+        g.strokeWeight(mStrokeWeight);
+
+        g.beginShape();
+        for (long seq = from; seq < total; seq++) {
+            final int i = (int) (seq - first);
+            g.stroke(mOpenColors[(int) (seq - (mOpenStart - 1))]);
+            g.vertex(buffer.x(i), buffer.y(i), buffer.z(i));
+        }
+        g.endShape();
+        g.popStyle();
+    }
+
+}
@@ -0,0 +1,216 @@
+package sim;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A sparse index of the states a simulation went through, to jump back to any step of the run without keeping its points.
+ *
+ * <p>
+ * Every {@link #getInterval() interval} steps from its origin, the simulation records its state and the state its
+ * integrator carries between steps into flat primitive arrays. Since integration is deterministic, re-integrating from
+ * the entry at or before a step reproduces that step exactly, in at most {@code interval} steps.
+ * The index only stays valid for one step size: a run with a different step size has to {@link #reset} it.
+ * <p>
+ * Memory is bounded: once {@link #getMaxEntries()} entries are recorded, every other entry is dropped and the interval
+ * doubles, so an arbitrarily long run is covered at a coarser and coarser resolution.
+ * <p>
+ * Recorded by the simulation thread, and read by any thread. Every reset or clear starts a new
+ * {@link #getGeneration() generation}, so that a reader can tell whether the entries it copied still belong to the current run
+ * <p>
+ * */
+public class CheckpointIndex {
+
+    public static final int DEFAULT_INTERVAL = 1024;
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 16;
+
+    private static final int STATE_SIZE = AttractorI.STATE_SIZE;
+
+    private final int mInitialInterval;
+    private final int mMaxEntries;
+
+    private long mInterval;
+    private float mDt = Float.NaN;
+    private int mCarriedSize;
+
+    /* Entries, interleaved */
+    @NotNull
+    private float[] mStates = new float[0];
+    @NotNull
+    private float[] mCarried = new float[0];
+
+    private volatile long mOriginSteps;
+    private volatile double mOriginTime;
+    private volatile long mLatestSteps;
+    private volatile int mCount;
+    private volatile int mGeneration;
+
+    public CheckpointIndex(int interval, int maxEntries) {
+        mInitialInterval = Math.max(interval, 1);
+        mMaxEntries = Math.max(maxEntries, 2) & ~1;         // even, so that halving keeps the spacing
+        mInterval = mInitialInterval;
+    }
+
+    public CheckpointIndex() {
+        this(DEFAULT_INTERVAL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @return steps between two entries
+     * */
+    public long getInterval() {
+        return mInterval;
+    }
+
+    public int getMaxEntries() {
+        return mMaxEntries;
+    }
+
+    /**
+     * @return step size of the indexed run, NaN if empty
+     * */
+    public float getDt() {
+        return mDt;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    public boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * @return number of times the index was reset or cleared
+     * */
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return step of the first entry
+     * */
+    public long getOriginSteps() {
+        return mOriginSteps;
+    }
+
+    /**
+     * @return furthest step the indexed run reached
+     * */
+    public long getLatestSteps() {
+        return mLatestSteps;
+    }
+
+    /**
+     * @return simulation time at the given step of the indexed run
+     * */
+    public double timeAt(long steps) {
+        return mOriginTime + (steps - mOriginSteps) * (double) mDt;
+    }
+
+    /**
+     * Starts a new index, with the given state as its first entry
+     *
+     * @param steps, time simulation clock of the state
+     * @param dt step size of the run
+     * */
+    public synchronized void reset(long steps, double time, float dt, @NotNull float[] state, @NotNull IntegratorI integrator) {
+        final float[] carried = integrator.saveCarriedState();
+        mGeneration++;
+        mCount = 0;
+        mInterval = mInitialInterval;
+        mDt = dt;
+        mCarriedSize = carried.length;
+        mOriginSteps = steps;
+        mOriginTime = time;
+        mLatestSteps = steps;
+        append(state, carried);
+    }
+
+    /**
+     * Empties the index
+     * */
+    public synchronized void clear() {
+        mGeneration++;
+        mCount = 0;
+        mDt = Float.NaN;
+        mOriginSteps = mLatestSteps = 0;
+        mOriginTime = 0;
+    }
+
+    /**
+     * @return the first step after {@code steps} at which an entry is due, see {@link #record}
+     * */
+    public long nextEntrySteps(long steps) {
+        final long rel = Math.max(steps - mOriginSteps, 0);
+        return mOriginSteps + (rel / mInterval + 1) * mInterval;
+    }
+
+    /**
+     * Notes that the run reached the given step, and records its state if an entry is due there and not recorded yet
+     * (a run that went back in time reaches the same steps again, with the same states)
+     * */
+    public synchronized void record(long steps, @NotNull float[] state, @NotNull IntegratorI integrator) {
+        if (mCount == 0)
+            return;
+
+        if (steps - mOriginSteps == mCount * mInterval) {
+            if (mCount == mMaxEntries) {
+                decimate();         // the step is still the next entry at twice the interval
+            }
+
+            append(state, integrator.saveCarriedState());
+        }
+
+        if (steps > mLatestSteps) {
+            mLatestSteps = steps;
+        }
+    }
+
+    private void append(@NotNull float[] state, @NotNull float[] carried) {
+        final int count = mCount;
+        if (count * STATE_SIZE >= mStates.length) {
+            final int capacity = Math.min(Math.max(count * 2, 64), mMaxEntries);
+            mStates = Arrays.copyOf(mStates, capacity * STATE_SIZE);
+            mCarried = Arrays.copyOf(mCarried, capacity * mCarriedSize);
+        }
+
+        System.arraycopy(state, 0, mStates, count * STATE_SIZE, STATE_SIZE);
+        System.arraycopy(carried, 0, mCarried, count * mCarriedSize, Math.min(carried.length, mCarriedSize));
+        mCount = count + 1;         // publish
+    }
+
+    /* Keeps every other entry, at twice the interval */
+    private void decimate() {
+        final int count = mCount / 2;
+        for (int i = 1; i < count; i++) {
+            System.arraycopy(mStates, i * 2 * STATE_SIZE, mStates, i * STATE_SIZE, STATE_SIZE);
+            System.arraycopy(mCarried, i * 2 * mCarriedSize, mCarried, i * mCarriedSize, mCarriedSize);
+        }
+
+        mInterval *= 2;
+        mCount = count;
+    }
+
+    /**
+     * Restores the last entry at or before the given step, from which that step is reached by re-integrating
+     *
+     * @param outState receives the state of the entry
+     * @param integrator an integrator of the indexed run, receives the carried state of the entry
+     * @return step of the entry, or -1 if the index is empty
+     * */
+    public synchronized long restore(long steps, @NotNull float[] outState, @NotNull IntegratorI integrator) {
+        if (mCount == 0)
+            return -1;
+
+        final int entry = (int) Math.min(Math.max(steps - mOriginSteps, 0) / mInterval, mCount - 1);
+        System.arraycopy(mStates, entry * STATE_SIZE, outState, 0, STATE_SIZE);
+        integrator.restoreCarriedState(Arrays.copyOfRange(mCarried, entry * mCarriedSize, (entry + 1) * mCarriedSize));
+        return mOriginSteps + entry * mInterval;
+    }
+
+}
@@ -0,0 +1,394 @@
+package sim;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A cloud of trajectories of the same attractor, started from nearby initial conditions and advanced together.
+ *
+ * <p>
+ * States are stored as a struct of arrays (one primitive array per coordinate). Each tick is split into fixed slices
+ * of particles that are stepped in parallel on a {@link ForkJoinPool}. Slices are created once and own their integrator
+ * and scratch state, so ticking does not allocate. Optionally, the last few positions of every particle are kept as
+ * a comet tail
+ * <p>
+ * When an {@link EnsembleKernel} supports the attractor and integrator, slices are stepped in batches by the kernel
+ * (see {@link EnsembleKernels#simd()}), otherwise particle by particle with the slice's integrator
+ * <p>
+ * */
+public class Ensemble {
+
+    public enum Seeding {
+        /**
+         * Uniformly inside a ball around the start point
+         * */
+        BALL("Ball"),
+
+        /**
+         * On a regular cubic lattice centered at the start point
+         * */
+        GRID("Grid"),
+
+        /**
+         * Uniformly inside a cube around the start point
+         * */
+        RANDOM("Random");
+
+        @NotNull
+        public final String displayName;
+
+        Seeding(@NotNull String displayName) {
+            this.displayName = displayName;
+        }
+
+        @NotNull
+        public Seeding next() {
+            final Seeding[] values = values();
+            return values[(ordinal() + 1) % values.length];
+        }
+    }
+
+    public static final float DEFAULT_SEED_RADIUS = 0.5f;
+
+    /**
+     * Slices per worker thread, for load balancing by work stealing
+     * */
+    private static final int SLICES_PER_THREAD = 4;
+
+    @SuppressWarnings("serial")         // never serialized
+    private final class Slice extends RecursiveAction {
+
+        final int from, to;
+        @NotNull
+        final IntegratorI integrator;
+        @NotNull
+        final float[] state = new float[AttractorI.STATE_SIZE];
+        @Nullable
+        final float[] scratch;
+
+        float xMin, xMax, yMin, yMax, zMin, zMax;
+
+        Slice(int from, int to, @NotNull IntegratorI integrator) {
+            this.from = from;
+            this.to = to;
+            this.integrator = integrator;
+            scratch = mKernel != null? new float[mKernel.scratchSize()]: null;
+        }
+
+        @Override
+        protected void compute() {
+            final AttractorI attractor = mAttractor;
+            final float[] xs = Ensemble.this.xs, ys = Ensemble.this.ys, zs = Ensemble.this.zs;
+            final float[] s = state;
+            final float dt = mDt;
+            final int steps = mSteps;
+
+            final EnsembleKernel kernel = mKernel;
+            if (kernel != null && steps > 0) {
+                kernel.integrate(attractor, xs, ys, zs, from, to, dt, steps, scratch);
+            }
+
+            float x0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y0 = Float.MAX_VALUE, y1 = -Float.MAX_VALUE, z0 = Float.MAX_VALUE, z1 = -Float.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                s[0] = xs[i];
+                s[1] = ys[i];
+                s[2] = zs[i];
+                if (kernel == null && steps > 0) {
+                    // the integrator is shared by the particles of the slice: no carried state (an adaptive step size)
+                    // may leak from one to the next, or trajectories would depend on the slicing
+                    integrator.reset();
+                    integrator.integrate(attractor, s, 0, dt, steps, null);
+                    xs[i] = s[0];
+                    ys[i] = s[1];
+                    zs[i] = s[2];
+                }
+
+                final float x = xs[i], y = ys[i], z = zs[i];
+
+                // bounds of finite states only, diverged particles must not break the framing
+                if (Float.isFinite(x + y + z)) {
+                    x0 = Math.min(x0, x); x1 = Math.max(x1, x);
+                    y0 = Math.min(y0, y); y1 = Math.max(y1, y);
+                    z0 = Math.min(z0, z); z1 = Math.max(z1, z);
+                }
+            }
+
+            xMin = x0; xMax = x1;
+            yMin = y0; yMax = y1;
+            zMin = z0; zMax = z1;
+        }
+    }
+
+    @NotNull
+    private final AttractorI mAttractor;
+    private final int mCount;
+    @NotNull
+    private final float[] xs, ys, zs;
+    @Nullable
+    private final EnsembleKernel mKernel;
+
+    @NotNull
+    private final ForkJoinPool mPool;
+    @NotNull
+    private final Slice[] mSlices;
+    @NotNull
+    private final RecursiveAction mRoot;
+
+    /* Parameters of the current tick, published to the workers by the fork */
+    private float mDt;
+    private int mSteps;
+
+    /* Comet tails: ring of the last tailLength positions of each particle, [tick slot][particle] flattened */
+    private final int mTailLength;
+    private final float[] tailXs, tailYs, tailZs;
+    private int mTailHead;         // slot of the oldest recorded position
+    private int mTailSize;
+
+    private float xMin, xMax, yMin, yMax, zMin, zMax;
+    private long mTicks;
+
+    /**
+     * @param integrator prototype integrator, copied for every slice
+     * @param tailLength number of past positions to keep per particle, or 0 for no tails
+     * @param kernel batch kernel to step with if it supports the attractor and integrator, {@code null} to always step
+     *               particle by particle
+     * */
+    public Ensemble(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, int count, int tailLength,
+                    @NotNull ForkJoinPool pool, @Nullable EnsembleKernel kernel) {
+        if (count < 1)
+            throw new IllegalArgumentException("Ensemble must have at least one particle, given: " + count);
+
+        mAttractor = attractor;
+        mCount = count;
+        mKernel = kernel != null && kernel.supports(attractor, integrator)? kernel: null;
+        xs = new float[count];
+        ys = new float[count];
+        zs = new float[count];
+
+        mTailLength = Math.max(tailLength, 0);
+        tailXs = mTailLength > 0? new float[mTailLength * count]: null;
+        tailYs = mTailLength > 0? new float[mTailLength * count]: null;
+        tailZs = mTailLength > 0? new float[mTailLength * count]: null;
+
+        mPool = pool;
+        final int sliceCount = Math.min(count, pool.getParallelism() * SLICES_PER_THREAD);
+        mSlices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            mSlices[i] = new Slice((int) ((long) count * i / sliceCount), (int) ((long) count * (i + 1) / sliceCount), integrator.copy());
+        }
+
+        mRoot = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(mSlices);
+            }
+        };
+    }
+
+    public Ensemble(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, int count, int tailLength) {
+        this(attractor, integrator, count, tailLength, ForkJoinPool.commonPool(), EnsembleKernels.simd());
+    }
+
+    @NotNull
+    public AttractorI getAttractor() {
+        return mAttractor;
+    }
+
+    /**
+     * @return the batch kernel in use, or {@code null} if particles are stepped one by one
+     * */
+    @Nullable
+    public EnsembleKernel getKernel() {
+        return mKernel;
+    }
+
+    public int count() {
+        return mCount;
+    }
+
+    public long ticks() {
+        return mTicks;
+    }
+
+    public float x(int i) {
+        return xs[i];
+    }
+
+    public float y(int i) {
+        return ys[i];
+    }
+
+    public float z(int i) {
+        return zs[i];
+    }
+
+    public int tailLength() {
+        return mTailLength;
+    }
+
+    /**
+     * @return number of recorded past positions per particle, at most {@link #tailLength()}
+     * */
+    public int tailSize() {
+        return mTailSize;
+    }
+
+    private int tailIndex(int age, int particle) {
+        // age 0 is the oldest recorded position
+        int slot = mTailHead + age;
+        if (slot >= mTailLength) {
+            slot -= mTailLength;
+        }
+
+        return slot * mCount + particle;
+    }
+
+    public float tailX(int age, int particle) {
+        return tailXs[tailIndex(age, particle)];
+    }
+
+    public float tailY(int age, int particle) {
+        return tailYs[tailIndex(age, particle)];
+    }
+
+    public float tailZ(int age, int particle) {
+        return tailZs[tailIndex(age, particle)];
+    }
+
+    /**
+     * Seeds all particles around the attractor's start point
+     *
+     * @param radius half extent of the seeding region
+     * */
+    public void seed(@NotNull Seeding seeding, float radius, long randomSeed) {
+        final float[] start = new float[AttractorI.STATE_SIZE];
+        mAttractor.getStart(start, 0);
+        final Random random = new Random(randomSeed);
+
+        switch (seeding) {
+            case BALL -> {
+                for (int i = 0; i < mCount; i++) {
+                    float dx, dy, dz;
+                    do {
+                        dx = random.nextFloat() * 2 - 1;
+                        dy = random.nextFloat() * 2 - 1;
+                        dz = random.nextFloat() * 2 - 1;
+                    } while (dx * dx + dy * dy + dz * dz > 1);
+
+                    xs[i] = start[0] + dx * radius;
+                    ys[i] = start[1] + dy * radius;
+                    zs[i] = start[2] + dz * radius;
+                }
+            }
+
+            case GRID -> {
+                final int side = (int) Math.ceil(Math.cbrt(mCount));
+                final float spacing = side > 1? 2 * radius / (side - 1): 0;
+                for (int i = 0; i < mCount; i++) {
+                    xs[i] = start[0] - radius + spacing * (i % side);
+                    ys[i] = start[1] - radius + spacing * ((i / side) % side);
+                    zs[i] = start[2] - radius + spacing * (i / (side * side));
+                }
+            }
+
+            case RANDOM -> {
+                for (int i = 0; i < mCount; i++) {
+                    xs[i] = start[0] + (random.nextFloat() * 2 - 1) * radius;
+                    ys[i] = start[1] + (random.nextFloat() * 2 - 1) * radius;
+                    zs[i] = start[2] + (random.nextFloat() * 2 - 1) * radius;
+                }
+            }
+        }
+
+        for (Slice s: mSlices) {
+            s.integrator.reset();
+        }
+
+        mTailHead = mTailSize = 0;
+        mTicks = 0;
+        tick(0, 0);            // compute bounds and record the seed positions
+    }
+
+    /**
+     * Advances all particles by {@code steps} steps of size {@code dt} in parallel, and records their new positions in the tails
+     * */
+    public void tick(float dt, int steps) {
+        mDt = dt;
+        mSteps = steps;
+
+        mRoot.reinitialize();
+        for (Slice s: mSlices) {
+            s.reinitialize();
+        }
+
+        mPool.invoke(mRoot);
+
+        float x0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y0 = Float.MAX_VALUE, y1 = -Float.MAX_VALUE, z0 = Float.MAX_VALUE, z1 = -Float.MAX_VALUE;
+        for (Slice s: mSlices) {
+            x0 = Math.min(x0, s.xMin); x1 = Math.max(x1, s.xMax);
+            y0 = Math.min(y0, s.yMin); y1 = Math.max(y1, s.yMax);
+            z0 = Math.min(z0, s.zMin); z1 = Math.max(z1, s.zMax);
+        }
+
+        if (x0 <= x1) {
+            xMin = x0; xMax = x1;
+            yMin = y0; yMax = y1;
+            zMin = z0; zMax = z1;
+        }
+
+        if (mTailLength > 0) {
+            recordTail();
+        }
+
+        if (steps > 0) {
+            mTicks++;
+        }
+    }
+
+    private void recordTail() {
+        final int slot;
+        if (mTailSize < mTailLength) {
+            slot = mTailSize++;
+        } else {
+            slot = mTailHead;
+            mTailHead = mTailHead + 1 == mTailLength? 0: mTailHead + 1;
+        }
+
+        final int o = slot * mCount;
+        System.arraycopy(xs, 0, tailXs, o, mCount);
+        System.arraycopy(ys, 0, tailYs, o, mCount);
+        System.arraycopy(zs, 0, tailZs, o, mCount);
+    }
+
+    public float xMin() {
+        return xMin;
+    }
+
+    public float xMax() {
+        return xMax;
+    }
+
+    public float yMin() {
+        return yMin;
+    }
+
+    public float yMax() {
+        return yMax;
+    }
+
+    public float zMin() {
+        return zMin;
+    }
+
+    public float zMax() {
+        return zMax;
+    }
+
+}
@@ -0,0 +1,36 @@
+package sim;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A batch stepping routine that advances many particles of an {@link Ensemble} at once, stored as a struct of arrays.
+ *
+ * <p>
+ * Kernels are stateless and may be called concurrently on disjoint ranges. A kernel only handles the
+ * attractor and integrator combinations it {@link #supports}, the ensemble falls back to stepping particles
+ * one by one otherwise
+ * <p>
+ * */
+public interface EnsembleKernel {
+
+    @NotNull
+    String getName();
+
+    boolean supports(@NotNull AttractorI attractor, @NotNull IntegratorI integrator);
+
+    /**
+     * @return size of the scratch array to pass to {@link #integrate}
+     * */
+    int scratchSize();
+
+    /**
+     * Advances the particles in [from, to) by {@code steps} steps of size {@code dt}, in place
+     *
+     * @param scratch caller-owned scratch of at least {@link #scratchSize()} floats, so that stepping does not allocate
+     * */
+    void integrate(@NotNull AttractorI attractor, @NotNull float[] xs, @NotNull float[] ys, @NotNull float[] zs,
+                   int from, int to, float dt, int steps, @NotNull float[] scratch);
+
+}
@@ -0,0 +1,62 @@
+package sim;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Locates the optional SIMD {@link EnsembleKernel}.
+ *
+ * <p>
+ * The vector kernel depends on the incubating {@code jdk.incubator.vector} module, which is only resolved when the JVM
+ * is started with {@code --add-modules jdk.incubator.vector}. It is therefore loaded reflectively, and
+ * when the module is missing (or disabled with {@code -Dattractors.simd=false}) ensembles step on the scalar path
+ * <p>
+ * */
+public final class EnsembleKernels {
+
+    public static final String SIMD_PROPERTY = "attractors.simd";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL_CLASS = "sim.simd.VectorEnsembleKernel";
+
+    private static volatile boolean sLoaded;
+    @Nullable
+    private static EnsembleKernel sSimd;
+
+    private EnsembleKernels() {
+    }
+
+    /**
+     * @return the SIMD kernel, or {@code null} if the Vector API is not available
+     * */
+    @Nullable
+    public static EnsembleKernel simd() {
+        if (!sLoaded) {
+            synchronized (EnsembleKernels.class) {
+                if (!sLoaded) {
+                    sSimd = loadSimd();
+                    sLoaded = true;
+                }
+            }
+        }
+
+        return sSimd;
+    }
+
+    @Nullable
+    private static EnsembleKernel loadSimd() {
+        if (!Boolean.parseBoolean(System.getProperty(SIMD_PROPERTY, "true")))
+            return null;
+
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty())
+            return null;
+
+        try {
+            return (EnsembleKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (Throwable t) {
+            // linkage errors included: the module may be present but unusable on this platform
+            System.err.println("SIMD ensemble kernel unavailable, using scalar stepping: " + t);
+            return null;
+        }
+    }
+
+}
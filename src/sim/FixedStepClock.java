@@ -0,0 +1,93 @@
+package sim;
+
+/**
+ * A fixed-timestep accumulator driven by {@link System#nanoTime()}.
+ *
+ * <p>
+ * Elapsed wall time is converted to simulation time and accumulated; every {@link #tick} then reports how many
+ * whole steps of the fixed size {@code dt} are due, up to a per-tick budget. The remainder carries over to the next tick,
+ * so the step size never depends on frame or scheduling timing. After a long stall (a GC pause, a window drag) the backlog
+ * is capped, i.e. the simulation slows down for a moment instead of taking a huge unstable step or spiralling
+ * to catch up
+ * <p>
+ * */
+public class FixedStepClock {
+
+    private final int mMaxStepsPerTick;
+    private final int mMaxBacklogSteps;
+    private final double mMaxBacklogSeconds;
+
+    private long mLastNs = -1;
+    private double mAccumulator;         // simulation time elapsed but not yet integrated
+    private long mDroppedSteps;
+
+    /**
+     * @param maxStepsPerTick max steps reported by a single tick, the rest is deferred to the next ticks
+     * @param maxBacklogSteps max steps that may be pending at once, any excess is dropped
+     * @param maxBacklogSeconds max wall time worth of steps that may be pending at once, at the rate of the tick. Bounds
+     *                          the catch-up burst after a stall whatever the step rate
+     * */
+    public FixedStepClock(int maxStepsPerTick, int maxBacklogSteps, double maxBacklogSeconds) {
+        mMaxStepsPerTick = Math.max(maxStepsPerTick, 1);
+        mMaxBacklogSteps = Math.max(maxBacklogSteps, mMaxStepsPerTick);
+        mMaxBacklogSeconds = maxBacklogSeconds;
+    }
+
+    public FixedStepClock(int maxStepsPerTick, int maxBacklogSteps) {
+        this(maxStepsPerTick, maxBacklogSteps, Double.POSITIVE_INFINITY);
+    }
+
+    public int getMaxStepsPerTick() {
+        return mMaxStepsPerTick;
+    }
+
+    /**
+     * @return total number of steps dropped because the backlog was full
+     * */
+    public long getDroppedSteps() {
+        return mDroppedSteps;
+    }
+
+    /**
+     * Discards the accumulated time. The next tick only starts the clock
+     * */
+    public void reset() {
+        mLastNs = -1;
+        mAccumulator = 0;
+    }
+
+    /**
+     * Advances the clock to {@code nowNs}
+     *
+     * @param simTimePerSecond simulation time that elapses per wall second (including any speed factor)
+     * @param dt fixed simulation time step
+     * @return number of steps of size {@code dt} to integrate now
+     * */
+    public int tick(long nowNs, double simTimePerSecond, double dt) {
+        if (mLastNs != -1) {
+            mAccumulator += (nowNs - mLastNs) * 1e-9 * simTimePerSecond;
+        }
+        mLastNs = nowNs;
+
+        // at least a step, so that a slow rate still gets its steps
+        final double maxBacklog = Math.min(mMaxBacklogSteps * dt, Math.max(mMaxBacklogSeconds * simTimePerSecond, dt));
+        if (mAccumulator > maxBacklog) {
+            mDroppedSteps += (long) ((mAccumulator - maxBacklog) / dt);
+            mAccumulator = maxBacklog;
+        }
+
+        final int steps = (int) Math.min(mAccumulator / dt, mMaxStepsPerTick);
+        mAccumulator -= steps * dt;
+        return steps;
+    }
+
+    /**
+     * @return wall time in nanoseconds until the next step is due, given the same rate as the last tick
+     * */
+    public long nanosUntilNextStep(double simTimePerSecond, double dt) {
+        if (mAccumulator >= dt)
+            return 0;
+        return (long) ((dt - mAccumulator) / simTimePerSecond * 1e9);
+    }
+
+}
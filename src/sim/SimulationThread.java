@@ -0,0 +1,305 @@
+package sim;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Advances an attractor on its own thread at a target number of steps per second, independent of the frame rate,
+ * and publishes every new point to a {@link SpscPointQueue}. The renderer only drains the queue.
+ *
+ * <p>
+ * Stepping uses a fixed time step {@code dt = simTimePerSecond / stepsPerSecond}, paced by a {@link FixedStepClock}.
+ * The speed factor scales how many fixed steps are taken per wall second, never the size of a step, so trajectory
+ * quality does not depend on timing.
+ * <p>
+ * The thread owns its integrator and state. When the queue is full (the renderer is falling behind),
+ * the simulation waits instead of dropping points, so the trajectory stays continuous. Once quitting, it finishes the
+ * batch in progress without waiting: the points that do not fit in the queue are kept aside, see {@link #drainOverflow}
+ * <p>
+ * */
+public class SimulationThread extends Thread {
+
+    public static final float STEPS_PER_SECOND_MIN = 10;
+    public static final float STEPS_PER_SECOND_MAX = 1_000_000;
+
+    /**
+     * Max steps integrated per tick, so that control changes are picked up promptly
+     * */
+    public static final int MAX_STEPS_PER_TICK = 4096;
+
+    /**
+     * Max steps the simulation may lag behind before the backlog of due steps is dropped: a few ticks' worth
+     * */
+    public static final int MAX_BACKLOG_STEPS = 4 * MAX_STEPS_PER_TICK;
+
+    /**
+     * Max wall time the simulation may lag behind, at the current rate, before the backlog of due steps is dropped.
+     * After a stall it catches up a few frames at most, e.g. 50 steps at 1000 steps per second
+     * */
+    public static final float MAX_BACKLOG_SECONDS = 0.05f;
+
+    private static final long IDLE_PARK_NS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final long MAX_PARK_NS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @NotNull
+    private final AttractorI mAttractor;
+    @NotNull
+    private final IntegratorI mIntegrator;
+    @NotNull
+    private final SpscPointQueue mQueue;
+    @NotNull
+    private final float[] mState = new float[AttractorI.STATE_SIZE];
+    @NotNull
+    private final TrajectorySink mQueueSink = this::publish;
+    @NotNull
+    private final FixedStepClock mClock = new FixedStepClock(MAX_STEPS_PER_TICK, MAX_BACKLOG_STEPS, MAX_BACKLOG_SECONDS);
+
+    private volatile boolean mRunning = true;
+
+    /* Points of the last batch that did not fit in the queue once quitting, in order after the queued ones */
+    @NotNull
+    private float[] mOverflow = new float[0];
+    private int mOverflowCount;
+    private volatile float mStepsPerSecond;
+    private volatile float mSpeedFactor;
+
+    /* Simulation clock, since the initial state */
+    private volatile long mSteps;
+    private volatile double mTime;
+
+    @Nullable
+    private CheckpointIndex mIndex;
+    private boolean mContinueIndex;
+
+    private final boolean mResume;
+
+    /**
+     * @param initialState state to resume from, or {@code null} to start from {@link AttractorI#getStart()}.
+     *                     When resuming, the initial state is not published again
+     * */
+    public SimulationThread(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, @NotNull SpscPointQueue queue,
+                            @Nullable float[] initialState, float stepsPerSecond, float speedFactor) {
+        super("Simulation-" + attractor.getTitle());
+        setDaemon(true);
+
+        mAttractor = attractor;
+        mIntegrator = integrator;
+        mQueue = queue;
+        mStepsPerSecond = stepsPerSecond;
+        mSpeedFactor = speedFactor;
+
+        mResume = initialState != null;
+        if (mResume) {
+            System.arraycopy(initialState, 0, mState, 0, AttractorI.STATE_SIZE);
+        }
+    }
+
+    public SimulationThread(@NotNull AttractorI attractor, @NotNull IntegratorI integrator, @NotNull SpscPointQueue queue, float stepsPerSecond, float speedFactor) {
+        this(attractor, integrator, queue, null, stepsPerSecond, speedFactor);
+    }
+
+    @NotNull
+    public AttractorI getAttractor() {
+        return mAttractor;
+    }
+
+    /**
+     * @return the integrator owned by the thread. Only safe to use once the thread has finished, see {@link #quit()}
+     * */
+    @NotNull
+    public IntegratorI getIntegrator() {
+        return mIntegrator;
+    }
+
+    /**
+     * Sets the simulation clock of a resumed run. Must be called before the thread is started
+     *
+     * @param steps steps integrated since the initial state
+     * @param time simulation time since the initial state
+     * */
+    public void setElapsed(long steps, double time) {
+        mSteps = steps;
+        mTime = time;
+    }
+
+    /**
+     * Records the run into a checkpoint index. Must be called before the thread is started
+     *
+     * @param continueRun whether this thread continues the run already in the index, from one of its steps with the same
+     *                    integrator state (after a seek or a pause). Otherwise, the index is reset to start at the initial state
+     * */
+    public void setCheckpointIndex(@Nullable CheckpointIndex index, boolean continueRun) {
+        mIndex = index;
+        mContinueIndex = continueRun;
+    }
+
+    /**
+     * @return steps integrated since the initial state
+     * */
+    public long getSteps() {
+        return mSteps;
+    }
+
+    /**
+     * @return simulation time since the initial state
+     * */
+    public double getTime() {
+        return mTime;
+    }
+
+    /**
+     * @return number of fixed steps taken per wall second at 1x speed
+     * */
+    public float getStepsPerSecond() {
+        return mStepsPerSecond;
+    }
+
+    public void setStepsPerSecond(float stepsPerSecond) {
+        mStepsPerSecond = stepsPerSecond;
+    }
+
+    public float getSpeedFactor() {
+        return mSpeedFactor;
+    }
+
+    public void setSpeedFactor(float speedFactor) {
+        mSpeedFactor = speedFactor;
+    }
+
+    /**
+     * @return fixed simulation time step for the given steps per second (at 1x speed)
+     * */
+    public static float fixedStep(@NotNull AttractorI attractor, float stepsPerSecond) {
+        return attractor.drawConfig().getStepPerMs() * 1000 / stepsPerSecond;
+    }
+
+    public long getDroppedSteps() {
+        return mClock.getDroppedSteps();
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Copies the current state into {@code out}. Only consistent once the thread has finished, see {@link #quit()}
+     * */
+    public void getState(@NotNull float[] out) {
+        System.arraycopy(mState, 0, out, 0, AttractorI.STATE_SIZE);
+    }
+
+    /**
+     * Stops the simulation and waits for the thread to finish
+     * */
+    public void quit() {
+        mRunning = false;
+        interrupt();
+
+        if (Thread.currentThread() != this) {
+            try {
+                join();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Passes the points that did not fit in the queue when quitting to {@code sink}, to be called after draining the queue.
+     * With both, every point up to the final state (see {@link #getState}) is received. Only safe to call once the thread
+     * has finished, see {@link #quit()}
+     *
+     * @return number of points drained
+     * */
+    public int drainOverflow(@NotNull TrajectorySink sink) {
+        final float[] o = mOverflow;
+        final int count = mOverflowCount;
+        for (int i = 0; i < count; i++) {
+            sink.accept(o[i * 3], o[i * 3 + 1], o[i * 3 + 2]);
+        }
+
+        mOverflowCount = 0;
+        return count;
+    }
+
+    private void publish(float x, float y, float z) {
+        // once a point overflowed, the following ones must too, so that they stay in order
+        while (mOverflowCount > 0 || !mQueue.offer(x, y, z)) {
+            if (!mRunning) {
+                overflow(x, y, z);
+                return;
+            }
+
+            LockSupport.parkNanos(IDLE_PARK_NS);          // renderer is behind, wait for it
+        }
+    }
+
+    private void overflow(float x, float y, float z) {
+        final int i = mOverflowCount * 3;
+        if (i + 3 > mOverflow.length) {
+            mOverflow = Arrays.copyOf(mOverflow, Math.max(mOverflow.length * 2, (MAX_STEPS_PER_TICK + 1) * 3));
+        }
+
+        mOverflow[i] = x;
+        mOverflow[i + 1] = y;
+        mOverflow[i + 2] = z;
+        mOverflowCount++;
+    }
+
+    private void advance(@NotNull float[] state, float dt, int steps) {
+        final CheckpointIndex index = mIndex;
+        if (index != null && (!mContinueIndex || index.getDt() != dt)) {
+            index.reset(mSteps, mTime, dt, state, mIntegrator);         // new run, or the step size changed
+            mContinueIndex = true;
+        }
+
+        while (steps > 0) {
+            // stop at every step due in the index
+            final int n = index != null? (int) Math.min(steps, index.nextEntrySteps(mSteps) - mSteps): steps;
+            mIntegrator.integrate(mAttractor, state, 0, dt, n, mQueueSink);
+            mSteps += n;
+            mTime += (double) n * dt;
+            steps -= n;
+
+            if (index != null) {
+                index.record(mSteps, state, mIntegrator);
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        final float[] state = mState;
+        final float simTimePerSecond = mAttractor.drawConfig().getStepPerMs() * 1000;
+
+        if (!mResume) {
+            mAttractor.getStart(state, 0);
+            publish(state[0], state[1], state[2]);
+        }
+
+        final FixedStepClock clock = mClock;
+        clock.reset();
+
+        while (mRunning) {
+            final float stepsPerSecond = mStepsPerSecond;
+            final float dt = fixedStep(mAttractor, stepsPerSecond);
+            final double rate = (double) simTimePerSecond * mSpeedFactor;
+
+            final int steps = clock.tick(System.nanoTime(), rate, dt);
+            if (steps > 0) {
+                advance(state, dt, steps);
+            } else {
+                // sleep until the next step is due
+                final long waitNs = clock.nanosUntilNextStep(rate, dt);
+                LockSupport.parkNanos(Math.min(Math.max(waitNs, IDLE_PARK_NS), MAX_PARK_NS));
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package sim;
+
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free single-producer / single-consumer queue of 3D points.
+ *
+ * <p>
+ * Points are stored in parallel primitive arrays, so neither side allocates. Exactly one thread may call
+ * {@link #offer(float, float, float)}, and exactly one (other) thread may call {@link #drain(TrajectorySink, int)}.
+ * The producer publishes a point with an ordered write of the tail index, which happens-before the consumer reading it
+ * <p>
+ * */
+public class SpscPointQueue {
+
+    private final int mCapacity;
+    private final int mMask;
+    @NotNull
+    private final float[] xs, ys, zs;
+
+    /* Index of the next point to be read, written by consumer only */
+    private final AtomicLong mHead = new AtomicLong();
+    /* Index of the next point to be written, written by producer only */
+    private final AtomicLong mTail = new AtomicLong();
+
+    /* Producer local cache of the head, to avoid reading the shared counter on every offer */
+    private long mHeadCache;
+
+    /**
+     * @param capacity minimum capacity, rounded up to a power of 2
+     * */
+    public SpscPointQueue(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be > 0, given: " + capacity);
+
+        mCapacity = Integer.highestOneBit(capacity) == capacity? capacity: Integer.highestOneBit(capacity) << 1;
+        mMask = mCapacity - 1;
+        xs = new float[mCapacity];
+        ys = new float[mCapacity];
+        zs = new float[mCapacity];
+    }
+
+    public int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * @return approximate number of queued points
+     * */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    /**
+     * Producer side: enqueues a point
+     *
+     * @return false if the queue is full
+     * */
+    public boolean offer(float x, float y, float z) {
+        final long tail = mTail.get();
+        if (tail - mHeadCache >= mCapacity) {
+            mHeadCache = mHead.get();
+            if (tail - mHeadCache >= mCapacity)
+                return false;
+        }
+
+        final int i = (int) tail & mMask;
+        xs[i] = x;
+        ys[i] = y;
+        zs[i] = z;
+        mTail.lazySet(tail + 1);            // publish
+        return true;
+    }
+
+    /**
+     * Consumer side: dequeues up to {@code max} points into the given sink
+     *
+     * @return number of points drained
+     * */
+    public int drain(@NotNull TrajectorySink sink, int max) {
+        final long head = mHead.get();
+        final int count = (int) Math.min(mTail.get() - head, max);
+
+        for (int k = 0; k < count; k++) {
+            final int i = (int) (head + k) & mMask;
+            sink.accept(xs[i], ys[i], zs[i]);
+        }
+
+        if (count > 0) {
+            mHead.lazySet(head + count);        // release slots to the producer
+        }
+
+        return count;
+    }
+
+    /**
+     * Discards all queued points. Must only be called while the producer is not running
+     * */
+    public void clear() {
+        final long tail = mTail.get();
+        mHead.set(tail);
+        mHeadCache = tail;
+    }
+
+}
@@ -0,0 +1,206 @@
+package sim;
+
+import attractors.AttractorI;
+import integrators.IntegratorI;
+import math.TrajectoryBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Seeks a simulation to an earlier (or already visited) step in the background: starting from the closest entry of a
+ * {@link CheckpointIndex}, it re-integrates the missing steps and collects the trail that ends at the target step.
+ *
+ * <p>
+ * Only the latest request matters: a new request supersedes any request still being computed, so that dragging a scrub
+ * bar never queues up work. Results are picked up by polling, typically once per frame
+ * <p>
+ * */
+public class TimelineSeeker {
+
+    /* Steps integrated between two checks for a newer request */
+    private static final int CHUNK_STEPS = 4096;
+
+    /**
+     * A finished seek: the state at the target step, and what to continue the run with
+     * */
+    public static final class Result {
+
+        /**
+         * Generation of the {@link CheckpointIndex} the seek started from
+         * */
+        public final int generation;
+        public final long steps;
+        public final double time;
+        @NotNull
+        public final float[] state;
+        /**
+         * Integrator carrying its state at the target step
+         * */
+        @NotNull
+        public final IntegratorI integrator;
+        /**
+         * Points up to and including the target step
+         * */
+        @NotNull
+        public final TrajectoryBuffer trail;
+
+        private final long mId;
+
+        private Result(long id, int generation, long steps, double time, @NotNull float[] state, @NotNull IntegratorI integrator, @NotNull TrajectoryBuffer trail) {
+            mId = id;
+            this.generation = generation;
+            this.steps = steps;
+            this.time = time;
+            this.state = state;
+            this.integrator = integrator;
+            this.trail = trail;
+        }
+    }
+
+    private static final class Request {
+
+        final long id;
+        final int generation;
+        @NotNull
+        final AttractorI attractor;
+        @NotNull
+        final IntegratorI integrator;
+        @NotNull
+        final float[] state;
+        final long fromSteps;
+        final long toSteps;
+        final double toTime;
+        final float dt;
+        final int history;
+
+        Request(long id, int generation, @NotNull AttractorI attractor, @NotNull IntegratorI integrator, @NotNull float[] state,
+                long fromSteps, long toSteps, double toTime, float dt, int history) {
+            this.id = id;
+            this.generation = generation;
+            this.attractor = attractor;
+            this.integrator = integrator;
+            this.state = state;
+            this.fromSteps = fromSteps;
+            this.toSteps = toSteps;
+            this.toTime = toTime;
+            this.dt = dt;
+            this.history = history;
+        }
+    }
+
+    @NotNull
+    private final AtomicReference<Request> mPending = new AtomicReference<>();
+    @NotNull
+    private final AtomicReference<Result> mResult = new AtomicReference<>();
+    private volatile long mLatestId;
+    private long mNextId = 1;
+
+    @Nullable
+    private Thread mThread;
+    private volatile boolean mRunning = true;
+
+    /**
+     * Starts seeking the run recorded in the index to the given step, superseding any seek in progress
+     *
+     * @param attractor attractor of the run, only read
+     * @param integrator an integrator of the same kind as the run's, owned by the seeker from now on
+     * @param history number of points before the target step to collect in the result's trail
+     * @return false if the index is empty
+     * */
+    public boolean request(@NotNull CheckpointIndex index, @NotNull AttractorI attractor, @NotNull IntegratorI integrator, long steps, int history) {
+        final int generation = index.getGeneration();
+        final float[] state = new float[AttractorI.STATE_SIZE];
+        final long from = index.restore(Math.max(steps - history, index.getOriginSteps()), state, integrator);
+        if (from < 0)
+            return false;
+
+        final long id = mNextId++;
+        mLatestId = id;
+        mPending.set(new Request(id, generation, attractor, integrator, state, from, Math.max(steps, from), index.timeAt(steps), index.getDt(), history));
+
+        if (mThread == null) {
+            final Thread t = new Thread(this::work, "Timeline seek");
+            t.setDaemon(true);
+            mThread = t;
+            t.start();
+        } else {
+            LockSupport.unpark(mThread);
+        }
+
+        return true;
+    }
+
+    /**
+     * Drops the seek in progress, if any
+     * */
+    public void cancel() {
+        mLatestId = mNextId++;
+        mPending.set(null);
+    }
+
+    /**
+     * @return the result of the latest request if it is done, once. Null otherwise
+     * */
+    @Nullable
+    public Result poll() {
+        final Result r = mResult.get();
+        if (r == null || r.mId != mLatestId)
+            return null;
+
+        return mResult.compareAndSet(r, null)? r: null;
+    }
+
+    /**
+     * Stops the worker thread
+     * */
+    public void quit() {
+        mRunning = false;
+        cancel();
+        if (mThread != null) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    private void work() {
+        while (mRunning) {
+            final Request request = mPending.getAndSet(null);
+            if (request == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            final Result result = seek(request);
+            if (result != null) {
+                mResult.set(result);
+            }
+        }
+    }
+
+    @Nullable
+    private Result seek(@NotNull Request r) {
+        final TrajectoryBuffer trail = new TrajectoryBuffer(Math.max(r.history, 1));
+        final float[] state = r.state;
+        final long trailFrom = r.toSteps - r.history;         // steps after this one are collected
+        if (r.fromSteps > trailFrom) {
+            trail.add(state[0], state[1], state[2]);
+        }
+
+        long steps = r.fromSteps;
+        while (steps < r.toSteps) {
+            if (r.id != mLatestId)
+                return null;            // superseded
+
+            final boolean collect = steps >= trailFrom;
+            final long end = collect? r.toSteps: trailFrom;
+            final int n = (int) Math.min(end - steps, CHUNK_STEPS);
+            r.integrator.integrate(r.attractor, state, 0, r.dt, n, collect? trail: null);
+            steps += n;
+        }
+
+        return new Result(r.id, r.generation, r.toSteps, r.toTime, state, r.integrator, trail);
+    }
+
+}
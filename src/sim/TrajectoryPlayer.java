@@ -0,0 +1,203 @@
+package sim;
+
+import io.TrajectoryHeader;
+import io.TrajectoryReader;
+import math.TrajectorySink;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays back a recorded trajectory file in place of a live simulation: every {@link #advance tick} emits the points that
+ * are due, at the same pace of simulation time per wall second as the live simulation, so a trajectory integrated offline
+ * with a small step still plays at the familiar speed.
+ *
+ * <p>
+ * Points are read in place from the memory-mapped file, see {@link TrajectoryReader}. A background thread pages the
+ * records ahead of the play position in from the disk, so the caller (the animation thread) never waits on a page fault
+ * while playing, however large the file is. Seeking restarts the read ahead at the new position.
+ * <p>
+ * Not thread safe, except for the read ahead which is internal
+ * <p>
+ * */
+public class TrajectoryPlayer implements Closeable {
+
+    /**
+     * Points paged in ahead of the play position
+     * */
+    public static final int READ_AHEAD_POINTS = 1 << 20;
+
+    /* Points paged in at a time, so that a seek is picked up promptly */
+    private static final int READ_AHEAD_CHUNK_POINTS = 1 << 16;
+
+    /* Max points due at a single tick, anything more is skipped (see advance) */
+    private static final int MAX_POINTS_PER_TICK = 1 << 24;
+
+    private static final long READ_AHEAD_PARK_NS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @NotNull
+    private final TrajectoryReader mReader;
+    private final double mSimTimePerSecond;
+    @NotNull
+    private final FixedStepClock mClock = new FixedStepClock(MAX_POINTS_PER_TICK, MAX_POINTS_PER_TICK);
+
+    private volatile long mPosition;        // index of the next point to emit, read by the read ahead
+    private boolean mPlaying = true;
+
+    @NotNull
+    private final Thread mReadAhead;
+    private volatile boolean mRunning = true;
+
+    /**
+     * @param reader trajectory to play, owned by the player from now on
+     * @param simTimePerSecond simulation time played per wall second at 1x speed, see {@link SimulationThread#fixedStep}
+     * */
+    public TrajectoryPlayer(@NotNull TrajectoryReader reader, double simTimePerSecond) {
+        mReader = reader;
+        mSimTimePerSecond = simTimePerSecond;
+
+        mReadAhead = new Thread(this::readAhead, "Trajectory read-ahead");
+        mReadAhead.setDaemon(true);
+        mReadAhead.start();
+    }
+
+    @NotNull
+    public TrajectoryHeader getHeader() {
+        return mReader.getHeader();
+    }
+
+    /**
+     * @return number of points in the trajectory
+     * */
+    public long size() {
+        return mReader.size();
+    }
+
+    /**
+     * @return index of the next point to be played
+     * */
+    public long getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * @return simulation time of the play position
+     * */
+    public double getTime() {
+        return mReader.timeAt(mPosition);
+    }
+
+    /**
+     * @return simulation time of the last point
+     * */
+    public double getDuration() {
+        return mReader.timeAt(Math.max(mReader.size() - 1, 0));
+    }
+
+    public boolean isAtEnd() {
+        return mPosition >= mReader.size();
+    }
+
+    public boolean isPlaying() {
+        return mPlaying;
+    }
+
+    public void setPlaying(boolean playing) {
+        if (mPlaying == playing)
+            return;
+
+        mPlaying = playing;
+        mClock.reset();         // do not catch up on the time spent paused
+    }
+
+    public void togglePlaying() {
+        setPlaying(!mPlaying);
+    }
+
+    /**
+     * Moves the play position, and emits the points just before it so that the caller can rebuild a trail ending there
+     *
+     * @param index index of the next point to play, clamped to the trajectory
+     * @param history max number of points before {@code index} to emit
+     * */
+    public void seek(long index, int history, @NotNull TrajectorySink sink) {
+        index = Math.max(Math.min(index, mReader.size()), 0);
+        mPosition = index;
+        mClock.reset();
+        LockSupport.unpark(mReadAhead);
+
+        final long from = Math.max(index - history, 0);
+        mReader.prefetch(from, index - from);
+        mReader.forEach(from, index, sink);
+    }
+
+    /**
+     * Emits the points due since the last tick, if playing.
+     *
+     * <p>
+     * When more than {@code maxPoints} points are due (a high speed, or a long stall), only the last {@code maxPoints}
+     * are emitted and the ones before are skipped, so that playback keeps up with the wall clock at the cost of a gap.
+     * The caller passes the capacity of its trail, which would evict the skipped points right away anyway
+     * <p>
+     *
+     * @param nowNs current time, from {@link System#nanoTime()}
+     * @param speedFactor scale of the play rate
+     * @return number of points emitted
+     * */
+    public int advance(long nowNs, float speedFactor, int maxPoints, @NotNull TrajectorySink sink) {
+        if (!mPlaying)
+            return 0;
+
+        final long size = mReader.size();
+        final long position = mPosition;
+        final int due = mClock.tick(nowNs, mSimTimePerSecond * speedFactor, mReader.getHeader().timePerPoint());
+        if (due <= 0 || position >= size)
+            return 0;
+
+        final long end = Math.min(position + due, size);
+        final long from = Math.max(position, end - Math.max(maxPoints, 1));
+        mReader.forEach(from, end, sink);
+        mPosition = end;
+        return (int) (end - from);
+    }
+
+    private void readAhead() {
+        long loadedFrom = 0, loadedTo = 0;      // range paged in since the last seek
+
+        while (mRunning) {
+            final long position = mPosition;
+            if (position < loadedFrom || position > loadedTo) {
+                loadedFrom = loadedTo = position;       // seek
+            }
+
+            final long target = Math.min(position + READ_AHEAD_POINTS, mReader.size());
+            if (loadedTo < target) {
+                final long count = Math.min(target - loadedTo, READ_AHEAD_CHUNK_POINTS);
+                mReader.prefetch(loadedTo, count);
+                loadedTo += count;
+            } else {
+                LockSupport.parkNanos(READ_AHEAD_PARK_NS);
+            }
+        }
+    }
+
+    /**
+     * Stops the read ahead and closes the file
+     * */
+    @Override
+    public void close() throws IOException {
+        mRunning = false;
+        LockSupport.unpark(mReadAhead);
+        try {
+            mReadAhead.join();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+
+        mReader.close();
+    }
+
+}
@@ -0,0 +1,265 @@
+package sim.simd;
+
+import attractors.AttractorI;
+import attractors.ChuaAttractor;
+import attractors.LorentzAttractor;
+import attractors.LuChenAttractor;
+import attractors.ModifiedLorentzAttractor;
+import attractors.RosslerAttractor;
+import integrators.EulerIntegrator;
+import integrators.IntegratorI;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import math.RMath;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sim.EnsembleKernel;
+
+/**
+ * {@link EnsembleKernel} stepping one particle per vector lane with the incubating Vector API, i.e. 8 particles
+ * per instruction with AVX2 and 16 with AVX-512.
+ *
+ * <p>
+ * Supports explicit Euler on the built-in systems. The polynomial systems (and the square root of the modified Lorentz)
+ * perform the same IEEE operations in the same order as their scalar kernels, so they produce bit-identical trajectories.
+ * Chua's {@code sin} is replaced by a polynomial approximation (within a few ulps of {@link Math#sin}), so its
+ * particles follow the scalar ones only up to the usual divergence of a chaotic system.
+ * <p>
+ * A trailing partial block is copied into the scratch, padded with a valid particle and stepped as a full block,
+ * so that the hot loops never use masked operations.
+ * Loaded reflectively by {@link sim.EnsembleKernels}: nothing outside this package may reference this class directly
+ * <p>
+ * */
+public final class VectorEnsembleKernel implements EnsembleKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /* sin approximation: round-to-nearest by the 1.5 * 2^23 trick, Cody-Waite reduction by PI, odd minimax polynomial */
+    private static final float ROUND_MAGIC = 12582912f;
+    private static final float INV_PI = (float) (1 / Math.PI);
+    private static final float PI_A = 3.140625f;                               // exact in few bits, k * PI_A is exact
+    private static final float PI_B = (float) (Math.PI - 3.140625);
+    private static final float PI_C = (float) (Math.PI - 3.140625 - PI_B);
+    private static final float S1 = -0.16666666602f;
+    private static final float S2 = 0.00833333072f;
+    private static final float S3 = -1.9840874e-4f;
+    private static final float S4 = 2.7525562e-6f;
+    private static final float S5 = -2.386834e-8f;
+
+    private enum Dynamics {
+        LORENTZ, MODIFIED_LORENTZ, ROSSLER, LU_CHEN, CHUA
+    }
+
+    @Nullable
+    private static Dynamics dynamicsOf(@NotNull AttractorI attractor) {
+        // exact classes only, a subclass may override the dynamics
+        final Class<?> cls = attractor.getClass();
+        if (cls == LorentzAttractor.class)
+            return Dynamics.LORENTZ;
+        if (cls == ModifiedLorentzAttractor.class)
+            return Dynamics.MODIFIED_LORENTZ;
+        if (cls == RosslerAttractor.class)
+            return Dynamics.ROSSLER;
+        if (cls == LuChenAttractor.class)
+            return Dynamics.LU_CHEN;
+        if (cls == ChuaAttractor.class)
+            return Dynamics.CHUA;
+        return null;
+    }
+
+    @Override
+    @NotNull
+    public String getName() {
+        return "SIMD x" + SPECIES.length();
+    }
+
+    @Override
+    public boolean supports(@NotNull AttractorI attractor, @NotNull IntegratorI integrator) {
+        return integrator.getClass() == EulerIntegrator.class && dynamicsOf(attractor) != null;
+    }
+
+    @Override
+    public int scratchSize() {
+        return SPECIES.length() * AttractorI.STATE_SIZE;
+    }
+
+    @Override
+    public void integrate(@NotNull AttractorI attractor, @NotNull float[] xs, @NotNull float[] ys, @NotNull float[] zs,
+                          int from, int to, float dt, int steps, @NotNull float[] scratch) {
+        final Dynamics dynamics = dynamicsOf(attractor);
+        if (dynamics == null)
+            throw new IllegalArgumentException("Unsupported attractor: " + attractor.getClass().getName());
+        if (steps <= 0 || from >= to)
+            return;
+
+        final int lanes = SPECIES.length();
+        final int bound = from + SPECIES.loopBound(to - from);
+        for (int i = from; i < bound; i += lanes) {
+            block(dynamics, attractor, xs, i, ys, i, zs, i, dt, steps);
+        }
+
+        final int tail = to - bound;
+        if (tail > 0) {
+            // pad with the first particle of the tail, so that no lane computes on garbage
+            for (int l = 0; l < lanes; l++) {
+                final int src = l < tail? bound + l: bound;
+                scratch[l] = xs[src];
+                scratch[lanes + l] = ys[src];
+                scratch[2 * lanes + l] = zs[src];
+            }
+
+            block(dynamics, attractor, scratch, 0, scratch, lanes, scratch, 2 * lanes, dt, steps);
+
+            System.arraycopy(scratch, 0, xs, bound, tail);
+            System.arraycopy(scratch, lanes, ys, bound, tail);
+            System.arraycopy(scratch, 2 * lanes, zs, bound, tail);
+        }
+    }
+
+    private static void block(@NotNull Dynamics dynamics, @NotNull AttractorI attractor,
+                              @NotNull float[] xa, int xo, @NotNull float[] ya, int yo, @NotNull float[] za, int zo,
+                              float dt, int steps) {
+        switch (dynamics) {
+            case LORENTZ -> lorentz((LorentzAttractor) attractor, xa, xo, ya, yo, za, zo, dt, steps);
+            case MODIFIED_LORENTZ -> modifiedLorentz((ModifiedLorentzAttractor) attractor, xa, xo, ya, yo, za, zo, dt, steps);
+            case ROSSLER -> rossler((RosslerAttractor) attractor, xa, xo, ya, yo, za, zo, dt, steps);
+            case LU_CHEN -> luChen((LuChenAttractor) attractor, xa, xo, ya, yo, za, zo, dt, steps);
+            case CHUA -> chua((ChuaAttractor) attractor, xa, xo, ya, yo, za, zo, dt, steps);
+        }
+    }
+
+    private static void lorentz(@NotNull LorentzAttractor attr, float[] xa, int xo, float[] ya, int yo, float[] za, int zo, float dt, int steps) {
+        final float a = attr.getA(), b = attr.getB(), c = attr.getC();
+        FloatVector x = FloatVector.fromArray(SPECIES, xa, xo);
+        FloatVector y = FloatVector.fromArray(SPECIES, ya, yo);
+        FloatVector z = FloatVector.fromArray(SPECIES, za, zo);
+
+        for (int i = 0; i < steps; i++) {
+            final FloatVector dx = y.sub(x).mul(a);
+            final FloatVector dy = x.mul(z.neg().add(b)).sub(y);
+            final FloatVector dz = x.mul(y).sub(z.mul(c));
+
+            x = x.add(dx.mul(dt));
+            y = y.add(dy.mul(dt));
+            z = z.add(dz.mul(dt));
+        }
+
+        x.intoArray(xa, xo);
+        y.intoArray(ya, yo);
+        z.intoArray(za, zo);
+    }
+
+    private static void modifiedLorentz(@NotNull ModifiedLorentzAttractor attr, float[] xa, int xo, float[] ya, int yo, float[] za, int zo, float dt, int steps) {
+        final float a = attr.getA(), b = attr.getB(), c = attr.getC();
+        final float negAPlus1 = -(1 + a), oneMinusA = 1 - a, aPlusC = a + c, cMinusA = c - a, aPlus1 = a + 1, twoAMinus1 = 2 * (a - 1);
+        FloatVector x = FloatVector.fromArray(SPECIES, xa, xo);
+        FloatVector y = FloatVector.fromArray(SPECIES, ya, yo);
+        FloatVector z = FloatVector.fromArray(SPECIES, za, zo);
+
+        for (int i = 0; i < steps; i++) {
+            final FloatVector xx = x.mul(x), yy = y.mul(y);
+            final FloatVector x2_min_y2 = xx.sub(yy);
+            final FloatVector mag2d3 = xx.add(yy).sqrt().mul(3);
+            final FloatVector acz = z.neg().add(aPlusC);                    // a + c - z
+
+            final FloatVector dx = x.mul(negAPlus1).add(a).sub(c).add(z.mul(y)).div(3)
+                    .add(x2_min_y2.mul(oneMinusA).add(acz.mul(2).mul(x).mul(y)).div(mag2d3));
+            final FloatVector dy = z.neg().add(cMinusA).mul(x).sub(y.mul(aPlus1)).div(3)
+                    .add(x.mul(twoAMinus1).mul(y).add(acz.mul(x2_min_y2)).div(mag2d3));
+            final FloatVector dz = x.mul(3).mul(x).sub(yy).mul(y.div(2)).sub(z.mul(b));
+
+            x = x.add(dx.mul(dt));
+            y = y.add(dy.mul(dt));
+            z = z.add(dz.mul(dt));
+        }
+
+        x.intoArray(xa, xo);
+        y.intoArray(ya, yo);
+        z.intoArray(za, zo);
+    }
+
+    private static void rossler(@NotNull RosslerAttractor attr, float[] xa, int xo, float[] ya, int yo, float[] za, int zo, float dt, int steps) {
+        final float a = attr.getA(), b = attr.getB(), c = attr.getC();
+        FloatVector x = FloatVector.fromArray(SPECIES, xa, xo);
+        FloatVector y = FloatVector.fromArray(SPECIES, ya, yo);
+        FloatVector z = FloatVector.fromArray(SPECIES, za, zo);
+
+        for (int i = 0; i < steps; i++) {
+            final FloatVector dx = y.add(z).neg();
+            final FloatVector dy = x.add(y.mul(a));
+            final FloatVector dz = z.mul(x.sub(c)).add(b);
+
+            x = x.add(dx.mul(dt));
+            y = y.add(dy.mul(dt));
+            z = z.add(dz.mul(dt));
+        }
+
+        x.intoArray(xa, xo);
+        y.intoArray(ya, yo);
+        z.intoArray(za, zo);
+    }
+
+    private static void luChen(@NotNull LuChenAttractor attr, float[] xa, int xo, float[] ya, int yo, float[] za, int zo, float dt, int steps) {
+        final float a = attr.getA(), b = attr.getB(), c = attr.getC(), u = attr.getU();
+        FloatVector x = FloatVector.fromArray(SPECIES, xa, xo);
+        FloatVector y = FloatVector.fromArray(SPECIES, ya, yo);
+        FloatVector z = FloatVector.fromArray(SPECIES, za, zo);
+
+        for (int i = 0; i < steps; i++) {
+            final FloatVector dx = y.sub(x).mul(a);
+            final FloatVector dy = x.mul(z.neg().add(1)).add(y.mul(c)).add(u);
+            final FloatVector dz = x.mul(y).sub(z.mul(b));
+
+            x = x.add(dx.mul(dt));
+            y = y.add(dy.mul(dt));
+            z = z.add(dz.mul(dt));
+        }
+
+        x.intoArray(xa, xo);
+        y.intoArray(ya, yo);
+        z.intoArray(za, zo);
+    }
+
+    private static void chua(@NotNull ChuaAttractor attr, float[] xa, int xo, float[] ya, int yo, float[] za, int zo, float dt, int steps) {
+        final float alpha = attr.getAlpha(), beta = attr.getBeta(), negB = -attr.getB(), d = attr.getD(), twoA = 2 * attr.getA();
+        FloatVector x = FloatVector.fromArray(SPECIES, xa, xo);
+        FloatVector y = FloatVector.fromArray(SPECIES, ya, yo);
+        FloatVector z = FloatVector.fromArray(SPECIES, za, zo);
+
+        for (int i = 0; i < steps; i++) {
+            final FloatVector h = sin(x.mul(RMath.PI).div(twoA).add(d)).mul(negB);
+            final FloatVector dx = y.sub(h).mul(alpha);
+            final FloatVector dy = x.sub(y).add(z);
+            final FloatVector dz = y.mul(-beta);
+
+            x = x.add(dx.mul(dt));
+            y = y.add(dy.mul(dt));
+            z = z.add(dz.mul(dt));
+        }
+
+        x.intoArray(xa, xo);
+        y.intoArray(ya, yo);
+        z.intoArray(za, zo);
+    }
+
+    /**
+     * Lane-wise sine, without the call out to the scalar {@link Math#sin} that {@link VectorOperators#SIN}
+     * falls back to on most platforms. Accurate for |t| up to ~2^15, far beyond any state of the built-in systems
+     * */
+    @NotNull
+    static FloatVector sin(@NotNull FloatVector t) {
+        // t = k * PI + r, |r| <= PI / 2
+        final FloatVector k = t.mul(INV_PI).add(ROUND_MAGIC).sub(ROUND_MAGIC);
+        final FloatVector r = t.sub(k.mul(PI_A)).sub(k.mul(PI_B)).sub(k.mul(PI_C));
+
+        final FloatVector r2 = r.mul(r);
+        final FloatVector poly = r2.mul(S5).add(S4).mul(r2).add(S3).mul(r2).add(S2).mul(r2).add(S1).mul(r2).mul(r).add(r);
+
+        // sin(t) = (-1)^k * sin(r), the parity of k from the fractional part of k / 2 (0 or 0.5)
+        final FloatVector half = k.mul(0.5f);
+        final FloatVector frac = half.sub(half.add(ROUND_MAGIC).sub(ROUND_MAGIC)).abs();
+        return poly.mul(frac.mul(-4).add(1));
+    }
+
+}
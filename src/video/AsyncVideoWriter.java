@@ -0,0 +1,223 @@
+package video;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a {@link VideoEncoder} on a background thread, fed through a bounded queue of pooled pixel buffers.
+ *
+ * <p>
+ * A producer takes a free buffer from the pool, fills it with the pixels of a frame and {@link #submit submits} it.
+ * The encoder thread writes the queued frames in submission order and returns their buffers to the pool.
+ * The pool holds a fixed number of buffers, allocated upfront, so capturing does not allocate per frame.
+ * <p>
+ * When the encoder falls behind, the pool runs dry: {@link #tryAcquire()} then returns null immediately and counts the
+ * frame as dropped, which is what a real-time producer (e.g. the animation thread) wants, while {@link #acquire()}
+ * waits for a buffer, which is what an offline producer wants
+ * <p>
+ * */
+public class AsyncVideoWriter implements Closeable {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+    /* Marks the end of the stream in the queue */
+    private static final int[] END = new int[0];
+    private static final long POLL_NS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @NotNull
+    private final VideoEncoder mEncoder;
+    private final int mQueueCapacity;
+    @NotNull
+    private final BlockingQueue<int[]> mFree;
+    @NotNull
+    private final BlockingQueue<int[]> mQueue;
+    @NotNull
+    private final Thread mThread;
+
+    @NotNull
+    private final AtomicInteger mDropped = new AtomicInteger();
+    @NotNull
+    private final AtomicReference<IOException> mError = new AtomicReference<>();
+    private volatile boolean mClosed;
+
+    /**
+     * @param encoder encoder of the frames, owned by this writer
+     * @param queueCapacity number of pooled buffers, i.e. max frames waiting for the encoder
+     * */
+    public AsyncVideoWriter(@NotNull VideoEncoder encoder, int queueCapacity) {
+        mEncoder = encoder;
+        mQueueCapacity = Math.max(queueCapacity, 1);
+        mFree = new ArrayBlockingQueue<>(mQueueCapacity);
+        mQueue = new ArrayBlockingQueue<>(mQueueCapacity + 1);          // + end marker
+
+        final int pixels = encoder.getWidth() * encoder.getHeight();
+        for (int i = 0; i < mQueueCapacity; i++) {
+            mFree.add(new int[pixels]);
+        }
+
+        mThread = new Thread(this::encodeLoop, "Video encoder");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    public AsyncVideoWriter(@NotNull VideoEncoder encoder) {
+        this(encoder, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public int getWidth() {
+        return mEncoder.getWidth();
+    }
+
+    public int getHeight() {
+        return mEncoder.getHeight();
+    }
+
+    public int getQueueCapacity() {
+        return mQueueCapacity;
+    }
+
+    /**
+     * @return frames waiting for the encoder
+     * */
+    public int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    public int getDroppedFrames() {
+        return mDropped.get();
+    }
+
+    /**
+     * @return frames encoded so far
+     * */
+    public int getFrameCount() {
+        return mEncoder.getFrameCount();
+    }
+
+    /**
+     * @return the error that stopped the encoder, or null
+     * */
+    @Nullable
+    public IOException getError() {
+        return mError.get();
+    }
+
+    private void encodeLoop() {
+        while (true) {
+            final int[] frame;
+            try {
+                frame = mQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (frame == END)
+                return;
+
+            if (mError.get() == null) {
+                try {
+                    mEncoder.writeFrame(frame);
+                } catch (IOException | RuntimeException e) {
+                    mError.compareAndSet(null, e instanceof IOException? (IOException) e: new IOException("Failed to encode a frame", e));
+                }
+            }
+
+            mFree.add(frame);
+        }
+    }
+
+    /**
+     * @return a free buffer of {@code width * height} pixels, or null if none is free (the frame is counted as dropped)
+     * or the writer is closed or failed
+     * */
+    @Nullable
+    public int[] tryAcquire() {
+        if (mClosed || mError.get() != null)
+            return null;
+
+        final int[] buffer = mFree.poll();
+        if (buffer == null) {
+            mDropped.incrementAndGet();
+        }
+        return buffer;
+    }
+
+    /**
+     * Waits for a free buffer of {@code width * height} pixels
+     *
+     * @throws IOException if the encoder failed or the writer is closed
+     * */
+    @NotNull
+    public int[] acquire() throws IOException {
+        while (true) {
+            final IOException error = mError.get();
+            if (error != null)
+                throw error;
+            if (mClosed)
+                throw new IOException("Video writer is closed");
+
+            try {
+                final int[] buffer = mFree.poll(POLL_NS, TimeUnit.NANOSECONDS);
+                if (buffer != null)
+                    return buffer;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the video encoder");
+            }
+        }
+    }
+
+    /**
+     * Queues a buffer from {@link #tryAcquire()} or {@link #acquire()} for encoding. Never blocks
+     * */
+    public void submit(@NotNull int[] buffer) {
+        if (!mQueue.offer(buffer))
+            throw new IllegalStateException("Submitted a buffer that was not acquired from this writer");
+    }
+
+    /**
+     * Returns an acquired buffer to the pool without encoding it
+     * */
+    public void release(@NotNull int[] buffer) {
+        mFree.add(buffer);
+    }
+
+    /**
+     * Encodes the frames still queued, then finishes and closes the video file
+     *
+     * @throws IOException if encoding a frame or closing the file failed
+     * */
+    @Override
+    public void close() throws IOException {
+        if (mClosed)
+            return;
+
+        mClosed = true;
+        mQueue.add(END);
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            mEncoder.close();
+        } catch (IOException e) {
+            mError.compareAndSet(null, e);
+        }
+
+        final IOException error = mError.get();
+        if (error != null)
+            throw error;
+    }
+
+}
@@ -0,0 +1,263 @@
+package video;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Writes Motion JPEG video in an AVI (RIFF) container: every frame is an independent JPEG, so files are a fraction of
+ * the size of raw video and every frame is a key frame, which keeps them easy to cut and scrub in editors.
+ *
+ * <p>
+ * Frames are JPEG encoded with ImageIO into a reused in-memory buffer and appended to the {@code movi} list as they come.
+ * The headers are written with placeholder counts up front and rewritten on {@link #close()}, followed by the
+ * {@code idx1} index. Being plain AVI 1.0 (no OpenDML extension), files are limited to 4 GB
+ * <p>
+ * */
+public class MjpegAviEncoder implements VideoEncoder {
+
+    public static final float DEFAULT_QUALITY = 0.9f;
+
+    /* Sizes of the fixed header chunks */
+    private static final int AVIH_SIZE = 56, STRH_SIZE = 56, STRF_SIZE = 40;
+    private static final int STRL_SIZE = 4 + (8 + STRH_SIZE) + (8 + STRF_SIZE);
+    private static final int HDRL_SIZE = 4 + (8 + AVIH_SIZE) + (8 + STRL_SIZE);
+    /* Offset of the 'movi' fourcc, which index offsets are relative to, and of the first frame chunk */
+    private static final int MOVI_OFFSET = 12 + (8 + HDRL_SIZE) + 8;
+    private static final int HEADER_SIZE = MOVI_OFFSET + 4;
+
+    private static final long MAX_FILE_SIZE = 0xFFFFFFFFL;
+    private static final int AVIF_HASINDEX = 0x10, AVIIF_KEYFRAME = 0x10;
+    /* Chunk id of compressed video frames of stream 0 */
+    private static final byte[] FRAME_CHUNK_ID = fourCC("00dc");
+
+    /**
+     * Exposes the internal buffer, to write encoded frames without copying them
+     * */
+    private static final class Bytes extends ByteArrayOutputStream {
+
+        Bytes(int size) {
+            super(size);
+        }
+
+        @NotNull
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private final int mWidth, mHeight, mFps;
+    @NotNull
+    private final RandomAccessFile mFile;
+    @NotNull
+    private final FileChannel mChannel;
+
+    @NotNull
+    private final ImageWriter mJpegWriter;
+    @NotNull
+    private final ImageWriteParam mJpegParam;
+    @NotNull
+    private final BufferedImage mImage;
+    @NotNull
+    private final int[] mImagePixels;
+    @NotNull
+    private final Bytes mJpeg;
+    @NotNull
+    private final ByteBuffer mHeader = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    @NotNull
+    private final ByteBuffer mChunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+    /* Index entries: offset and size of every frame chunk */
+    @NotNull
+    private int[] mIndex = new int[2 * 1024];
+    private int mFrameCount;
+    private int mMaxChunkSize;
+    private long mPosition = HEADER_SIZE;
+
+    /**
+     * @param quality JPEG quality, in range [0, 1]
+     * */
+    public MjpegAviEncoder(@NotNull File file, int width, int height, int fps, float quality) throws IOException {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+        if (fps < 1)
+            throw new IllegalArgumentException("Invalid frame rate: " + fps);
+
+        mWidth = width;
+        mHeight = height;
+        mFps = fps;
+
+        mImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        mImagePixels = ((DataBufferInt) mImage.getRaster().getDataBuffer()).getData();
+        mJpeg = new Bytes(width * height / 4);
+
+        mJpegWriter = ImageIO.getImageWritersByFormatName("jpeg").next();
+        mJpegParam = mJpegWriter.getDefaultWriteParam();
+        mJpegParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        mJpegParam.setCompressionQuality(Math.min(Math.max(quality, 0), 1));
+
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(0);
+        mChannel = mFile.getChannel();
+        writeHeaders();
+    }
+
+    public MjpegAviEncoder(@NotNull File file, int width, int height, int fps) throws IOException {
+        this(file, width, height, fps, DEFAULT_QUALITY);
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    @Override
+    public void writeFrame(@NotNull int[] argb) throws IOException {
+        if (argb.length < mWidth * mHeight)
+            throw new IllegalArgumentException("Expected " + mWidth * mHeight + " pixels, given: " + argb.length);
+
+        System.arraycopy(argb, 0, mImagePixels, 0, mWidth * mHeight);
+
+        final Bytes jpeg = mJpeg;
+        jpeg.reset();
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(jpeg)) {
+            mJpegWriter.setOutput(ios);
+            mJpegWriter.write(null, new IIOImage(mImage, null, null), mJpegParam);
+        }
+
+        final int size = jpeg.size();
+        if ((size & 1) != 0) {
+            jpeg.write(0);          // chunks are word aligned
+        }
+        final int padded = jpeg.size();
+        final long indexSize = 8 + 16L * (mFrameCount + 1);
+        if (mPosition + 8 + padded + indexSize > MAX_FILE_SIZE)
+            throw new IOException("AVI file size limit reached after " + mFrameCount + " frames");
+
+        final ByteBuffer header = mChunkHeader;
+        header.clear();
+        header.put(FRAME_CHUNK_ID).putInt(size).flip();
+        writeFully(header, mPosition);
+        writeFully(ByteBuffer.wrap(jpeg.array(), 0, padded), mPosition + 8);
+
+        if (mFrameCount * 2 + 2 > mIndex.length) {
+            mIndex = Arrays.copyOf(mIndex, mIndex.length * 2);
+        }
+        mIndex[mFrameCount * 2] = (int) (mPosition - MOVI_OFFSET);
+        mIndex[mFrameCount * 2 + 1] = size;
+
+        mPosition += 8 + padded;
+        mMaxChunkSize = Math.max(mMaxChunkSize, size);
+        mFrameCount++;
+    }
+
+    private void writeFully(@NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += mChannel.write(buffer, position);
+        }
+    }
+
+    private static byte[] fourCC(@NotNull String code) {
+        return new byte[] { (byte) code.charAt(0), (byte) code.charAt(1), (byte) code.charAt(2), (byte) code.charAt(3) };
+    }
+
+    /**
+     * Writes the RIFF, hdrl and movi headers for the frames written so far
+     * */
+    private void writeHeaders() throws IOException {
+        final long moviEnd = mPosition;
+        final long fileSize = moviEnd + (mFrameCount > 0? 8 + 16L * mFrameCount: 0);
+        final ByteBuffer b = mHeader;
+        b.clear();
+
+        b.put(fourCC("RIFF")).putInt((int) (fileSize - 8)).put(fourCC("AVI "));
+
+        b.put(fourCC("LIST")).putInt(HDRL_SIZE).put(fourCC("hdrl"));
+        b.put(fourCC("avih")).putInt(AVIH_SIZE)
+                .putInt(1_000_000 / mFps)            // microseconds per frame
+                .putInt((int) Math.min((long) mMaxChunkSize * mFps, Integer.MAX_VALUE))     // max bytes per second
+                .putInt(0)                           // padding granularity
+                .putInt(AVIF_HASINDEX)
+                .putInt(mFrameCount)
+                .putInt(0)                           // initial frames
+                .putInt(1)                           // streams
+                .putInt(mMaxChunkSize)               // suggested buffer size
+                .putInt(mWidth).putInt(mHeight)
+                .putInt(0).putInt(0).putInt(0).putInt(0);
+
+        b.put(fourCC("LIST")).putInt(STRL_SIZE).put(fourCC("strl"));
+        b.put(fourCC("strh")).putInt(STRH_SIZE)
+                .put(fourCC("vids")).put(fourCC("MJPG"))
+                .putInt(0)                           // flags
+                .putShort((short) 0).putShort((short) 0)    // priority, language
+                .putInt(0)                           // initial frames
+                .putInt(1).putInt(mFps)              // scale, rate: fps = rate / scale
+                .putInt(0)                           // start
+                .putInt(mFrameCount)                 // length
+                .putInt(mMaxChunkSize)
+                .putInt(-1)                          // quality: default
+                .putInt(0)                           // sample size: varies
+                .putShort((short) 0).putShort((short) 0).putShort((short) mWidth).putShort((short) mHeight);
+        b.put(fourCC("strf")).putInt(STRF_SIZE)     // BITMAPINFOHEADER
+                .putInt(STRF_SIZE)
+                .putInt(mWidth).putInt(mHeight)
+                .putShort((short) 1).putShort((short) 24)   // planes, bits per pixel
+                .put(fourCC("MJPG"))
+                .putInt(mWidth * mHeight * 3)
+                .putInt(0).putInt(0).putInt(0).putInt(0);
+
+        b.put(fourCC("LIST")).putInt((int) (moviEnd - MOVI_OFFSET)).put(fourCC("movi"));
+        b.flip();
+        writeFully(b, 0);
+    }
+
+    private void writeIndex() throws IOException {
+        final ByteBuffer b = ByteBuffer.allocate(8 + 16 * mFrameCount).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(fourCC("idx1")).putInt(16 * mFrameCount);
+        for (int i = 0; i < mFrameCount; i++) {
+            b.put(FRAME_CHUNK_ID).putInt(AVIIF_KEYFRAME).putInt(mIndex[i * 2]).putInt(mIndex[i * 2 + 1]);
+        }
+
+        b.flip();
+        writeFully(b, mPosition);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (mFrameCount > 0) {
+                writeIndex();
+            }
+            writeHeaders();
+        } finally {
+            mJpegWriter.dispose();
+            mFile.close();
+        }
+    }
+
+}
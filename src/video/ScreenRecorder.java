@@ -0,0 +1,156 @@
+package video;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Records frames of an interactive sketch to a video file, without blocking the animation thread.
+ *
+ * <p>
+ * Captures are paced to the frame rate of the video: {@link #acquireFrame(long)} hands out a pooled pixel buffer only
+ * once a frame is due, and only if the encoder has one free, so the caller skips the (costly) framebuffer read back
+ * whenever the frame would not be written anyway. Frames that are due while all the buffers are still queued are
+ * dropped and counted, instead of stalling the caller. Encoding runs on an {@link AsyncVideoWriter}
+ * <p>
+ * */
+public class ScreenRecorder {
+
+    public static final int DEFAULT_FPS = 30;
+
+    @NotNull
+    private final File mFile;
+    @NotNull
+    private final VideoFormat mFormat;
+    @NotNull
+    private final AsyncVideoWriter mWriter;
+    private final long mFrameNs;
+
+    private final long mStartNs;
+    private long mNextFrameNs = -1;
+
+    /**
+     * @param width, height size of the captured frames, in pixels
+     * @param quality JPEG quality in range [0, 1], for formats that compress
+     * @param queueCapacity frames that may wait for the encoder before captures are dropped
+     * */
+    public ScreenRecorder(@NotNull File file, @NotNull VideoFormat format, int width, int height, int fps, float quality, int queueCapacity) throws IOException {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Cannot create directory " + dir);
+
+        mFile = file;
+        mFormat = format;
+        mWriter = new AsyncVideoWriter(format.create(file, width, height, fps, quality), queueCapacity);
+        mFrameNs = TimeUnit.SECONDS.toNanos(1) / Math.max(fps, 1);
+        mStartNs = System.nanoTime();
+    }
+
+    @NotNull
+    public File getFile() {
+        return mFile;
+    }
+
+    @NotNull
+    public VideoFormat getFormat() {
+        return mFormat;
+    }
+
+    public int getWidth() {
+        return mWriter.getWidth();
+    }
+
+    public int getHeight() {
+        return mWriter.getHeight();
+    }
+
+    public int getQueueDepth() {
+        return mWriter.getQueueDepth();
+    }
+
+    public int getQueueCapacity() {
+        return mWriter.getQueueCapacity();
+    }
+
+    public int getDroppedFrames() {
+        return mWriter.getDroppedFrames();
+    }
+
+    /**
+     * @return frames encoded so far
+     * */
+    public int getFrameCount() {
+        return mWriter.getFrameCount();
+    }
+
+    /**
+     * @return wall time since recording started, in seconds
+     * */
+    public float getElapsedSeconds() {
+        return (System.nanoTime() - mStartNs) / 1e9f;
+    }
+
+    /**
+     * @return the error that stopped the encoder, or null
+     * */
+    @Nullable
+    public IOException getError() {
+        return mWriter.getError();
+    }
+
+    /**
+     * @param nowNs current time, from {@link System#nanoTime()}
+     * @return a buffer of {@code width * height} pixels to capture the current frame into, then {@link #submitFrame submit},
+     * or null if no frame is due yet or the frame is dropped
+     * */
+    @Nullable
+    public int[] acquireFrame(long nowNs) {
+        if (mNextFrameNs != -1 && nowNs < mNextFrameNs)
+            return null;
+
+        // stay on the frame grid, but do not try to catch up on a backlog of missed frames
+        mNextFrameNs = mNextFrameNs == -1 || nowNs - mNextFrameNs > mFrameNs? nowNs + mFrameNs: mNextFrameNs + mFrameNs;
+        return mWriter.tryAcquire();
+    }
+
+    /**
+     * Queues a buffer from {@link #acquireFrame(long)}, filled with the frame's (A)RGB pixels, for encoding
+     * */
+    public void submitFrame(@NotNull int[] buffer) {
+        mWriter.submit(buffer);
+    }
+
+    /**
+     * Encodes the frames still queued and finishes the file. Blocks until done
+     * */
+    public void close() throws IOException {
+        mWriter.close();
+    }
+
+    /**
+     * Finishes the file on a separate thread, so that the caller does not wait for the queued frames to be encoded.
+     * The thread is not a daemon, so the file is finished even if the application exits meanwhile
+     *
+     * @param onClosed called on that thread once done, with the error if any (null on success). May be null
+     * */
+    public void closeAsync(@Nullable Consumer<IOException> onClosed) {
+        final Thread t = new Thread(() -> {
+            IOException error = null;
+            try {
+                close();
+            } catch (IOException e) {
+                error = e;
+            }
+
+            if (onClosed != null) {
+                onClosed.accept(error);
+            }
+        }, "Recording finisher");
+        t.start();
+    }
+
+}
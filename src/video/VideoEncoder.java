@@ -0,0 +1,37 @@
+package video;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams frames of a fixed size into a video file, in order. Not thread safe, see {@link AsyncVideoWriter} to encode
+ * on a background thread
+ * */
+public interface VideoEncoder extends Closeable {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Encodes the next frame
+     *
+     * @param argb packed (A)RGB pixels, row by row from the top-left, {@code width * height} of them. Alpha is ignored.
+     *             Not retained, can be reused once this returns
+     * */
+    void writeFrame(@NotNull int[] argb) throws IOException;
+
+    /**
+     * @return number of frames written so far
+     * */
+    int getFrameCount();
+
+    /**
+     * Finishes the file (e.g. writes headers and indices that depend on the frame count) and closes it
+     * */
+    @Override
+    void close() throws IOException;
+
+}
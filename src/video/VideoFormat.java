@@ -0,0 +1,63 @@
+package video;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Built-in video containers, chosen by file extension
+ * */
+public enum VideoFormat {
+
+    Y4M("Y4M (raw YUV 4:2:0)", "y4m"),
+    MJPEG_AVI("MJPEG AVI", "avi");
+
+    @NotNull
+    public final String displayName;
+    @NotNull
+    public final String extension;
+
+    VideoFormat(@NotNull String displayName, @NotNull String extension) {
+        this.displayName = displayName;
+        this.extension = extension;
+    }
+
+    /**
+     * @param quality JPEG quality in range [0, 1], for formats that compress
+     * */
+    @NotNull
+    public VideoEncoder create(@NotNull File file, int width, int height, int fps, float quality) throws IOException {
+        switch (this) {
+            case Y4M: return new Y4mEncoder(file, width, height, fps);
+            case MJPEG_AVI: return new MjpegAviEncoder(file, width, height, fps, quality);
+            default: throw new AssertionError(this);
+        }
+    }
+
+    @NotNull
+    public VideoFormat next() {
+        final VideoFormat[] values = values();
+        return values[(ordinal() + 1) % values.length];
+    }
+
+    /**
+     * @return the format of a file by its extension, or null if it is not a video file
+     * */
+    @Nullable
+    public static VideoFormat forFile(@NotNull File file) {
+        final String name = file.getName();
+        final int dot = name.lastIndexOf('.');
+        if (dot != -1) {
+            final String ext = name.substring(dot + 1);
+            for (VideoFormat f: values()) {
+                if (f.extension.equalsIgnoreCase(ext))
+                    return f;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,70 @@
+package video;
+
+import org.jetbrains.annotations.NotNull;
+import render.FrameSink;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Feeds the frames of an {@link render.OfflineRenderer} to an {@link AsyncVideoWriter}, in sequence order.
+ *
+ * <p>
+ * Render threads finish frames out of order, so each one waits for its turn before copying its pixels into a pooled
+ * buffer and queueing it. The copy is cheap compared to rendering, and the waits are bounded by the few frames
+ * the renderer has in flight. Encoding runs on the writer's thread, in parallel with rendering
+ * <p>
+ * */
+public class VideoFrameSink implements FrameSink {
+
+    @NotNull
+    private final AsyncVideoWriter mWriter;
+    private int mNext;
+
+    /**
+     * @param writer writer of the video, closed with this sink
+     * */
+    public VideoFrameSink(@NotNull AsyncVideoWriter writer) {
+        mWriter = writer;
+    }
+
+    @Override
+    public synchronized void writeFrame(int index, @NotNull BufferedImage image) throws IOException {
+        if (image.getWidth() != mWriter.getWidth() || image.getHeight() != mWriter.getHeight())
+            throw new IllegalArgumentException("Frame size " + image.getWidth() + "x" + image.getHeight() + " does not match the video size "
+                    + mWriter.getWidth() + "x" + mWriter.getHeight());
+
+        try {
+            while (index != mNext) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for frame " + mNext);
+        }
+
+        final int[] buffer = mWriter.acquire();
+        copyPixels(image, buffer);
+        mWriter.submit(buffer);
+
+        mNext++;
+        notifyAll();
+    }
+
+    private static void copyPixels(@NotNull BufferedImage image, @NotNull int[] out) {
+        final int w = image.getWidth(), h = image.getHeight();
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            System.arraycopy(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), 0, out, 0, w * h);
+        } else {
+            image.getRGB(0, 0, w, h, out, 0, w);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWriter.close();
+    }
+
+}
@@ -0,0 +1,127 @@
+package video;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes uncompressed YUV4MPEG2 ({@code .y4m}) video: planar YUV 4:2:0, BT.601 studio range.
+ *
+ * <p>
+ * The format is a text header followed by raw frames, so writing is a color conversion and a sequential write, with
+ * no encoding cost. Files are large (1.5 bytes per pixel per frame) but are read by ffmpeg, x264 and most video tools,
+ * which makes it a good intermediate for transcoding. The planes are reused across frames
+ * <p>
+ * */
+public class Y4mEncoder implements VideoEncoder {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] FRAME_HEADER = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final int mWidth, mHeight;
+    private final int mChromaWidth, mChromaHeight;
+    @NotNull
+    private final OutputStream mOut;
+
+    /* Planes of the frame being written, reused */
+    @NotNull
+    private final byte[] mY, mU, mV;
+    private int mFrameCount;
+
+    /**
+     * @param fps frame rate, as a fraction {@code fpsNum / fpsDen}
+     * */
+    public Y4mEncoder(@NotNull File file, int width, int height, int fpsNum, int fpsDen) throws IOException {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+        if (fpsNum < 1 || fpsDen < 1)
+            throw new IllegalArgumentException("Invalid frame rate: " + fpsNum + "/" + fpsDen);
+
+        mWidth = width;
+        mHeight = height;
+        mChromaWidth = (width + 1) / 2;
+        mChromaHeight = (height + 1) / 2;
+        mY = new byte[width * height];
+        mU = new byte[mChromaWidth * mChromaHeight];
+        mV = new byte[mChromaWidth * mChromaHeight];
+
+        mOut = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        final String header = String.format("YUV4MPEG2 W%d H%d F%d:%d Ip A1:1 C420jpeg\n", width, height, fpsNum, fpsDen);
+        mOut.write(header.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public Y4mEncoder(@NotNull File file, int width, int height, int fps) throws IOException {
+        this(file, width, height, fps, 1);
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    @Override
+    public void writeFrame(@NotNull int[] argb) throws IOException {
+        if (argb.length < mWidth * mHeight)
+            throw new IllegalArgumentException("Expected " + mWidth * mHeight + " pixels, given: " + argb.length);
+
+        convert(argb);
+
+        mOut.write(FRAME_HEADER);
+        mOut.write(mY);
+        mOut.write(mU);
+        mOut.write(mV);
+        mFrameCount++;
+    }
+
+    /**
+     * RGB to BT.601 studio range YCbCr in fixed point, chroma averaged over 2x2 blocks
+     * */
+    private void convert(@NotNull int[] argb) {
+        final int w = mWidth, h = mHeight;
+        final byte[] yPlane = mY, uPlane = mU, vPlane = mV;
+
+        for (int cy = 0; cy < mChromaHeight; cy++) {
+            final int y0 = cy * 2, y1 = Math.min(y0 + 1, h - 1);
+            for (int cx = 0; cx < mChromaWidth; cx++) {
+                final int x0 = cx * 2, x1 = Math.min(x0 + 1, w - 1);
+
+                int rSum = 0, gSum = 0, bSum = 0;
+                for (int k = 0; k < 4; k++) {
+                    final int x = (k & 1) == 0? x0: x1, y = k < 2? y0: y1;
+                    final int i = y * w + x;
+                    final int c = argb[i];
+                    final int r = (c >> 16) & 0xFF, g = (c >> 8) & 0xFF, b = c & 0xFF;
+                    yPlane[i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);     // rewritten for clamped edges, same value
+                    rSum += r;
+                    gSum += g;
+                    bSum += b;
+                }
+
+                final int ci = cy * mChromaWidth + cx;
+                uPlane[ci] = (byte) (((-38 * rSum - 74 * gSum + 112 * bSum + 512) >> 10) + 128);
+                vPlane[ci] = (byte) (((112 * rSum - 94 * gSum - 18 * bSum + 512) >> 10) + 128);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+}